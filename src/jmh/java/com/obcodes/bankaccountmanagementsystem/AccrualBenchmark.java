@@ -0,0 +1,94 @@
+package com.obcodes.bankaccountmanagementsystem;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Properties;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * End-of-day interest over a journaled book: one Bank.deposit per account,
+ * as a loop over the registry would post it, against an AccrualEngine run
+ * on 1 and 8 fork-join workers. Each invocation accrues a new business
+ * day, so every account is posted to every time.
+ * @author Obakeng Phale
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx8g"})
+@State(Scope.Benchmark)
+public class AccrualBenchmark {
+    @Param({"1000000"})
+    public int accounts;
+    
+    @Param({"1", "8"})
+    public int parallelism;
+    
+    private Path directory;
+    private Bank bank;
+    private AccrualRates rates;
+    private ForkJoinPool pool;
+    private AccrualEngine engine;
+    private LocalDate day = LocalDate.of(2024, 1, 1);
+    
+    @Setup(Level.Trial)
+    public void seed() throws IOException {
+        directory = Files.createTempDirectory("accrual-bench");
+        // Group commit without fsync, so the loop measures posting rather
+        // than the disk
+        bank = new Bank(new TransactionJournal(directory.resolve("journal.dat"),
+            TransactionJournal.DEFAULT_BUFFER_BYTES, 0L, false));
+        for (int i = 0; i < accounts; i++) {
+            bank.openAccount("Account Holder", Money.of(1000 + i % 50000));
+        }
+        Properties properties = new Properties();
+        properties.setProperty("default.interest", "0:0.5,10000:2.75,40000:4");
+        rates = AccrualRates.parse(properties);
+        pool = new ForkJoinPool(parallelism);
+        engine = new AccrualEngine(bank, rates, pool);
+    }
+    
+    @TearDown(Level.Trial)
+    public void close() throws IOException {
+        pool.shutdown();
+        bank.close();
+        Files.deleteIfExists(directory.resolve("journal.dat"));
+        Files.deleteIfExists(directory);
+    }
+    
+    @Benchmark
+    public long depositLoop() {
+        AccrualRates.Table table = rates.tableFor(RuleEngine.DEFAULT.getRules().getDefaultTier());
+        long total = 0;
+        for (Account account : bank.getAccounts()) {
+            long interest = table.interest(account.getBalance(), rates.getDaysPerYear());
+            if (interest > 0 && bank.deposit(account, interest, PostingListener.NONE).isSuccess()) {
+                total += interest;
+            }
+        }
+        return total;
+    }
+    
+    @Benchmark
+    public long accrualEngine() {
+        day = day.plusDays(1);
+        return engine.accrueInterest(day).getTotal();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,113 @@
+package com.obcodes.bankaccountmanagementsystem;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Load generator for the HTTP front-end: a burst of concurrent clients,
+ * each a virtual thread making a few requests against a BankServer on
+ * the loopback interface. Half the requests are deposits and half are
+ * balance reads. Throughput is reported per request.
+ *
+ * Client and server sockets share the process, so 10k clients need an
+ * open file limit above 20k (ulimit -n).
+ * @author Obakeng Phale
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g"})
+@State(Scope.Benchmark)
+public class BankServerBenchmark {
+    private static final int REQUESTS_PER_CLIENT = 4;
+    private static final int CLIENTS = 10000;
+    
+    @Param({"10000"})
+    public int accounts;
+    
+    private Bank bank;
+    private BankServer server;
+    private HttpClient client;
+    private ExecutorService clientThreads;
+    private long[] accountNumbers;
+    private String base;
+    
+    @Setup(Level.Trial)
+    public void start() throws IOException {
+        bank = new Bank();
+        accountNumbers = new long[accounts];
+        for (int i = 0; i < accounts; i++) {
+            accountNumbers[i] = bank.openAccount("Account Holder", Money.of(5000)).getAccountNumber();
+        }
+        server = new BankServer(bank, new InetSocketAddress("127.0.0.1", 0));
+        server.start();
+        base = "http://127.0.0.1:" + server.getPort();
+        clientThreads = Executors.newVirtualThreadPerTaskExecutor();
+        client = HttpClient.newBuilder().executor(clientThreads).build();
+    }
+    
+    @TearDown(Level.Trial)
+    public void stop() {
+        server.close();
+        clientThreads.close();
+    }
+    
+    /**
+     * Runs CLIENTS concurrent clients to completion
+     * @return the number of requests that failed
+     */
+    @Benchmark
+    @OperationsPerInvocation(CLIENTS * REQUESTS_PER_CLIENT)
+    public int concurrentClients() {
+        AtomicInteger failed = new AtomicInteger();
+        try (ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int c = 0; c < CLIENTS; c++) {
+                SplittableRandom random = new SplittableRandom(c);
+                clients.execute(() -> {
+                    for (int i = 0; i < REQUESTS_PER_CLIENT; i++) {
+                        long account = accountNumbers[random.nextInt(accounts)];
+                        HttpRequest request = i % 2 == 0
+                            ? HttpRequest.newBuilder(URI.create(base + "/accounts/" + account + "/deposit?amount=0.01"))
+                                .POST(HttpRequest.BodyPublishers.noBody()).build()
+                            : HttpRequest.newBuilder(URI.create(base + "/accounts/" + account)).GET().build();
+                        try {
+                            if (client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() != 200) {
+                                failed.incrementAndGet();
+                            }
+                        } catch (IOException e) {
+                            failed.incrementAndGet();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            return;
+                        }
+                    }
+                });
+            }
+        }
+        return failed.get();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,66 @@
+package com.obcodes.bankaccountmanagementsystem;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Shared benchmark fixture: a bank seeded the way
+ * BankAccountManagementSystem.initializeTestAccounts seeds the five test
+ * accounts, repeated until the requested number of accounts exists.
+ * Accounts are opened and posted to through the Bank, as in production.
+ * @author Obakeng Phale
+ */
+@State(Scope.Benchmark)
+public class BankState {
+    private static final String[] NAMES = {
+        "John Doe", "Jane Smith", "Robert Johnson", "Alice Brown", "Charlie Wilson"
+    };
+    private static final long[] OPENING_BALANCES = {
+        Money.of(5000), Money.of(10000), Money.of(7500), Money.of(12000), Money.of(3000)
+    };
+    
+    @Param({"10000", "1000000", "10000000"})
+    public int accounts;
+    
+    public Bank bank;
+    public AccountRegistry registry;
+    public Account[] accountArray;
+    public long[] accountNumbers;
+    public long seededTotal;
+    
+    @Setup(Level.Trial)
+    public void seed() {
+        bank = new Bank();
+        registry = bank.getAccounts();
+        accountArray = new Account[accounts];
+        accountNumbers = new long[accounts];
+        for (int i = 0; i < accounts; i++) {
+            int k = i % NAMES.length;
+            Account account = bank.openAccount(NAMES[k], OPENING_BALANCES[k]);
+            accountArray[i] = account;
+            accountNumbers[i] = account.getAccountNumber();
+        }
+        
+        // Same sample postings as the interactive seed, once per group of five
+        for (int base = 0; base + NAMES.length <= accounts; base += NAMES.length) {
+            bank.deposit(accountNumbers[base], Money.of(1000));
+            bank.withdraw(accountNumbers[base], Money.of(500));
+            bank.deposit(accountNumbers[base + 1], Money.of(2000));
+            bank.withdraw(accountNumbers[base + 2], Money.of(1000));
+            bank.transfer(accountNumbers[base], accountNumbers[base + 1], Money.of(500));
+        }
+        seededTotal = totalBalance();
+    }
+    
+    public long totalBalance() {
+        long total = 0;
+        for (Account account : accountArray) {
+            total = Money.add(total, account.getBalance());
+        }
+        return total;
+    }
+
+}
\ No newline at end of file
@@ -0,0 +1,127 @@
+package com.obcodes.bankaccountmanagementsystem;
+
+import java.util.ArrayList;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput and latency of the core banking operations on a seeded book,
+ * posted through the Bank with its metrics and aggregates, as requests are.
+ * Each operation runs once single-threaded and once with one thread per
+ * available core (see the nested subclasses).
+ * @author Obakeng Phale
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public abstract class BankingOperationsBenchmark {
+    // Small amounts so seeded balances never run dry during a trial
+    private static final long AMOUNT = 1L;
+    
+    /**
+     * Per-thread random account picker
+     */
+    @State(Scope.Thread)
+    public static class Picker {
+        private SplittableRandom random;
+        
+        @Setup(Level.Trial)
+        public void setUp() {
+            random = new SplittableRandom(Thread.currentThread().threadId());
+        }
+        
+        int next(int bound) {
+            return random.nextInt(bound);
+        }
+    }
+    
+    /**
+     * Checks after the transfer trial that money was only moved, never
+     * created or destroyed
+     */
+    @State(Scope.Benchmark)
+    public static class ConservationCheck {
+        @TearDown(Level.Trial)
+        public void verify(BankState state) {
+            long total = state.totalBalance();
+            if (total != state.seededTotal) {
+                throw new IllegalStateException("Total balance changed from R" + Money.format(state.seededTotal)
+                    + " to R" + Money.format(total) + " during transfers");
+            }
+            long aggregated = state.bank.getAggregates().getTotalBalance();
+            if (aggregated != state.seededTotal) {
+                throw new IllegalStateException("Aggregate balance changed from R" + Money.format(state.seededTotal)
+                    + " to R" + Money.format(aggregated) + " during transfers");
+            }
+        }
+    }
+    
+    @Benchmark
+    public Account lookup(BankState state, Picker picker) {
+        return state.bank.findAccount(state.accountNumbers[picker.next(state.accounts)]);
+    }
+    
+    @Benchmark
+    public PostingStatus deposit(BankState state, Picker picker) {
+        return state.bank.deposit(state.accountNumbers[picker.next(state.accounts)], AMOUNT);
+    }
+    
+    @Benchmark
+    public PostingStatus withdraw(BankState state, Picker picker) {
+        return state.bank.withdraw(state.accountNumbers[picker.next(state.accounts)], AMOUNT);
+    }
+    
+    @Benchmark
+    public PostingStatus transfer(BankState state, Picker picker, ConservationCheck check) {
+        int from = picker.next(state.accounts);
+        int to = picker.next(state.accounts - 1);
+        if (to >= from) {
+            to++;
+        }
+        return state.bank.transfer(state.accountNumbers[from], state.accountNumbers[to], AMOUNT);
+    }
+    
+    @Benchmark
+    public ArrayList<Transaction> transactionHistory(BankState state, Picker picker) {
+        return state.accountArray[picker.next(state.accounts)].getTransactionHistory();
+    }
+    
+    @Benchmark
+    public long lastTenPostings(BankState state, Picker picker) {
+        Account account = state.accountArray[picker.next(state.accounts)];
+        TransactionHistory.Cursor cursor = account.getHistory().last(10).cursor();
+        long total = 0;
+        while (cursor.next()) {
+            total += cursor.amount();
+        }
+        return total;
+    }
+    
+    @Benchmark
+    public int transactionCount(BankState state, Picker picker) {
+        return state.accountArray[picker.next(state.accounts)].getTransactionCount();
+    }
+    
+    @Threads(1)
+    public static class SingleThread extends BankingOperationsBenchmark {
+    }
+    
+    @Threads(Threads.MAX)
+    public static class MultiThread extends BankingOperationsBenchmark {
+    }
+}
\ No newline at end of file
@@ -0,0 +1,127 @@
+package com.obcodes.bankaccountmanagementsystem;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Bulk posting throughput: the same run of postings made one Bank call at
+ * a time against a single Bank.post batch. Payroll deposits into accounts
+ * spread over the book; settlement moves money between random pairs of
+ * accounts. Throughput is reported per posting.
+ * @author Obakeng Phale
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g"})
+@State(Scope.Benchmark)
+public class BatchPostingBenchmark {
+    private static final int RUN = 10000;
+    // Small amounts so seeded balances never run dry during a trial
+    private static final long AMOUNT = 1L;
+    
+    @Param({"10000", "1000000"})
+    public int accounts;
+    
+    private Bank bank;
+    private long[] accountNumbers;
+    private long seededTotal;
+    // Account indexes of one run, drawn once so both variants post the same
+    private int[] targets;
+    private int[] counterparties;
+    private PostingBatch batch;
+    
+    @Setup(Level.Trial)
+    public void seed() {
+        bank = new Bank();
+        accountNumbers = new long[accounts];
+        for (int i = 0; i < accounts; i++) {
+            accountNumbers[i] = bank.openAccount("Account Holder", Money.of(5000)).getAccountNumber();
+        }
+        seededTotal = bank.getAggregates().getTotalBalance();
+        
+        SplittableRandom random = new SplittableRandom(42L);
+        targets = new int[RUN];
+        counterparties = new int[RUN];
+        for (int i = 0; i < RUN; i++) {
+            targets[i] = random.nextInt(accounts);
+            int other = random.nextInt(accounts - 1);
+            counterparties[i] = other >= targets[i] ? other + 1 : other;
+        }
+        batch = new PostingBatch(RUN);
+    }
+    
+    /**
+     * Checks that settlement only moved money; payroll adds a known amount
+     */
+    @TearDown(Level.Trial)
+    public void verify() {
+        long total = 0;
+        for (Account account : bank.getAccounts()) {
+            total = Money.add(total, account.getBalance());
+        }
+        if (total != bank.getAggregates().getTotalBalance() || total < seededTotal) {
+            throw new IllegalStateException("Balances drifted: accounts hold R" + Money.format(total)
+                + ", aggregates say R" + Money.format(bank.getAggregates().getTotalBalance()));
+        }
+    }
+    
+    @Benchmark
+    @OperationsPerInvocation(RUN)
+    public int payrollLoop() {
+        int posted = 0;
+        for (int i = 0; i < RUN; i++) {
+            if (bank.deposit(accountNumbers[targets[i]], AMOUNT).isSuccess()) {
+                posted++;
+            }
+        }
+        return posted;
+    }
+    
+    @Benchmark
+    @OperationsPerInvocation(RUN)
+    public PostingStatus[] payrollBatch() {
+        batch.clear();
+        for (int i = 0; i < RUN; i++) {
+            batch.deposit(accountNumbers[targets[i]], AMOUNT);
+        }
+        return bank.post(batch);
+    }
+    
+    @Benchmark
+    @OperationsPerInvocation(RUN)
+    public int settlementLoop() {
+        int posted = 0;
+        for (int i = 0; i < RUN; i++) {
+            if (bank.transfer(accountNumbers[targets[i]], accountNumbers[counterparties[i]], AMOUNT).isSuccess()) {
+                posted++;
+            }
+        }
+        return posted;
+    }
+    
+    @Benchmark
+    @OperationsPerInvocation(RUN)
+    public PostingStatus[] settlementBatch() {
+        batch.clear();
+        for (int i = 0; i < RUN; i++) {
+            batch.transfer(accountNumbers[targets[i]], accountNumbers[counterparties[i]], AMOUNT);
+        }
+        return bank.post(batch);
+    }
+}
\ No newline at end of file
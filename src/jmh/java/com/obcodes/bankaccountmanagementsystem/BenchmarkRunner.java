@@ -0,0 +1,25 @@
+package com.obcodes.bankaccountmanagementsystem;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Entry point for mvn -Pbenchmark verify. Accepts the usual JMH command
+ * line (passed through -Djmh.args) and always attaches the GC profiler so
+ * every run reports allocation rate alongside throughput and latency.
+ * @author Obakeng Phale
+ */
+public class BenchmarkRunner {
+    
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        new Runner(new OptionsBuilder()
+            .parent(commandLine)
+            .addProfiler(GCProfiler.class)
+            .build()).run();
+    }
+}
\ No newline at end of file
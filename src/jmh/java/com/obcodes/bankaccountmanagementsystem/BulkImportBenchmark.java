@@ -0,0 +1,133 @@
+package com.obcodes.bankaccountmanagementsystem;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Loading a book from CSV: the streaming BulkImporter against reading the
+ * same files line by line with BufferedReader and String.split and calling
+ * the bank once per row. Each run imports the accounts file, then the
+ * postings file, into a fresh in-memory bank.
+ * @author Obakeng Phale
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx8g"})
+@State(Scope.Benchmark)
+public class BulkImportBenchmark {
+    private static final long FIRST_ACCOUNT = 100000000000L;
+    
+    @Param({"1000000"})
+    public int accounts;
+    
+    @Param({"5000000"})
+    public int postings;
+    
+    private Path directory;
+    private Path accountFile;
+    private Path postingFile;
+    private Path rejectFile;
+    
+    @Setup(Level.Trial)
+    public void writeFiles() throws IOException {
+        directory = Files.createTempDirectory("bulk-import-bench");
+        accountFile = directory.resolve("accounts.csv");
+        postingFile = directory.resolve("postings.csv");
+        rejectFile = directory.resolve("rejects.csv");
+        SplittableRandom random = new SplittableRandom(42L);
+        try (BufferedWriter out = Files.newBufferedWriter(accountFile)) {
+            for (int i = 0; i < accounts; i++) {
+                out.write(Long.toString(FIRST_ACCOUNT + i));
+                out.write(",Account Holder ");
+                out.write(Integer.toString(i));
+                out.write(",1000.00\n");
+            }
+        }
+        try (BufferedWriter out = Files.newBufferedWriter(postingFile)) {
+            for (int i = 0; i < postings; i++) {
+                long account = FIRST_ACCOUNT + random.nextInt(accounts);
+                switch (random.nextInt(3)) {
+                    case 0:
+                        out.write("D," + account + ",,12.50\n");
+                        break;
+                    case 1:
+                        out.write("W," + account + ",,3.25\n");
+                        break;
+                    default:
+                        long recipient = FIRST_ACCOUNT + random.nextInt(accounts);
+                        out.write("T," + account + "," + recipient + ",5.00\n");
+                        break;
+                }
+            }
+        }
+    }
+    
+    @TearDown(Level.Trial)
+    public void deleteFiles() throws IOException {
+        Files.deleteIfExists(accountFile);
+        Files.deleteIfExists(postingFile);
+        Files.deleteIfExists(rejectFile);
+        Files.deleteIfExists(directory);
+    }
+    
+    @Benchmark
+    public Bank bulkImporter() throws IOException {
+        Bank bank = new Bank();
+        BulkImporter importer = new BulkImporter(bank, BulkImporter.Format.csv());
+        importer.importAccounts(accountFile, rejectFile);
+        importer.importPostings(postingFile, rejectFile);
+        return bank;
+    }
+    
+    @Benchmark
+    public Bank readLineAndSplit() throws IOException {
+        Bank bank = new Bank();
+        try (BufferedReader in = Files.newBufferedReader(accountFile)) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                String[] fields = line.split(",");
+                bank.openAccount(Long.parseLong(fields[0]), fields[1], Money.parse(fields[2]));
+            }
+        }
+        try (BufferedReader in = Files.newBufferedReader(postingFile)) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                String[] fields = line.split(",");
+                long account = Long.parseLong(fields[1]);
+                long amount = Money.parse(fields[3]);
+                switch (fields[0]) {
+                    case "D":
+                        bank.deposit(account, amount);
+                        break;
+                    case "W":
+                        bank.withdraw(account, amount);
+                        break;
+                    default:
+                        bank.transfer(account, Long.parseLong(fields[2]), amount);
+                        break;
+                }
+            }
+        }
+        return bank;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,213 @@
+package com.obcodes.bankaccountmanagementsystem;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cold start time for a bank with a long posting history: loading the
+ * snapshot and replaying only the journal tail, replaying the whole journal,
+ * and re-running every posting from scratch. Full replay and seeding keep
+ * every transaction on the heap, so the default sizes need a large -Xmx,
+ * e.g. -p postings=10000000 on smaller machines.
+ * @author Obakeng Phale
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ColdStartBenchmark {
+    private static final long FIRST_ACCOUNT = 100000000000L;
+    private static final long OPENING_BALANCE = Money.of(1000);
+    private static final long SEED = 42L;
+    
+    @Param({"1000000"})
+    public int accounts;
+    
+    @Param({"100000000"})
+    public long postings;
+    
+    // Postings journaled after the snapshot was taken
+    @Param({"1000000"})
+    public long tailPostings;
+    
+    private Path directory;
+    private Path journalFile;
+    private Path snapshotFile;
+    
+    /**
+     * One generated posting: 0 deposit, 1 withdrawal, 2 transfer
+     */
+    private static final class Posting {
+        int kind;
+        int account;
+        int counterparty;
+        long amount;
+    }
+    
+    /**
+     * Deterministic posting stream, so every restore path ends in the same state
+     */
+    private static final class PostingGenerator {
+        private final SplittableRandom random = new SplittableRandom(SEED);
+        private final long[] balances;
+        private final Posting posting = new Posting();
+        
+        PostingGenerator(int accounts) {
+            balances = new long[accounts];
+            Arrays.fill(balances, OPENING_BALANCE);
+        }
+        
+        Posting next() {
+            int account = random.nextInt(balances.length);
+            long amount = 1 + random.nextInt(50000);
+            int kind = random.nextInt(3);
+            if (kind != 0 && balances[account] < amount) {
+                kind = 0;
+            }
+            int counterparty = account;
+            if (kind == 2) {
+                counterparty = random.nextInt(balances.length);
+                if (counterparty == account) {
+                    kind = 1;
+                }
+            }
+            switch (kind) {
+                case 0:
+                    balances[account] += amount;
+                    break;
+                case 1:
+                    balances[account] -= amount;
+                    break;
+                default:
+                    balances[account] -= amount;
+                    balances[counterparty] += amount;
+            }
+            posting.kind = kind;
+            posting.account = account;
+            posting.counterparty = counterparty;
+            posting.amount = amount;
+            return posting;
+        }
+    }
+    
+    @Setup(Level.Trial)
+    public void writeHistory() throws IOException {
+        directory = Files.createTempDirectory("cold-start-benchmark");
+        journalFile = directory.resolve("journal.dat");
+        snapshotFile = directory.resolve("journal.dat.snapshot");
+        
+        TransactionJournal journal = new TransactionJournal(journalFile,
+            TransactionJournal.DEFAULT_BUFFER_BYTES, 0L, false);
+        journal.replay(entry -> { });
+        for (int i = 0; i < accounts; i++) {
+            journal.appendOpen(FIRST_ACCOUNT + i, "Account Holder", OPENING_BALANCE, System.currentTimeMillis(),
+                IdGenerator.DEFAULT.nextTransactionId());
+        }
+        PostingGenerator generator = new PostingGenerator(accounts);
+        long snapshotAt = Math.max(postings - tailPostings, 0L);
+        for (long n = 0; n < postings; n++) {
+            if (n == snapshotAt) {
+                writeSnapshot(journal, generator.balances);
+            }
+            Posting p = generator.next();
+            long timestamp = System.currentTimeMillis();
+            long transactionId = IdGenerator.DEFAULT.nextTransactionId();
+            switch (p.kind) {
+                case 0:
+                    journal.appendDeposit(FIRST_ACCOUNT + p.account, p.amount, timestamp, transactionId);
+                    break;
+                case 1:
+                    journal.appendWithdrawal(FIRST_ACCOUNT + p.account, p.amount, timestamp, transactionId);
+                    break;
+                default:
+                    journal.appendTransfer(FIRST_ACCOUNT + p.account, FIRST_ACCOUNT + p.counterparty, p.amount,
+                        timestamp, transactionId);
+            }
+        }
+        if (snapshotAt >= postings) {
+            writeSnapshot(journal, generator.balances);
+        }
+        journal.close();
+        System.out.printf("%nJournal: %,d bytes, snapshot: %,d bytes%n",
+            Files.size(journalFile), Files.size(snapshotFile));
+    }
+    
+    private void writeSnapshot(TransactionJournal journal, long[] balances) throws IOException {
+        TransactionJournal.Checkpoint checkpoint = journal.checkpoint();
+        List<Account> captured = new ArrayList<>(balances.length);
+        for (int i = 0; i < balances.length; i++) {
+            // Every account has seen everything up to the checkpoint
+            captured.add(Account.restoreFromSnapshot(FIRST_ACCOUNT + i, "Account Holder",
+                balances[i], checkpoint.sequence, Account.NOT_ACCRUED, Account.NOT_ACCRUED,
+                null, null, null));
+        }
+        AccountSnapshot.write(snapshotFile, checkpoint, captured, journal::awaitDurable);
+    }
+    
+    @Benchmark
+    public int snapshotAndTail() throws IOException {
+        try (Bank bank = new Bank(new TransactionJournal(journalFile), snapshotFile)) {
+            return bank.getAccounts().size();
+        }
+    }
+    
+    @Benchmark
+    public int fullReplay() throws IOException {
+        try (Bank bank = new Bank(new TransactionJournal(journalFile))) {
+            return bank.getAccounts().size();
+        }
+    }
+    
+    @Benchmark
+    public int seedFromScratch() {
+        Bank bank = new Bank();
+        Account[] opened = new Account[accounts];
+        for (int i = 0; i < accounts; i++) {
+            opened[i] = bank.openAccount("Account Holder", OPENING_BALANCE);
+        }
+        PostingGenerator generator = new PostingGenerator(accounts);
+        for (long n = 0; n < postings; n++) {
+            Posting p = generator.next();
+            long timestamp = System.currentTimeMillis();
+            switch (p.kind) {
+                case 0:
+                    bank.deposit(opened[p.account], p.amount, PostingListener.NONE);
+                    break;
+                case 1:
+                    bank.withdraw(opened[p.account], p.amount, PostingListener.NONE);
+                    break;
+                default:
+                    bank.transfer(opened[p.account], opened[p.counterparty], p.amount, PostingListener.NONE);
+            }
+        }
+        return bank.getAccounts().size();
+    }
+    
+    @TearDown(Level.Trial)
+    public void deleteHistory() throws IOException {
+        Files.deleteIfExists(journalFile);
+        Files.deleteIfExists(snapshotFile);
+        Files.deleteIfExists(directory);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,146 @@
+package com.obcodes.bankaccountmanagementsystem;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Multi-threaded stress test of the bank: every thread posts a random mix
+ * of deposits, withdrawals, transfers and batches against one book, and
+ * after each iteration the tear-down fails the run unless the total
+ * balance equals the opening total plus what was deposited minus what was
+ * withdrawn, both summed over the accounts and in the bank's aggregates.
+ * The small book keeps every thread contending for the same locks.
+ * ConservationTest runs the same check with mvn test.
+ * @author Obakeng Phale
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(Threads.MAX)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ConservationBenchmark {
+    private static final int BATCH_SIZE = 8;
+    
+    @Param({"16", "10000"})
+    public int accounts;
+    
+    private Bank bank;
+    private long[] numbers;
+    private long openingTotal;
+    // Money that entered or left the book through successful postings
+    private final LongAdder deposited = new LongAdder();
+    private final LongAdder withdrawn = new LongAdder();
+    
+    /**
+     * Per-thread random source and reusable batch
+     */
+    @State(Scope.Thread)
+    public static class Poster {
+        private SplittableRandom random;
+        private final PostingBatch batch = new PostingBatch(BATCH_SIZE);
+        
+        @Setup(Level.Trial)
+        public void setUp() {
+            random = new SplittableRandom(Thread.currentThread().threadId());
+        }
+    }
+    
+    @Setup(Level.Trial)
+    public void seed() {
+        bank = new Bank();
+        numbers = new long[accounts];
+        for (int i = 0; i < accounts; i++) {
+            numbers[i] = bank.openAccount("Account Holder", Money.of(1000)).getAccountNumber();
+        }
+        openingTotal = totalBalance();
+    }
+    
+    @TearDown(Level.Iteration)
+    public void verify() {
+        long expected = openingTotal + deposited.sum() - withdrawn.sum();
+        long total = totalBalance();
+        if (total != expected) {
+            throw new IllegalStateException("Total balance is R" + Money.format(total) + ", expected R"
+                + Money.format(expected));
+        }
+        long aggregated = bank.getAggregates().getTotalBalance();
+        if (aggregated != expected) {
+            throw new IllegalStateException("Aggregate balance is R" + Money.format(aggregated) + ", expected R"
+                + Money.format(expected));
+        }
+    }
+    
+    private long totalBalance() {
+        long total = 0;
+        for (long number : numbers) {
+            total = Money.add(total, bank.findAccount(number).getBalance());
+        }
+        return total;
+    }
+    
+    @Benchmark
+    public int post(Poster poster) {
+        SplittableRandom random = poster.random;
+        long account = numbers[random.nextInt(accounts)];
+        long amount = random.nextLong(1, 5000);
+        switch (random.nextInt(4)) {
+            case 0 -> {
+                if (bank.deposit(account, amount).isSuccess()) {
+                    deposited.add(amount);
+                }
+            }
+            case 1 -> {
+                if (bank.withdraw(account, amount).isSuccess()) {
+                    withdrawn.add(amount);
+                }
+            }
+            case 2 -> bank.transfer(account, numbers[random.nextInt(accounts)], amount);
+            default -> postBatch(poster);
+        }
+        return 1;
+    }
+    
+    private void postBatch(Poster poster) {
+        SplittableRandom random = poster.random;
+        PostingBatch batch = poster.batch;
+        batch.clear();
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            long account = numbers[random.nextInt(accounts)];
+            long amount = random.nextLong(1, 5000);
+            switch (random.nextInt(3)) {
+                case 0 -> batch.deposit(account, amount);
+                case 1 -> batch.withdraw(account, amount);
+                default -> batch.transfer(account, numbers[random.nextInt(accounts)], amount);
+            }
+        }
+        PostingStatus[] results = bank.post(batch);
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            if (!results[i].isSuccess()) {
+                continue;
+            }
+            byte type = batch.type(i);
+            if (type == TransactionJournal.DEPOSIT) {
+                deposited.add(batch.amount(i));
+            } else if (type == TransactionJournal.WITHDRAWAL) {
+                withdrawn.add(batch.amount(i));
+            }
+        }
+    }
+}
\ No newline at end of file
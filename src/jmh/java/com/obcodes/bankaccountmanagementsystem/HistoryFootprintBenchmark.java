@@ -0,0 +1,177 @@
+package com.obcodes.bankaccountmanagementsystem;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Heap retained by transaction history: one Transaction object per posting
+ * in an ArrayList (the previous layout) against the columnar
+ * TransactionHistory, with every posting on the heap and with all but each
+ * account's newest hotRows moved to a HistoryArchive. Reports retained
+ * bytes per posting as an extra counter next to the time taken to record
+ * the postings.
+ * @author Obakeng Phale
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+// Aux counters are summed over iterations, so measure once
+@Measurement(iterations = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+@State(Scope.Benchmark)
+public class HistoryFootprintBenchmark {
+    private static final String[] NAMES = {
+        "John Doe", "Jane Smith", "Robert Johnson", "Alice Brown", "Charlie Wilson"
+    };
+    private static final long FIRST_ACCOUNT = 100000000000L;
+    
+    @Param({"100000"})
+    public int accounts;
+    
+    @Param({"100"})
+    public int postingsPerAccount;
+    
+    /**
+     * Postings per account kept on the heap by tieredHistory
+     */
+    @Param({"16"})
+    public int hotRows;
+    
+    /**
+     * Heap retained per posting, measured after a full GC
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Footprint {
+        public long bytesPerPosting;
+        
+        private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        private long baseline;
+        
+        @Setup(Level.Iteration)
+        public void reset() {
+            bytesPerPosting = 0;
+        }
+        
+        long usedHeap() {
+            for (int i = 0; i < 3; i++) {
+                System.gc();
+            }
+            return memory.getHeapMemoryUsage().getUsed();
+        }
+        
+        void start() {
+            baseline = usedHeap();
+        }
+        
+        void stop(Object retained, long postings) {
+            long used = usedHeap() - baseline;
+            bytesPerPosting = used / postings;
+            // Keep the history reachable until after the measurement
+            if (retained == null) {
+                throw new IllegalStateException();
+            }
+        }
+    }
+    
+    @Benchmark
+    public Object transactionObjects(Footprint footprint) {
+        footprint.start();
+        @SuppressWarnings("unchecked")
+        ArrayList<Transaction>[] histories = new ArrayList[accounts];
+        for (int i = 0; i < accounts; i++) {
+            histories[i] = new ArrayList<>();
+        }
+        SplittableRandom random = new SplittableRandom(42L);
+        long balance = Money.of(1000);
+        for (int n = 0; n < postingsPerAccount; n++) {
+            for (int i = 0; i < accounts; i++) {
+                int kind = random.nextInt(3);
+                long amount = 1 + random.nextInt(50000);
+                long account = FIRST_ACCOUNT + i;
+                if (kind == 0) {
+                    histories[i].add(new Transaction(account, "DEPOSIT", amount, balance, "Cash deposit"));
+                } else if (kind == 1) {
+                    histories[i].add(new Transaction(account, "WITHDRAWAL", amount, balance, "Cash withdrawal"));
+                } else {
+                    int other = random.nextInt(accounts);
+                    histories[i].add(new Transaction(account, "TRANSFER_OUT", amount, balance,
+                        String.format("Transfer to %s (Account: %d)", NAMES[other % NAMES.length], FIRST_ACCOUNT + other)));
+                }
+            }
+        }
+        footprint.stop(histories, (long) accounts * postingsPerAccount);
+        return histories;
+    }
+    
+    @Benchmark
+    public Object columnarHistory(Footprint footprint) {
+        footprint.start();
+        TransactionHistory[] histories = new TransactionHistory[accounts];
+        for (int i = 0; i < accounts; i++) {
+            histories[i] = new TransactionHistory(FIRST_ACCOUNT + i);
+        }
+        record(histories);
+        footprint.stop(histories, (long) accounts * postingsPerAccount);
+        return histories;
+    }
+    
+    @Benchmark
+    public Object tieredHistory(Footprint footprint) throws IOException {
+        Path directory = Files.createTempDirectory("history-archive");
+        try (HistoryArchive archive = new HistoryArchive(directory, hotRows, HistoryArchive.DEFAULT_SEGMENT_BYTES)) {
+            footprint.start();
+            TransactionHistory[] histories = new TransactionHistory[accounts];
+            for (int i = 0; i < accounts; i++) {
+                histories[i] = new TransactionHistory(FIRST_ACCOUNT + i);
+                histories[i].attach(archive);
+            }
+            record(histories);
+            footprint.stop(histories, (long) accounts * postingsPerAccount);
+            return histories;
+        } finally {
+            Files.deleteIfExists(directory);
+        }
+    }
+    
+    private void record(TransactionHistory[] histories) {
+        SplittableRandom random = new SplittableRandom(42L);
+        long balance = Money.of(1000);
+        long now = System.currentTimeMillis();
+        for (int n = 0; n < postingsPerAccount; n++) {
+            for (int i = 0; i < accounts; i++) {
+                int kind = random.nextInt(3);
+                long amount = 1 + random.nextInt(50000);
+                long id = IdGenerator.DEFAULT.nextTransactionId();
+                if (kind == 0) {
+                    histories[i].add(id, TransactionType.DEPOSIT, now, amount, balance, "Cash deposit");
+                } else if (kind == 1) {
+                    histories[i].add(id, TransactionType.WITHDRAWAL, now, amount, balance, "Cash withdrawal");
+                } else {
+                    int other = random.nextInt(accounts);
+                    histories[i].addTransfer(id, TransactionType.TRANSFER_OUT, now, amount, balance,
+                        FIRST_ACCOUNT + other, NAMES[other % NAMES.length]);
+                }
+            }
+        }
+    }
+}
\ No newline at end of file
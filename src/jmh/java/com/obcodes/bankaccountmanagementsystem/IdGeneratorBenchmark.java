@@ -0,0 +1,44 @@
+package com.obcodes.bankaccountmanagementsystem;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * ID generation under contention. Uniqueness is checked by IdGeneratorTest.
+ * @author Obakeng Phale
+ */
+public class IdGeneratorBenchmark {
+
+    /**
+     * Contended throughput, one generator shared by every benchmark thread
+     */
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    @Warmup(iterations = 3, time = 2)
+    @Measurement(iterations = 5, time = 2)
+    @Threads(Threads.MAX)
+    @Fork(1)
+    @State(Scope.Benchmark)
+    public static class Contended {
+        private final IdGenerator generator = new IdGenerator(0);
+        
+        @Benchmark
+        public long transactionId() {
+            return generator.nextTransactionId();
+        }
+        
+        @Benchmark
+        public long accountNumber() {
+            return generator.nextAccountNumber();
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,78 @@
+package com.obcodes.bankaccountmanagementsystem;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Journaled deposit throughput with many concurrent callers. With group
+ * commit the rate should scale with the number of callers instead of being
+ * capped at one fsync per deposit.
+ * @author Obakeng Phale
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(32)
+@State(Scope.Benchmark)
+public class JournalBenchmark {
+    private static final int ACCOUNTS = 10000;
+    
+    @Param({"true", "false"})
+    public boolean fsync;
+    
+    @Param({"0", "200"})
+    public long commitDelayMicros;
+    
+    private Path file;
+    private Bank bank;
+    private Account[] accounts;
+    
+    @State(Scope.Thread)
+    public static class Picker {
+        private final SplittableRandom random = new SplittableRandom();
+        
+        int next() {
+            return random.nextInt(ACCOUNTS);
+        }
+    }
+    
+    @Setup(Level.Trial)
+    public void open() throws IOException {
+        file = Files.createTempFile("journal-benchmark", ".dat");
+        bank = new Bank(new TransactionJournal(file, TransactionJournal.DEFAULT_BUFFER_BYTES, commitDelayMicros, fsync));
+        accounts = new Account[ACCOUNTS];
+        for (int i = 0; i < ACCOUNTS; i++) {
+            accounts[i] = bank.openAccount("Account Holder", Money.of(1000));
+        }
+    }
+    
+    @Benchmark
+    public PostingStatus journaledDeposit(Picker picker) {
+        return bank.deposit(accounts[picker.next()], 1L, PostingListener.NONE);
+    }
+    
+    @TearDown(Level.Trial)
+    public void close() throws IOException {
+        bank.close();
+        Files.deleteIfExists(file);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,88 @@
+package com.obcodes.bankaccountmanagementsystem;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of the instrumentation on the posting path: one latency recorded
+ * into a LatencyHistogram, a full timed outcome as Bank records it, and an
+ * uninstrumented registry lookup against the instrumented findAccount.
+ * Run with the GC profiler to confirm recording allocates nothing.
+ * @author Obakeng Phale
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public abstract class MetricsBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Instruments {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        final BankMetrics metrics = new BankMetrics();
+        Bank bank;
+        long[] accountNumbers;
+        
+        @Setup(Level.Trial)
+        public void setUp() {
+            bank = new Bank();
+            accountNumbers = new long[10000];
+            for (int i = 0; i < accountNumbers.length; i++) {
+                accountNumbers[i] = bank.openAccount("Account Holder", Money.ZERO).getAccountNumber();
+            }
+        }
+    }
+    
+    @State(Scope.Thread)
+    public static class Picker {
+        private SplittableRandom random;
+        
+        @Setup(Level.Trial)
+        public void setUp() {
+            random = new SplittableRandom(Thread.currentThread().getId());
+        }
+    }
+    
+    @Benchmark
+    public void recordLatency(Instruments instruments, Picker picker) {
+        instruments.histogram.record(picker.random.nextLong(1L << 30));
+    }
+    
+    @Benchmark
+    public void recordOutcome(Instruments instruments) {
+        instruments.metrics.record(BankMetrics.Operation.DEPOSIT, PostingStatus.SUCCESS, System.nanoTime());
+    }
+    
+    @Benchmark
+    public Account registryLookup(Instruments instruments, Picker picker) {
+        return instruments.bank.getAccounts().get(
+            instruments.accountNumbers[picker.random.nextInt(instruments.accountNumbers.length)]);
+    }
+    
+    @Benchmark
+    public Account instrumentedLookup(Instruments instruments, Picker picker) {
+        return instruments.bank.findAccount(
+            instruments.accountNumbers[picker.random.nextInt(instruments.accountNumbers.length)]);
+    }
+    
+    @Threads(1)
+    public static class SingleThread extends MetricsBenchmark {
+    }
+    
+    @Threads(Threads.MAX)
+    public static class MultiThread extends MetricsBenchmark {
+    }
+}
\ No newline at end of file
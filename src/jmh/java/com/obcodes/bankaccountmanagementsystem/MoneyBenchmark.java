@@ -0,0 +1,108 @@
+package com.obcodes.bankaccountmanagementsystem;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the old double-with-rounding posting path against long cents.
+ * Throughput is measured per posting; exactness is reported at tear down
+ * by replaying the same postings through both representations.
+ * @author Obakeng Phale
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MoneyBenchmark {
+    private static final int BATCH = 1024;
+    private static final int EXACTNESS_POSTINGS = 10_000_000;
+    
+    private double[] amountsInRands;
+    private long[] amountsInCents;
+    private double doubleBalance;
+    private long centsBalance;
+    
+    @Setup(Level.Trial)
+    public void setUp() {
+        SplittableRandom random = new SplittableRandom(42);
+        amountsInRands = new double[BATCH];
+        amountsInCents = new long[BATCH];
+        for (int i = 0; i < BATCH; i++) {
+            long cents = random.nextLong(1, Money.of(50000));
+            amountsInCents[i] = cents;
+            amountsInRands[i] = cents / 100.0;
+        }
+    }
+    
+    /**
+     * The previous Account path: round every amount, accumulate as double
+     */
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public double doublePostings() {
+        double balance = doubleBalance;
+        for (int i = 0; i < BATCH; i++) {
+            double amount = Math.round(amountsInRands[i] * 100.0) / 100.0;
+            balance += amount;
+        }
+        doubleBalance = balance;
+        return balance;
+    }
+    
+    /**
+     * The fixed-point path: exact, overflow-checked integer adds
+     */
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public long centsPostings() {
+        long balance = centsBalance;
+        for (int i = 0; i < BATCH; i++) {
+            balance = Money.add(balance, amountsInCents[i]);
+        }
+        centsBalance = balance;
+        return balance;
+    }
+    
+    @Benchmark
+    public long parseAmount() {
+        return Money.parse("12,345.67");
+    }
+    
+    @Benchmark
+    public String formatAmount() {
+        return Money.format(1234567L);
+    }
+    
+    /**
+     * Reports how far the double ledger has drifted from the exact total
+     */
+    @TearDown(Level.Trial)
+    public void reportExactness() {
+        double balance = 0.0;
+        long exact = 0L;
+        long maxDriftCents = 0L;
+        for (int i = 0; i < EXACTNESS_POSTINGS; i++) {
+            int k = i & (BATCH - 1);
+            balance += Math.round(amountsInRands[k] * 100.0) / 100.0;
+            exact += amountsInCents[k];
+            maxDriftCents = Math.max(maxDriftCents, Math.abs(Money.fromDouble(balance) - exact));
+        }
+        System.out.printf("%nExactness over %,d postings: double total R%s, cents total R%s, max drift %d cents%n",
+            EXACTNESS_POSTINGS, Money.format(Money.fromDouble(balance)), Money.format(exact), maxDriftCents);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,104 @@
+package com.obcodes.bankaccountmanagementsystem;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Account search by holder name: the old linear scan, which lowercases
+ * every name and collects every match, against one page of results from
+ * the trigram index. Names are built from random syllables so that terms
+ * range from very common to rare.
+ * @author Obakeng Phale
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g"})
+@State(Scope.Benchmark)
+public class NameSearchBenchmark {
+    private static final String[] SYLLABLES = {
+        "ja", "ne", "jo", "hn", "ma", "ri", "sa", "li", "to", "ko", "na", "be",
+        "th", "an", "el", "ob", "ke", "ng", "ph", "al", "mo", "lo", "zu", "ki",
+        "de", "vi", "ra", "us", "ti", "wa"
+    };
+    private static final int PAGE_SIZE = 20;
+    
+    @Param({"1000000", "10000000"})
+    public int accounts;
+    
+    /**
+     * Common two-character term, common trigram, rarer word, full name
+     * prefix
+     */
+    @Param({"an", "mar", "kelo", "zuvi wa"})
+    public String term;
+    
+    private AccountRegistry registry;
+    private AccountNameIndex index;
+    
+    @Setup(Level.Trial)
+    public void seed() {
+        registry = new AccountRegistry(accounts);
+        index = new AccountNameIndex();
+        SplittableRandom random = new SplittableRandom(42L);
+        for (int i = 0; i < accounts; i++) {
+            String name = word(random, 2 + random.nextInt(2)) + " " + word(random, 2 + random.nextInt(3));
+            Account account = new Account(name, 0);
+            while (!registry.add(account)) {
+                account = new Account(name, 0);
+            }
+        }
+        index.rebuild(registry);
+    }
+    
+    private static String word(SplittableRandom random, int syllables) {
+        StringBuilder word = new StringBuilder();
+        for (int i = 0; i < syllables; i++) {
+            word.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+        }
+        word.setCharAt(0, Character.toUpperCase(word.charAt(0)));
+        return word.toString();
+    }
+    
+    @Benchmark
+    public List<Account> linearScan() {
+        String searchName = term.toLowerCase();
+        ArrayList<Account> searchResults = new ArrayList<>();
+        for (Account acc : registry) {
+            if (acc.getHolderName().toLowerCase().contains(searchName)) {
+                searchResults.add(acc);
+            }
+        }
+        return searchResults;
+    }
+    
+    @Benchmark
+    public List<Account> indexFirstPage() {
+        return index.search(term, 0, PAGE_SIZE);
+    }
+    
+    @Benchmark
+    public List<Account> indexTenthPage() {
+        return index.search(term, 9 * PAGE_SIZE, PAGE_SIZE);
+    }
+    
+    @Benchmark
+    public List<Account> indexPrefix() {
+        return index.searchPrefix(term, 0, PAGE_SIZE);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,115 @@
+package com.obcodes.bankaccountmanagementsystem;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Whole-book reconciliation of an in-memory bank with ten postings per
+ * account, most of them transfers: the ReconciliationEngine on 1 and 8
+ * fork-join workers against a single-threaded check that materializes
+ * each history and keeps every transfer leg in a map until it is matched.
+ * @author Obakeng Phale
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx8g"})
+@State(Scope.Benchmark)
+public class ReconciliationBenchmark {
+    private static final int POSTINGS_PER_ACCOUNT = 10;
+    
+    @Param({"1000000"})
+    public int accounts;
+    
+    @Param({"1", "8"})
+    public int parallelism;
+    
+    private Bank bank;
+    private ForkJoinPool pool;
+    private ReconciliationEngine engine;
+    
+    @Setup(Level.Trial)
+    public void seed() {
+        bank = new Bank();
+        long[] numbers = new long[accounts];
+        for (int i = 0; i < accounts; i++) {
+            numbers[i] = bank.openAccount("Account Holder", Money.of(10000)).getAccountNumber();
+        }
+        SplittableRandom random = new SplittableRandom(42);
+        PostingBatch batch = new PostingBatch(1024);
+        for (long i = 0; i < (long) accounts * POSTINGS_PER_ACCOUNT; i++) {
+            long account = numbers[random.nextInt(accounts)];
+            if (random.nextInt(4) == 0) {
+                batch.deposit(account, random.nextLong(1, 10000));
+            } else {
+                batch.transfer(account, numbers[random.nextInt(accounts)], random.nextLong(1, 10000));
+            }
+            if (batch.size() == 1024) {
+                bank.post(batch);
+                batch.clear();
+            }
+        }
+        bank.post(batch);
+        pool = new ForkJoinPool(parallelism);
+        engine = new ReconciliationEngine(bank, pool, ReconciliationEngine.DEFAULT_MAX_DISCREPANCIES);
+    }
+    
+    @TearDown(Level.Trial)
+    public void close() {
+        pool.shutdown();
+    }
+    
+    @Benchmark
+    public long naiveCheck() {
+        Map<String, Integer> legs = new HashMap<>();
+        long mismatches = 0;
+        for (Account account : bank.getAccounts()) {
+            long balance = account.getOpeningBalance();
+            for (Transaction transaction : account.getTransactionHistory()) {
+                TransactionType type = TransactionType.parse(transaction.getTransactionType());
+                balance += type.balanceChange(transaction.getAmount());
+                if (type == TransactionType.TRANSFER_OUT || type == TransactionType.TRANSFER_IN) {
+                    // The other account is only in the description, e.g. "(Account: 100000000042)"
+                    String description = transaction.getDescription();
+                    String counterparty = description.substring(description.lastIndexOf(' ') + 1,
+                        description.length() - 1);
+                    boolean debit = type == TransactionType.TRANSFER_OUT;
+                    String key = (debit ? account.getAccountNumber() + ">" + counterparty
+                        : counterparty + ">" + account.getAccountNumber())
+                        + ":" + transaction.getAmount() + "#" + transaction.getTransactionId();
+                    legs.merge(key, debit ? 1 : -1, Integer::sum);
+                }
+            }
+            if (balance != account.getBalance()) {
+                mismatches++;
+            }
+        }
+        for (int net : legs.values()) {
+            mismatches += Math.abs(net);
+        }
+        return mismatches;
+    }
+    
+    @Benchmark
+    public long reconciliationEngine() {
+        ReconciliationEngine.Result result = engine.reconcile();
+        return result.getBalanceMismatches() + result.getUnmatchedTransfers();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,118 @@
+package com.obcodes.bankaccountmanagementsystem;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Lock-based Bank postings against the sharded single-writer engine, with
+ * 1, 8 and 32 client threads (see the nested subclasses). A book of 16
+ * accounts makes every account hot; 100k accounts spreads the load.
+ * Postings are a mix of deposits, withdrawals and transfers.
+ * @author Obakeng Phale
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g"})
+public abstract class ShardedEngineBenchmark {
+    // Small amounts so seeded balances never run dry during a trial
+    private static final long AMOUNT = 1L;
+    
+    @State(Scope.Benchmark)
+    public static class Books {
+        @Param({"16", "100000"})
+        public int accounts;
+        
+        @Param({"4"})
+        public int shards;
+        
+        Bank lockedBank;
+        long[] lockedNumbers;
+        Bank shardedBank;
+        ShardedPostingEngine engine;
+        long[] shardedNumbers;
+        
+        @Setup(Level.Trial)
+        public void seed() {
+            lockedBank = new Bank();
+            shardedBank = new Bank();
+            engine = new ShardedPostingEngine(shardedBank, shards);
+            lockedNumbers = new long[accounts];
+            shardedNumbers = new long[accounts];
+            for (int i = 0; i < accounts; i++) {
+                lockedNumbers[i] = lockedBank.openAccount("Account Holder", Money.of(5000)).getAccountNumber();
+                shardedNumbers[i] = engine.openAccount("Account Holder", Money.of(5000)).getAccountNumber();
+            }
+        }
+        
+        @TearDown(Level.Trial)
+        public void stop() {
+            engine.close();
+        }
+    }
+    
+    @State(Scope.Thread)
+    public static class Picker {
+        private SplittableRandom random;
+        
+        @Setup(Level.Trial)
+        public void setUp() {
+            random = new SplittableRandom(Thread.currentThread().getId());
+        }
+    }
+    
+    @Benchmark
+    public PostingStatus locked(Books books, Picker picker) {
+        SplittableRandom random = picker.random;
+        long account = books.lockedNumbers[random.nextInt(books.accounts)];
+        switch (random.nextInt(3)) {
+            case 0:
+                return books.lockedBank.deposit(account, AMOUNT);
+            case 1:
+                return books.lockedBank.withdraw(account, AMOUNT);
+            default:
+                return books.lockedBank.transfer(account, books.lockedNumbers[random.nextInt(books.accounts)], AMOUNT);
+        }
+    }
+    
+    @Benchmark
+    public PostingStatus sharded(Books books, Picker picker) {
+        SplittableRandom random = picker.random;
+        long account = books.shardedNumbers[random.nextInt(books.accounts)];
+        switch (random.nextInt(3)) {
+            case 0:
+                return books.engine.deposit(account, AMOUNT);
+            case 1:
+                return books.engine.withdraw(account, AMOUNT);
+            default:
+                return books.engine.transfer(account, books.shardedNumbers[random.nextInt(books.accounts)], AMOUNT);
+        }
+    }
+    
+    @Threads(1)
+    public static class OneThread extends ShardedEngineBenchmark {
+    }
+    
+    @Threads(8)
+    public static class EightThreads extends ShardedEngineBenchmark {
+    }
+    
+    @Threads(32)
+    public static class ThirtyTwoThreads extends ShardedEngineBenchmark {
+    }
+}
\ No newline at end of file
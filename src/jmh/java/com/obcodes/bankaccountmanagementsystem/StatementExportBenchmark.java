@@ -0,0 +1,113 @@
+package com.obcodes.bankaccountmanagementsystem;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Writing every statement in the book: the streaming StatementExporter in
+ * both formats against a BufferedWriter loop that materializes a
+ * Transaction per posting and concatenates each CSV row.
+ * @author Obakeng Phale
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g"})
+@State(Scope.Benchmark)
+public class StatementExportBenchmark {
+    private static final int BATCH = 100000;
+    
+    @Param({"100000"})
+    public int accounts;
+    
+    @Param({"5000000"})
+    public int postings;
+    
+    private Bank bank;
+    private Path directory;
+    private Path file;
+    
+    @Setup(Level.Trial)
+    public void seed() throws IOException {
+        bank = new Bank();
+        long[] numbers = new long[accounts];
+        for (int i = 0; i < accounts; i++) {
+            numbers[i] = bank.openAccount("Account Holder " + i, Money.of(1000)).getAccountNumber();
+        }
+        SplittableRandom random = new SplittableRandom(42L);
+        PostingBatch batch = new PostingBatch(BATCH);
+        for (int i = 0; i < postings; i++) {
+            long account = numbers[random.nextInt(accounts)];
+            switch (i % 3) {
+                case 0:
+                    batch.deposit(account, 1250L);
+                    break;
+                case 1:
+                    batch.withdraw(account, 325L);
+                    break;
+                default:
+                    batch.transfer(account, numbers[random.nextInt(accounts)], 500L);
+                    break;
+            }
+            if (batch.size() == BATCH) {
+                bank.post(batch);
+                batch.clear();
+            }
+        }
+        bank.post(batch);
+        directory = Files.createTempDirectory("statement-export-bench");
+        file = directory.resolve("statements.out");
+    }
+    
+    @TearDown(Level.Trial)
+    public void deleteFiles() throws IOException {
+        Files.deleteIfExists(file);
+        Files.deleteIfExists(directory);
+    }
+    
+    @Benchmark
+    public long exporterCsv() throws IOException {
+        return new StatementExporter(StatementExporter.Format.CSV).exportAll(bank.getAccounts(), file);
+    }
+    
+    @Benchmark
+    public long exporterJsonLines() throws IOException {
+        return new StatementExporter(StatementExporter.Format.JSON_LINES).exportAll(bank.getAccounts(), file);
+    }
+    
+    @Benchmark
+    public long bufferedWriter() throws IOException {
+        long rows = 0;
+        try (BufferedWriter out = Files.newBufferedWriter(file)) {
+            for (Account account : bank.getAccounts()) {
+                for (Transaction transaction : account.getHistory()) {
+                    out.write(account.getAccountNumber() + "," + transaction.getTransactionId() + ","
+                        + transaction.getFormattedTimestamp() + "," + transaction.getTransactionType() + ","
+                        + Money.toPlainString(transaction.getAmount()) + ","
+                        + Money.toPlainString(transaction.getBalanceAfter()) + ","
+                        + transaction.getDescription() + "\n");
+                    rows++;
+                }
+            }
+        }
+        return rows;
+    }
+}
\ No newline at end of file
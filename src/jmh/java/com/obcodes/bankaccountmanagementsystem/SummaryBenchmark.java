@@ -0,0 +1,51 @@
+package com.obcodes.bankaccountmanagementsystem;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of the summary screen totals: walking every account against reading
+ * the incrementally maintained aggregates
+ * @author Obakeng Phale
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SummaryBenchmark {
+    private BankAggregates aggregates;
+    
+    @Setup(Level.Trial)
+    public void setUp(BankState bank) {
+        aggregates = new BankAggregates();
+        aggregates.recompute(bank.registry);
+    }
+    
+    @Benchmark
+    public long scanAccounts(BankState bank) {
+        long totalBalance = 0;
+        long totalTransactions = 0;
+        for (Account account : bank.registry) {
+            totalBalance += account.getBalance();
+            totalTransactions += account.getTransactionCount();
+        }
+        return totalBalance ^ totalTransactions;
+    }
+    
+    @Benchmark
+    public long readAggregates() {
+        return aggregates.getTotalBalance() ^ aggregates.getTransactionCount();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,115 @@
+package com.obcodes.bankaccountmanagementsystem;
+
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Date-range queries over a book whose postings are spread over 30 days:
+ * every posting in the last hour bank-wide, and one account's postings in
+ * one day, each by scanning whole histories against the time index and
+ * binary search.
+ * @author Obakeng Phale
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g"})
+@State(Scope.Benchmark)
+public class TimeRangeBenchmark {
+    private static final long HOUR_MILLIS = 3_600_000L;
+    private static final long DAY_MILLIS = 24 * HOUR_MILLIS;
+    private static final long SPAN_MILLIS = 30 * DAY_MILLIS;
+    
+    @Param({"100000"})
+    public int accounts;
+    
+    @Param({"50"})
+    public int postingsPerAccount;
+    
+    private Bank bank;
+    private Account[] book;
+    private long start;
+    private long end;
+    private long dayStart;
+    
+    @Setup(Level.Trial)
+    public void seed() {
+        bank = new Bank();
+        book = new Account[accounts];
+        end = System.currentTimeMillis();
+        start = end - SPAN_MILLIS;
+        dayStart = end - 15 * DAY_MILLIS;
+        SplittableRandom random = new SplittableRandom(42L);
+        long step = SPAN_MILLIS / postingsPerAccount;
+        for (int i = 0; i < accounts; i++) {
+            Account account = bank.openAccount("Holder " + i, 0);
+            book[i] = account;
+            account.getLock().lock();
+            try {
+                for (int j = 0; j < postingsPerAccount; j++) {
+                    account.applyDeposit(100, start + j * step + random.nextLong(step),
+                        IdGenerator.DEFAULT.nextTransactionId());
+                }
+            } finally {
+                account.getLock().unlock();
+            }
+        }
+    }
+    
+    @Benchmark
+    public long lastHourScan() {
+        long from = end - HOUR_MILLIS;
+        long count = 0;
+        for (Account account : book) {
+            TransactionHistory.Cursor cursor = account.getHistory().cursor();
+            while (cursor.next()) {
+                if (cursor.timestamp() >= from && cursor.timestamp() < end) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+    
+    @Benchmark
+    public long lastHourIndexed() {
+        long count = 0;
+        List<TransactionHistory.View> views = bank.postingsBetween(end - HOUR_MILLIS, end);
+        for (TransactionHistory.View view : views) {
+            count += view.size();
+        }
+        return count;
+    }
+    
+    @Benchmark
+    public long accountDayScan() {
+        long to = dayStart + DAY_MILLIS;
+        long count = 0;
+        TransactionHistory.Cursor cursor = book[accounts / 2].getHistory().cursor();
+        while (cursor.next()) {
+            if (cursor.timestamp() >= dayStart && cursor.timestamp() < to) {
+                count++;
+            }
+        }
+        return count;
+    }
+    
+    @Benchmark
+    public long accountDayBetween() {
+        return book[accounts / 2].getHistory().between(dayStart, dayStart + DAY_MILLIS).size();
+    }
+}
\ No newline at end of file
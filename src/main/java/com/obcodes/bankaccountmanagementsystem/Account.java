@@ -1,46 +1,153 @@
 package com.obcodes.bankaccountmanagementsystem;
 
+import java.nio.ByteBuffer;
+import java.time.LocalDate;
 import java.util.ArrayList;
-import java.util.Random;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
- * Represents a bank account with complete operations
+ * Represents a bank account with complete operations.
+ * All mutations run under the account's own lock, and transfers lock both
+ * accounts in account number order, so accounts can be shared between threads.
+ * The one exception is ShardedPostingEngine, whose shard threads own their
+ * accounts outright and apply postings without the lock.
+ * Limits come from the account's tier in RuleEngine.DEFAULT.
+ * Postings are made through Bank or ShardedPostingEngine, which journal
+ * them and keep the aggregates and metrics; the account only checks and
+ * applies them.
  * @author Obakeng Phale
  */
 public class Account {
-    // Constants for validation limits
-    private static final double MAX_DEPOSIT = 1000000.00;
-    private static final double MAX_WITHDRAWAL = 50000.00;
-    private static final double MAX_TRANSFER = 100000.00;
-    private static final double MIN_BALANCE = 0.00;
+    // Velocity windows: withdrawals over 24 hourly buckets, transfers over
+    // 12 five-minute buckets
+    private static final long HOUR_MILLIS = 60L * 60L * 1000L;
+    private static final long FIVE_MINUTE_MILLIS = 5L * 60L * 1000L;
+    private static final int WITHDRAWAL_BUCKETS = 24;
+    private static final int TRANSFER_BUCKETS = 12;
+    // Last accrual descriptions handed out, so one day's postings share a string
+    private static volatile Accrual lastInterest;
+    private static volatile Accrual lastFee;
+    /** Most bytes writeVelocity writes */
+    static final int VELOCITY_BYTES = 1 + SlidingWindow.maxBytes(WITHDRAWAL_BUCKETS)
+        + SlidingWindow.maxBytes(TRANSFER_BUCKETS);
+    
+    /** Accrual day of an account that has never had interest or a fee */
+    static final int NOT_ACCRUED = Integer.MIN_VALUE;
     
     private final long accountNumber;
-    private String holderName;
-    private double balance;
-    private final ArrayList<Transaction> transactionHistory;
+    private volatile String holderName;
+    private volatile long balance;
+    private final long openingBalance;
+    private final TransactionHistory transactionHistory;
+    private final ReentrantLock lock = new ReentrantLock();
+    // Sequence number of the last journal record applied (guarded by lock)
+    private long lastSequence;
+    // Sliding-window counters for the velocity limits, created once the
+    // account's tier has one (guarded by lock, like the balance)
+    private SlidingWindow withdrawals;
+    private SlidingWindow transfers;
+    // Last business day (epoch day) interest was credited and a fee was
+    // charged, so a repeated end-of-day run posts nothing twice (guarded by lock)
+    private int interestDay = NOT_ACCRUED;
+    private int feeDay = NOT_ACCRUED;
+    // Postings of each type, by type code, that a snapshot folded into the
+    // balance brought forward and so are not in the history; null if none
+    private long[] postingsBroughtForward;
     
     /**
      * Constructor for creating a new account
+     * @param initialDeposit Opening balance in cents; may not be negative
      */
-    public Account(String holderName, double initialDeposit) {
+    public Account(String holderName, long initialDeposit) {
         validateHolderName(holderName);
         
-        this.accountNumber = generateAccountNumber();
+        this.accountNumber = IdGenerator.DEFAULT.nextAccountNumber();
         this.holderName = holderName.trim();
-        this.transactionHistory = new ArrayList<>();
+        this.transactionHistory = new TransactionHistory(accountNumber);
+        this.openingBalance = Money.ZERO;
         
-        if (initialDeposit > 0) {
+        if (initialDeposit != 0) {
             this.balance = validateAmount(initialDeposit);
-            addTransaction("DEPOSIT", initialDeposit, "Initial deposit");
+            addTransaction(TransactionType.DEPOSIT, initialDeposit, "Initial deposit");
         } else {
-            this.balance = MIN_BALANCE;
+            this.balance = Money.ZERO;
+        }
+    }
+    
+    /**
+     * Recreates an account with its original number and no history
+     * @param openingBalance Balance brought forward, in cents
+     */
+    private Account(long accountNumber, String holderName, long openingBalance, long lastSequence) {
+        this.accountNumber = accountNumber;
+        this.holderName = holderName;
+        this.transactionHistory = new TransactionHistory(accountNumber);
+        IdGenerator.DEFAULT.reserveAccountNumber(accountNumber);
+        this.openingBalance = openingBalance;
+        this.balance = openingBalance;
+        this.lastSequence = lastSequence;
+    }
+    
+    /**
+     * Recreates an account from its journaled OPEN record
+     * @param initialDeposit Initial deposit in cents
+     * @param timestamp Time the account was opened (epoch millis)
+     * @param transactionId ID of the initial deposit
+     */
+    static Account recoverOpened(long accountNumber, String holderName, long initialDeposit,
+                                 long timestamp, long transactionId, long sequence) {
+        Account account = new Account(accountNumber, holderName, Money.ZERO, sequence);
+        if (initialDeposit > 0) {
+            account.balance = initialDeposit;
+            account.addTransaction(TransactionType.DEPOSIT, initialDeposit, "Initial deposit", timestamp,
+                transactionId);
         }
+        return account;
+    }
+    
+    /**
+     * Creates a new account under a number chosen by the caller, e.g. one
+     * carried over by a bulk import
+     * @param initialDeposit Opening balance in cents
+     */
+    static Account withNumber(long accountNumber, String holderName, long initialDeposit) {
+        validateHolderName(holderName);
+        if (accountNumber < IdGenerator.MIN_ACCOUNT_NUMBER || accountNumber > IdGenerator.MAX_ACCOUNT_NUMBER) {
+            throw new IllegalArgumentException("Account number must have 12 digits");
+        }
+        if (initialDeposit < 0) {
+            throw new IllegalArgumentException("Amount cannot be negative");
+        }
+        return recoverOpened(accountNumber, holderName.trim(), initialDeposit, System.currentTimeMillis(),
+            IdGenerator.DEFAULT.nextTransactionId(), 0L);
+    }
+    
+    /**
+     * Recreates an account from a snapshot. The snapshot balance becomes the
+     * balance brought forward; postings after the snapshot are replayed on top.
+     * @param interestDay Last business day interest was credited, or NOT_ACCRUED
+     * @param feeDay Last business day a fee was charged, or NOT_ACCRUED
+     * @param withdrawals Velocity window from withdrawalWindow, or null if
+     *        the account kept none; transfers likewise from transferWindow
+     * @param postingsBroughtForward Postings of each type, by type code,
+     *        the snapshot counted, or null if it kept no counts
+     */
+    static Account restoreFromSnapshot(long accountNumber, String holderName, long balance, long lastSequence,
+                                       int interestDay, int feeDay, SlidingWindow withdrawals,
+                                       SlidingWindow transfers, long[] postingsBroughtForward) {
+        Account account = new Account(accountNumber, holderName, balance, lastSequence);
+        account.interestDay = interestDay;
+        account.feeDay = feeDay;
+        account.withdrawals = withdrawals;
+        account.transfers = transfers;
+        account.postingsBroughtForward = postingsBroughtForward;
+        return account;
     }
     
     /**
      * Validates account holder name
      */
-    private void validateHolderName(String name) {
+    private static void validateHolderName(String name) {
         if (name == null || name.trim().isEmpty()) {
             throw new IllegalArgumentException("Account holder name cannot be empty");
         }
@@ -52,35 +159,67 @@ public class Account {
     /**
      * Validates monetary amounts
      */
-    private double validateAmount(double amount) {
+    private long validateAmount(long amount) {
         if (amount < 0) {
             throw new IllegalArgumentException("Amount cannot be negative");
         }
-        return Math.round(amount * 100.0) / 100.0;
+        return amount;
     }
     
     /**
-     * Generates a random 12-digit account number
+     * Helper method to add transaction to history
      */
-    private long generateAccountNumber() {
-        Random random = new Random();
-        long min = 100000000000L;
-        long max = 999999999999L;
-        return min + (long)(random.nextDouble() * (max - min + 1));
+    private void addTransaction(TransactionType type, long amount, String description) {
+        addTransaction(type, amount, description, System.currentTimeMillis(), IdGenerator.DEFAULT.nextTransactionId());
     }
     
     /**
-     * Helper method to add transaction to history
+     * Adds a transaction with a known timestamp and ID, as journaled
+     */
+    private void addTransaction(TransactionType type, long amount, String description, long timestamp,
+                                long transactionId) {
+        transactionHistory.add(transactionId, type, timestamp, amount, balance, description);
+    }
+    
+    /**
+     * Adds one leg of a transfer; its description is built when displayed
+     */
+    private void addTransfer(TransactionType type, long amount, Account counterparty, long timestamp,
+                             long transactionId) {
+        transactionHistory.addTransfer(transactionId, type, timestamp, amount, balance,
+            counterparty.accountNumber, counterparty.holderName);
+    }
+    
+    /**
+     * Returns the account lock so the posting engine can hold it across
+     * a posting and its journal append
+     */
+    ReentrantLock getLock() {
+        return lock;
+    }
+    
+    /**
+     * Locks two different accounts in account number order so that
+     * concurrent transfers in opposite directions cannot deadlock
+     */
+    static void lockBoth(Account a, Account b) {
+        Account first = a.accountNumber < b.accountNumber ? a : b;
+        Account second = (first == a) ? b : a;
+        first.lock.lock();
+        try {
+            second.lock.lock();
+        } catch (RuntimeException | Error e) {
+            first.lock.unlock();
+            throw e;
+        }
+    }
+    
+    /**
+     * Releases the locks taken by lockBoth
      */
-    private void addTransaction(String type, double amount, String description) {
-        Transaction transaction = new Transaction(
-            accountNumber, 
-            type, 
-            amount, 
-            balance, 
-            description
-        );
-        transactionHistory.add(transaction);
+    static void unlockBoth(Account a, Account b) {
+        a.lock.unlock();
+        b.lock.unlock();
     }
     
     // Getters and Setters
@@ -92,157 +231,544 @@ public class Account {
         return holderName;
     }
     
-    public void setHolderName(String holderName) {
+    /**
+     * Changes the holder's name and records the change in the history.
+     * Callers must hold the account lock. Renames go through
+     * Bank.renameAccount, which also updates the name index and journal.
+     * @param timestamp Time of the change (epoch millis)
+     */
+    void rename(String holderName, long timestamp, long transactionId) {
         validateHolderName(holderName);
         String oldName = this.holderName;
         this.holderName = holderName.trim();
-        addTransaction("ACCOUNT_UPDATE", 0.0, 
-            String.format("Name changed from '%s' to '%s'", oldName, this.holderName));
+        addTransaction(TransactionType.UNKNOWN, Money.ZERO,
+            String.format("Name changed from '%s' to '%s'", oldName, this.holderName), timestamp, transactionId);
+    }
+    
+    /**
+     * Returns the balance brought forward before the first entry in the
+     * transaction history, in cents (zero unless restored from a snapshot)
+     */
+    public long getOpeningBalance() {
+        return openingBalance;
+    }
+    
+    /**
+     * Returns the sequence number of the last journal record applied to this
+     * account. Callers must hold the account lock.
+     */
+    long getLastSequence() {
+        return lastSequence;
+    }
+    
+    /**
+     * Records the journal sequence number of the posting just applied.
+     * Callers must hold the account lock.
+     */
+    void setLastSequence(long sequence) {
+        this.lastSequence = sequence;
+    }
+    
+    /**
+     * Has the history report its postings to a bank-wide time index.
+     * Callers must own the account.
+     */
+    void attachTimeIndex(TimeIndex index) {
+        transactionHistory.attach(index);
     }
     
-    public double getBalance() {
+    /**
+     * Has the history move its older postings to an archive. Callers must
+     * own the account.
+     */
+    void attachHistoryArchive(HistoryArchive archive) {
+        transactionHistory.attach(archive);
+    }
+    
+    /**
+     * Records the sequence number of a transfer credit applied after its
+     * record was journaled, which may be older than postings the account
+     * has applied since. Callers must own the account.
+     */
+    void advanceLastSequence(long sequence) {
+        if (sequence > lastSequence) {
+            lastSequence = sequence;
+        }
+    }
+    
+    /**
+     * Returns the last business day (epoch day) interest was credited or a
+     * fee charged, or NOT_ACCRUED. Callers must own the account.
+     * @param type INTEREST or FEE
+     */
+    int getAccrualDay(TransactionType type) {
+        return type == TransactionType.INTEREST ? interestDay : feeDay;
+    }
+    
+    /**
+     * Adds the account's postings of each type to counts, indexed by type
+     * code: those in the history and those a snapshot brought forward
+     * @param history A view of the account's history
+     */
+    void countPostings(TransactionHistory.View history, long[] counts) {
+        long[] forward = postingsBroughtForward;
+        if (forward != null) {
+            for (int i = 0; i < forward.length; i++) {
+                counts[i] += forward[i];
+            }
+        }
+        history.countTypes(counts);
+    }
+    
+    /**
+     * Returns the current balance in cents
+     */
+    public long getBalance() {
         return balance;
     }
     
+    /**
+     * Returns a copy of the whole history as Transaction objects. Prefer
+     * getHistory() or getTransactionCount(), which copy nothing.
+     */
     public ArrayList<Transaction> getTransactionHistory() {
-        return new ArrayList<>(transactionHistory);
+        return getHistory().toList();
     }
     
     /**
-     * Deposits money into account
+     * Returns an immutable view of the history recorded so far, in O(1)
+     * without copying. Use its range, last, since, between and page methods to narrow
+     * it and its cursor to read postings without materializing them.
      */
-    public boolean deposit(double amount) {
+    public TransactionHistory.View getHistory() {
+        lock.lock();
         try {
-            double validatedAmount = validateAmount(amount);
-            
-            if (validatedAmount <= 0) {
-                System.out.println("[ERROR] Deposit failed: Amount must be greater than 0");
-                return false;
+            return transactionHistory.snapshot();
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * Returns the number of transactions in the history, in O(1)
+     */
+    public int getTransactionCount() {
+        lock.lock();
+        try {
+            return transactionHistory.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * Returns the limits of this account's tier under the rules in force
+     */
+    public LimitRules.Tier getLimits() {
+        return RuleEngine.DEFAULT.getRules().tierOf(accountNumber);
+    }
+    
+    /**
+     * Checks a deposit amount against the account's limits, before any lock
+     * is taken
+     * @param limits The account's tier, read once for the whole posting
+     * @return SUCCESS, or the reason the deposit would be rejected
+     */
+    static PostingStatus checkDeposit(LimitRules.Tier limits, long amount) {
+        if (amount <= 0) {
+            return PostingStatus.INVALID_AMOUNT;
+        }
+        return amount > limits.getMaxDeposit() ? PostingStatus.LIMIT_EXCEEDED : PostingStatus.SUCCESS;
+    }
+    
+    /**
+     * Checks a new account's opening deposit against its tier's deposit
+     * limit, like any other deposit; zero opens the account empty
+     */
+    static PostingStatus checkOpeningDeposit(Account account, long amount) {
+        return amount == 0 ? PostingStatus.SUCCESS : checkDeposit(account.getLimits(), amount);
+    }
+    
+    /**
+     * Checks a withdrawal amount against the account's limits; funds and
+     * the daily limit are checked later, under the account lock, against
+     * the same tier
+     * @param limits The account's tier, read once for the whole posting
+     */
+    static PostingStatus checkWithdrawal(LimitRules.Tier limits, long amount) {
+        if (amount <= 0) {
+            return PostingStatus.INVALID_AMOUNT;
+        }
+        return amount > limits.getMaxWithdrawal() ? PostingStatus.LIMIT_EXCEEDED : PostingStatus.SUCCESS;
+    }
+    
+    /**
+     * Checks a transfer's accounts and amount; funds and the hourly limit
+     * are checked later, under both account locks, against the same tier
+     * @param recipient Recipient account, or null if it does not exist
+     * @param limits The sender's tier, read once for the whole posting
+     */
+    static PostingStatus checkTransfer(Account sender, Account recipient, LimitRules.Tier limits, long amount) {
+        if (recipient == null) {
+            return PostingStatus.ACCOUNT_NOT_FOUND;
+        }
+        if (sender.accountNumber == recipient.accountNumber) {
+            return PostingStatus.SAME_ACCOUNT;
+        }
+        if (amount <= 0) {
+            return PostingStatus.INVALID_AMOUNT;
+        }
+        return amount > limits.getMaxTransfer() ? PostingStatus.LIMIT_EXCEEDED : PostingStatus.SUCCESS;
+    }
+    
+    /**
+     * Applies a deposit that has passed checkDeposit. Callers must own the
+     * account: hold its lock, or be the shard writer it belongs to.
+     * @param timestamp Time of the posting (epoch millis)
+     * @param transactionId ID the posting is recorded and journaled under
+     */
+    void applyDeposit(long amount, long timestamp, long transactionId) {
+        balance = Money.add(balance, amount);
+        addTransaction(TransactionType.DEPOSIT, amount, "Cash deposit", timestamp, transactionId);
+    }
+    
+    /**
+     * Applies a withdrawal that has passed checkWithdrawal, if the balance
+     * and the daily limit allow it. Callers must own the account.
+     * @param limits The tier the withdrawal was checked against
+     * @return SUCCESS, or the reason it was refused; nothing is changed then
+     */
+    PostingStatus applyWithdrawal(LimitRules.Tier limits, long amount, long timestamp, long transactionId) {
+        if (!limits.covers(balance, amount)) {
+            return PostingStatus.INSUFFICIENT_FUNDS;
+        }
+        if (!withinDailyWithdrawals(limits, amount, timestamp)) {
+            return PostingStatus.VELOCITY_LIMIT;
+        }
+        balance = Money.subtract(balance, amount);
+        addTransaction(TransactionType.WITHDRAWAL, amount, "Cash withdrawal", timestamp, transactionId);
+        countWithdrawals(limits, amount, timestamp);
+        return PostingStatus.SUCCESS;
+    }
+    
+    /**
+     * Applies both legs of a transfer that has passed checkTransfer, if the
+     * balance and the hourly limit allow it. Callers must hold both locks
+     * (lockBoth), so the transfer is atomic and needs no compensating refund.
+     * @param limits The sender's tier the transfer was checked against
+     * @param transactionId ID recorded on both legs
+     * @return SUCCESS, or the reason it was refused; nothing is changed then
+     */
+    PostingStatus applyTransfer(LimitRules.Tier limits, Account recipient, long amount, long timestamp,
+                                long transactionId) {
+        // Throws before either leg changes if the credit would overflow
+        Money.add(recipient.balance, amount);
+        PostingStatus status = applyTransferOut(limits, recipient, amount, timestamp, transactionId);
+        if (status.isSuccess()) {
+            recipient.applyTransferIn(this, amount, timestamp, transactionId);
+        }
+        return status;
+    }
+    
+    /**
+     * Applies the debit leg of a transfer that has passed checkTransfer, if
+     * the balance and the hourly limit allow it. Callers must own this
+     * account, but not the recipient, whose credit may be applied later by
+     * another thread.
+     * @param limits The tier the transfer was checked against
+     * @return SUCCESS, or the reason it was refused; nothing is changed then
+     */
+    PostingStatus applyTransferOut(LimitRules.Tier limits, Account recipient, long amount, long timestamp,
+                                   long transactionId) {
+        if (!limits.covers(balance, amount)) {
+            return PostingStatus.INSUFFICIENT_FUNDS;
+        }
+        if (!withinHourlyTransfers(limits, 1, timestamp)) {
+            return PostingStatus.VELOCITY_LIMIT;
+        }
+        balance = Money.subtract(balance, amount);
+        addTransfer(TransactionType.TRANSFER_OUT, amount, recipient, timestamp, transactionId);
+        countTransfers(limits, 1, timestamp);
+        return PostingStatus.SUCCESS;
+    }
+    
+    /**
+     * Applies the credit leg of a transfer whose debit has been applied.
+     * Callers must own this account.
+     * @param transactionId ID of the transfer, as recorded on the debit
+     */
+    void applyTransferIn(Account sender, long amount, long timestamp, long transactionId) {
+        balance = Money.add(balance, amount);
+        addTransfer(TransactionType.TRANSFER_IN, amount, sender, timestamp, transactionId);
+    }
+    
+    /**
+     * Credits interest or charges a fee for a business day. A fee that would
+     * take the balance below the tier's minimum is refused. Callers must own
+     * the account.
+     * @param type INTEREST or FEE
+     * @param day Business day accrued (epoch day)
+     * @return SUCCESS, or INSUFFICIENT_FUNDS; nothing is changed then
+     */
+    PostingStatus applyAccrual(TransactionType type, long amount, int day, String description, long timestamp,
+                               long transactionId) {
+        if (type == TransactionType.FEE) {
+            if (!getLimits().covers(balance, amount)) {
+                return PostingStatus.INSUFFICIENT_FUNDS;
             }
-            
-            if (validatedAmount > MAX_DEPOSIT) {
-                System.out.printf("[ERROR] Deposit failed: Amount exceeds maximum deposit limit of R%,.2f%n", MAX_DEPOSIT);
-                return false;
+            balance = Money.subtract(balance, amount);
+            feeDay = day;
+        } else {
+            balance = Money.add(balance, amount);
+            interestDay = day;
+        }
+        addTransaction(type, amount, description, timestamp, transactionId);
+        return PostingStatus.SUCCESS;
+    }
+    
+    /**
+     * Returns the history description of an accrual, e.g. "Interest for
+     * 2024-03-05"
+     */
+    static String accrualDescription(TransactionType type, int day) {
+        boolean interest = type == TransactionType.INTEREST;
+        Accrual last = interest ? lastInterest : lastFee;
+        if (last == null || last.day != day) {
+            last = new Accrual(day, (interest ? "Interest for " : "Account fee for ") + LocalDate.ofEpochDay(day));
+            if (interest) {
+                lastInterest = last;
+            } else {
+                lastFee = last;
             }
-            
-            balance += validatedAmount;
-            System.out.printf("[SUCCESS] Deposit successful: R%,.2f%n", validatedAmount);
-            System.out.printf("[INFO] New balance: R%,.2f%n", balance);
-            addTransaction("DEPOSIT", validatedAmount, "Cash deposit");
+        }
+        return last.description;
+    }
+    
+    /**
+     * Day's accrual description, shared by every account accruing that day
+     */
+    private static final class Accrual {
+        final int day;
+        final String description;
+        
+        Accrual(int day, String description) {
+            this.day = day;
+            this.description = description;
+        }
+    }
+    
+    /**
+     * Checks whether withdrawing an amount keeps the last 24 hours within
+     * the tier's daily limit. Callers must own the account.
+     * @param amount Amount in cents, including any withdrawals staged but
+     *        not yet counted
+     */
+    boolean withinDailyWithdrawals(LimitRules.Tier limits, long amount, long timestamp) {
+        if (limits.getDailyWithdrawals() == LimitRules.NO_LIMIT || !counting(limits)) {
             return true;
-            
-        } catch (IllegalArgumentException e) {
-            System.out.println("[ERROR] Deposit failed: " + e.getMessage());
-            return false;
         }
+        return amount <= limits.getDailyWithdrawals() - withdrawals.total(timestamp);
     }
     
     /**
-     * Withdraws money from account
+     * Checks whether sending more transfers keeps the last hour within the
+     * tier's hourly limit. Callers must own the account.
      */
-    public boolean withdraw(double amount) {
-        try {
-            double validatedAmount = validateAmount(amount);
-            
-            if (validatedAmount <= 0) {
-                System.out.println("[ERROR] Withdrawal failed: Amount must be greater than 0");
+    boolean withinHourlyTransfers(LimitRules.Tier limits, int count, long timestamp) {
+        if (limits.getHourlyTransfers() == LimitRules.NO_COUNT_LIMIT || !counting(limits)) {
+            return true;
+        }
+        return transfers.total(timestamp) + count <= limits.getHourlyTransfers();
+    }
+    
+    private void countWithdrawals(LimitRules.Tier limits, long amount, long timestamp) {
+        if (amount > 0 && counting(limits)) {
+            withdrawals.add(timestamp, amount);
+        }
+    }
+    
+    private void countTransfers(LimitRules.Tier limits, int count, long timestamp) {
+        if (count > 0 && counting(limits)) {
+            transfers.add(timestamp, count);
+        }
+    }
+    
+    /**
+     * Returns true if the account keeps velocity counters, creating them
+     * the first time its tier has a velocity limit
+     */
+    private boolean counting(LimitRules.Tier limits) {
+        if (withdrawals == null) {
+            if (!limits.hasVelocityLimits()) {
                 return false;
             }
-            
-            if (validatedAmount > MAX_WITHDRAWAL) {
-                System.out.printf("[ERROR] Withdrawal failed: Amount exceeds maximum withdrawal limit of R%,.2f%n", MAX_WITHDRAWAL);
-                return false;
+            withdrawals = withdrawalWindow();
+            transfers = transferWindow();
+        }
+        return true;
+    }
+    
+    static SlidingWindow withdrawalWindow() {
+        return new SlidingWindow(WITHDRAWAL_BUCKETS, HOUR_MILLIS);
+    }
+    
+    static SlidingWindow transferWindow() {
+        return new SlidingWindow(TRANSFER_BUCKETS, FIVE_MINUTE_MILLIS);
+    }
+    
+    /**
+     * Writes the velocity windows for a snapshot: 1 (byte) and both windows
+     * if the account keeps them, otherwise 0. Callers must own the account.
+     */
+    void writeVelocity(ByteBuffer out) {
+        if (withdrawals == null) {
+            out.put((byte) 0);
+            return;
+        }
+        out.put((byte) 1);
+        withdrawals.writeTo(out);
+        transfers.writeTo(out);
+    }
+    
+    /**
+     * Applies the postings a batch staged for this account: the history
+     * grows once for all of them and the balance is set to the ledger's
+     * running balance. The batch has already validated every posting
+     * against that running balance. Callers must hold the account lock.
+     * @param timestamp Time of the batch (epoch millis)
+     */
+    void applyBatch(PostingBatch.Ledger ledger, long timestamp) {
+        transactionHistory.reserve(ledger.count);
+        for (int i = 0; i < ledger.count; i++) {
+            TransactionType type = ledger.types[i];
+            long amount = ledger.amounts[i];
+            balance = ledger.balances[i];
+            long transactionId = ledger.transactionIds[i];
+            switch (type) {
+                case DEPOSIT:
+                    addTransaction(type, amount, "Cash deposit", timestamp, transactionId);
+                    break;
+                case WITHDRAWAL:
+                    addTransaction(type, amount, "Cash withdrawal", timestamp, transactionId);
+                    break;
+                default:
+                    addTransfer(type, amount, ledger.counterparties[i], timestamp, transactionId);
+                    break;
             }
-            
-            if (validatedAmount > balance) {
-                System.out.println("[ERROR] Withdrawal failed: Insufficient funds");
-                System.out.printf("[INFO] Current balance: R%,.2f%n", balance);
-                System.out.printf("[INFO] Attempted withdrawal: R%,.2f%n", validatedAmount);
-                System.out.printf("[INFO] Shortfall: R%,.2f%n", (validatedAmount - balance));
-                return false;
+        }
+        countWithdrawals(ledger.limits, ledger.withdrawn, timestamp);
+        countTransfers(ledger.limits, ledger.transfersOut, timestamp);
+    }
+    
+    /**
+     * Replays a journaled deposit without re-validating it
+     */
+    void recoverDeposit(long amount, long timestamp, long transactionId, long sequence) {
+        lock.lock();
+        try {
+            if (sequence <= lastSequence) {
+                return;
             }
-            
-            balance -= validatedAmount;
-            System.out.printf("[SUCCESS] Withdrawal successful: R%,.2f%n", validatedAmount);
-            System.out.printf("[INFO] Remaining balance: R%,.2f%n", balance);
-            addTransaction("WITHDRAWAL", validatedAmount, "Cash withdrawal");
-            return true;
-            
-        } catch (IllegalArgumentException e) {
-            System.out.println("[ERROR] Withdrawal failed: " + e.getMessage());
-            return false;
+            balance = Money.add(balance, amount);
+            lastSequence = sequence;
+            addTransaction(TransactionType.DEPOSIT, amount, "Cash deposit", timestamp, transactionId);
+        } finally {
+            lock.unlock();
         }
     }
     
     /**
-     * Transfers money to another account
+     * Replays a journaled withdrawal without re-validating it
      */
-    public boolean transfer(Account recipient, double amount) {
-        if (recipient == null) {
-            System.out.println("[ERROR] Transfer failed: Recipient account does not exist");
-            return false;
+    void recoverWithdrawal(long amount, long timestamp, long transactionId, long sequence) {
+        lock.lock();
+        try {
+            if (sequence <= lastSequence) {
+                return;
+            }
+            balance = Money.subtract(balance, amount);
+            lastSequence = sequence;
+            addTransaction(TransactionType.WITHDRAWAL, amount, "Cash withdrawal", timestamp, transactionId);
+            countWithdrawals(getLimits(), amount, timestamp);
+        } finally {
+            lock.unlock();
         }
-        
-        if (this.accountNumber == recipient.accountNumber) {
-            System.out.println("[ERROR] Transfer failed: Cannot transfer to same account");
-            return false;
+    }
+    
+    /**
+     * Replays the debit leg of a journaled transfer without re-validating it.
+     * Each leg is replayed separately because a snapshot may already hold
+     * one side of a transfer but not the other.
+     */
+    void recoverTransferOut(Account recipient, long amount, long timestamp, long transactionId, long sequence) {
+        lock.lock();
+        try {
+            if (sequence <= lastSequence) {
+                return;
+            }
+            balance = Money.subtract(balance, amount);
+            lastSequence = sequence;
+            addTransfer(TransactionType.TRANSFER_OUT, amount, recipient, timestamp, transactionId);
+            countTransfers(getLimits(), 1, timestamp);
+        } finally {
+            lock.unlock();
         }
-        
+    }
+    
+    /**
+     * Replays the credit leg of a journaled transfer without re-validating it
+     */
+    void recoverTransferIn(Account sender, long amount, long timestamp, long transactionId, long sequence) {
+        lock.lock();
         try {
-            double validatedAmount = validateAmount(amount);
-            
-            if (validatedAmount <= 0) {
-                System.out.println("[ERROR] Transfer failed: Amount must be greater than 0");
-                return false;
+            if (sequence <= lastSequence) {
+                return;
             }
-            
-            if (validatedAmount > MAX_TRANSFER) {
-                System.out.printf("[ERROR] Transfer failed: Amount exceeds maximum transfer limit of R%,.2f%n", MAX_TRANSFER);
-                return false;
+            balance = Money.add(balance, amount);
+            lastSequence = sequence;
+            addTransfer(TransactionType.TRANSFER_IN, amount, sender, timestamp, transactionId);
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * Replays a journaled interest credit or fee without re-validating it
+     */
+    void recoverAccrual(TransactionType type, long amount, int day, long timestamp, long transactionId,
+                        long sequence) {
+        lock.lock();
+        try {
+            if (sequence <= lastSequence) {
+                return;
+            }
+            if (type == TransactionType.FEE) {
+                balance = Money.subtract(balance, amount);
+                feeDay = day;
+            } else {
+                balance = Money.add(balance, amount);
+                interestDay = day;
             }
-            
-            System.out.println("\n==========================================");
-            System.out.println("        TRANSFER CONFIRMATION");
-            System.out.println("==========================================");
-            System.out.printf("From: %s (Account: %d)%n", holderName, accountNumber);
-            System.out.printf("To: %s (Account: %d)%n", recipient.holderName, recipient.accountNumber);
-            System.out.printf("Amount: R%,.2f%n", validatedAmount);
-            System.out.printf("Sender Current Balance: R%,.2f%n", balance);
-            System.out.printf("Recipient Current Balance: R%,.2f%n", recipient.balance);
-            System.out.println("==========================================");
-            
-            // First withdraw from this account
-            if (this.withdraw(validatedAmount)) {
-                // Then deposit to recipient account
-                if (recipient.deposit(validatedAmount)) {
-                    // Add transfer transaction for both accounts
-                    String senderDesc = String.format("Transfer to %s (Account: %d)", 
-                        recipient.holderName, recipient.accountNumber);
-                    String receiverDesc = String.format("Transfer from %s (Account: %d)", 
-                        holderName, accountNumber);
-                    
-                    addTransaction("TRANSFER_OUT", validatedAmount, senderDesc);
-                    recipient.addTransaction("TRANSFER_IN", validatedAmount, receiverDesc);
-                    
-                    System.out.println("\n[SUCCESS] TRANSFER COMPLETED SUCCESSFULLY!");
-                    System.out.println("==========================================");
-                    System.out.printf("Sender New Balance: R%,.2f%n", balance);
-                    System.out.printf("Recipient New Balance: R%,.2f%n", recipient.balance);
-                    return true;
-                } else {
-                    // If deposit fails, refund the withdrawal
-                    this.deposit(validatedAmount);
-                    System.out.println("[ERROR] Transfer failed: Could not complete recipient deposit");
-                    return false;
-                }
+            lastSequence = sequence;
+            addTransaction(type, amount, accrualDescription(type, day), timestamp, transactionId);
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * Replays a journaled name change
+     */
+    void recoverHolderName(String holderName, long timestamp, long transactionId, long sequence) {
+        lock.lock();
+        try {
+            if (sequence <= lastSequence) {
+                return;
             }
-            
-            System.out.println("[ERROR] Transfer failed: Insufficient funds or other error");
-            return false;
-            
-        } catch (IllegalArgumentException e) {
-            System.out.println("[ERROR] Transfer failed: " + e.getMessage());
-            return false;
+            rename(holderName, timestamp, transactionId);
+            lastSequence = sequence;
+        } finally {
+            lock.unlock();
         }
     }
     
@@ -255,7 +781,7 @@ public class Account {
         System.out.println("==========================================");
         System.out.printf("Account Number: %d%n", accountNumber);
         System.out.printf("Holder Name: %s%n", holderName);
-        System.out.printf("Current Balance: R%,.2f%n", balance);
+        System.out.printf("Current Balance: R%s%n", Money.format(balance));
         System.out.println("==========================================");
     }
     
@@ -263,28 +789,56 @@ public class Account {
      * Displays complete transaction history
      */
     public void displayTransactionHistory() {
+        displayTransactionHistory(getHistory(), null);
+    }
+    
+    /**
+     * Displays the transactions stamped from one time (inclusive) to
+     * another (exclusive), both epoch millis. Postings before the range
+     * are not read.
+     */
+    public void displayTransactionHistory(long fromTimestamp, long toTimestamp) {
+        String period = TimestampFormatter.DEFAULT.format(fromTimestamp) + " to "
+            + TimestampFormatter.DEFAULT.format(toTimestamp);
+        displayTransactionHistory(getHistory().between(fromTimestamp, toTimestamp), period);
+    }
+    
+    /**
+     * @param period Description of the date range, or null for the whole history
+     */
+    private void displayTransactionHistory(TransactionHistory.View history, String period) {
         System.out.println("\n==================================================");
         System.out.printf("    TRANSACTION HISTORY - %s%n", holderName.toUpperCase());
         System.out.printf("    Account: %d%n", accountNumber);
+        if (period != null) {
+            System.out.printf("    Period: %s%n", period);
+        }
         System.out.println("==================================================");
         
-        if (transactionHistory.isEmpty()) {
-            System.out.println("No transactions found for this account.");
+        if (openingBalance != 0 && period == null) {
+            System.out.printf("Balance brought forward: R%s%n", Money.format(openingBalance));
+        }
+        
+        if (history.isEmpty()) {
+            System.out.println(period == null ? "No transactions found for this account."
+                                              : "No transactions found in this period.");
             System.out.println("==================================================");
             return;
         }
         
-        System.out.printf("%-15s %-20s %-15s %-12s %-12s %-20s %-30s%n",
+        System.out.printf("%-22s %-20s %-15s %-12s %-12s %-20s %-30s%n",
             "Transaction ID", "Date & Time", "Type", "Amount", "Balance", "Account", "Description");
         System.out.println("--------------------------------------------------");
         
-        for (Transaction transaction : transactionHistory) {
-            transaction.displayTransaction();
+        TransactionHistory.Cursor cursor = history.cursor();
+        while (cursor.next()) {
+            Transaction.display(cursor.transactionId(), cursor.timestamp(), cursor.type().name(),
+                cursor.amount(), cursor.balanceAfter(), accountNumber, cursor.description());
         }
         
         System.out.println("--------------------------------------------------");
-        System.out.printf("Total Transactions: %d%n", transactionHistory.size());
-        System.out.printf("Current Balance: R%,.2f%n", balance);
+        System.out.printf("Total Transactions: %d%n", history.size());
+        System.out.printf("Current Balance: R%s%n", Money.format(balance));
         System.out.println("==================================================");
     }
     
@@ -297,14 +851,16 @@ public class Account {
         System.out.println("==========================================");
         System.out.printf("Account Number: %d%n", accountNumber);
         System.out.printf("Holder Name: %s%n", holderName);
-        System.out.printf("Current Balance: R%,.2f%n", balance);
-        System.out.printf("Total Transactions: %d%n", transactionHistory.size());
+        
+        TransactionHistory.View history = getHistory();
+        System.out.printf("Current Balance: R%s%n", Money.format(balance));
+        System.out.printf("Total Transactions: %d%n", history.size());
         
         // Show last transaction if available
-        if (!transactionHistory.isEmpty()) {
-            Transaction lastTransaction = transactionHistory.get(transactionHistory.size() - 1);
-            System.out.printf("Last Transaction: %s - R%,.2f%n", 
-                lastTransaction.getTransactionType(), lastTransaction.getAmount());
+        if (!history.isEmpty()) {
+            TransactionHistory.View last = history.last(1);
+            System.out.printf("Last Transaction: %s - R%s%n",
+                last.typeAt(0), Money.format(last.amountAt(0)));
         }
         
         System.out.println("==========================================");
@@ -314,8 +870,8 @@ public class Account {
      * Displays account summary for list views
      */
     public void displayAccountSummary() {
-        System.out.printf("%-15d %-25s R%,-15.2f %-10d%n", 
-            accountNumber, holderName, balance, transactionHistory.size());
+        System.out.printf("%-15d %-25s R%-15s %-10d%n",
+            accountNumber, holderName, Money.format(balance), getTransactionCount());
     }
     
     /**
@@ -323,7 +879,7 @@ public class Account {
      */
     @Override
     public String toString() {
-        return String.format("Account[Number: %d, Holder: %s, Balance: R%.2f, Transactions: %d]",
-            accountNumber, holderName, balance, transactionHistory.size());
+        return String.format("Account[Number: %d, Holder: %s, Balance: R%s, Transactions: %d]",
+            accountNumber, holderName, Money.toPlainString(balance), getTransactionCount());
     }
 }
\ No newline at end of file
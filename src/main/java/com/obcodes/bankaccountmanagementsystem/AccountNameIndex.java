@@ -0,0 +1,555 @@
+package com.obcodes.bankaccountmanagementsystem;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Trigram index over account holder names for substring and prefix search.
+ *
+ * Every indexed account gets a document number, and each lowercased name is
+ * split into overlapping three-character grams, padded with start and end
+ * markers. Each gram keeps a posting list of the documents that contain it,
+ * in ascending document order. A query intersects the posting lists of its
+ * own grams, so it only looks at accounts that share every gram with the
+ * term; each candidate is then checked against the holder's current name.
+ * Two-character terms, which have no trigram of their own, merge the lists
+ * of every gram that starts with them.
+ *
+ * Results come back in document order, which is the order accounts were
+ * indexed, and are paged with an offset and a limit. A rename retires the
+ * old document, found through a table from account number to document, and
+ * indexes the account again under a new one; retired documents are skipped
+ * by queries and dropped when the index compacts.
+ * @author Obakeng Phale
+ */
+public class AccountNameIndex {
+    // Pad names so prefix queries can anchor on the start of the name and
+    // so that every two-character substring begins some trigram
+    private static final char START = '\u0002';
+    private static final char END = '\u0003';
+    // Set on every gram key so a key is never 0, the empty slot marker
+    private static final long PRESENT = 1L << 48;
+    private static final int DEFAULT_CAPACITY = 1024;
+    private static final float LOAD_FACTOR = 0.6f;
+    // Compact once retired documents outnumber live ones, but not for fewer
+    // retired documents than this
+    private static final int MIN_COMPACT = 1024;
+    
+    /**
+     * Ascending document numbers for one gram
+     */
+    private static final class Postings {
+        int[] docs = new int[4];
+        int size;
+        
+        void add(int doc) {
+            // A gram repeated within one name is only posted once
+            if (size > 0 && docs[size - 1] == doc) {
+                return;
+            }
+            if (size == docs.length) {
+                docs = Arrays.copyOf(docs, size << 1);
+            }
+            docs[size++] = doc;
+        }
+        
+        /**
+         * Returns the first position at or after from whose document is at
+         * least target, galloping ahead before a binary search
+         */
+        int seek(int from, int target) {
+            int step = 1;
+            int low = from;
+            int high = from;
+            while (high < size && docs[high] < target) {
+                low = high + 1;
+                high += step;
+                step <<= 1;
+            }
+            high = Math.min(high, size);
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (docs[mid] < target) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+    }
+    
+    /**
+     * Collects one page of matches, skipping the first offset of them
+     */
+    private static final class Page {
+        final int offset;
+        final int limit;
+        final List<Account> results;
+        int skipped;
+        
+        Page(int offset, int limit) {
+            this.offset = offset;
+            this.limit = limit;
+            this.results = new ArrayList<>(Math.min(limit, 64));
+        }
+        
+        /**
+         * @return false once the page is full
+         */
+        boolean accept(Account account) {
+            if (skipped < offset) {
+                skipped++;
+            } else {
+                results.add(account);
+            }
+            return results.size() < limit;
+        }
+    }
+    
+    private final StampedLock lock = new StampedLock();
+    // Gram hash table, open addressing with linear probing
+    private long[] gramKeys;
+    private Postings[] gramPostings;
+    private int gramCount;
+    // Indexed accounts by document number; retired documents are null
+    private Account[] documents;
+    private int documentCount;
+    private int liveCount;
+    // Latest document of each account number, open addressing with linear
+    // probing; account number 0 marks an empty slot
+    private long[] documentKeys;
+    private int[] documentValues;
+    
+    /**
+     * Creates an empty index
+     */
+    public AccountNameIndex() {
+        clear(DEFAULT_CAPACITY);
+    }
+    
+    private void clear(int expectedAccounts) {
+        gramKeys = new long[DEFAULT_CAPACITY];
+        gramPostings = new Postings[DEFAULT_CAPACITY];
+        gramCount = 0;
+        documents = new Account[Math.max(expectedAccounts, 16)];
+        documentCount = 0;
+        liveCount = 0;
+        int capacity = Integer.highestOneBit((int) Math.max(expectedAccounts / LOAD_FACTOR, 16)) << 1;
+        documentKeys = new long[capacity];
+        documentValues = new int[capacity];
+    }
+    
+    /**
+     * Lowercases a name or search term the way the index stores names
+     */
+    private static String normalize(String text) {
+        String trimmed = text.trim();
+        char[] chars = new char[trimmed.length()];
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = Character.toLowerCase(trimmed.charAt(i));
+        }
+        return new String(chars);
+    }
+    
+    private static long gram(char a, char b, char c) {
+        return PRESENT | ((long) a << 32) | ((long) b << 16) | c;
+    }
+    
+    /**
+     * Spreads gram keys over the table (MurmurHash3 finalizer)
+     */
+    private static int hash(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return (int) key;
+    }
+    
+    private Postings postingsFor(long key) {
+        int mask = gramKeys.length - 1;
+        int slot = hash(key) & mask;
+        while (gramKeys[slot] != 0) {
+            if (gramKeys[slot] == key) {
+                return gramPostings[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return null;
+    }
+    
+    /**
+     * Returns the posting list for a gram, creating it if needed (caller
+     * holds the write lock)
+     */
+    private Postings createPostings(long key) {
+        int mask = gramKeys.length - 1;
+        int slot = hash(key) & mask;
+        while (gramKeys[slot] != 0) {
+            if (gramKeys[slot] == key) {
+                return gramPostings[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        Postings postings = new Postings();
+        gramKeys[slot] = key;
+        gramPostings[slot] = postings;
+        if (++gramCount > gramKeys.length * LOAD_FACTOR) {
+            rehash(gramKeys.length << 1);
+        }
+        return postings;
+    }
+    
+    private void rehash(int capacity) {
+        long[] oldKeys = gramKeys;
+        Postings[] oldPostings = gramPostings;
+        gramKeys = new long[capacity];
+        gramPostings = new Postings[capacity];
+        int mask = capacity - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != 0) {
+                int slot = hash(oldKeys[i]) & mask;
+                while (gramKeys[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                gramKeys[slot] = oldKeys[i];
+                gramPostings[slot] = oldPostings[i];
+            }
+        }
+    }
+    
+    /**
+     * Indexes an account under a name (caller holds the write lock)
+     */
+    private void insert(Account account, String name) {
+        int doc = documentCount;
+        if (doc == documents.length) {
+            documents = Arrays.copyOf(documents, doc << 1);
+        }
+        documents[doc] = account;
+        documentCount = doc + 1;
+        liveCount++;
+        putDocument(account.getAccountNumber(), doc);
+        
+        String normalized = normalize(name);
+        char previous = START;
+        char current = normalized.charAt(0);
+        for (int i = 1; i <= normalized.length(); i++) {
+            char next = i < normalized.length() ? normalized.charAt(i) : END;
+            createPostings(gram(previous, current, next)).add(doc);
+            previous = current;
+            current = next;
+        }
+    }
+    
+    /**
+     * Adds a newly registered account under its holder name
+     */
+    public void add(Account account) {
+        long stamp = lock.writeLock();
+        try {
+            insert(account, account.getHolderName());
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+    
+    /**
+     * Moves an account from its old holder name to its new one
+     */
+    public void rename(Account account, String newName) {
+        long stamp = lock.writeLock();
+        try {
+            int doc = documentOf(account);
+            if (doc >= 0) {
+                documents[doc] = null;
+                liveCount--;
+            }
+            insert(account, newName);
+            if (documentCount - liveCount > Math.max(liveCount, MIN_COMPACT)) {
+                compact();
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+    
+    /**
+     * Finds an account's live document
+     * @return document number, or -1 if the account is not indexed
+     */
+    private int documentOf(Account account) {
+        long key = account.getAccountNumber();
+        int mask = documentKeys.length - 1;
+        int slot = hash(key) & mask;
+        while (documentKeys[slot] != 0) {
+            if (documentKeys[slot] == key) {
+                int doc = documentValues[slot];
+                return documents[doc] == account ? doc : -1;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+    
+    /**
+     * Records an account's latest document (caller holds the write lock)
+     */
+    private void putDocument(long accountNumber, int doc) {
+        int mask = documentKeys.length - 1;
+        int slot = hash(accountNumber) & mask;
+        while (documentKeys[slot] != 0) {
+            if (documentKeys[slot] == accountNumber) {
+                documentValues[slot] = doc;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        documentKeys[slot] = accountNumber;
+        documentValues[slot] = doc;
+        // Every live document has a key, and retired ones share their account's
+        if (liveCount > documentKeys.length * LOAD_FACTOR) {
+            rehashDocuments(documentKeys.length << 1);
+        }
+    }
+    
+    private void rehashDocuments(int capacity) {
+        long[] oldKeys = documentKeys;
+        int[] oldValues = documentValues;
+        documentKeys = new long[capacity];
+        documentValues = new int[capacity];
+        int mask = capacity - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != 0) {
+                int slot = hash(oldKeys[i]) & mask;
+                while (documentKeys[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                documentKeys[slot] = oldKeys[i];
+                documentValues[slot] = oldValues[i];
+            }
+        }
+    }
+    
+    /**
+     * Rebuilds the index with live documents only (caller holds the write
+     * lock)
+     */
+    private void compact() {
+        Account[] live = new Account[liveCount];
+        int count = 0;
+        for (int doc = 0; doc < documentCount; doc++) {
+            if (documents[doc] != null) {
+                live[count++] = documents[doc];
+            }
+        }
+        clear(count);
+        for (int i = 0; i < count; i++) {
+            insert(live[i], live[i].getHolderName());
+        }
+    }
+    
+    /**
+     * Replaces the contents of the index with the given accounts, e.g. after
+     * restoring them from a snapshot or the journal
+     */
+    void rebuild(AccountRegistry accounts) {
+        long stamp = lock.writeLock();
+        try {
+            clear(accounts.size());
+            for (Account account : accounts) {
+                insert(account, account.getHolderName());
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+    
+    /**
+     * Returns the number of accounts in the index
+     */
+    public int size() {
+        long stamp = lock.readLock();
+        try {
+            return liveCount;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+    
+    /**
+     * Finds accounts whose holder name contains the term, ignoring case
+     * @param term At least two characters
+     * @param offset Number of matches to skip, for paging
+     * @param limit Maximum number of accounts to return
+     */
+    public List<Account> search(String term, int offset, int limit) {
+        String normalized = validateTerm(term, 2, offset, limit);
+        return query(normalized, normalized, false, offset, limit);
+    }
+    
+    /**
+     * Finds accounts whose holder name starts with the prefix, ignoring case
+     * @param prefix At least one character
+     * @param offset Number of matches to skip, for paging
+     * @param limit Maximum number of accounts to return
+     */
+    public List<Account> searchPrefix(String prefix, int offset, int limit) {
+        String normalized = validateTerm(prefix, 1, offset, limit);
+        return query(START + normalized, normalized, true, offset, limit);
+    }
+    
+    private static String validateTerm(String term, int minLength, int offset, int limit) {
+        if (term == null || term.trim().length() < minLength) {
+            throw new IllegalArgumentException("Search term must be at least " + minLength
+                + (minLength == 1 ? " character" : " characters"));
+        }
+        if (offset < 0 || limit < 0) {
+            throw new IllegalArgumentException("Offset and limit cannot be negative");
+        }
+        return normalize(term);
+    }
+    
+    /**
+     * @param pattern Gram pattern, including the start marker for prefixes
+     * @param term The term each candidate's name is checked against
+     */
+    private List<Account> query(String pattern, String term, boolean prefix, int offset, int limit) {
+        Page page = new Page(offset, limit);
+        if (limit == 0) {
+            return page.results;
+        }
+        long stamp = lock.readLock();
+        try {
+            if (pattern.length() >= 3) {
+                Postings[] lists = gramsOf(pattern);
+                if (lists != null) {
+                    intersect(lists, term, prefix, page);
+                }
+            } else {
+                union(pattern.charAt(0), pattern.charAt(1), term, prefix, page);
+            }
+        } finally {
+            lock.unlockRead(stamp);
+        }
+        return page.results;
+    }
+    
+    /**
+     * Returns the distinct posting lists for every trigram of a pattern,
+     * shortest first, or null if some trigram is not indexed at all
+     */
+    private Postings[] gramsOf(String pattern) {
+        Postings[] lists = new Postings[pattern.length() - 2];
+        int count = 0;
+        for (int i = 0; i + 2 < pattern.length(); i++) {
+            Postings postings = postingsFor(gram(pattern.charAt(i), pattern.charAt(i + 1), pattern.charAt(i + 2)));
+            if (postings == null) {
+                return null;
+            }
+            boolean seen = false;
+            for (int j = 0; j < count && !seen; j++) {
+                seen = lists[j] == postings;
+            }
+            if (!seen) {
+                lists[count++] = postings;
+            }
+        }
+        lists = Arrays.copyOf(lists, count);
+        Arrays.sort(lists, (a, b) -> Integer.compare(a.size, b.size));
+        return lists;
+    }
+    
+    /**
+     * Walks the documents present in every list, leapfrogging each list
+     * forward to the largest document seen so far
+     */
+    private void intersect(Postings[] lists, String term, boolean prefix, Page page) {
+        int[] positions = new int[lists.length];
+        Postings driver = lists[0];
+        while (positions[0] < driver.size) {
+            int target = driver.docs[positions[0]];
+            boolean agreed = true;
+            for (int i = 1; i < lists.length; i++) {
+                positions[i] = lists[i].seek(positions[i], target);
+                if (positions[i] == lists[i].size) {
+                    return;
+                }
+                int doc = lists[i].docs[positions[i]];
+                if (doc != target) {
+                    positions[0] = driver.seek(positions[0], doc);
+                    agreed = false;
+                    break;
+                }
+            }
+            if (agreed) {
+                if (!check(target, term, prefix, page)) {
+                    return;
+                }
+                positions[0]++;
+            }
+        }
+    }
+    
+    /**
+     * Merges the lists of every trigram that starts with the two characters,
+     * visiting each document once
+     */
+    private void union(char a, char b, String term, boolean prefix, Page page) {
+        long wanted = gram(a, b, '\0');
+        ArrayList<Postings> matching = new ArrayList<>();
+        for (int slot = 0; slot < gramKeys.length; slot++) {
+            if ((gramKeys[slot] & ~0xFFFFL) == wanted) {
+                matching.add(gramPostings[slot]);
+            }
+        }
+        Postings[] lists = matching.toArray(new Postings[0]);
+        int[] positions = new int[lists.length];
+        while (true) {
+            int next = Integer.MAX_VALUE;
+            for (int i = 0; i < lists.length; i++) {
+                if (positions[i] < lists[i].size) {
+                    next = Math.min(next, lists[i].docs[positions[i]]);
+                }
+            }
+            if (next == Integer.MAX_VALUE) {
+                return;
+            }
+            for (int i = 0; i < lists.length; i++) {
+                if (positions[i] < lists[i].size && lists[i].docs[positions[i]] == next) {
+                    positions[i]++;
+                }
+            }
+            if (!check(next, term, prefix, page)) {
+                return;
+            }
+        }
+    }
+    
+    /**
+     * Confirms a candidate against the holder's current name and adds it to
+     * the page
+     * @return false once the page is full
+     */
+    private boolean check(int doc, String term, boolean prefix, Page page) {
+        Account account = documents[doc];
+        if (account == null) {
+            return true;
+        }
+        String name = account.getHolderName();
+        boolean matches;
+        if (prefix) {
+            matches = name.regionMatches(true, 0, term, 0, term.length());
+        } else {
+            matches = false;
+            for (int i = 0; i + term.length() <= name.length() && !matches; i++) {
+                matches = name.regionMatches(true, i, term, 0, term.length());
+            }
+        }
+        return !matches || page.accept(account);
+    }
+}
\ No newline at end of file
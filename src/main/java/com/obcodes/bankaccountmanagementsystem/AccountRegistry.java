@@ -0,0 +1,360 @@
+package com.obcodes.bankaccountmanagementsystem;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Hash-indexed registry of accounts keyed on the primitive account number.
+ * Uses open addressing with linear probing so lookups never box the key,
+ * plus a dense array that keeps accounts in insertion order for listings.
+ * Lookups are optimistic reads and only fall back to a read lock if a
+ * concurrent registration changed the table underneath them.
+ * @author Obakeng Phale
+ */
+public class AccountRegistry implements Iterable<Account> {
+    // Account number 0 is never generated, so it marks an empty slot
+    private static final long EMPTY = 0L;
+    private static final int DEFAULT_CAPACITY = 16;
+    private static final float LOAD_FACTOR = 0.6f;
+    
+    /**
+     * Hash table arrays, swapped as a unit on resize so that an optimistic
+     * reader always sees keys and values of the same length
+     */
+    private static final class Table {
+        final long[] keys;
+        final Account[] values;
+        final int[] positions;
+        final int mask;
+        final int resizeThreshold;
+        
+        Table(int capacity) {
+            this.keys = new long[capacity];
+            this.values = new Account[capacity];
+            this.positions = new int[capacity];
+            this.mask = capacity - 1;
+            this.resizeThreshold = (int) (capacity * LOAD_FACTOR);
+        }
+        
+        /**
+         * Finds the slot holding the account number
+         * @return slot index, or -1 if the number is not registered
+         */
+        int slotOf(long accountNumber) {
+            int slot = hash(accountNumber) & mask;
+            while (true) {
+                long key = keys[slot];
+                if (key == accountNumber) {
+                    return slot;
+                }
+                if (key == EMPTY) {
+                    return -1;
+                }
+                slot = (slot + 1) & mask;
+            }
+        }
+        
+        Account find(long accountNumber) {
+            int slot = slotOf(accountNumber);
+            return slot < 0 ? null : values[slot];
+        }
+    }
+    
+    private final StampedLock lock = new StampedLock();
+    private Table table;
+    private Account[] ordered;
+    private volatile int size;
+    
+    /**
+     * Creates an empty registry
+     */
+    public AccountRegistry() {
+        this(DEFAULT_CAPACITY);
+    }
+    
+    /**
+     * Creates a registry sized for the expected number of accounts
+     */
+    public AccountRegistry(int expectedAccounts) {
+        if (expectedAccounts < 0) {
+            throw new IllegalArgumentException("Expected accounts cannot be negative");
+        }
+        this.table = new Table(tableSizeFor((int) Math.ceil(Math.max(expectedAccounts, 1) / LOAD_FACTOR)));
+        this.ordered = new Account[Math.max(expectedAccounts, DEFAULT_CAPACITY)];
+    }
+    
+    /**
+     * Rounds a requested capacity up to the next power of two
+     */
+    private static int tableSizeFor(int capacity) {
+        int size = Integer.highestOneBit(Math.max(capacity - 1, 1)) << 1;
+        if (size <= 0) {
+            throw new IllegalStateException("Account registry capacity exceeded");
+        }
+        return Math.max(size, DEFAULT_CAPACITY);
+    }
+    
+    /**
+     * Spreads account numbers over the table (MurmurHash3 finalizer)
+     */
+    private static int hash(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return (int) key;
+    }
+    
+    /**
+     * Looks up an account by number
+     * @return Account if found, null otherwise
+     */
+    public Account get(long accountNumber) {
+        if (accountNumber == EMPTY) {
+            return null;
+        }
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0L) {
+            Account found = table.find(accountNumber);
+            if (lock.validate(stamp)) {
+                return found;
+            }
+        }
+        stamp = lock.readLock();
+        try {
+            return table.find(accountNumber);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+    
+    /**
+     * Checks whether an account number is registered
+     */
+    public boolean contains(long accountNumber) {
+        return get(accountNumber) != null;
+    }
+    
+    /**
+     * Registers an account
+     * @return true if added, false if the account number is already taken
+     */
+    public boolean add(Account account) {
+        if (account == null) {
+            throw new IllegalArgumentException("Account cannot be null");
+        }
+        long accountNumber = account.getAccountNumber();
+        if (accountNumber == EMPTY) {
+            throw new IllegalArgumentException("Account number 0 is reserved");
+        }
+        
+        long stamp = lock.writeLock();
+        try {
+            Table current = table;
+            int slot = hash(accountNumber) & current.mask;
+            while (current.keys[slot] != EMPTY) {
+                if (current.keys[slot] == accountNumber) {
+                    return false;
+                }
+                slot = (slot + 1) & current.mask;
+            }
+            
+            int position = size;
+            if (position == ordered.length) {
+                Account[] grown = new Account[ordered.length << 1];
+                System.arraycopy(ordered, 0, grown, 0, position);
+                ordered = grown;
+            }
+            
+            current.values[slot] = account;
+            current.positions[slot] = position;
+            current.keys[slot] = accountNumber;
+            ordered[position] = account;
+            size = position + 1;
+            
+            if (size > current.resizeThreshold) {
+                rehash(current.keys.length << 1);
+            }
+            return true;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+    
+    /**
+     * Removes an account by number
+     * @return the removed account, or null if it was not registered
+     */
+    public Account remove(long accountNumber) {
+        if (accountNumber == EMPTY) {
+            return null;
+        }
+        long stamp = lock.writeLock();
+        try {
+            Table current = table;
+            int slot = current.slotOf(accountNumber);
+            if (slot < 0) {
+                return null;
+            }
+            Account removed = current.values[slot];
+            
+            // Keep the listing dense by moving the last account into the gap
+            int position = current.positions[slot];
+            int last = size - 1;
+            if (position != last) {
+                Account moved = ordered[last];
+                ordered[position] = moved;
+                current.positions[current.slotOf(moved.getAccountNumber())] = position;
+            }
+            ordered[last] = null;
+            size = last;
+            
+            deleteSlot(current, slot);
+            return removed;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+    
+    /**
+     * Empties a slot and shifts back any entries whose probe chain crossed it
+     */
+    private static void deleteSlot(Table t, int slot) {
+        int gap = slot;
+        int next = (gap + 1) & t.mask;
+        while (t.keys[next] != EMPTY) {
+            int home = hash(t.keys[next]) & t.mask;
+            // Move the entry if its home slot does not lie in (gap, next]
+            if (((next - home) & t.mask) >= ((next - gap) & t.mask)) {
+                t.keys[gap] = t.keys[next];
+                t.values[gap] = t.values[next];
+                t.positions[gap] = t.positions[next];
+                gap = next;
+            }
+            next = (next + 1) & t.mask;
+        }
+        t.keys[gap] = EMPTY;
+        t.values[gap] = null;
+        t.positions[gap] = 0;
+    }
+    
+    /**
+     * Rebuilds the table at a larger capacity (caller holds the write lock)
+     */
+    private void rehash(int capacity) {
+        Table old = table;
+        Table grown = new Table(capacity);
+        for (int i = 0; i < old.keys.length; i++) {
+            long key = old.keys[i];
+            if (key != EMPTY) {
+                int slot = hash(key) & grown.mask;
+                while (grown.keys[slot] != EMPTY) {
+                    slot = (slot + 1) & grown.mask;
+                }
+                grown.keys[slot] = key;
+                grown.values[slot] = old.values[i];
+                grown.positions[slot] = old.positions[i];
+            }
+        }
+        table = grown;
+    }
+    
+    /**
+     * Returns the account at a listing position (insertion order)
+     */
+    public Account accountAt(int position) {
+        long stamp = lock.readLock();
+        try {
+            if (position < 0 || position >= size) {
+                throw new IndexOutOfBoundsException("Position " + position + " out of range for " + size + " accounts");
+            }
+            return ordered[position];
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+    
+    public int size() {
+        return size;
+    }
+    
+    public boolean isEmpty() {
+        return size == 0;
+    }
+    
+    /**
+     * Returns the accounts registered so far in listing order, without
+     * copying them, so parallel readers can split them into ranges by
+     * position. Like the iterator, the listing is weakly consistent and
+     * never blocks concurrent registrations.
+     */
+    Listing listing() {
+        long stamp = lock.readLock();
+        try {
+            return new Listing(ordered, size);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+    
+    /**
+     * The accounts registered at one moment. Shares the registry's array:
+     * a slot vacated by a concurrent removal reads as null.
+     */
+    static final class Listing {
+        private final Account[] accounts;
+        private final int size;
+        
+        Listing(Account[] accounts, int size) {
+            this.accounts = accounts;
+            this.size = size;
+        }
+        
+        int size() {
+            return size;
+        }
+        
+        /**
+         * Returns the account at a position below size(), or null if it
+         * has been removed
+         */
+        Account get(int position) {
+            return accounts[position];
+        }
+    }
+    
+    /**
+     * Iterates accounts in listing order. The iterator is weakly consistent:
+     * it sees the accounts registered when it was created and never blocks
+     * concurrent registrations.
+     */
+    @Override
+    public Iterator<Account> iterator() {
+        Listing listing = listing();
+        final Account[] snapshot = listing.accounts;
+        final int count = listing.size;
+        
+        return new Iterator<Account>() {
+            private int position = 0;
+            
+            @Override
+            public boolean hasNext() {
+                // Skip slots vacated by a concurrent removal
+                while (position < count && snapshot[position] == null) {
+                    position++;
+                }
+                return position < count;
+            }
+            
+            @Override
+            public Account next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return snapshot[position++];
+            }
+        };
+    }
+}
\ No newline at end of file
@@ -0,0 +1,351 @@
+package com.obcodes.bankaccountmanagementsystem;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.function.LongConsumer;
+import java.util.zip.CRC32C;
+
+/**
+ * Compact binary snapshot of every account, so a restart only has to replay
+ * the journal written after it instead of the whole history.
+ *
+ * Layout: magic, version (ints), checkpoint sequence and offset (longs),
+ * then one record per account: number, balance, last sequence (longs),
+ * last interest and fee days (ints), name length (short), UTF-8 name, and
+ * the velocity windows (see Account.writeVelocity), so a restart does not
+ * reset the daily and hourly limits, and the account's postings of each
+ * type (count byte, then type code byte and count long for each type it
+ * has), so the bank's transaction counts survive a restart. Version 3
+ * records have no posting counts, version 2 no velocity windows either,
+ * and version 1 no accrual days either. The account list ends with number
+ * 0, followed by the account count (long) and a CRC32C of everything
+ * before it.
+ * @author Obakeng Phale
+ */
+public final class AccountSnapshot {
+    private static final int MAGIC = 0x42414D53; // "BAMS"
+    private static final int VERSION = 4;
+    // Records without posting counts
+    private static final int VERSION_3 = 3;
+    // Records without velocity windows
+    private static final int VERSION_2 = 2;
+    // Records without accrual days or velocity windows
+    private static final int VERSION_1 = 1;
+    private static final int BUFFER_BYTES = 1 << 20;
+    private static final int HEADER_BYTES = 4 + 4 + 8 + 8;
+    private static final int RECORD_HEADER_BYTES = 8 + 8 + 8 + 4 + 4 + 2;
+    private static final int VERSION_1_RECORD_HEADER_BYTES = 8 + 8 + 8 + 2;
+    private static final int TRAILER_BYTES = 8 + 8 + 4;
+    private static final long END_OF_ACCOUNTS = 0L;
+    private static final int TYPES = TransactionType.values().length;
+    // Most bytes writeCounts writes
+    private static final int COUNTS_BYTES = 1 + TYPES * (1 + 8);
+    
+    private final TransactionJournal.Checkpoint checkpoint;
+    private final long accountCount;
+    
+    private AccountSnapshot(TransactionJournal.Checkpoint checkpoint, long accountCount) {
+        this.checkpoint = checkpoint;
+        this.accountCount = accountCount;
+    }
+    
+    /**
+     * Returns the journal position the snapshot is consistent with; replay
+     * resumes from here
+     */
+    public TransactionJournal.Checkpoint getCheckpoint() {
+        return checkpoint;
+    }
+    
+    public long getAccountCount() {
+        return accountCount;
+    }
+    
+    /**
+     * Writes a snapshot to a temporary file and atomically moves it into
+     * place, so a crash mid-write leaves the previous snapshot intact. Each
+     * account is captured under its own lock; accounts may include postings
+     * made after the checkpoint, which replay then skips by sequence number.
+     * @param awaitDurable Called with the highest journal sequence captured
+     *        before the snapshot replaces the previous one
+     * @return the number of accounts written
+     */
+    static long write(Path path, TransactionJournal.Checkpoint checkpoint, Iterable<Account> accounts,
+                      LongConsumer awaitDurable) throws IOException {
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES);
+        CRC32C checksum = new CRC32C();
+        long count = 0;
+        long highestSequence = checkpoint.sequence;
+        
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            buffer.putInt(MAGIC)
+                .putInt(VERSION)
+                .putLong(checkpoint.sequence)
+                .putLong(checkpoint.offset);
+            
+            // Velocity windows of the current account, copied under its lock
+            ByteBuffer windows = ByteBuffer.allocate(Account.VELOCITY_BYTES);
+            long[] counts = new long[TYPES];
+            for (Account account : accounts) {
+                String name;
+                long balance;
+                long lastSequence;
+                int interestDay;
+                int feeDay;
+                TransactionHistory.View history;
+                account.getLock().lock();
+                try {
+                    name = account.getHolderName();
+                    balance = account.getBalance();
+                    lastSequence = account.getLastSequence();
+                    interestDay = account.getAccrualDay(TransactionType.INTEREST);
+                    feeDay = account.getAccrualDay(TransactionType.FEE);
+                    windows.clear();
+                    account.writeVelocity(windows);
+                    // Views never change, so the postings are counted after unlocking
+                    history = account.getHistory();
+                } finally {
+                    account.getLock().unlock();
+                }
+                Arrays.fill(counts, 0L);
+                account.countPostings(history, counts);
+                
+                byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+                if (nameBytes.length > Short.MAX_VALUE) {
+                    throw new IOException("Holder name of account " + account.getAccountNumber() + " is too long");
+                }
+                windows.flip();
+                if (buffer.remaining() < RECORD_HEADER_BYTES + nameBytes.length + windows.remaining()
+                        + COUNTS_BYTES) {
+                    drain(channel, buffer, checksum);
+                }
+                buffer.putLong(account.getAccountNumber())
+                    .putLong(balance)
+                    .putLong(lastSequence)
+                    .putInt(interestDay)
+                    .putInt(feeDay)
+                    .putShort((short) nameBytes.length)
+                    .put(nameBytes)
+                    .put(windows);
+                writeCounts(buffer, counts);
+                highestSequence = Math.max(highestSequence, lastSequence);
+                count++;
+            }
+            
+            if (buffer.remaining() < TRAILER_BYTES) {
+                drain(channel, buffer, checksum);
+            }
+            buffer.putLong(END_OF_ACCOUNTS).putLong(count);
+            drain(channel, buffer, checksum);
+            buffer.putInt((int) checksum.getValue());
+            drain(channel, buffer, null);
+            channel.force(true);
+        }
+        awaitDurable.accept(highestSequence);
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return count;
+    }
+    
+    /**
+     * Writes the non-zero posting counts
+     */
+    private static void writeCounts(ByteBuffer buffer, long[] counts) {
+        int position = buffer.position();
+        byte written = 0;
+        buffer.put(written);
+        for (int code = 0; code < counts.length; code++) {
+            if (counts[code] != 0L) {
+                buffer.put((byte) code).putLong(counts[code]);
+                written++;
+            }
+        }
+        buffer.put(position, written);
+    }
+    
+    /**
+     * Reads posting counts written by writeCounts
+     * @return the counts by type code, or null if there are none
+     */
+    private static long[] readCounts(Reader in, long accountNumber) throws IOException {
+        int written = in.require(1).get();
+        if (written < 0 || written > TYPES) {
+            throw new IOException("Corrupt snapshot record for account " + accountNumber);
+        }
+        if (written == 0) {
+            return null;
+        }
+        long[] counts = new long[TYPES];
+        ByteBuffer buffer = in.require(written * (1 + 8));
+        for (int i = 0; i < written; i++) {
+            int code = buffer.get();
+            long count = buffer.getLong();
+            if (code < 0 || code >= TYPES || count < 0) {
+                throw new IOException("Corrupt snapshot record for account " + accountNumber);
+            }
+            counts[code] = count;
+        }
+        return counts;
+    }
+    
+    /**
+     * Writes out the buffered bytes, adding them to the checksum first
+     */
+    private static void drain(FileChannel channel, ByteBuffer buffer, CRC32C checksum) throws IOException {
+        buffer.flip();
+        if (checksum != null) {
+            checksum.update(buffer.duplicate());
+        }
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+    
+    /**
+     * Loads a snapshot into an empty registry
+     * @return the snapshot, or null if the file does not exist
+     * @throws IOException if the file is truncated or corrupt, in which case
+     *         the registry may hold a partial set of accounts
+     */
+    static AccountSnapshot read(Path path, AccountRegistry into) throws IOException {
+        if (!Files.exists(path)) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            Reader in = new Reader(channel);
+            
+            ByteBuffer buffer = in.require(HEADER_BYTES);
+            if (buffer.getInt() != MAGIC) {
+                throw new IOException("Not an account snapshot: " + path);
+            }
+            int version = buffer.getInt();
+            if (version != VERSION && version != VERSION_3 && version != VERSION_2 && version != VERSION_1) {
+                throw new IOException("Unsupported snapshot version " + version);
+            }
+            int recordHeaderBytes = version == VERSION_1 ? VERSION_1_RECORD_HEADER_BYTES : RECORD_HEADER_BYTES;
+            TransactionJournal.Checkpoint checkpoint =
+                new TransactionJournal.Checkpoint(buffer.getLong(), buffer.getLong());
+            
+            long count = 0;
+            while (true) {
+                long accountNumber = in.require(8).getLong();
+                if (accountNumber == END_OF_ACCOUNTS) {
+                    break;
+                }
+                buffer = in.require(recordHeaderBytes - 8);
+                long balance = buffer.getLong();
+                long lastSequence = buffer.getLong();
+                int interestDay = Account.NOT_ACCRUED;
+                int feeDay = Account.NOT_ACCRUED;
+                if (version != VERSION_1) {
+                    interestDay = buffer.getInt();
+                    feeDay = buffer.getInt();
+                }
+                int nameLength = buffer.getShort();
+                if (nameLength < 0) {
+                    throw new IOException("Corrupt snapshot record for account " + accountNumber);
+                }
+                byte[] nameBytes = new byte[nameLength];
+                in.require(nameLength).get(nameBytes);
+                String name = new String(nameBytes, StandardCharsets.UTF_8);
+                SlidingWindow withdrawals = null;
+                SlidingWindow transfers = null;
+                if ((version == VERSION || version == VERSION_3) && in.require(1).get() != 0) {
+                    withdrawals = readWindow(in, Account.withdrawalWindow(), accountNumber);
+                    transfers = readWindow(in, Account.transferWindow(), accountNumber);
+                }
+                long[] postings = version == VERSION ? readCounts(in, accountNumber) : null;
+                
+                if (!into.add(Account.restoreFromSnapshot(accountNumber, name, balance, lastSequence,
+                        interestDay, feeDay, withdrawals, transfers, postings))) {
+                    throw new IOException("Snapshot lists account " + accountNumber + " twice");
+                }
+                count++;
+            }
+            
+            long expectedCount = in.require(8).getLong();
+            int expectedChecksum = in.checksumSoFar();
+            if (in.require(4).getInt() != expectedChecksum) {
+                throw new IOException("Snapshot checksum mismatch: " + path);
+            }
+            if (expectedCount != count) {
+                throw new IOException("Snapshot lists " + count + " accounts, expected " + expectedCount);
+            }
+            return new AccountSnapshot(checkpoint, count);
+        }
+    }
+    
+    /**
+     * Reads a velocity window written by SlidingWindow.writeTo into an
+     * empty one
+     */
+    private static SlidingWindow readWindow(Reader in, SlidingWindow window, long accountNumber)
+            throws IOException {
+        ByteBuffer buffer = in.require(8 + 1);
+        buffer = in.require(SlidingWindow.bytesAt(buffer));
+        if (!window.readFrom(buffer)) {
+            throw new IOException("Corrupt snapshot record for account " + accountNumber);
+        }
+        return window;
+    }
+    
+    /**
+     * Buffered sequential reader that checksums every byte it hands out
+     */
+    private static final class Reader {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES);
+        private final CRC32C checksum = new CRC32C();
+        // Buffer position up to which bytes have been added to the checksum
+        private int checksummed;
+        
+        Reader(FileChannel channel) {
+            this.channel = channel;
+            buffer.limit(0);
+        }
+        
+        /**
+         * Returns the buffer with at least the given number of bytes remaining
+         */
+        ByteBuffer require(int bytes) throws IOException {
+            if (buffer.remaining() >= bytes) {
+                return buffer;
+            }
+            consume();
+            buffer.compact();
+            checksummed = 0;
+            while (buffer.hasRemaining() && channel.read(buffer) > 0) {
+                // Keep filling
+            }
+            buffer.flip();
+            if (buffer.remaining() < bytes) {
+                throw new IOException("Snapshot is truncated");
+            }
+            return buffer;
+        }
+        
+        /**
+         * Returns the checksum of every byte read so far
+         */
+        int checksumSoFar() {
+            consume();
+            return (int) checksum.getValue();
+        }
+        
+        private void consume() {
+            ByteBuffer read = buffer.duplicate();
+            read.limit(buffer.position()).position(checksummed);
+            checksum.update(read);
+            checksummed = buffer.position();
+        }
+    }
+}
\ No newline at end of file
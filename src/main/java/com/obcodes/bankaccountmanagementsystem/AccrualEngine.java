@@ -0,0 +1,328 @@
+package com.obcodes.bankaccountmanagementsystem;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * End-of-day interest and fee run over the whole book.
+ *
+ * The account listing is split into ranges by fork-join tasks. Each leaf
+ * walks its range in runs of accounts: it locks a run in account number
+ * order, like a posting batch, computes every account's interest or fee
+ * from its balance and the rate table of its tier, applies one INTEREST or
+ * FEE posting per account, journals the run with one append and unlocks
+ * it. Nothing is printed, each leaf updates the bank-wide totals once, and
+ * the run waits for a single group commit at the end.
+ *
+ * Postings carry on during a run; each account simply accrues on its
+ * balance at the moment its run is locked. Every account remembers the
+ * last business day it was credited interest and charged a fee, so running
+ * a day again, e.g. after a crash part way through, only posts to the
+ * accounts the first run did not reach. Like snapshots, a run cannot
+ * overlap a ShardedPostingEngine, whose shard writers take no locks: it is
+ * refused while one runs, and an engine cannot start during a run.
+ * @author Obakeng Phale
+ */
+public final class AccrualEngine {
+    // Accounts a leaf task covers, and accounts locked and journaled together
+    private static final int LEAF_ACCOUNTS = 8192;
+    private static final int RUN_BITS = 8;
+    private static final int RUN_ACCOUNTS = 1 << RUN_BITS;
+    
+    private final Bank bank;
+    private final AccrualRates rates;
+    private final ForkJoinPool pool;
+    
+    /**
+     * Creates an engine that runs on the common fork-join pool
+     */
+    public AccrualEngine(Bank bank, AccrualRates rates) {
+        this(bank, rates, ForkJoinPool.commonPool());
+    }
+    
+    public AccrualEngine(Bank bank, AccrualRates rates, ForkJoinPool pool) {
+        this.bank = bank;
+        this.rates = rates;
+        this.pool = pool;
+    }
+    
+    /**
+     * Credits one day's interest to every account that earns any
+     */
+    public Result accrueInterest(LocalDate businessDay) {
+        return run(TransactionType.INTEREST, businessDay);
+    }
+    
+    /**
+     * Charges the fee to every account whose balance is not waived. A fee
+     * that would take an account below its tier's minimum balance is not
+     * charged.
+     */
+    public Result chargeFees(LocalDate businessDay) {
+        return run(TransactionType.FEE, businessDay);
+    }
+    
+    private Result run(TransactionType type, LocalDate businessDay) {
+        bank.beginLockedWork("run accruals");
+        long start = System.nanoTime();
+        try {
+            int day = Math.toIntExact(businessDay.toEpochDay());
+            AccountRegistry.Listing listing = bank.getAccounts().listing();
+            Tally tally = pool.invoke(new Range(type, day, Account.accrualDescription(type, day),
+                listing, 0, listing.size()));
+            bank.awaitDurable(tally.lastSequence);
+            bank.getMetrics().record(BankMetrics.Operation.ACCRUAL, PostingStatus.SUCCESS, start);
+            return new Result(type, businessDay, tally, System.nanoTime() - start);
+        } catch (RuntimeException | Error e) {
+            bank.getMetrics().recordError(BankMetrics.Operation.ACCRUAL, start);
+            throw e;
+        } finally {
+            bank.endLockedWork();
+        }
+    }
+    
+    /**
+     * Outcome of one run, with the totals to reconcile it against the
+     * journal and the general ledger
+     */
+    public static final class Result {
+        private final TransactionType type;
+        private final LocalDate businessDay;
+        private final long accounts;
+        private final long posted;
+        private final long waived;
+        private final long alreadyAccrued;
+        private final long insufficientFunds;
+        private final long total;
+        private final long elapsedNanos;
+        
+        Result(TransactionType type, LocalDate businessDay, Tally tally, long elapsedNanos) {
+            this.type = type;
+            this.businessDay = businessDay;
+            this.accounts = tally.accounts;
+            this.posted = tally.posted;
+            this.waived = tally.waived;
+            this.alreadyAccrued = tally.alreadyAccrued;
+            this.insufficientFunds = tally.insufficientFunds;
+            this.total = tally.total;
+            this.elapsedNanos = elapsedNanos;
+        }
+        
+        /**
+         * Returns INTEREST or FEE
+         */
+        public TransactionType getType() {
+            return type;
+        }
+        
+        public LocalDate getBusinessDay() {
+            return businessDay;
+        }
+        
+        /**
+         * Returns the number of accounts the run looked at
+         */
+        public long getAccounts() {
+            return accounts;
+        }
+        
+        /**
+         * Returns the number of postings made, one per account
+         */
+        public long getPosted() {
+            return posted;
+        }
+        
+        /**
+         * Returns the number of accounts that earned no interest or whose
+         * fee was waived
+         */
+        public long getWaived() {
+            return waived;
+        }
+        
+        /**
+         * Returns the number of accounts an earlier run already posted to
+         * for this business day
+         */
+        public long getAlreadyAccrued() {
+            return alreadyAccrued;
+        }
+        
+        /**
+         * Returns the number of fees not charged because the account could
+         * not cover them
+         */
+        public long getInsufficientFunds() {
+            return insufficientFunds;
+        }
+        
+        /**
+         * Returns the sum of every amount posted, in cents: the control
+         * total for the day's interest expense or fee income
+         */
+        public long getTotal() {
+            return total;
+        }
+        
+        /**
+         * Returns the change the run made to the bank-wide balance, in cents
+         */
+        public long getBalanceChange() {
+            return type == TransactionType.INTEREST ? total : -total;
+        }
+        
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+        
+        public double getAccountsPerSecond() {
+            return elapsedNanos == 0 ? 0 : accounts * 1e9 / elapsedNanos;
+        }
+    }
+    
+    /**
+     * Counts and totals of one range of accounts
+     */
+    private static final class Tally {
+        long accounts;
+        long posted;
+        long waived;
+        long alreadyAccrued;
+        long insufficientFunds;
+        long total;
+        long lastSequence;
+        
+        Tally add(Tally other) {
+            accounts += other.accounts;
+            posted += other.posted;
+            waived += other.waived;
+            alreadyAccrued += other.alreadyAccrued;
+            insufficientFunds += other.insufficientFunds;
+            total = Money.add(total, other.total);
+            lastSequence = Math.max(lastSequence, other.lastSequence);
+            return this;
+        }
+    }
+    
+    /**
+     * Accrues a range of listing positions, splitting it in half until it
+     * is small enough to walk
+     */
+    @SuppressWarnings("serial")
+    private final class Range extends RecursiveTask<Tally> {
+        private final TransactionType type;
+        private final int day;
+        private final String description;
+        private final AccountRegistry.Listing listing;
+        private final int from;
+        private final int to;
+        
+        Range(TransactionType type, int day, String description, AccountRegistry.Listing listing, int from, int to) {
+            this.type = type;
+            this.day = day;
+            this.description = description;
+            this.listing = listing;
+            this.from = from;
+            this.to = to;
+        }
+        
+        @Override
+        protected Tally compute() {
+            if (to - from > LEAF_ACCOUNTS) {
+                int middle = (from + to) >>> 1;
+                Range left = new Range(type, day, description, listing, from, middle);
+                left.fork();
+                Tally right = new Range(type, day, description, listing, middle, to).compute();
+                return right.add(left.join());
+            }
+            Tally tally = new Tally();
+            Account[] run = new Account[RUN_ACCOUNTS];
+            long[] keys = new long[RUN_ACCOUNTS];
+            Account[] due = new Account[RUN_ACCOUNTS];
+            long[] numbers = new long[RUN_ACCOUNTS];
+            long[] amounts = new long[RUN_ACCOUNTS];
+            long[] transactionIds = new long[RUN_ACCOUNTS];
+            long[] sequences = new long[RUN_ACCOUNTS];
+            int position = from;
+            try {
+                while (position < to) {
+                    int count = 0;
+                    while (count < RUN_ACCOUNTS && position < to) {
+                        Account account = listing.get(position++);
+                        if (account != null) {
+                            keys[count] = (account.getAccountNumber() << RUN_BITS) | count;
+                            run[count++] = account;
+                        }
+                    }
+                    accrueRun(run, keys, count, due, numbers, amounts, transactionIds, sequences, tally);
+                }
+            } finally {
+                bank.getAggregates().accrued(type, tally.posted,
+                    type == TransactionType.INTEREST ? tally.total : -tally.total);
+            }
+            return tally;
+        }
+        
+        /**
+         * Locks a run of accounts in account number order, the order batches
+         * and transfers lock in, then posts to and journals every account
+         * that is due
+         */
+        private void accrueRun(Account[] run, long[] keys, int count, Account[] due, long[] numbers,
+                               long[] amounts, long[] transactionIds, long[] sequences, Tally tally) {
+            Arrays.sort(keys, 0, count);
+            long timestamp = System.currentTimeMillis();
+            int posted = 0;
+            int held = 0;
+            try {
+                while (held < count) {
+                    run[(int) (keys[held] & (RUN_ACCOUNTS - 1))].getLock().lock();
+                    held++;
+                }
+                IdGenerator.DEFAULT.nextTransactionIds(transactionIds, 0, count);
+                for (int i = 0; i < count; i++) {
+                    Account account = run[(int) (keys[i] & (RUN_ACCOUNTS - 1))];
+                    tally.accounts++;
+                    if (account.getAccrualDay(type) >= day) {
+                        tally.alreadyAccrued++;
+                        continue;
+                    }
+                    AccrualRates.Table table = rates.tableFor(account.getLimits());
+                    long amount = type == TransactionType.INTEREST
+                        ? table.interest(account.getBalance(), rates.getDaysPerYear())
+                        : table.fee(account.getBalance());
+                    if (amount == 0) {
+                        tally.waived++;
+                    } else if (!account.applyAccrual(type, amount, day, description, timestamp, transactionIds[i])
+                            .isSuccess()) {
+                        tally.insufficientFunds++;
+                    } else {
+                        due[posted] = account;
+                        numbers[posted] = account.getAccountNumber();
+                        // Packs the posted IDs to the front; posted never passes i
+                        transactionIds[posted] = transactionIds[i];
+                        amounts[posted++] = amount;
+                        tally.total = Money.add(tally.total, amount);
+                    }
+                }
+                TransactionJournal journal = bank.getJournal();
+                if (journal != null && posted > 0) {
+                    byte record = type == TransactionType.INTEREST ? TransactionJournal.INTEREST : TransactionJournal.FEE;
+                    tally.lastSequence = journal.appendAccruals(record, day, numbers, amounts, transactionIds, posted,
+                        timestamp, sequences);
+                    for (int i = 0; i < posted; i++) {
+                        due[i].setLastSequence(sequences[i]);
+                    }
+                }
+                tally.posted += posted;
+            } finally {
+                for (int i = 0; i < held; i++) {
+                    run[(int) (keys[i] & (RUN_ACCOUNTS - 1))].getLock().unlock();
+                }
+            }
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,231 @@
+package com.obcodes.bankaccountmanagementsystem;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Interest and fee rates for the end-of-day accrual run, by limit tier.
+ *
+ * Each tier may have its own rate table; tiers without one use the default
+ * table. A table has balance bands, each with an annual interest rate that
+ * applies to the whole balance once it reaches the band, and a flat fee per
+ * run that is waived from a balance upwards. Rates are held in parts per
+ * million, so a day's interest is computed exactly in cents and rounded
+ * down; negative balances earn nothing.
+ *
+ * Rates load from a properties file:
+ *
+ *   days.per.year=365
+ *   default.interest=0:0.25,10000:1.5
+ *   default.fee=5.00
+ *   default.fee.waiveAbove=1000
+ *   tier.gold.interest=0:1,10000:3.25
+ *   tier.gold.fee=0
+ *
+ * Each band is the lowest balance in rands and the annual rate in percent,
+ * with at most four decimals, in ascending order of balance. Fees are in
+ * rands. Left out, a tier earns no interest and pays no fee.
+ * @author Obakeng Phale
+ */
+public final class AccrualRates {
+    public static final int DEFAULT_DAYS_PER_YEAR = 365;
+    // Parts per million in 100 percent
+    private static final int MAX_RATE = 1_000_000;
+    
+    /** No interest and no fees, the terms the bank has always applied */
+    public static final AccrualRates DEFAULT = new AccrualRates(DEFAULT_DAYS_PER_YEAR, Table.NONE, Map.of());
+    
+    /**
+     * The interest bands and fee of one tier
+     */
+    public static final class Table {
+        static final Table NONE = new Table(new long[] {0L}, new int[] {0}, Money.ZERO, LimitRules.NO_LIMIT);
+        
+        private final long[] floors;
+        private final int[] rates;
+        private final long fee;
+        private final long feeWaivedFrom;
+        
+        /**
+         * @param floors Lowest balance of each band in cents, ascending
+         * @param rates Annual interest rate of each band, in parts per million
+         * @param fee Fee per run in cents
+         * @param feeWaivedFrom Balance in cents from which the fee is waived,
+         *        or LimitRules.NO_LIMIT
+         */
+        public Table(long[] floors, int[] rates, long fee, long feeWaivedFrom) {
+            if (floors.length == 0 || floors.length != rates.length) {
+                throw new IllegalArgumentException("Every interest band needs a rate");
+            }
+            for (int i = 0; i < floors.length; i++) {
+                if (i > 0 && floors[i] <= floors[i - 1]) {
+                    throw new IllegalArgumentException("Interest bands must be in ascending order of balance");
+                }
+                if (rates[i] < 0 || rates[i] > MAX_RATE) {
+                    throw new IllegalArgumentException("Interest rates must be between 0 and 100 percent");
+                }
+            }
+            if (fee < 0) {
+                throw new IllegalArgumentException("Fee cannot be negative");
+            }
+            this.floors = floors.clone();
+            this.rates = rates.clone();
+            this.fee = fee;
+            this.feeWaivedFrom = feeWaivedFrom;
+        }
+        
+        /**
+         * Returns the annual rate in parts per million that applies to a
+         * balance: that of the highest band it reaches, or 0 below them all
+         */
+        public int rateFor(long balance) {
+            int rate = 0;
+            for (int i = 0; i < floors.length && balance >= floors[i]; i++) {
+                rate = rates[i];
+            }
+            return rate;
+        }
+        
+        /**
+         * Returns one day's interest on a balance in cents, rounded down
+         */
+        public long interest(long balance, int daysPerYear) {
+            if (balance <= 0) {
+                return Money.ZERO;
+            }
+            long rate = rateFor(balance);
+            long divisor = (long) MAX_RATE * daysPerYear;
+            // Split the balance so balance * rate cannot overflow
+            return balance / divisor * rate + balance % divisor * rate / divisor;
+        }
+        
+        /**
+         * Returns the fee charged on a balance in cents, which is zero once
+         * the balance reaches the waiver
+         */
+        public long fee(long balance) {
+            return balance >= feeWaivedFrom ? Money.ZERO : fee;
+        }
+    }
+    
+    private final int daysPerYear;
+    private final Table defaultTable;
+    private final Map<String, Table> tiers;
+    
+    /**
+     * @param daysPerYear Days a year's interest is spread over
+     * @param defaultTable Table for tiers without their own
+     * @param tiers Tables by tier name
+     */
+    public AccrualRates(int daysPerYear, Table defaultTable, Map<String, Table> tiers) {
+        if (daysPerYear < 1 || daysPerYear > 366) {
+            throw new IllegalArgumentException("Days per year must be between 1 and 366");
+        }
+        this.daysPerYear = daysPerYear;
+        this.defaultTable = defaultTable;
+        this.tiers = Map.copyOf(tiers);
+    }
+    
+    public int getDaysPerYear() {
+        return daysPerYear;
+    }
+    
+    /**
+     * Returns the table of a limit tier
+     */
+    public Table tableFor(LimitRules.Tier tier) {
+        return tiers.getOrDefault(tier.getName(), defaultTable);
+    }
+    
+    /**
+     * Reads rates from a properties file in the format described above
+     * @throws IllegalArgumentException if the rates are malformed
+     */
+    public static AccrualRates load(Path file) throws IOException {
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        }
+        return parse(properties);
+    }
+    
+    /**
+     * Builds rates from properties in the format described above
+     * @throws IllegalArgumentException if the rates are malformed
+     */
+    public static AccrualRates parse(Properties properties) {
+        int daysPerYear = DEFAULT_DAYS_PER_YEAR;
+        String days = properties.getProperty("days.per.year");
+        if (days != null && !days.isBlank()) {
+            try {
+                daysPerYear = Integer.parseInt(days.trim());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid days.per.year: " + days);
+            }
+        }
+        Map<String, Table> tiers = new HashMap<>();
+        for (String key : properties.stringPropertyNames()) {
+            if (key.startsWith("tier.")) {
+                int end = key.indexOf('.', "tier.".length());
+                if (end < 0) {
+                    throw new IllegalArgumentException("Invalid rate key " + key);
+                }
+                String name = key.substring("tier.".length(), end);
+                if (!tiers.containsKey(name)) {
+                    tiers.put(name, table(properties, "tier." + name + "."));
+                }
+            }
+        }
+        return new AccrualRates(daysPerYear, table(properties, "default."), tiers);
+    }
+    
+    private static Table table(Properties properties, String prefix) {
+        String bands = properties.getProperty(prefix + "interest");
+        long[] floors = {0L};
+        int[] rates = {0};
+        if (bands != null && !bands.isBlank()) {
+            String[] parts = bands.split(",");
+            floors = new long[parts.length];
+            rates = new int[parts.length];
+            for (int i = 0; i < parts.length; i++) {
+                int colon = parts[i].indexOf(':');
+                if (colon < 0) {
+                    throw new IllegalArgumentException("Invalid interest band for " + prefix + "interest: " + parts[i]);
+                }
+                floors[i] = amount(prefix + "interest", parts[i].substring(0, colon));
+                rates[i] = rate(prefix + "interest", parts[i].substring(colon + 1));
+            }
+        }
+        String fee = properties.getProperty(prefix + "fee");
+        String waiver = properties.getProperty(prefix + "fee.waiveAbove");
+        return new Table(floors, rates,
+            fee == null || fee.isBlank() ? Money.ZERO : amount(prefix + "fee", fee),
+            waiver == null || waiver.isBlank() ? LimitRules.NO_LIMIT : amount(prefix + "fee.waiveAbove", waiver));
+    }
+    
+    private static long amount(String key, String value) {
+        try {
+            return Money.parse(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid amount for " + key + ": " + value);
+        }
+    }
+    
+    /**
+     * Converts a percentage with at most four decimals to parts per million
+     */
+    private static int rate(String key, String value) {
+        try {
+            return new BigDecimal(value.trim()).movePointRight(4).intValueExact();
+        } catch (ArithmeticException | NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid rate for " + key + ": " + value);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,1013 @@
+package com.obcodes.bankaccountmanagementsystem;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Posting engine that ties the account registry to the optional journal.
+ *
+ * Every posting goes through here: the account locks are held while the
+ * posting is applied and its journal record is appended, so the journal
+ * replays in exactly the order postings happened. The caller then waits for
+ * the group commit outside the locks, and only afterwards is the outcome
+ * reported to the listener.
+ *
+ * With a snapshot file, startup loads the last snapshot and replays only the
+ * journal written after it. Every account remembers the sequence number of
+ * the last record applied to it, which lets replay skip postings a snapshot
+ * already contains.
+ * @author Obakeng Phale
+ */
+public class Bank implements AutoCloseable {
+    // A 40-bit account number and a ledger index share one sort key
+    private static final int INDEX_BITS = 23;
+    private static final int INDEX_MASK = (1 << INDEX_BITS) - 1;
+    
+    private final AccountRegistry accounts;
+    private final TransactionJournal journal;
+    private final Path snapshotFile;
+    private final HistoryArchive historyArchive;
+    // Transfers stamped before this time may have only one leg in the histories
+    private final long historyHorizon;
+    private final BankAggregates aggregates = new BankAggregates();
+    private final AccountNameIndex nameIndex = new AccountNameIndex();
+    private final TimeIndex timeIndex = new TimeIndex();
+    private final IdempotencyCache requestKeys = new IdempotencyCache();
+    private final BankMetrics metrics = new BankMetrics();
+    private ScheduledExecutorService snapshotScheduler;
+    // -1 while a ShardedPostingEngine runs, otherwise the number of
+    // snapshots, accrual runs and reconciliations under way; those rely on
+    // account locks that shard writers do not take
+    private final AtomicInteger lockedWork = new AtomicInteger();
+    
+    /**
+     * Creates an in-memory bank with no persistence
+     */
+    public Bank() {
+        this.accounts = new AccountRegistry();
+        this.journal = null;
+        this.snapshotFile = null;
+        this.historyArchive = null;
+        this.historyHorizon = 0L;
+    }
+    
+    /**
+     * Creates a bank backed by a journal, rebuilding every account, balance
+     * and transaction history by replaying it
+     */
+    public Bank(TransactionJournal journal) throws IOException {
+        this(journal, null, null);
+    }
+    
+    /**
+     * Creates a bank backed by a journal and a snapshot file. Accounts are
+     * loaded from the snapshot and only the journal tail after it is
+     * replayed; history from before the snapshot is summarised as each
+     * account's balance brought forward. If the snapshot is missing or
+     * unreadable the whole journal is replayed instead.
+     */
+    public Bank(TransactionJournal journal, Path snapshotFile) throws IOException {
+        this(journal, snapshotFile, null);
+    }
+    
+    /**
+     * Creates a bank whose histories keep only their newest postings on the
+     * heap and move older ones to an archive, from the first replayed
+     * posting on, so neither replay nor later postings hold the whole
+     * history in memory
+     * @param journal Journal to replay and append to, or null for an
+     *        in-memory bank
+     * @param snapshotFile Snapshot to start from, or null to replay the
+     *        whole journal
+     * @param historyArchive Archive for older postings, or null to keep
+     *        every posting on the heap; closed with the bank
+     */
+    public Bank(TransactionJournal journal, Path snapshotFile, HistoryArchive historyArchive) throws IOException {
+        if (journal == null && snapshotFile != null) {
+            throw new IllegalArgumentException("Snapshots need a journal");
+        }
+        this.journal = journal;
+        this.snapshotFile = snapshotFile;
+        this.historyArchive = historyArchive;
+        if (historyArchive != null) {
+            historyArchive.resolveNamesWith(this::holderNameOf);
+        }
+        
+        AccountRegistry restored = new AccountRegistry();
+        AccountSnapshot snapshot = null;
+        if (snapshotFile != null) {
+            try {
+                snapshot = AccountSnapshot.read(snapshotFile, restored);
+            } catch (IOException e) {
+                System.out.println("[WARNING] Ignoring unreadable snapshot: " + e.getMessage());
+            }
+        }
+        if (snapshot == null) {
+            this.accounts = new AccountRegistry();
+            if (journal != null) {
+                journal.replay(this::applyJournalEntry);
+            }
+        } else {
+            this.accounts = restored;
+            for (Account account : restored) {
+                adopt(account);
+            }
+            journal.replay(this::applyJournalEntry, snapshot.getCheckpoint());
+        }
+        // Replay reserved every journaled ID, so any ID drawn from here on is
+        // later than all of them
+        this.historyHorizon = snapshot == null ? 0L
+            : IdGenerator.timestampOf(IdGenerator.DEFAULT.nextTransactionId()) + 1;
+        aggregates.recompute(accounts);
+        nameIndex.rebuild(accounts);
+    }
+    
+    /**
+     * Returns an account's current holder name, for archived transfers
+     * @return null if there is no such account
+     */
+    private String holderNameOf(long accountNumber) {
+        AccountRegistry registry = accounts;
+        Account account = registry == null ? null : registry.get(accountNumber);
+        return account == null ? null : account.getHolderName();
+    }
+    
+    /**
+     * Attaches the time index and any history archive to an account joining
+     * the bank, before anyone else can post to it
+     */
+    private void adopt(Account account) {
+        account.attachTimeIndex(timeIndex);
+        if (historyArchive != null) {
+            account.attachHistoryArchive(historyArchive);
+        }
+    }
+    
+    /**
+     * Applies one replayed journal record. Records an account has already
+     * seen (because the snapshot captured it) are skipped by the account.
+     */
+    private void applyJournalEntry(TransactionJournal.Entry entry) {
+        if (entry.type == TransactionJournal.OPEN) {
+            if (!accounts.contains(entry.account)) {
+                Account account = Account.recoverOpened(entry.account, entry.name, entry.amount,
+                    entry.timestamp, transactionIdOf(entry), entry.sequence);
+                adopt(account);
+                accounts.add(account);
+            }
+            return;
+        }
+        Account account = requireAccount(entry.account, entry);
+        long transactionId = transactionIdOf(entry);
+        switch (entry.type) {
+            case TransactionJournal.DEPOSIT:
+                account.recoverDeposit(entry.amount, entry.timestamp, transactionId, entry.sequence);
+                break;
+            case TransactionJournal.WITHDRAWAL:
+                account.recoverWithdrawal(entry.amount, entry.timestamp, transactionId, entry.sequence);
+                break;
+            case TransactionJournal.TRANSFER:
+                Account recipient = requireAccount(entry.counterparty, entry);
+                account.recoverTransferOut(recipient, entry.amount, entry.timestamp, transactionId, entry.sequence);
+                recipient.recoverTransferIn(account, entry.amount, entry.timestamp, transactionId, entry.sequence);
+                break;
+            case TransactionJournal.RENAME:
+                account.recoverHolderName(entry.name, entry.timestamp, transactionId, entry.sequence);
+                break;
+            case TransactionJournal.INTEREST:
+                account.recoverAccrual(TransactionType.INTEREST, entry.amount, (int) entry.counterparty,
+                    entry.timestamp, transactionId, entry.sequence);
+                break;
+            case TransactionJournal.FEE:
+                account.recoverAccrual(TransactionType.FEE, entry.amount, (int) entry.counterparty,
+                    entry.timestamp, transactionId, entry.sequence);
+                break;
+            default:
+                throw new IllegalStateException("Unknown journal record type " + entry.type);
+        }
+    }
+    
+    /**
+     * Returns the transaction ID a replayed record was posted under, keeping
+     * new IDs ahead of it, or a new ID for a record journaled without one
+     */
+    private static long transactionIdOf(TransactionJournal.Entry entry) {
+        if (entry.transactionId == 0L) {
+            return IdGenerator.DEFAULT.nextTransactionId();
+        }
+        IdGenerator.DEFAULT.reserveTransactionId(entry.transactionId);
+        return entry.transactionId;
+    }
+    
+    private Account requireAccount(long accountNumber, TransactionJournal.Entry entry) {
+        Account account = accounts.get(accountNumber);
+        if (account == null) {
+            throw new IllegalStateException("Journal record " + entry.sequence
+                + " refers to unknown account " + accountNumber);
+        }
+        return account;
+    }
+    
+    /**
+     * Returns the snapshot file, or null if the bank does not take snapshots
+     */
+    public Path getSnapshotFile() {
+        return snapshotFile;
+    }
+    
+    /**
+     * Returns the time (epoch millis) from which every transfer has both
+     * legs in the account histories, going by when its transaction ID was
+     * drawn. A snapshot summarises older postings as each account's balance
+     * brought forward, so after a restart from one a transfer may survive in
+     * one history but not the other. Zero when the histories are complete.
+     */
+    long getHistoryHorizon() {
+        return historyHorizon;
+    }
+    
+    /**
+     * Registers a starting ShardedPostingEngine
+     * @throws IllegalStateException if an engine is already running, or a
+     *         snapshot, accrual run or reconciliation is under way
+     */
+    void engineStarted() {
+        if (!lockedWork.compareAndSet(0, -1)) {
+            throw new IllegalStateException(lockedWork.get() < 0 ? "A posting engine is already running"
+                : "Cannot start a posting engine during a snapshot, accrual run or reconciliation");
+        }
+    }
+    
+    /**
+     * Registers that the running ShardedPostingEngine has stopped
+     */
+    void engineStopped() {
+        lockedWork.set(0);
+    }
+    
+    /**
+     * Marks the start of work that relies on account locks; pair with
+     * endLockedWork
+     * @param what The work, for the exception message, e.g. "write a snapshot"
+     * @throws IllegalStateException while a ShardedPostingEngine is running
+     */
+    void beginLockedWork(String what) {
+        while (true) {
+            int work = lockedWork.get();
+            if (work < 0) {
+                throw new IllegalStateException("Cannot " + what + " while a posting engine is running");
+            }
+            if (lockedWork.compareAndSet(work, work + 1)) {
+                return;
+            }
+        }
+    }
+    
+    void endLockedWork() {
+        lockedWork.decrementAndGet();
+    }
+    
+    /**
+     * Returns the bank-wide totals, maintained as postings happen
+     */
+    public BankAggregates getAggregates() {
+        return aggregates;
+    }
+    
+    /**
+     * Returns the holder name index used for account search
+     */
+    public AccountNameIndex getNameIndex() {
+        return nameIndex;
+    }
+    
+    /**
+     * Returns the archive of older postings, or null if every posting is
+     * kept on the heap
+     */
+    public HistoryArchive getHistoryArchive() {
+        return historyArchive;
+    }
+    
+    /**
+     * Returns the index of which accounts posted when
+     */
+    public TimeIndex getTimeIndex() {
+        return timeIndex;
+    }
+    
+    /**
+     * Returns the accounts with postings stamped from one time (inclusive)
+     * to another (exclusive), both epoch millis, by account number
+     */
+    public List<Account> accountsPostedBetween(long fromTimestamp, long toTimestamp) {
+        long[] numbers = accountsToSearch(fromTimestamp, toTimestamp);
+        List<Account> found = new ArrayList<>(numbers.length);
+        for (long number : numbers) {
+            Account account = accounts.get(number);
+            if (account != null && !account.getHistory().between(fromTimestamp, toTimestamp).isEmpty()) {
+                found.add(account);
+            }
+        }
+        return found;
+    }
+    
+    /**
+     * Returns the accounts that may have postings in a range, by account
+     * number: those the time index lists, or every account if the range
+     * starts before the minutes the index still covers
+     */
+    private long[] accountsToSearch(long fromTimestamp, long toTimestamp) {
+        if (fromTimestamp >= timeIndex.getCoveredFrom()) {
+            return timeIndex.accountsBetween(fromTimestamp, toTimestamp);
+        }
+        long[] numbers = new long[accounts.size()];
+        int count = 0;
+        for (Account account : accounts) {
+            if (count == numbers.length) {
+                numbers = Arrays.copyOf(numbers, Math.max(16, count << 1));
+            }
+            numbers[count++] = account.getAccountNumber();
+        }
+        Arrays.sort(numbers, 0, count);
+        return count == numbers.length ? numbers : Arrays.copyOf(numbers, count);
+    }
+    
+    /**
+     * Returns every posting stamped from one time (inclusive) to another
+     * (exclusive), both epoch millis, as one view per account with postings
+     * in the range, by account number. Only accounts the time index lists
+     * for the range are read, unless the range starts before the index's
+     * coverage.
+     */
+    public List<TransactionHistory.View> postingsBetween(long fromTimestamp, long toTimestamp) {
+        long[] numbers = accountsToSearch(fromTimestamp, toTimestamp);
+        List<TransactionHistory.View> views = new ArrayList<>(numbers.length);
+        for (long number : numbers) {
+            Account account = accounts.get(number);
+            if (account != null) {
+                TransactionHistory.View view = account.getHistory().between(fromTimestamp, toTimestamp);
+                if (!view.isEmpty()) {
+                    views.add(view);
+                }
+            }
+        }
+        return views;
+    }
+    
+    /**
+     * Returns the operation counters and latency histograms
+     */
+    public BankMetrics getMetrics() {
+        return metrics;
+    }
+    
+    /**
+     * Returns the cache of request keys used by the keyed posting methods
+     */
+    public IdempotencyCache getRequestKeys() {
+        return requestKeys;
+    }
+    
+    /**
+     * Returns the journal, or null for an in-memory bank
+     */
+    TransactionJournal getJournal() {
+        return journal;
+    }
+    
+    public AccountRegistry getAccounts() {
+        return accounts;
+    }
+    
+    /**
+     * Looks up an account by number
+     * @return Account if found, null otherwise
+     */
+    public Account findAccount(long accountNumber) {
+        long start = System.nanoTime();
+        Account account = accounts.get(accountNumber);
+        metrics.record(BankMetrics.Operation.LOOKUP,
+            account == null ? PostingStatus.ACCOUNT_NOT_FOUND : PostingStatus.SUCCESS, start);
+        return account;
+    }
+    
+    /**
+     * Opens and registers a new account, retrying if the generated account
+     * number is already taken
+     * @param initialDeposit Opening balance in cents, or zero for none
+     * @throws PostingRejectedException if the deposit is negative or above
+     *         the new account's deposit limit
+     */
+    public Account openAccount(String holderName, long initialDeposit) {
+        long start = System.nanoTime();
+        PostingStatus status = initialDeposit < 0 ? PostingStatus.INVALID_AMOUNT : PostingStatus.SUCCESS;
+        try {
+            while (status.isSuccess()) {
+                Account account = new Account(holderName, initialDeposit);
+                // The limit is that of the tier the drawn number falls in
+                status = Account.checkOpeningDeposit(account, initialDeposit);
+                if (status.isSuccess()) {
+                    long sequence = register(account);
+                    if (sequence >= 0) {
+                        awaitDurable(sequence);
+                        metrics.record(BankMetrics.Operation.OPEN, PostingStatus.SUCCESS, start);
+                        return account;
+                    }
+                }
+            }
+        } catch (RuntimeException | Error e) {
+            metrics.recordError(BankMetrics.Operation.OPEN, start);
+            throw e;
+        }
+        metrics.record(BankMetrics.Operation.OPEN, status, start);
+        throw new PostingRejectedException(status);
+    }
+    
+    /**
+     * Opens an account under a number chosen by the caller, e.g. one carried
+     * over from another system
+     * @param initialDeposit Opening balance in cents, or zero for none
+     * @return the new account, or null if the number is already taken
+     * @throws PostingRejectedException if the deposit is negative or above
+     *         the account's deposit limit
+     */
+    public Account openAccount(long accountNumber, String holderName, long initialDeposit) {
+        long start = System.nanoTime();
+        PostingStatus status = initialDeposit < 0 ? PostingStatus.INVALID_AMOUNT : PostingStatus.SUCCESS;
+        long sequence = -1;
+        Account account = null;
+        try {
+            if (status.isSuccess()) {
+                account = Account.withNumber(accountNumber, holderName, initialDeposit);
+                status = Account.checkOpeningDeposit(account, initialDeposit);
+            }
+            if (status.isSuccess()) {
+                sequence = register(account);
+                if (sequence >= 0) {
+                    awaitDurable(sequence);
+                }
+            }
+        } catch (RuntimeException | Error e) {
+            metrics.recordError(BankMetrics.Operation.OPEN, start);
+            throw e;
+        }
+        if (!status.isSuccess()) {
+            metrics.record(BankMetrics.Operation.OPEN, status, start);
+            throw new PostingRejectedException(status);
+        }
+        if (sequence < 0) {
+            // No PostingStatus names a taken number, so it is not counted
+            return null;
+        }
+        metrics.record(BankMetrics.Operation.OPEN, PostingStatus.SUCCESS, start);
+        return account;
+    }
+    
+    /**
+     * Registers, indexes and journals a new account without waiting for its
+     * OPEN record to become durable, so bulk callers can wait once for many
+     * @return the journal sequence number (0 without a journal), or -1 if
+     *         the account number is already taken
+     */
+    long register(Account account) {
+        // Read before the account is visible to other threads
+        long openingBalance = account.getBalance();
+        TransactionHistory.View history = account.getHistory();
+        long openedAt = history.isEmpty() ? System.currentTimeMillis() : history.timestampAt(0);
+        long transactionId = history.isEmpty() ? 0L : history.transactionIdAt(0);
+        long sequence = 0;
+        // Hold the new account's lock until it is journaled, so no other
+        // thread can post to it before its OPEN record exists
+        account.getLock().lock();
+        try {
+            if (!accounts.add(account)) {
+                return -1;
+            }
+            nameIndex.add(account);
+            adopt(account);
+            if (journal != null) {
+                sequence = journal.appendOpen(account.getAccountNumber(), account.getHolderName(),
+                    openingBalance, openedAt, transactionId);
+                account.setLastSequence(sequence);
+            }
+        } finally {
+            account.getLock().unlock();
+        }
+        aggregates.accountOpened(openingBalance);
+        return sequence;
+    }
+    
+    /**
+     * Changes an account holder's name
+     */
+    public void renameAccount(Account account, String holderName) {
+        long sequence = 0;
+        account.getLock().lock();
+        try {
+            long timestamp = System.currentTimeMillis();
+            long transactionId = IdGenerator.DEFAULT.nextTransactionId();
+            account.rename(holderName, timestamp, transactionId);
+            // Under the account lock, so renames of one account reach the
+            // index in the order they happened
+            nameIndex.rename(account, account.getHolderName());
+            if (journal != null) {
+                sequence = journal.appendRename(account.getAccountNumber(), account.getHolderName(), timestamp,
+                    transactionId);
+                account.setLastSequence(sequence);
+            }
+        } finally {
+            account.getLock().unlock();
+        }
+        aggregates.recorded(TransactionType.UNKNOWN);
+        awaitDurable(sequence);
+    }
+    
+    public PostingStatus deposit(long accountNumber, long amount) {
+        Account account = accounts.get(accountNumber);
+        if (account == null) {
+            metrics.count(BankMetrics.Operation.DEPOSIT, PostingStatus.ACCOUNT_NOT_FOUND);
+            return PostingStatus.ACCOUNT_NOT_FOUND;
+        }
+        return deposit(account, amount, PostingListener.NONE);
+    }
+    
+    /**
+     * Deposits at most once per request key: a retry with the same key
+     * returns the first attempt's outcome instead of posting again
+     * @param requestKey Client-supplied key, or null to post unconditionally
+     */
+    public PostingStatus deposit(String requestKey, long accountNumber, long amount) {
+        if (requestKey == null) {
+            return deposit(accountNumber, amount);
+        }
+        return requestKeys.execute(requestKey,
+            IdempotencyCache.fingerprint(TransactionJournal.DEPOSIT, accountNumber, 0, amount),
+            () -> deposit(accountNumber, amount));
+    }
+    
+    /**
+     * Deposits into an account and journals it
+     * @param amount Amount in cents
+     */
+    public PostingStatus deposit(Account account, long amount, PostingListener listener) {
+        long start = System.nanoTime();
+        PostingStatus status;
+        long balance;
+        long sequence = 0;
+        try {
+            status = Account.checkDeposit(account.getLimits(), amount);
+            account.getLock().lock();
+            try {
+                if (status.isSuccess()) {
+                    // One timestamp and ID for the history and the journal,
+                    // so replay recreates the posting exactly
+                    long timestamp = System.currentTimeMillis();
+                    long transactionId = IdGenerator.DEFAULT.nextTransactionId();
+                    account.applyDeposit(amount, timestamp, transactionId);
+                    if (journal != null) {
+                        sequence = journal.appendDeposit(account.getAccountNumber(), amount, timestamp,
+                            transactionId);
+                        account.setLastSequence(sequence);
+                    }
+                }
+                balance = account.getBalance();
+            } finally {
+                account.getLock().unlock();
+            }
+            if (status.isSuccess()) {
+                aggregates.deposited(amount);
+            }
+            awaitDurable(sequence);
+        } catch (RuntimeException | Error e) {
+            metrics.recordError(BankMetrics.Operation.DEPOSIT, start);
+            throw e;
+        }
+        metrics.record(BankMetrics.Operation.DEPOSIT, status, start);
+        listener.onDeposit(account, amount, balance, status);
+        return status;
+    }
+    
+    public PostingStatus withdraw(long accountNumber, long amount) {
+        Account account = accounts.get(accountNumber);
+        if (account == null) {
+            metrics.count(BankMetrics.Operation.WITHDRAW, PostingStatus.ACCOUNT_NOT_FOUND);
+            return PostingStatus.ACCOUNT_NOT_FOUND;
+        }
+        return withdraw(account, amount, PostingListener.NONE);
+    }
+    
+    /**
+     * Withdraws at most once per request key
+     * @param requestKey Client-supplied key, or null to post unconditionally
+     */
+    public PostingStatus withdraw(String requestKey, long accountNumber, long amount) {
+        if (requestKey == null) {
+            return withdraw(accountNumber, amount);
+        }
+        return requestKeys.execute(requestKey,
+            IdempotencyCache.fingerprint(TransactionJournal.WITHDRAWAL, accountNumber, 0, amount),
+            () -> withdraw(accountNumber, amount));
+    }
+    
+    /**
+     * Withdraws from an account and journals it
+     * @param amount Amount in cents
+     */
+    public PostingStatus withdraw(Account account, long amount, PostingListener listener) {
+        long start = System.nanoTime();
+        PostingStatus status;
+        long balance;
+        long sequence = 0;
+        try {
+            // One read of the tier for the check and the apply, so the
+            // posting is held to one set of rules across a reload
+            LimitRules.Tier limits = account.getLimits();
+            status = Account.checkWithdrawal(limits, amount);
+            account.getLock().lock();
+            try {
+                if (status.isSuccess()) {
+                    long timestamp = System.currentTimeMillis();
+                    long transactionId = IdGenerator.DEFAULT.nextTransactionId();
+                    status = account.applyWithdrawal(limits, amount, timestamp, transactionId);
+                    if (status.isSuccess() && journal != null) {
+                        sequence = journal.appendWithdrawal(account.getAccountNumber(), amount, timestamp,
+                            transactionId);
+                        account.setLastSequence(sequence);
+                    }
+                }
+                balance = account.getBalance();
+            } finally {
+                account.getLock().unlock();
+            }
+            if (status.isSuccess()) {
+                aggregates.withdrawn(amount);
+            }
+            awaitDurable(sequence);
+        } catch (RuntimeException | Error e) {
+            metrics.recordError(BankMetrics.Operation.WITHDRAW, start);
+            throw e;
+        }
+        metrics.record(BankMetrics.Operation.WITHDRAW, status, start);
+        listener.onWithdrawal(account, amount, balance, status);
+        return status;
+    }
+    
+    public PostingStatus transfer(long senderNumber, long recipientNumber, long amount) {
+        Account sender = accounts.get(senderNumber);
+        if (sender == null) {
+            metrics.count(BankMetrics.Operation.TRANSFER, PostingStatus.ACCOUNT_NOT_FOUND);
+            return PostingStatus.ACCOUNT_NOT_FOUND;
+        }
+        return transfer(sender, accounts.get(recipientNumber), amount, PostingListener.NONE);
+    }
+    
+    /**
+     * Transfers at most once per request key
+     * @param requestKey Client-supplied key, or null to post unconditionally
+     */
+    public PostingStatus transfer(String requestKey, long senderNumber, long recipientNumber, long amount) {
+        if (requestKey == null) {
+            return transfer(senderNumber, recipientNumber, amount);
+        }
+        return requestKeys.execute(requestKey,
+            IdempotencyCache.fingerprint(TransactionJournal.TRANSFER, senderNumber, recipientNumber, amount),
+            () -> transfer(senderNumber, recipientNumber, amount));
+    }
+    
+    /**
+     * Transfers between two accounts and journals it as a single record
+     * @param recipient Recipient account, or null if it does not exist
+     * @param amount Amount in cents
+     */
+    public PostingStatus transfer(Account sender, Account recipient, long amount, PostingListener listener) {
+        long start = System.nanoTime();
+        if (recipient == null || recipient == sender) {
+            // Rejected before any lock is needed
+            PostingStatus status = Account.checkTransfer(sender, recipient, sender.getLimits(), amount);
+            metrics.record(BankMetrics.Operation.TRANSFER, status, start);
+            listener.onTransfer(sender, recipient, amount, sender.getBalance(),
+                recipient == null ? Money.ZERO : recipient.getBalance(), status);
+            return status;
+        }
+        PostingStatus status;
+        long senderBalance;
+        long recipientBalance;
+        long sequence = 0;
+        try {
+            LimitRules.Tier limits = sender.getLimits();
+            status = Account.checkTransfer(sender, recipient, limits, amount);
+            Account.lockBoth(sender, recipient);
+            try {
+                if (status.isSuccess()) {
+                    long timestamp = System.currentTimeMillis();
+                    long transactionId = IdGenerator.DEFAULT.nextTransactionId();
+                    status = sender.applyTransfer(limits, recipient, amount, timestamp, transactionId);
+                    if (status.isSuccess() && journal != null) {
+                        sequence = journal.appendTransfer(sender.getAccountNumber(), recipient.getAccountNumber(),
+                            amount, timestamp, transactionId);
+                        sender.setLastSequence(sequence);
+                        recipient.setLastSequence(sequence);
+                    }
+                }
+                senderBalance = sender.getBalance();
+                recipientBalance = recipient.getBalance();
+            } finally {
+                Account.unlockBoth(sender, recipient);
+            }
+            if (status.isSuccess()) {
+                aggregates.transferred();
+            }
+            awaitDurable(sequence);
+        } catch (RuntimeException | Error e) {
+            metrics.recordError(BankMetrics.Operation.TRANSFER, start);
+            throw e;
+        }
+        metrics.record(BankMetrics.Operation.TRANSFER, status, start);
+        listener.onTransfer(sender, recipient, amount, senderBalance, recipientBalance, status);
+        return status;
+    }
+    
+    /**
+     * Posts a batch of deposits, withdrawals and transfers.
+     *
+     * Limits and accounts are checked for every entry first, without any
+     * lock. Every account the remaining entries touch is then locked once,
+     * in account number order, and the entries are applied in batch order
+     * against running balances, so an entry sees the effect of the ones
+     * before it. Each account then appends its postings to its history in
+     * one go. The locks are held until the whole batch is journaled, and
+     * the caller waits for a single group commit at the end.
+     *
+     * Other postings to the batch's accounts wait while it is applied, so
+     * very large runs should be split into batches of a few thousand.
+     * @return one status per entry, in batch order
+     */
+    public PostingStatus[] post(PostingBatch batch) {
+        long start = System.nanoTime();
+        try {
+            PostingStatus[] results = postBatch(batch);
+            metrics.record(BankMetrics.Operation.BATCH, PostingStatus.SUCCESS, start);
+            for (int i = 0; i < results.length; i++) {
+                byte type = batch.type(i);
+                metrics.count(type == TransactionJournal.DEPOSIT ? BankMetrics.Operation.DEPOSIT
+                    : type == TransactionJournal.WITHDRAWAL ? BankMetrics.Operation.WITHDRAW
+                    : BankMetrics.Operation.TRANSFER, results[i]);
+            }
+            return results;
+        } catch (RuntimeException | Error e) {
+            metrics.recordError(BankMetrics.Operation.BATCH, start);
+            throw e;
+        }
+    }
+    
+    private PostingStatus[] postBatch(PostingBatch batch) {
+        int size = batch.size();
+        PostingStatus[] results = new PostingStatus[size];
+        PostingBatch.Ledger[] from = new PostingBatch.Ledger[size];
+        PostingBatch.Ledger[] to = new PostingBatch.Ledger[size];
+        HashMap<Account, PostingBatch.Ledger> ledgers = new HashMap<>(Math.min(size, 1 << 20) * 2);
+        
+        // Validation pass: resolve accounts and check limits, no locks yet
+        for (int i = 0; i < size; i++) {
+            Account account = accounts.get(batch.account(i));
+            Account recipient = null;
+            long amount = batch.amount(i);
+            if (account == null) {
+                results[i] = PostingStatus.ACCOUNT_NOT_FOUND;
+                continue;
+            }
+            // The ledger reads the account's tier once, and every entry is
+            // checked and staged against it
+            PostingBatch.Ledger ledger = ledgers.computeIfAbsent(account, PostingBatch.Ledger::new);
+            PostingStatus status;
+            if (batch.type(i) == TransactionJournal.DEPOSIT) {
+                status = Account.checkDeposit(ledger.limits, amount);
+            } else if (batch.type(i) == TransactionJournal.WITHDRAWAL) {
+                status = Account.checkWithdrawal(ledger.limits, amount);
+            } else {
+                recipient = accounts.get(batch.counterparty(i));
+                status = Account.checkTransfer(account, recipient, ledger.limits, amount);
+            }
+            if (!status.isSuccess()) {
+                results[i] = status;
+                continue;
+            }
+            from[i] = ledger;
+            if (recipient != null) {
+                to[i] = ledgers.computeIfAbsent(recipient, PostingBatch.Ledger::new);
+            }
+        }
+        
+        PostingBatch.Ledger[] locked = sortByAccountNumber(ledgers.values().toArray(new PostingBatch.Ledger[0]));
+        long timestamp = 0;
+        long[] transactionIds = new long[size];
+        long balanceChange = 0;
+        long deposits = 0;
+        long withdrawals = 0;
+        long transfers = 0;
+        long sequence = 0;
+        int held = 0;
+        try {
+            // Same order as lockBoth, so batches and transfers cannot deadlock
+            while (held < locked.length) {
+                locked[held].account.getLock().lock();
+                held++;
+            }
+            // Stamped and numbered under the locks, as lockBoth transfers are,
+            // so a reconciliation cut-off never sees one leg without the other
+            timestamp = System.currentTimeMillis();
+            // One compare-and-set claims an ID for every entry
+            IdGenerator.DEFAULT.nextTransactionIds(transactionIds, 0, size);
+            for (PostingBatch.Ledger ledger : locked) {
+                ledger.balance = ledger.account.getBalance();
+            }
+            
+            // Stage every posting before applying any, so a failure part way
+            // through leaves every account untouched
+            for (int i = 0; i < size; i++) {
+                if (results[i] != null) {
+                    continue;
+                }
+                PostingBatch.Ledger debit = from[i];
+                long amount = batch.amount(i);
+                byte type = batch.type(i);
+                if (type == TransactionJournal.DEPOSIT) {
+                    debit.balance = Money.add(debit.balance, amount);
+                    debit.add(TransactionType.DEPOSIT, amount, null, transactionIds[i]);
+                    balanceChange = Money.add(balanceChange, amount);
+                    deposits++;
+                } else if (!debit.limits.covers(debit.balance, amount)) {
+                    results[i] = PostingStatus.INSUFFICIENT_FUNDS;
+                    continue;
+                } else if (type == TransactionJournal.WITHDRAWAL) {
+                    if (!debit.account.withinDailyWithdrawals(debit.limits, debit.withdrawn + amount, timestamp)) {
+                        results[i] = PostingStatus.VELOCITY_LIMIT;
+                        continue;
+                    }
+                    debit.withdrawn += amount;
+                    debit.balance = Money.subtract(debit.balance, amount);
+                    debit.add(TransactionType.WITHDRAWAL, amount, null, transactionIds[i]);
+                    balanceChange = Money.subtract(balanceChange, amount);
+                    withdrawals++;
+                } else if (!debit.account.withinHourlyTransfers(debit.limits, debit.transfersOut + 1, timestamp)) {
+                    results[i] = PostingStatus.VELOCITY_LIMIT;
+                    continue;
+                } else {
+                    PostingBatch.Ledger credit = to[i];
+                    debit.transfersOut++;
+                    debit.balance = Money.subtract(debit.balance, amount);
+                    credit.balance = Money.add(credit.balance, amount);
+                    debit.add(TransactionType.TRANSFER_OUT, amount, credit.account, transactionIds[i]);
+                    credit.add(TransactionType.TRANSFER_IN, amount, debit.account, transactionIds[i]);
+                    transfers++;
+                }
+                results[i] = PostingStatus.SUCCESS;
+            }
+            
+            for (PostingBatch.Ledger ledger : locked) {
+                ledger.account.applyBatch(ledger, timestamp);
+            }
+            if (journal != null) {
+                long[] sequences = new long[size];
+                sequence = journal.appendBatch(batch, results, timestamp, transactionIds, sequences);
+                for (int i = 0; i < size; i++) {
+                    if (sequences[i] > 0) {
+                        from[i].account.setLastSequence(sequences[i]);
+                        if (to[i] != null) {
+                            to[i].account.setLastSequence(sequences[i]);
+                        }
+                    }
+                }
+            }
+        } finally {
+            for (int i = 0; i < held; i++) {
+                locked[i].account.getLock().unlock();
+            }
+        }
+        aggregates.batchPosted(balanceChange, deposits, withdrawals, transfers);
+        awaitDurable(sequence);
+        return results;
+    }
+    
+    /**
+     * Sorts a batch's ledgers into lock order. Account numbers fit in 40
+     * bits, so each number is packed with its ledger's index into one long
+     * and sorted as primitives, which is much faster than sorting the
+     * ledgers with a comparator.
+     */
+    private static PostingBatch.Ledger[] sortByAccountNumber(PostingBatch.Ledger[] ledgers) {
+        if (ledgers.length > INDEX_MASK) {
+            Arrays.sort(ledgers, Comparator.comparingLong(ledger -> ledger.account.getAccountNumber()));
+            return ledgers;
+        }
+        long[] keys = new long[ledgers.length];
+        for (int i = 0; i < ledgers.length; i++) {
+            keys[i] = (ledgers[i].account.getAccountNumber() << INDEX_BITS) | i;
+        }
+        Arrays.sort(keys);
+        PostingBatch.Ledger[] sorted = new PostingBatch.Ledger[ledgers.length];
+        for (int i = 0; i < keys.length; i++) {
+            sorted[i] = ledgers[(int) (keys[i] & INDEX_MASK)];
+        }
+        return sorted;
+    }
+    
+    /**
+     * Waits until the journal record with this sequence number is durable;
+     * 0 means there is nothing to wait for
+     */
+    void awaitDurable(long sequence) {
+        if (sequence > 0) {
+            journal.awaitDurable(sequence);
+        }
+    }
+    
+    /**
+     * Writes a snapshot of every account. Postings carry on while it is
+     * written; each account is captured under its own lock, and the snapshot
+     * is only moved into place once every posting it contains is durable.
+     * @return the number of accounts written
+     * @throws IllegalStateException while a ShardedPostingEngine is running
+     */
+    public synchronized long writeSnapshot() throws IOException {
+        if (snapshotFile == null) {
+            throw new IllegalStateException("Bank has no snapshot file");
+        }
+        beginLockedWork("write a snapshot");
+        try {
+            // Postings that land after the checkpoint may be captured too, so the
+            // newest one must be durable before the snapshot can be trusted
+            return AccountSnapshot.write(snapshotFile, journal.checkpoint(), accounts, journal::awaitDurable);
+        } finally {
+            endLockedWork();
+        }
+    }
+    
+    /**
+     * Writes a snapshot in the background at a fixed interval, skipping any
+     * that fall while a ShardedPostingEngine is running
+     */
+    public synchronized void startSnapshots(long period, TimeUnit unit) {
+        if (snapshotFile == null) {
+            throw new IllegalStateException("Bank has no snapshot file");
+        }
+        if (snapshotScheduler != null) {
+            throw new IllegalStateException("Snapshots are already scheduled");
+        }
+        snapshotScheduler = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "snapshot-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        snapshotScheduler.scheduleWithFixedDelay(() -> {
+            try {
+                if (lockedWork.get() >= 0) {
+                    writeSnapshot();
+                }
+            } catch (IOException | UncheckedIOException | IllegalStateException e) {
+                System.out.println("[WARNING] Snapshot failed: " + e.getMessage());
+            }
+        }, period, period, unit);
+    }
+    
+    /**
+     * Stops background snapshots, then flushes and closes the journal, if
+     * there is one
+     */
+    @Override
+    public void close() throws IOException {
+        ScheduledExecutorService scheduler;
+        synchronized (this) {
+            scheduler = snapshotScheduler;
+            snapshotScheduler = null;
+        }
+        if (scheduler != null) {
+            scheduler.shutdown();
+            try {
+                scheduler.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        try {
+            if (journal != null) {
+                journal.close();
+            }
+        } finally {
+            if (historyArchive != null) {
+                historyArchive.close();
+            }
+        }
+    }
+}
\ No newline at end of file
@@ -1,8 +1,17 @@
 package com.obcodes.bankaccountmanagementsystem;
 
-import java.util.ArrayList;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
 import java.util.InputMismatchException;
+import java.util.List;
 import java.util.Scanner;
+import java.util.concurrent.TimeUnit;
+import javax.management.JMException;
 
 /**
  * Main banking system application
@@ -10,19 +19,45 @@ import java.util.Scanner;
  * @author Obakeng Phale
  */
 public class BankAccountManagementSystem {
+
+    // How often account snapshots are written while the menu is running
+    private static final long SNAPSHOT_MINUTES = 5;
+    // How often the limit rules file is checked for changes
+    private static final long RULES_CHECK_SECONDS = 5;
+    // Matches shown per page of name search results
+    private static final int SEARCH_PAGE_SIZE = 20;
     
-    private static final ArrayList<Account> accounts = new ArrayList<>();
+    private static Bank bank;
+    private static AccountRegistry accounts;
+    private static AccrualRates rates = AccrualRates.DEFAULT;
     private static final Scanner scanner = new Scanner(System.in);
+    private static final PostingListener console = new ConsolePostingListener();
     
     public static void main(String[] args) {
         displayWelcomeBanner();
-        initializeTestAccounts();
+        // Before the bank opens, so replayed postings count against the right tiers
+        loadRules();
+        loadRates();
+        bank = openBank();
+        registerMetrics();
+        accounts = bank.getAccounts();
+        importFiles();
+        String port = System.getProperty("bank.server.port");
+        if (port != null) {
+            serve(port);
+            return;
+        }
+        if (accounts.isEmpty()) {
+            initializeTestAccounts();
+        } else {
+            System.out.println("[SUCCESS] " + accounts.size() + " accounts loaded");
+        }
         
         boolean running = true;
         while (running) {
             try {
                 Menu.displayMainMenu();
-                int choice = getIntInput("Enter your choice (1-9): ", 1, 9);
+                int choice = getIntInput("Enter your choice (1-11): ", 1, 11);
                 
                 switch (choice) {
                     case 1:
@@ -50,6 +85,12 @@ public class BankAccountManagementSystem {
                         viewTransactionHistory();
                         break;
                     case 9:
+                        runEndOfDay();
+                        break;
+                    case 10:
+                        reconcileLedger();
+                        break;
+                    case 11:
                         exitSystem();
                         running = false;
                         break;
@@ -63,7 +104,7 @@ public class BankAccountManagementSystem {
                         scanner.nextLine(); // Double call to clear buffer
                     }
                 }
-                
+            
             } catch (Exception e) {
                 System.out.println("\n[ERROR] An unexpected error occurred: " + e.getMessage());
                 System.out.println("Please try again.");
@@ -74,6 +115,166 @@ public class BankAccountManagementSystem {
         }
         
         scanner.close();
+        closeBank();
+    }
+    
+    /**
+     * Runs the HTTP front-end instead of the menu until the process is
+     * stopped, then writes a snapshot and closes the journal
+     */
+    private static void serve(String port) {
+        System.out.println("[SUCCESS] " + accounts.size() + " accounts loaded");
+        BankServer server;
+        try {
+            server = new BankServer(bank, new InetSocketAddress(Integer.parseInt(port)));
+        } catch (IOException | IllegalArgumentException e) {
+            System.out.println("[ERROR] Could not listen on port " + port + ": " + e.getMessage());
+            closeBank();
+            return;
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.close();
+            closeBank();
+        }, "bank-shutdown"));
+        server.start();
+        System.out.println("[SUCCESS] Serving on port " + server.getPort());
+    }
+    
+    /**
+     * Writes a final snapshot and closes the journal
+     */
+    private static void closeBank() {
+        try {
+            if (bank.getSnapshotFile() != null) {
+                bank.writeSnapshot();
+            }
+            bank.close();
+        } catch (IOException e) {
+            System.out.println("[ERROR] Could not close the journal: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Loads limit rules from the file named by the bank.rules system
+     * property, if set, and reloads them whenever the file changes
+     */
+    private static void loadRules() {
+        String rulesFile = System.getProperty("bank.rules");
+        if (rulesFile == null) {
+            return;
+        }
+        try {
+            RuleEngine.DEFAULT.watch(Paths.get(rulesFile), RULES_CHECK_SECONDS, TimeUnit.SECONDS);
+            System.out.println("[SUCCESS] Limit rules loaded from " + rulesFile);
+        } catch (IOException | RuntimeException e) {
+            System.out.println("[ERROR] Could not load limit rules " + rulesFile + ": " + e.getMessage());
+            System.out.println("[INFO] Using the standard limits");
+        }
+    }
+    
+    /**
+     * Loads interest and fee rates from the file named by the bank.rates
+     * system property, if set
+     */
+    private static void loadRates() {
+        String ratesFile = System.getProperty("bank.rates");
+        if (ratesFile == null) {
+            return;
+        }
+        try {
+            rates = AccrualRates.load(Paths.get(ratesFile));
+            System.out.println("[SUCCESS] Interest and fee rates loaded from " + ratesFile);
+        } catch (IOException | RuntimeException e) {
+            System.out.println("[ERROR] Could not load rates " + ratesFile + ": " + e.getMessage());
+            System.out.println("[INFO] No interest or fees will be applied");
+        }
+    }
+    
+    /**
+     * Publishes the bank's operation metrics over JMX, e.g. for JConsole
+     */
+    private static void registerMetrics() {
+        try {
+            bank.getMetrics().registerMBeans("main");
+        } catch (JMException | RuntimeException e) {
+            System.out.println("[WARNING] Metrics are not available over JMX: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Opens the bank on its journal file (system property bank.journal),
+     * restoring the last snapshot and replaying postings made since
+     */
+    private static Bank openBank() {
+        String journalFile = System.getProperty("bank.journal", "bank-journal.dat");
+        TransactionJournal journal = null;
+        HistoryArchive archive = openHistoryArchive();
+        try {
+            journal = new TransactionJournal(Paths.get(journalFile));
+            Bank restored = new Bank(journal, Paths.get(journalFile + ".snapshot"), archive);
+            restored.startSnapshots(SNAPSHOT_MINUTES, TimeUnit.MINUTES);
+            return restored;
+        } catch (IOException | RuntimeException e) {
+            System.out.println("[ERROR] Could not open journal " + journalFile + ": " + e.getMessage());
+            System.out.println("[INFO] Running without persistence");
+            try {
+                if (journal != null) {
+                    journal.close();
+                }
+                if (archive != null) {
+                    archive.close();
+                }
+            } catch (IOException ignored) {
+                // Already reporting the original failure
+            }
+            return new Bank();
+        }
+    }
+    
+    /**
+     * Opens the history archive in the directory named by the
+     * bank.history.archive system property, keeping bank.history.hotRows
+     * postings per account on the heap
+     * @return the archive, or null to keep all history on the heap
+     */
+    private static HistoryArchive openHistoryArchive() {
+        String directory = System.getProperty("bank.history.archive");
+        if (directory == null) {
+            return null;
+        }
+        try {
+            int hotRows = Integer.getInteger("bank.history.hotRows", HistoryArchive.DEFAULT_HOT_ROWS);
+            return new HistoryArchive(Paths.get(directory), hotRows, HistoryArchive.DEFAULT_SEGMENT_BYTES);
+        } catch (IOException | RuntimeException e) {
+            System.out.println("[ERROR] Could not open history archive " + directory + ": " + e.getMessage());
+            System.out.println("[INFO] Keeping all history in memory");
+            return null;
+        }
+    }
+    
+    /**
+     * Imports the CSV files named by the bank.import.accounts and
+     * bank.import.postings system properties, accounts first. Rejected rows
+     * are written next to each file with a .rejects suffix.
+     */
+    private static void importFiles() {
+        String accountFile = System.getProperty("bank.import.accounts");
+        String postingFile = System.getProperty("bank.import.postings");
+        BulkImporter importer = new BulkImporter(bank, BulkImporter.Format.csv());
+        try {
+            if (accountFile != null) {
+                BulkImporter.Result result = importer.importAccounts(Paths.get(accountFile),
+                    Paths.get(accountFile + ".rejects"));
+                System.out.println("[SUCCESS] Imported accounts from " + accountFile + ": " + result);
+            }
+            if (postingFile != null) {
+                BulkImporter.Result result = importer.importPostings(Paths.get(postingFile),
+                    Paths.get(postingFile + ".rejects"));
+                System.out.println("[SUCCESS] Imported postings from " + postingFile + ": " + result);
+            }
+        } catch (IOException | RuntimeException e) {
+            System.out.println("[ERROR] Import failed: " + e.getMessage());
+        }
     }
     
     /**
@@ -100,21 +301,21 @@ public class BankAccountManagementSystem {
      */
     private static void initializeTestAccounts() {
         try {
-            accounts.add(new Account("John Doe", 5000.00));
-            accounts.add(new Account("Jane Smith", 10000.00));
-            accounts.add(new Account("Robert Johnson", 7500.00));
-            accounts.add(new Account("Alice Brown", 12000.00));
-            accounts.add(new Account("Charlie Wilson", 3000.00));
+            Account john = bank.openAccount("John Doe", Money.of(5000));
+            Account jane = bank.openAccount("Jane Smith", Money.of(10000));
+            Account robert = bank.openAccount("Robert Johnson", Money.of(7500));
+            bank.openAccount("Alice Brown", Money.of(12000));
+            bank.openAccount("Charlie Wilson", Money.of(3000));
             
             // Add sample transactions
-            accounts.get(0).deposit(1000);
-            accounts.get(0).withdraw(500);
-            accounts.get(1).deposit(2000);
-            accounts.get(2).withdraw(1000);
-            accounts.get(0).transfer(accounts.get(1), 500);
+            bank.deposit(john, Money.of(1000), PostingListener.NONE);
+            bank.withdraw(john, Money.of(500), PostingListener.NONE);
+            bank.deposit(jane, Money.of(2000), PostingListener.NONE);
+            bank.withdraw(robert, Money.of(1000), PostingListener.NONE);
+            bank.transfer(john, jane, Money.of(500), PostingListener.NONE);
             
             System.out.println("[SUCCESS] 5 test accounts initialized with sample transactions");
-            
+        
         } catch (Exception e) {
             System.out.println("[ERROR] Error initializing test accounts: " + e.getMessage());
         }
@@ -137,17 +338,17 @@ public class BankAccountManagementSystem {
                 throw new IllegalArgumentException("Name cannot be empty");
             }
             
-            double initialDeposit = getDoubleInput("Enter initial deposit amount: R", 0, 1000000);
+            long initialDeposit = getAmountInput("Enter initial deposit amount: R", Money.ZERO,
+                RuleEngine.DEFAULT.getRules().getDefaultTier().getMaxDeposit());
             
-            Account newAccount = new Account(name, initialDeposit);
-            accounts.add(newAccount);
+            Account newAccount = bank.openAccount(name, initialDeposit);
             
             System.out.println("\n[SUCCESS] ACCOUNT CREATED SUCCESSFULLY!");
             System.out.println("==========================================");
             System.out.println("Account Number: " + newAccount.getAccountNumber());
             System.out.println("Holder Name: " + newAccount.getHolderName());
-            System.out.printf("Initial Balance: R%,.2f%n", newAccount.getBalance());
-            
+            System.out.printf("Initial Balance: R%s%n", Money.format(newAccount.getBalance()));
+        
         } catch (IllegalArgumentException e) {
             System.out.println("[ERROR] Account creation failed: " + e.getMessage());
         } catch (Exception e) {
@@ -170,7 +371,7 @@ public class BankAccountManagementSystem {
         
         System.out.println("Total Accounts: " + accounts.size());
         System.out.println("--------------------------------------------------");
-        System.out.printf("%-15s %-25s %-20s %-15s%n", 
+        System.out.printf("%-15s %-25s %-20s %-15s%n",
             "Account No.", "Holder Name", "Balance", "Transactions");
         System.out.println("--------------------------------------------------");
         
@@ -180,16 +381,9 @@ public class BankAccountManagementSystem {
         
         System.out.println("--------------------------------------------------");
         
-        // Calculate totals
-        double totalBalance = 0;
-        int totalTransactions = 0;
-        for (Account acc : accounts) {
-            totalBalance += acc.getBalance();
-            totalTransactions += acc.getTransactionHistory().size();
-        }
-        
-        System.out.printf("Total Bank Balance: R%,.2f%n", totalBalance);
-        System.out.printf("Total Transactions: %,d%n", totalTransactions);
+        BankAggregates totals = bank.getAggregates();
+        System.out.printf("Total Bank Balance: R%s%n", Money.format(totals.getTotalBalance()));
+        System.out.printf("Total Transactions: %,d%n", totals.getTransactionCount());
     }
     
     /**
@@ -209,37 +403,52 @@ public class BankAccountManagementSystem {
             return;
         }
         
-        ArrayList<Account> searchResults = new ArrayList<>();
-        for (Account acc : accounts) {
-            if (acc.getHolderName().toLowerCase().contains(searchName)) {
-                searchResults.add(acc);
+        AccountNameIndex index = bank.getNameIndex();
+        int offset = 0;
+        while (true) {
+            // Fetch one extra match to tell whether another page follows
+            List<Account> searchResults = index.search(searchName, offset, SEARCH_PAGE_SIZE + 1);
+            boolean more = searchResults.size() > SEARCH_PAGE_SIZE;
+            if (more) {
+                searchResults = searchResults.subList(0, SEARCH_PAGE_SIZE);
             }
-        }
-        
-        if (searchResults.isEmpty()) {
-            System.out.println("\nNo accounts found matching: '" + searchName + "'");
-            return;
-        }
-        
-        System.out.println("\n[SUCCESS] Found " + searchResults.size() + " account(s) matching: '" + searchName + "'");
-        System.out.println("--------------------------------------------------");
-        System.out.printf("%-15s %-25s %-20s %-15s%n", 
-            "Account No.", "Holder Name", "Balance", "Transactions");
-        System.out.println("--------------------------------------------------");
-        
-        for (Account acc : searchResults) {
-            acc.displayAccountSummary();
-        }
-        
-        System.out.println("--------------------------------------------------");
-        
-        // Option to view details
-        if (searchResults.size() == 1) {
-            System.out.print("\nView details of this account? (yes/no): ");
+            
+            if (searchResults.isEmpty()) {
+                System.out.println("\nNo accounts found matching: '" + searchName + "'");
+                return;
+            }
+            
+            System.out.println("\n[SUCCESS] Showing matches " + (offset + 1) + "-" + (offset + searchResults.size())
+                + " for: '" + searchName + "'");
+            System.out.println("--------------------------------------------------");
+            System.out.printf("%-15s %-25s %-20s %-15s%n",
+                "Account No.", "Holder Name", "Balance", "Transactions");
+            System.out.println("--------------------------------------------------");
+            
+            for (Account acc : searchResults) {
+                acc.displayAccountSummary();
+            }
+            
+            System.out.println("--------------------------------------------------");
+            
+            // Option to view details
+            if (offset == 0 && searchResults.size() == 1) {
+                System.out.print("\nView details of this account? (yes/no): ");
+                String response = scanner.nextLine().toLowerCase();
+                if (response.equals("yes") || response.equals("y")) {
+                    searchResults.get(0).displayAccountInfo();
+                }
+            }
+            
+            if (!more) {
+                return;
+            }
+            System.out.print("\nShow more results? (yes/no): ");
             String response = scanner.nextLine().toLowerCase();
-            if (response.equals("yes") || response.equals("y")) {
-                searchResults.get(0).displayAccountInfo();
+            if (!response.equals("yes") && !response.equals("y")) {
+                return;
             }
+            offset += SEARCH_PAGE_SIZE;
         }
     }
     
@@ -255,9 +464,9 @@ public class BankAccountManagementSystem {
         if (account == null) return;
         
         account.checkBalance();
-        double amount = getDoubleInput("\nEnter deposit amount: R", 0.01, 1000000);
+        long amount = getAmountInput("\nEnter deposit amount: R", 1, account.getLimits().getMaxDeposit());
         
-        if (!account.deposit(amount)) {
+        if (!bank.deposit(account, amount, console).isSuccess()) {
             System.out.println("[ERROR] Deposit operation failed");
         }
     }
@@ -274,9 +483,9 @@ public class BankAccountManagementSystem {
         if (account == null) return;
         
         account.checkBalance();
-        double amount = getDoubleInput("\nEnter withdrawal amount: R", 0.01, 50000);
+        long amount = getAmountInput("\nEnter withdrawal amount: R", 1, account.getLimits().getMaxWithdrawal());
         
-        if (!account.withdraw(amount)) {
+        if (!bank.withdraw(account, amount, console).isSuccess()) {
             System.out.println("[ERROR] Withdrawal operation failed");
         }
     }
@@ -320,7 +529,7 @@ public class BankAccountManagementSystem {
         sender.checkBalance();
         recipient.checkBalance();
         
-        double amount = getDoubleInput("\nEnter transfer amount: R", 0.01, 100000);
+        long amount = getAmountInput("\nEnter transfer amount: R", 1, sender.getLimits().getMaxTransfer());
         
         // Get confirmation
         System.out.print("\nConfirm transfer? (yes/no): ");
@@ -328,7 +537,7 @@ public class BankAccountManagementSystem {
         String confirmation = scanner.nextLine().trim().toLowerCase();
         
         if (confirmation.equals("yes") || confirmation.equals("y")) {
-            if (!sender.transfer(recipient, amount)) {
+            if (!bank.transfer(sender, recipient, amount, console).isSuccess()) {
                 System.out.println("[ERROR] Transfer operation failed");
             }
         } else {
@@ -353,7 +562,10 @@ public class BankAccountManagementSystem {
         System.out.println("\n--------------------------------------------------");
         System.out.println("Additional Options:");
         System.out.println("1. View account information");
-        System.out.println("2. Return to main menu");
+        System.out.println("2. Export statement to CSV");
+        System.out.println("3. View transactions between two dates");
+        System.out.println("4. Export statement for a date range to CSV");
+        System.out.println("5. Return to main menu");
         System.out.print("Select option: ");
         
         try {
@@ -362,12 +574,121 @@ public class BankAccountManagementSystem {
             
             if (option == 1) {
                 account.displayAccountInfo();
+            } else if (option == 2) {
+                exportStatement(account);
+            } else if (option == 3 || option == 4) {
+                LocalDate first = getDateInput("From date (yyyy-MM-dd): ");
+                LocalDate last = getDateInput("To date, inclusive (yyyy-MM-dd): ");
+                long from = startOfDay(first);
+                long to = startOfDay(last.plusDays(1));
+                if (last.isBefore(first)) {
+                    System.out.println("[ERROR] The end date is before the start date");
+                } else if (option == 3) {
+                    account.displayTransactionHistory(from, to);
+                } else {
+                    exportStatement(account, from, to);
+                }
             }
         } catch (InputMismatchException e) {
             scanner.nextLine(); // Clear buffer
         }
     }
     
+    /**
+     * Writes an account's statement to statement-<account number>.csv in
+     * the working directory
+     */
+    private static void exportStatement(Account account) {
+        Path file = Paths.get("statement-" + account.getAccountNumber() + ".csv");
+        try {
+            long rows = new StatementExporter(StatementExporter.Format.CSV).exportAccount(account, file);
+            System.out.println("[SUCCESS] " + rows + " transactions exported to " + file.toAbsolutePath());
+        } catch (IOException e) {
+            System.out.println("[ERROR] Could not export statement: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Writes the part of an account's statement from one time (inclusive)
+     * to another (exclusive) to statement-<account number>-<from>.csv
+     */
+    private static void exportStatement(Account account, long from, long to) {
+        String day = TimestampFormatter.DEFAULT.format(from).substring(0, 10);
+        Path file = Paths.get("statement-" + account.getAccountNumber() + "-" + day + ".csv");
+        try {
+            long rows = new StatementExporter(StatementExporter.Format.CSV).exportAccount(account, from, to, file);
+            System.out.println("[SUCCESS] " + rows + " transactions exported to " + file.toAbsolutePath());
+        } catch (IOException e) {
+            System.out.println("[ERROR] Could not export statement: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Credits a business day's interest and charges its fees across every
+     * account, then prints each run's totals
+     */
+    private static void runEndOfDay() {
+        System.out.println("\n==========================================");
+        System.out.println("      END-OF-DAY INTEREST AND FEES");
+        System.out.println("==========================================");
+        scanner.nextLine(); // Clear buffer
+        LocalDate day = getDateInput("Business date (yyyy-MM-dd): ");
+        
+        AccrualEngine engine = new AccrualEngine(bank, rates);
+        displayAccrual(engine.accrueInterest(day));
+        displayAccrual(engine.chargeFees(day));
+        System.out.println("--------------------------------------------------");
+        System.out.printf("Total Bank Balance: R%s%n", Money.format(bank.getAggregates().getTotalBalance()));
+        System.out.println("==========================================");
+    }
+    
+    /**
+     * Prints the counts and control total of one accrual run
+     */
+    private static void displayAccrual(AccrualEngine.Result result) {
+        System.out.println("--------------------------------------------------");
+        System.out.println((result.getType() == TransactionType.INTEREST ? "Interest" : "Fees")
+            + " for " + result.getBusinessDay());
+        System.out.printf("Accounts processed: %d (%,.0f per second)%n",
+            result.getAccounts(), result.getAccountsPerSecond());
+        System.out.println("Postings made: " + result.getPosted());
+        System.out.println("Nothing due: " + result.getWaived());
+        System.out.println("Already posted for this date: " + result.getAlreadyAccrued());
+        if (result.getType() == TransactionType.FEE) {
+            System.out.println("Not charged, insufficient funds: " + result.getInsufficientFunds());
+        }
+        System.out.printf("Control total: R%s%n", Money.format(result.getTotal()));
+    }
+    
+    /**
+     * Checks every balance against its history and every transfer against
+     * its other leg, then prints the totals and any discrepancies
+     */
+    private static void reconcileLedger() {
+        System.out.println("\n==========================================");
+        System.out.println("          LEDGER RECONCILIATION");
+        System.out.println("==========================================");
+        
+        ReconciliationEngine.Result result = new ReconciliationEngine(bank).reconcile();
+        System.out.printf("Accounts checked: %d (%,.0f per second)%n",
+            result.getAccounts(), result.getAccountsPerSecond());
+        System.out.println("Postings read: " + result.getPostings());
+        System.out.println("Transfer legs matched: " + result.getTransferLegs());
+        System.out.printf("Total of balances: R%s%n", Money.format(result.getTotalBalance()));
+        System.out.println("--------------------------------------------------");
+        if (result.isConsistent()) {
+            System.out.println("[SUCCESS] Every balance and transfer reconciles");
+        } else {
+            System.out.println("[WARNING] Balances that do not add up: " + result.getBalanceMismatches());
+            System.out.println("[WARNING] Broken running balances: " + result.getRunningBalanceMismatches());
+            System.out.println("[WARNING] Unmatched transfer legs: " + result.getUnmatchedTransfers());
+            for (ReconciliationEngine.Discrepancy discrepancy : result.getDiscrepancies()) {
+                System.out.println("  " + discrepancy);
+            }
+        }
+        System.out.println("==========================================");
+    }
+    
     /**
      * Exits the system with summary
      */
@@ -378,15 +699,9 @@ public class BankAccountManagementSystem {
         
         System.out.println("Total Accounts in System: " + accounts.size());
         
-        double totalBalance = 0;
-        int totalTransactions = 0;
-        for (Account acc : accounts) {
-            totalBalance += acc.getBalance();
-            totalTransactions += acc.getTransactionHistory().size();
-        }
-        
-        System.out.printf("Total Bank Balance: R%,.2f%n", totalBalance);
-        System.out.println("Total Transactions Processed: " + totalTransactions);
+        BankAggregates totals = bank.getAggregates();
+        System.out.printf("Total Bank Balance: R%s%n", Money.format(totals.getTotalBalance()));
+        System.out.println("Total Transactions Processed: " + totals.getTransactionCount());
         System.out.println("--------------------------------------------------");
         
         System.out.println("\nThank you for using Bank Account Management System!");
@@ -404,15 +719,14 @@ public class BankAccountManagementSystem {
         try {
             long accountNumber = scanner.nextLong();
             
-            for (Account acc : accounts) {
-                if (acc.getAccountNumber() == accountNumber) {
-                    return acc;
-                }
+            Account account = bank.findAccount(accountNumber);
+            if (account != null) {
+                return account;
             }
             
             System.out.println("[ERROR] Account with number " + accountNumber + " not found");
             return null;
-            
+        
         } catch (InputMismatchException e) {
             System.out.println("[ERROR] Invalid account number format. Please enter a 12-digit number.");
             scanner.next(); // Clear invalid input
@@ -439,7 +753,7 @@ public class BankAccountManagementSystem {
                 }
                 
                 return value;
-                
+            
             } catch (InputMismatchException e) {
                 System.out.println("[ERROR] Invalid input. Please enter a valid number.");
                 scanner.next(); // Clear invalid input
@@ -448,28 +762,55 @@ public class BankAccountManagementSystem {
     }
     
     /**
-     * Gets double input with validation
+     * Gets a date with validation
      * @param prompt Input prompt
-     * @param min Minimum value (inclusive)
-     * @param max Maximum value (inclusive)
-     * @return Validated double
+     * @return Validated date
+     */
+    private static LocalDate getDateInput(String prompt) {
+        while (true) {
+            System.out.print(prompt);
+            try {
+                return LocalDate.parse(scanner.nextLine().trim());
+            } catch (DateTimeParseException e) {
+                System.out.println("[ERROR] Invalid date. Please enter a date as yyyy-MM-dd.");
+            }
+        }
+    }
+    
+    /**
+     * Returns the start of a day in the local time zone, as epoch millis
      */
-    private static double getDoubleInput(String prompt, double min, double max) {
+    private static long startOfDay(LocalDate date) {
+        return date.atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+    
+    /**
+     * Gets a monetary amount with validation
+     * @param prompt Input prompt
+     * @param min Minimum value in cents (inclusive)
+     * @param max Maximum value in cents (inclusive)
+     * @return Validated amount in cents
+     */
+    private static long getAmountInput(String prompt, long min, long max) {
         while (true) {
             try {
                 System.out.print(prompt);
-                double value = scanner.nextDouble();
+                long value = Money.parse(scanner.next()); // Parsed straight to cents
                 
                 if (value < min || value > max) {
-                    System.out.printf("[ERROR] Please enter an amount between R%.2f and R%.2f%n", min, max);
+                    if (max == LimitRules.NO_LIMIT) {
+                        System.out.printf("[ERROR] Please enter an amount of at least R%s%n", Money.toPlainString(min));
+                    } else {
+                        System.out.printf("[ERROR] Please enter an amount between R%s and R%s%n",
+                            Money.toPlainString(min), Money.toPlainString(max));
+                    }
                     continue;
                 }
                 
-                return Math.round(value * 100.0) / 100.0; // Round to 2 decimal places
-                
-            } catch (InputMismatchException e) {
+                return value;
+            
+            } catch (NumberFormatException | ArithmeticException e) {
                 System.out.println("[ERROR] Invalid input. Please enter a valid amount.");
-                scanner.next(); // Clear invalid input
             }
         }
     }
@@ -0,0 +1,134 @@
+package com.obcodes.bankaccountmanagementsystem;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bank-wide totals kept up to date as postings happen, so summary screens
+ * read them in O(1) instead of walking every account.
+ *
+ * Each total is a LongAdder, which spreads concurrent updates over
+ * per-thread cells instead of contending on one counter. Reads are not an
+ * atomic snapshot: while postings are in flight the totals can be a few
+ * postings apart from each other, but they agree once the bank is quiet.
+ * @author Obakeng Phale
+ */
+public final class BankAggregates {
+    private static final TransactionType[] TYPES = TransactionType.values();
+    
+    private final LongAdder totalBalance = new LongAdder();
+    private final LongAdder accountCount = new LongAdder();
+    private final LongAdder[] transactionCounts = new LongAdder[TYPES.length];
+    
+    public BankAggregates() {
+        for (int i = 0; i < transactionCounts.length; i++) {
+            transactionCounts[i] = new LongAdder();
+        }
+    }
+    
+    /**
+     * Rebuilds every total from the accounts, e.g. after restoring them from
+     * a snapshot or the journal. Postings a snapshot folded into an
+     * account's balance brought forward are counted from the counts it kept.
+     */
+    void recompute(Iterable<Account> accounts) {
+        totalBalance.reset();
+        accountCount.reset();
+        long[] counts = new long[TYPES.length];
+        for (Account account : accounts) {
+            accountCount.increment();
+            totalBalance.add(account.getBalance());
+            account.countPostings(account.getHistory(), counts);
+        }
+        for (int i = 0; i < counts.length; i++) {
+            transactionCounts[i].reset();
+            transactionCounts[i].add(counts[i]);
+        }
+    }
+    
+    /**
+     * Records a newly opened account and its initial deposit, if any
+     */
+    void accountOpened(long initialDeposit) {
+        accountCount.increment();
+        if (initialDeposit > 0) {
+            totalBalance.add(initialDeposit);
+            transactionCounts[TransactionType.DEPOSIT.ordinal()].increment();
+        }
+    }
+    
+    void deposited(long amount) {
+        totalBalance.add(amount);
+        transactionCounts[TransactionType.DEPOSIT.ordinal()].increment();
+    }
+    
+    void withdrawn(long amount) {
+        totalBalance.add(-amount);
+        transactionCounts[TransactionType.WITHDRAWAL.ordinal()].increment();
+    }
+    
+    /**
+     * Records both legs of a transfer; the total balance is unchanged
+     */
+    void transferred() {
+        transactionCounts[TransactionType.TRANSFER_OUT.ordinal()].increment();
+        transactionCounts[TransactionType.TRANSFER_IN.ordinal()].increment();
+    }
+    
+    /**
+     * Records the successful postings of a batch in one update per total
+     * @param balanceChange Net change to the total balance, in cents
+     */
+    void batchPosted(long balanceChange, long deposits, long withdrawals, long transfers) {
+        totalBalance.add(balanceChange);
+        transactionCounts[TransactionType.DEPOSIT.ordinal()].add(deposits);
+        transactionCounts[TransactionType.WITHDRAWAL.ordinal()].add(withdrawals);
+        transactionCounts[TransactionType.TRANSFER_OUT.ordinal()].add(transfers);
+        transactionCounts[TransactionType.TRANSFER_IN.ordinal()].add(transfers);
+    }
+    
+    /**
+     * Records the postings of one part of an accrual run
+     * @param type INTEREST or FEE
+     * @param balanceChange Net change to the total balance, in cents
+     */
+    void accrued(TransactionType type, long postings, long balanceChange) {
+        totalBalance.add(balanceChange);
+        transactionCounts[type.ordinal()].add(postings);
+    }
+    
+    /**
+     * Records a history entry that moves no money, such as a name change
+     */
+    void recorded(TransactionType type) {
+        transactionCounts[type.ordinal()].increment();
+    }
+    
+    /**
+     * Returns the sum of all account balances in cents
+     */
+    public long getTotalBalance() {
+        return totalBalance.sum();
+    }
+    
+    public long getAccountCount() {
+        return accountCount.sum();
+    }
+    
+    /**
+     * Returns the number of history entries of one type across all accounts
+     */
+    public long getTransactionCount(TransactionType type) {
+        return transactionCounts[type.ordinal()].sum();
+    }
+    
+    /**
+     * Returns the number of history entries across all accounts
+     */
+    public long getTransactionCount() {
+        long total = 0;
+        for (LongAdder count : transactionCounts) {
+            total += count.sum();
+        }
+        return total;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,263 @@
+package com.obcodes.bankaccountmanagementsystem;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Counters and latency histograms for every banking operation.
+ *
+ * Each operation counts its outcomes by PostingStatus, plus operations that
+ * threw, in LongAdders, and records its latency in nanoseconds into a
+ * LatencyHistogram. Recording allocates nothing and takes no lock, so it
+ * stays on the posting path. Postings are timed from entry until their
+ * journal record is durable, which is the latency a caller sees.
+ *
+ * The same numbers are published as one JMX MXBean per operation, under
+ * com.obcodes.bank:type=Operation, and as Prometheus-style text by
+ * writeText, which BankServer serves at GET /metrics.
+ * @author Obakeng Phale
+ */
+public final class BankMetrics {
+    private static final PostingStatus[] STATUSES = PostingStatus.values();
+    // Outcome slot for operations that threw instead of returning a status
+    private static final int ERROR = STATUSES.length;
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+    
+    /**
+     * Operations that are counted and timed
+     */
+    public enum Operation {
+        LOOKUP, OPEN, DEPOSIT, WITHDRAW, TRANSFER, BATCH, ACCRUAL, RECONCILE;
+        
+        String label() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+    
+    private static final Operation[] OPERATIONS = Operation.values();
+    
+    /**
+     * JMX view of one operation
+     */
+    public interface OperationMXBean {
+        long getCount();
+        
+        /** Operations that threw instead of returning a status */
+        long getErrors();
+        
+        /** Count of each outcome, by PostingStatus name and "ERROR" */
+        Map<String, Long> getOutcomes();
+        
+        double getMeanNanos();
+        
+        long getP50Nanos();
+        
+        long getP99Nanos();
+        
+        long getP999Nanos();
+        
+        long getMaxNanos();
+    }
+    
+    private final LongAdder[] outcomes = new LongAdder[OPERATIONS.length * (ERROR + 1)];
+    private final LatencyHistogram[] latencies = new LatencyHistogram[OPERATIONS.length];
+    private ObjectName[] registered;
+    
+    public BankMetrics() {
+        for (int i = 0; i < outcomes.length; i++) {
+            outcomes[i] = new LongAdder();
+        }
+        for (int i = 0; i < latencies.length; i++) {
+            latencies[i] = new LatencyHistogram();
+        }
+    }
+    
+    /**
+     * Records an operation that returned a status
+     * @param startNanos System.nanoTime() when the operation began
+     */
+    public void record(Operation operation, PostingStatus status, long startNanos) {
+        outcomes[operation.ordinal() * (ERROR + 1) + status.ordinal()].increment();
+        latencies[operation.ordinal()].record(System.nanoTime() - startNanos);
+    }
+    
+    /**
+     * Records an operation that threw
+     */
+    public void recordError(Operation operation, long startNanos) {
+        outcomes[operation.ordinal() * (ERROR + 1) + ERROR].increment();
+        latencies[operation.ordinal()].record(System.nanoTime() - startNanos);
+    }
+    
+    /**
+     * Counts outcomes without a latency, e.g. the entries of a batch,
+     * which is timed once as a whole
+     */
+    void count(Operation operation, PostingStatus status) {
+        outcomes[operation.ordinal() * (ERROR + 1) + status.ordinal()].increment();
+    }
+    
+    /**
+     * Returns how many times an operation ended with a status
+     */
+    public long getCount(Operation operation, PostingStatus status) {
+        return outcomes[operation.ordinal() * (ERROR + 1) + status.ordinal()].sum();
+    }
+    
+    /**
+     * Returns how many times an operation threw
+     */
+    public long getErrors(Operation operation) {
+        return outcomes[operation.ordinal() * (ERROR + 1) + ERROR].sum();
+    }
+    
+    /**
+     * Returns the latency histogram of an operation, in nanoseconds
+     */
+    public LatencyHistogram getLatency(Operation operation) {
+        return latencies[operation.ordinal()];
+    }
+    
+    /**
+     * Writes every counter and latency summary in the Prometheus text
+     * exposition format; latencies are in seconds
+     */
+    public void writeText(Appendable out) throws IOException {
+        out.append("# HELP bank_operations_total Banking operations by outcome\n");
+        out.append("# TYPE bank_operations_total counter\n");
+        for (Operation operation : OPERATIONS) {
+            for (int i = 0; i <= ERROR; i++) {
+                String outcome = i == ERROR ? "error" : STATUSES[i].name().toLowerCase(Locale.ROOT);
+                out.append("bank_operations_total{operation=\"").append(operation.label())
+                   .append("\",outcome=\"").append(outcome).append("\"} ")
+                   .append(Long.toString(outcomes[operation.ordinal() * (ERROR + 1) + i].sum())).append('\n');
+            }
+        }
+        out.append("# HELP bank_operation_latency_seconds Latency of banking operations\n");
+        out.append("# TYPE bank_operation_latency_seconds summary\n");
+        StringBuilder max = new StringBuilder();
+        for (Operation operation : OPERATIONS) {
+            LatencyHistogram.Snapshot snapshot = latencies[operation.ordinal()].snapshot();
+            String label = "{operation=\"" + operation.label() + "\"";
+            for (double quantile : QUANTILES) {
+                out.append("bank_operation_latency_seconds").append(label).append(",quantile=\"")
+                   .append(Double.toString(quantile)).append("\"} ")
+                   .append(seconds(snapshot.getValueAtQuantile(quantile))).append('\n');
+            }
+            out.append("bank_operation_latency_seconds_sum").append(label).append("} ")
+               .append(seconds(snapshot.getSum())).append('\n');
+            out.append("bank_operation_latency_seconds_count").append(label).append("} ")
+               .append(Long.toString(snapshot.getCount())).append('\n');
+            max.append("bank_operation_latency_max_seconds").append(label).append("} ")
+               .append(seconds(snapshot.getMax())).append('\n');
+        }
+        out.append("# HELP bank_operation_latency_max_seconds Slowest banking operation so far\n");
+        out.append("# TYPE bank_operation_latency_max_seconds gauge\n");
+        out.append(max);
+    }
+    
+    private static String seconds(long nanos) {
+        return Double.toString(nanos / 1e9);
+    }
+    
+    /**
+     * Registers one MXBean per operation with the platform MBean server
+     * @param bank Value of the bank key property, to tell banks apart
+     */
+    public synchronized void registerMBeans(String bank) throws JMException {
+        if (registered != null) {
+            throw new IllegalStateException("Metrics are already registered");
+        }
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName[] names = new ObjectName[OPERATIONS.length];
+        int done = 0;
+        try {
+            for (Operation operation : OPERATIONS) {
+                names[done] = new ObjectName("com.obcodes.bank:type=Operation,bank="
+                    + ObjectName.quote(bank) + ",name=" + operation.label());
+                server.registerMBean(new OperationView(operation), names[done]);
+                done++;
+            }
+        } catch (JMException e) {
+            for (int i = 0; i < done; i++) {
+                server.unregisterMBean(names[i]);
+            }
+            throw e;
+        }
+        registered = names;
+    }
+    
+    /**
+     * Removes the MXBeans added by registerMBeans, if any
+     */
+    public synchronized void unregisterMBeans() throws JMException {
+        if (registered == null) {
+            return;
+        }
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        for (ObjectName name : registered) {
+            server.unregisterMBean(name);
+        }
+        registered = null;
+    }
+    
+    private final class OperationView implements OperationMXBean {
+        private final Operation operation;
+        
+        OperationView(Operation operation) {
+            this.operation = operation;
+        }
+        
+        @Override
+        public long getCount() {
+            return latencies[operation.ordinal()].snapshot().getCount();
+        }
+        
+        @Override
+        public long getErrors() {
+            return BankMetrics.this.getErrors(operation);
+        }
+        
+        @Override
+        public Map<String, Long> getOutcomes() {
+            Map<String, Long> counts = new LinkedHashMap<>();
+            for (PostingStatus status : STATUSES) {
+                counts.put(status.name(), BankMetrics.this.getCount(operation, status));
+            }
+            counts.put("ERROR", getErrors());
+            return counts;
+        }
+        
+        @Override
+        public double getMeanNanos() {
+            return latencies[operation.ordinal()].snapshot().getMean();
+        }
+        
+        @Override
+        public long getP50Nanos() {
+            return latencies[operation.ordinal()].snapshot().getValueAtQuantile(0.5);
+        }
+        
+        @Override
+        public long getP99Nanos() {
+            return latencies[operation.ordinal()].snapshot().getValueAtQuantile(0.99);
+        }
+        
+        @Override
+        public long getP999Nanos() {
+            return latencies[operation.ordinal()].snapshot().getValueAtQuantile(0.999);
+        }
+        
+        @Override
+        public long getMaxNanos() {
+            return latencies[operation.ordinal()].snapshot().getMax();
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,443 @@
+package com.obcodes.bankaccountmanagementsystem;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * HTTP front-end for a Bank on the JDK's built-in server. Every exchange
+ * runs on its own virtual thread, so a request waiting on an account lock
+ * or on the journal's group commit parks cheaply instead of holding a
+ * platform thread, and tens of thousands of clients can be in flight.
+ *
+ * Parameters come from the query string or a form-encoded body; amounts
+ * are decimal rands. Responses are JSON, except for /metrics, which is the
+ * Prometheus text format.
+ *
+ *   POST /accounts                  name, deposit
+ *   GET  /accounts/{number}         balance and holder
+ *   POST /accounts/{number}/deposit amount
+ *   POST /accounts/{number}/withdraw amount
+ *   GET  /accounts/{number}/history page, size (pages from 0, oldest first),
+ *                                   from, to (optional)
+ *   POST /transfers                 from, to, amount
+ *   GET  /postings                  from, to (optional), page, size
+ *   GET  /search                    q, page, size
+ *   GET  /metrics                   operation counters and latencies as text
+ *
+ * Dates are "yyyy-MM-dd" or "yyyy-MM-dd HH:mm:ss" in the server's time
+ * zone; from is inclusive and to exclusive. /postings lists every account's
+ * postings in the range, by account number, using the bank's time index.
+ *
+ * Postings answer 200 on success, 404 for an unknown account and 422 for
+ * any other refusal, with the PostingStatus in the body. Opening an account
+ * answers 201, or 422 if its deposit is refused as a deposit would be. A posting sent
+ * with an Idempotency-Key header is applied at most once per key; retries
+ * get the first attempt's status back.
+ * @author Obakeng Phale
+ */
+public class BankServer implements AutoCloseable {
+    // Pending connections the OS queues before accept
+    public static final int DEFAULT_BACKLOG = 16384;
+    public static final int DEFAULT_PAGE_SIZE = 20;
+    public static final int MAX_PAGE_SIZE = 1000;
+    // Form bodies are a few parameters; anything bigger is refused
+    private static final int MAX_BODY_BYTES = 8192;
+    
+    private final Bank bank;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    
+    public BankServer(Bank bank, InetSocketAddress address) throws IOException {
+        this(bank, address, DEFAULT_BACKLOG);
+    }
+    
+    /**
+     * Binds the server without starting it
+     * @param address Port 0 picks a free port; see getPort
+     */
+    public BankServer(Bank bank, InetSocketAddress address, int backlog) throws IOException {
+        this.bank = bank;
+        this.server = HttpServer.create(address, backlog);
+        this.executor = Executors.newVirtualThreadPerTaskExecutor();
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+    }
+    
+    public void start() {
+        server.start();
+    }
+    
+    /**
+     * Returns the port the server is bound to
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+    
+    /**
+     * Stops accepting, gives requests in flight up to a second to finish
+     * and waits for their threads to end
+     */
+    @Override
+    public void close() {
+        server.stop(1);
+        executor.close();
+    }
+    
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            Response response;
+            try {
+                response = route(exchange);
+            } catch (IllegalArgumentException | ArithmeticException e) {
+                // Includes NumberFormatException from bad numbers and amounts
+                response = error(400, e.getMessage());
+            } catch (RuntimeException e) {
+                response = error(500, "Internal error");
+            }
+            byte[] body = response.body.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", response.contentType);
+            exchange.sendResponseHeaders(response.status, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        }
+    }
+    
+    private Response route(HttpExchange exchange) throws IOException {
+        String method = exchange.getRequestMethod();
+        String[] path = exchange.getRequestURI().getPath().split("/");
+        Map<String, String> params = parameters(exchange);
+        // path[0] is the empty string before the leading slash
+        if (path.length == 2 && path[1].equals("accounts")) {
+            return method.equals("POST") ? openAccount(params) : notAllowed();
+        }
+        if (path.length == 2 && path[1].equals("transfers")) {
+            return method.equals("POST") ? transfer(params, exchange.getRequestHeaders().getFirst("Idempotency-Key"))
+                                         : notAllowed();
+        }
+        if (path.length == 2 && path[1].equals("postings")) {
+            return method.equals("GET") ? postings(params) : notAllowed();
+        }
+        if (path.length == 2 && path[1].equals("search")) {
+            return method.equals("GET") ? search(params) : notAllowed();
+        }
+        if (path.length == 2 && path[1].equals("metrics")) {
+            return method.equals("GET") ? metrics() : notAllowed();
+        }
+        if (path.length < 3 || path.length > 4 || !path[1].equals("accounts")) {
+            return error(404, "No such resource");
+        }
+        
+        Account account = bank.findAccount(parseLong(path[2], "account number"));
+        if (account == null) {
+            return error(404, PostingStatus.ACCOUNT_NOT_FOUND.getMessage());
+        }
+        String key = exchange.getRequestHeaders().getFirst("Idempotency-Key");
+        String action = path.length == 4 ? path[3] : "";
+        switch (action) {
+            case "":
+                return method.equals("GET") ? new Response(200, accountJson(new StringBuilder(), account).toString())
+                                            : notAllowed();
+            case "deposit":
+                return method.equals("POST")
+                    ? posting(bank.deposit(key, account.getAccountNumber(), amount(params)), account)
+                    : notAllowed();
+            case "withdraw":
+                return method.equals("POST")
+                    ? posting(bank.withdraw(key, account.getAccountNumber(), amount(params)), account)
+                    : notAllowed();
+            case "history":
+                return method.equals("GET") ? history(account, params) : notAllowed();
+            default:
+                return error(404, "No such resource");
+        }
+    }
+    
+    private Response openAccount(Map<String, String> params) {
+        String name = required(params, "name");
+        String deposit = params.get("deposit");
+        long amount = deposit == null ? Money.ZERO : Money.parse(deposit);
+        // A deposit that is sent must be positive, as for /deposit
+        if (deposit != null && amount <= 0) {
+            return status(PostingStatus.INVALID_AMOUNT);
+        }
+        Account account;
+        try {
+            account = bank.openAccount(name, amount);
+        } catch (PostingRejectedException e) {
+            return status(e.getStatus());
+        }
+        return new Response(201, accountJson(new StringBuilder(), account).toString());
+    }
+    
+    private Response transfer(Map<String, String> params, String key) {
+        long sender = parseLong(required(params, "from"), "from");
+        long recipient = parseLong(required(params, "to"), "to");
+        return status(bank.transfer(key, sender, recipient, amount(params)));
+    }
+    
+    private static Response status(PostingStatus status) {
+        StringBuilder sb = new StringBuilder(96);
+        sb.append("{\"status\":\"").append(status.name()).append("\",\"message\":");
+        quote(sb, status.getMessage()).append('}');
+        return new Response(statusCode(status), sb.toString());
+    }
+    
+    private Response history(Account account, Map<String, String> params) {
+        TransactionHistory.View history = account.getHistory();
+        if (params.containsKey("from") || params.containsKey("to")) {
+            history = history.between(timeParam(params, "from", Long.MIN_VALUE), timeParam(params, "to", Long.MAX_VALUE));
+        }
+        TransactionHistory.View page = history.page(intParam(params, "page", 0), pageSize(params));
+        StringBuilder sb = new StringBuilder(64 + page.size() * 160);
+        sb.append("{\"account\":").append(account.getAccountNumber())
+          .append(",\"total\":").append(history.size()).append(",\"transactions\":[");
+        TransactionHistory.Cursor cursor = page.cursor();
+        StringBuilder description = new StringBuilder(64);
+        boolean first = true;
+        while (cursor.next()) {
+            if (!first) {
+                sb.append(',');
+            }
+            first = false;
+            postingJson(sb.append('{'), cursor, description);
+        }
+        return new Response(200, sb.append("]}").toString());
+    }
+    
+    /**
+     * Lists one page of the postings of every account in a date range.
+     * Pages skip whole accounts by their counts, so a late page costs no
+     * more than an early one.
+     */
+    private Response postings(Map<String, String> params) {
+        long from = timeParam(params, "from", Long.MIN_VALUE);
+        long to = timeParam(params, "to", Long.MAX_VALUE);
+        if (from > to) {
+            throw new IllegalArgumentException("Start of range is after its end");
+        }
+        int size = pageSize(params);
+        long skip = (long) intParam(params, "page", 0) * size;
+        if (skip < 0) {
+            throw new IllegalArgumentException("Page number cannot be negative");
+        }
+        List<TransactionHistory.View> views = bank.postingsBetween(from, to);
+        long total = 0;
+        for (TransactionHistory.View view : views) {
+            total += view.size();
+        }
+        StringBuilder sb = new StringBuilder(64 + size * 180);
+        sb.append("{\"total\":").append(total).append(",\"transactions\":[");
+        StringBuilder description = new StringBuilder(64);
+        int written = 0;
+        for (TransactionHistory.View view : views) {
+            if (written == size) {
+                break;
+            }
+            if (skip >= view.size()) {
+                skip -= view.size();
+                continue;
+            }
+            int end = (int) Math.min(view.size(), skip + size - written);
+            TransactionHistory.Cursor cursor = view.range((int) skip, end).cursor();
+            skip = 0;
+            while (cursor.next()) {
+                if (written++ > 0) {
+                    sb.append(',');
+                }
+                sb.append("{\"account\":").append(view.getAccountNumber()).append(',');
+                postingJson(sb, cursor, description);
+            }
+        }
+        return new Response(200, sb.append("]}").toString());
+    }
+    
+    /**
+     * Appends a posting's fields and the closing brace of its object
+     */
+    private static void postingJson(StringBuilder sb, TransactionHistory.Cursor cursor, StringBuilder description) {
+        sb.append("\"transaction_id\":\"").append(IdGenerator.formatTransactionId(cursor.transactionId()))
+          .append("\",\"time\":\"").append(TimestampFormatter.DEFAULT.format(cursor.timestamp()))
+          .append("\",\"type\":\"").append(cursor.type().name()).append("\",\"amount\":");
+        Money.appendTo(sb, cursor.amount(), false);
+        sb.append(",\"balance\":");
+        Money.appendTo(sb, cursor.balanceAfter(), false);
+        sb.append(",\"description\":");
+        description.setLength(0);
+        quote(sb, cursor.appendDescription(description)).append('}');
+    }
+    
+    private Response search(Map<String, String> params) {
+        int size = pageSize(params);
+        int offset = Math.multiplyExact(intParam(params, "page", 0), size);
+        List<Account> matches = bank.getNameIndex().search(required(params, "q"), offset, size);
+        StringBuilder sb = new StringBuilder(16 + matches.size() * 96).append("{\"accounts\":[");
+        for (int i = 0; i < matches.size(); i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            accountJson(sb, matches.get(i));
+        }
+        return new Response(200, sb.append("]}").toString());
+    }
+    
+    private Response metrics() throws IOException {
+        StringBuilder sb = new StringBuilder(16384);
+        bank.getMetrics().writeText(sb);
+        return new Response(200, sb.toString(), "text/plain; version=0.0.4; charset=utf-8");
+    }
+    
+    private static Response posting(PostingStatus status, Account account) {
+        StringBuilder sb = new StringBuilder(128);
+        sb.append("{\"status\":\"").append(status.name()).append("\",\"message\":");
+        quote(sb, status.getMessage()).append(",\"balance\":");
+        Money.appendTo(sb, account.getBalance(), false);
+        return new Response(statusCode(status), sb.append('}').toString());
+    }
+    
+    private static int statusCode(PostingStatus status) {
+        if (status.isSuccess()) {
+            return 200;
+        }
+        return status == PostingStatus.ACCOUNT_NOT_FOUND ? 404 : 422;
+    }
+    
+    private static StringBuilder accountJson(StringBuilder sb, Account account) {
+        sb.append("{\"account\":").append(account.getAccountNumber()).append(",\"holder\":");
+        quote(sb, account.getHolderName()).append(",\"balance\":");
+        Money.appendTo(sb, account.getBalance(), false);
+        return sb.append(",\"transactions\":").append(account.getTransactionCount()).append('}');
+    }
+    
+    private static Response error(int status, String message) {
+        StringBuilder sb = new StringBuilder(64).append("{\"error\":");
+        return new Response(status, quote(sb, message == null ? "Bad request" : message).append('}').toString());
+    }
+    
+    private static Response notAllowed() {
+        return error(405, "Method not allowed");
+    }
+    
+    /**
+     * Appends text as a JSON string literal
+     */
+    private static StringBuilder quote(StringBuilder sb, CharSequence text) {
+        sb.append('"');
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '"' || c == '\\') {
+                sb.append('\\').append(c);
+            } else if (c < 0x20) {
+                sb.append(String.format("\\u%04x", (int) c));
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.append('"');
+    }
+    
+    /**
+     * Collects query string and form body parameters; a body parameter
+     * replaces a query parameter of the same name
+     */
+    private static Map<String, String> parameters(HttpExchange exchange) throws IOException {
+        Map<String, String> params = new HashMap<>();
+        decode(exchange.getRequestURI().getRawQuery(), params);
+        try (InputStream in = exchange.getRequestBody()) {
+            byte[] body = in.readNBytes(MAX_BODY_BYTES + 1);
+            if (body.length > MAX_BODY_BYTES) {
+                throw new IllegalArgumentException("Request body is larger than " + MAX_BODY_BYTES + " bytes");
+            }
+            decode(new String(body, StandardCharsets.UTF_8), params);
+        }
+        return params;
+    }
+    
+    private static void decode(String form, Map<String, String> params) {
+        if (form == null || form.isEmpty()) {
+            return;
+        }
+        for (String pair : form.split("&")) {
+            int equals = pair.indexOf('=');
+            String name = equals < 0 ? pair : pair.substring(0, equals);
+            String value = equals < 0 ? "" : pair.substring(equals + 1);
+            params.put(URLDecoder.decode(name, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+    }
+    
+    private static String required(Map<String, String> params, String name) {
+        String value = params.get(name);
+        if (value == null || value.isEmpty()) {
+            throw new IllegalArgumentException("Missing parameter: " + name);
+        }
+        return value;
+    }
+    
+    private static long amount(Map<String, String> params) {
+        return Money.parse(required(params, "amount"));
+    }
+    
+    private static int pageSize(Map<String, String> params) {
+        int size = intParam(params, "size", DEFAULT_PAGE_SIZE);
+        if (size < 1 || size > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("Page size must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        return size;
+    }
+    
+    private static int intParam(Map<String, String> params, String name, int defaultValue) {
+        String value = params.get(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid " + name + ": " + value);
+        }
+    }
+    
+    /**
+     * Reads a date parameter as epoch millis
+     */
+    private static long timeParam(Map<String, String> params, String name, long defaultValue) {
+        String value = params.get(name);
+        return value == null || value.isEmpty() ? defaultValue : TimestampFormatter.DEFAULT.parse(value);
+    }
+    
+    private static long parseLong(String value, String name) {
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid " + name + ": " + value);
+        }
+    }
+    
+    private static final class Response {
+        final int status;
+        final String body;
+        final String contentType;
+        
+        Response(int status, String body) {
+            this(status, body, "application/json; charset=utf-8");
+        }
+        
+        Response(int status, String body, String contentType) {
+            this.status = status;
+            this.body = body;
+            this.contentType = contentType;
+        }
+    }
+}
\ No newline at end of file
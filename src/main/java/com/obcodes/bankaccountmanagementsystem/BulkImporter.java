@@ -0,0 +1,783 @@
+package com.obcodes.bankaccountmanagementsystem;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Streaming bulk import of accounts and postings from delimited (CSV) or
+ * fixed-width files.
+ *
+ * The file is read through a FileChannel into a small pool of fixed-size
+ * chunk buffers, each cut at the last complete row, so memory stays bounded
+ * however large the file is. Worker threads parse chunks in parallel
+ * straight from the bytes: fields are offsets into the chunk, numbers and
+ * amounts are parsed in place, and the only string built per row is an
+ * account holder's name.
+ *
+ * Account rows are registered as they are parsed, in any order. Posting
+ * rows are parsed in parallel into one PostingBatch per chunk, but the
+ * batches are posted in file order, so historic postings replay exactly as
+ * they happened.
+ *
+ * Rows that cannot be parsed, and rows the bank rejects, are written to a
+ * reject file as: byte offset of the row, reason, original row.
+ *
+ * Account rows: account number (blank to generate one), holder name,
+ * opening balance, which is held to the new account's deposit limit as
+ * Bank.openAccount holds it. Posting rows: type (D, W, T or DEPOSIT, WITHDRAWAL,
+ * TRANSFER), account, recipient (blank unless a transfer), amount.
+ * @author Obakeng Phale
+ */
+public class BulkImporter {
+    public static final int DEFAULT_CHUNK_BYTES = 4 << 20;
+    
+    private static final int ACCOUNT_FIELDS = 3;
+    private static final int POSTING_FIELDS = 4;
+    private static final byte[] SEPARATOR = {','};
+    private static final byte[] NEWLINE = {'\n'};
+    
+    /**
+     * How rows are split into fields
+     */
+    public static final class Format {
+        private final byte delimiter;
+        // Column widths for fixed-width files, null for delimited ones
+        private final int[] widths;
+        private final boolean header;
+        
+        private Format(byte delimiter, int[] widths, boolean header) {
+            this.delimiter = delimiter;
+            this.widths = widths;
+            this.header = header;
+        }
+        
+        /**
+         * Comma-separated fields; a field may be wrapped in double quotes,
+         * with "" standing for a quote inside it
+         */
+        public static Format csv() {
+            return delimited(',');
+        }
+        
+        public static Format delimited(char delimiter) {
+            if (delimiter > 0x7F || delimiter == '"' || delimiter == '\n' || delimiter == '\r') {
+                throw new IllegalArgumentException("Delimiter must be a single ASCII character other than a quote or line break");
+            }
+            return new Format((byte) delimiter, null, false);
+        }
+        
+        /**
+         * Fields in fixed columns, padded with spaces. The last field may be
+         * shorter than its width.
+         */
+        public static Format fixedWidth(int... widths) {
+            for (int width : widths) {
+                if (width <= 0) {
+                    throw new IllegalArgumentException("Column widths must be positive");
+                }
+            }
+            return new Format((byte) 0, widths.clone(), false);
+        }
+        
+        /**
+         * Returns the same format with the first row of the file skipped
+         */
+        public Format withHeader() {
+            return new Format(delimiter, widths, true);
+        }
+        
+        /**
+         * Splits one row into trimmed fields
+         * @return the number of fields, or -1 if a quote is not closed
+         */
+        int split(byte[] data, int from, int to, Fields fields) {
+            fields.quoted = false;
+            if (widths != null) {
+                int count = 0;
+                int start = from;
+                for (int i = 0; i < widths.length && start < to && count < fields.starts.length; i++) {
+                    int end = Math.min(start + widths[i], to);
+                    fields.set(count++, data, start, end);
+                    start = end;
+                }
+                return count;
+            }
+            
+            int count = 0;
+            int start = from;
+            while (true) {
+                while (start < to && data[start] == ' ') {
+                    start++;
+                }
+                int end;
+                int next;
+                if (start < to && data[start] == '"') {
+                    // Quoted field: runs to the closing quote, "" is an escaped quote
+                    int i = start + 1;
+                    while (true) {
+                        if (i >= to) {
+                            return -1;
+                        }
+                        if (data[i] == '"') {
+                            if (i + 1 < to && data[i + 1] == '"') {
+                                fields.quoted = true;
+                                i += 2;
+                                continue;
+                            }
+                            break;
+                        }
+                        i++;
+                    }
+                    end = i;
+                    next = i + 1;
+                    while (next < to && data[next] != delimiter) {
+                        next++;
+                    }
+                    start++;
+                } else {
+                    next = start;
+                    while (next < to && data[next] != delimiter) {
+                        next++;
+                    }
+                    end = next;
+                }
+                if (count < fields.starts.length) {
+                    fields.set(count, data, start, end);
+                }
+                count++;
+                if (next >= to) {
+                    return count;
+                }
+                start = next + 1;
+            }
+        }
+    }
+    
+    /**
+     * Field offsets of the current row, reused from row to row
+     */
+    private static final class Fields {
+        final int[] starts;
+        final int[] ends;
+        // Whether some field contains an escaped quote
+        boolean quoted;
+        
+        Fields(int capacity) {
+            this.starts = new int[capacity];
+            this.ends = new int[capacity];
+        }
+        
+        void set(int field, byte[] data, int start, int end) {
+            while (start < end && data[start] == ' ') {
+                start++;
+            }
+            while (end > start && data[end - 1] == ' ') {
+                end--;
+            }
+            starts[field] = start;
+            ends[field] = end;
+        }
+        
+        boolean isEmpty(int field) {
+            return starts[field] == ends[field];
+        }
+    }
+    
+    /**
+     * Read-only CharSequence over ASCII bytes, so Money.parse can read an
+     * amount in place
+     */
+    private static final class AsciiView implements CharSequence {
+        private byte[] data;
+        private int from;
+        private int to;
+        
+        AsciiView wrap(byte[] data, int from, int to) {
+            this.data = data;
+            this.from = from;
+            this.to = to;
+            return this;
+        }
+        
+        @Override
+        public int length() {
+            return to - from;
+        }
+        
+        @Override
+        public char charAt(int index) {
+            return (char) (data[from + index] & 0xFF);
+        }
+        
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return toString().subSequence(start, end);
+        }
+        
+        @Override
+        public String toString() {
+            return new String(data, from, to - from, StandardCharsets.ISO_8859_1);
+        }
+    }
+    
+    /**
+     * One buffer of whole rows, plus the per-chunk parsing state that goes
+     * back to the pool with it
+     */
+    private static final class Chunk {
+        final byte[] data;
+        // Rows occupy data[start .. length)
+        int start;
+        int length;
+        // File offset of data[0]
+        long offset;
+        long index;
+        final PostingBatch batch = new PostingBatch();
+        // Row bounds of each batch entry, for the reject file
+        int[] rowStarts = new int[16];
+        int[] rowEnds = new int[16];
+        
+        Chunk(int capacity) {
+            this.data = new byte[capacity];
+        }
+        
+        void addRow(int entry, int from, int to) {
+            if (entry == rowStarts.length) {
+                rowStarts = Arrays.copyOf(rowStarts, entry << 1);
+                rowEnds = Arrays.copyOf(rowEnds, entry << 1);
+            }
+            rowStarts[entry] = from;
+            rowEnds[entry] = to;
+        }
+    }
+    
+    /**
+     * Counts of one import run
+     */
+    public static final class Result {
+        public final long rows;
+        public final long imported;
+        public final long rejected;
+        
+        Result(long rows, long imported, long rejected) {
+            this.rows = rows;
+            this.imported = imported;
+            this.rejected = rejected;
+        }
+        
+        @Override
+        public String toString() {
+            return String.format("%d rows: %d imported, %d rejected", rows, imported, rejected);
+        }
+    }
+    
+    /**
+     * State of one import run
+     */
+    private abstract class Run {
+        final Path rejectFile;
+        final OutputStream rejects;
+        final BlockingQueue<Chunk> free;
+        final LongAdder rows = new LongAdder();
+        final LongAdder imported = new LongAdder();
+        final LongAdder rejected = new LongAdder();
+        volatile Throwable failure;
+        
+        Run(Path rejectFile) throws IOException {
+            this.rejectFile = rejectFile;
+            this.rejects = new BufferedOutputStream(Files.newOutputStream(rejectFile));
+            // Two buffers per worker: one being parsed, one being filled
+            this.free = new ArrayBlockingQueue<>(threads * 2);
+            for (int i = 0; i < threads * 2; i++) {
+                free.add(new Chunk(chunkBytes));
+            }
+        }
+        
+        /**
+         * Imports one chunk. Must always return the chunk to the pool.
+         */
+        abstract void process(Chunk chunk);
+        
+        void fail(Throwable e) {
+            if (failure == null) {
+                failure = e;
+            }
+        }
+        
+        void reject(long offset, String reason, byte[] data, int from, int to) {
+            rejected.increment();
+            byte[] reasonBytes = reason.getBytes(StandardCharsets.UTF_8);
+            byte[] offsetBytes = Long.toString(offset).getBytes(StandardCharsets.US_ASCII);
+            synchronized (rejects) {
+                try {
+                    rejects.write(offsetBytes);
+                    rejects.write(SEPARATOR);
+                    rejects.write(reasonBytes);
+                    rejects.write(SEPARATOR);
+                    rejects.write(data, from, to - from);
+                    rejects.write(NEWLINE);
+                } catch (IOException e) {
+                    fail(e);
+                }
+            }
+        }
+    }
+    
+    private final Bank bank;
+    private final Format format;
+    private final int threads;
+    private final int chunkBytes;
+    
+    /**
+     * Creates an importer using every available core and 4 MiB chunks
+     */
+    public BulkImporter(Bank bank, Format format) {
+        this(bank, format, Runtime.getRuntime().availableProcessors(), DEFAULT_CHUNK_BYTES);
+    }
+    
+    /**
+     * @param threads Number of parsing threads
+     * @param chunkBytes Size of each read buffer; no row may be longer
+     */
+    public BulkImporter(Bank bank, Format format, int threads, int chunkBytes) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Importer needs at least one thread");
+        }
+        if (chunkBytes < 1024) {
+            throw new IllegalArgumentException("Chunks must be at least 1 KiB");
+        }
+        this.bank = bank;
+        this.format = format;
+        this.threads = threads;
+        this.chunkBytes = chunkBytes;
+    }
+    
+    /**
+     * Opens an account for every row of the file
+     * @param rejectFile Receives malformed rows and accounts that could not
+     *        be opened; replaced if it exists
+     */
+    public Result importAccounts(Path file, Path rejectFile) throws IOException {
+        Run run = new Run(rejectFile) {
+            @Override
+            void process(Chunk chunk) {
+                try {
+                    openAccounts(this, chunk);
+                } catch (RuntimeException | Error e) {
+                    fail(e);
+                } finally {
+                    free.add(chunk);
+                }
+            }
+        };
+        return execute(run, file);
+    }
+    
+    /**
+     * Posts every row of the file, in file order
+     * @param rejectFile Receives malformed rows and postings the bank
+     *        rejected; replaced if it exists
+     */
+    public Result importPostings(Path file, Path rejectFile) throws IOException {
+        Run run = new Run(rejectFile) {
+            // Index of the next chunk allowed to post
+            private long nextToPost;
+            
+            @Override
+            void process(Chunk chunk) {
+                try {
+                    try {
+                        parsePostings(this, chunk);
+                    } catch (RuntimeException | Error e) {
+                        fail(e);
+                    }
+                    // Chunks are queued in file order, so the chunk whose
+                    // turn it is has always been picked up already
+                    synchronized (this) {
+                        while (nextToPost != chunk.index) {
+                            try {
+                                wait();
+                            } catch (InterruptedException e) {
+                                Thread.currentThread().interrupt();
+                                fail(e);
+                                return;
+                            }
+                        }
+                    }
+                    try {
+                        if (failure == null) {
+                            post(this, chunk);
+                        }
+                    } catch (RuntimeException | Error e) {
+                        fail(e);
+                    } finally {
+                        synchronized (this) {
+                            nextToPost++;
+                            notifyAll();
+                        }
+                    }
+                } finally {
+                    free.add(chunk);
+                }
+            }
+        };
+        return execute(run, file);
+    }
+    
+    /**
+     * Reads the file into chunks of whole rows and hands them to the
+     * workers, then waits for every chunk to finish
+     */
+    private Result execute(Run run, Path file) throws IOException {
+        ExecutorService workers = Executors.newFixedThreadPool(threads, task -> {
+            Thread thread = new Thread(task, "bulk-import");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long fileOffset = 0;
+            long index = 0;
+            int carry = 0;
+            boolean skipping = false;
+            Chunk chunk = run.free.take();
+            while (run.failure == null) {
+                ByteBuffer buffer = ByteBuffer.wrap(chunk.data, carry, chunk.data.length - carry);
+                boolean eof = false;
+                while (buffer.hasRemaining()) {
+                    if (channel.read(buffer) < 0) {
+                        eof = true;
+                        break;
+                    }
+                }
+                int filled = buffer.position();
+                int start = 0;
+                if (skipping) {
+                    // Drop the rest of an over-long row
+                    while (start < filled && chunk.data[start] != '\n') {
+                        start++;
+                    }
+                    skipping = start == filled;
+                    if (!skipping) {
+                        start++;
+                    }
+                }
+                int end = filled;
+                if (!eof) {
+                    while (end > start && chunk.data[end - 1] != '\n') {
+                        end--;
+                    }
+                    if (end == start && !skipping) {
+                        run.rows.increment();
+                        run.reject(fileOffset + start, "Row is longer than " + chunkBytes + " bytes",
+                            chunk.data, start, Math.min(filled, start + 80));
+                        skipping = true;
+                    }
+                    if (end == start) {
+                        fileOffset += filled;
+                        carry = 0;
+                        continue;
+                    }
+                }
+                
+                Chunk next = eof ? null : run.free.take();
+                if (next != null) {
+                    carry = filled - end;
+                    System.arraycopy(chunk.data, end, next.data, 0, carry);
+                }
+                chunk.start = start;
+                chunk.length = end;
+                chunk.offset = fileOffset;
+                chunk.index = index++;
+                fileOffset += end;
+                Chunk submitted = chunk;
+                workers.execute(() -> run.process(submitted));
+                if (eof) {
+                    break;
+                }
+                chunk = next;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            run.fail(e);
+        } finally {
+            workers.shutdown();
+            try {
+                while (!workers.awaitTermination(1, TimeUnit.MINUTES)) {
+                    // Keep waiting: chunks still hold rows to import
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            synchronized (run.rejects) {
+                run.rejects.close();
+            }
+        }
+        
+        Throwable failure = run.failure;
+        if (failure instanceof IOException) {
+            throw (IOException) failure;
+        }
+        if (failure instanceof RuntimeException) {
+            throw (RuntimeException) failure;
+        }
+        if (failure instanceof Error) {
+            throw (Error) failure;
+        }
+        if (failure != null) {
+            throw new IOException("Import interrupted", failure);
+        }
+        return new Result(run.rows.sum(), run.imported.sum(), run.rejected.sum());
+    }
+    
+    /**
+     * Calls the visitor for every non-empty row of a chunk, without the line
+     * break, skipping the header row if the format has one
+     */
+    private void forEachRow(Chunk chunk, RowVisitor visitor) {
+        byte[] data = chunk.data;
+        int from = chunk.start;
+        boolean first = chunk.index == 0;
+        while (from < chunk.length) {
+            int newline = from;
+            while (newline < chunk.length && data[newline] != '\n') {
+                newline++;
+            }
+            int to = newline;
+            if (to > from && data[to - 1] == '\r') {
+                to--;
+            }
+            if (first && format.header) {
+                first = false;
+            } else if (to > from) {
+                visitor.visit(from, to);
+            }
+            first = false;
+            from = newline + 1;
+        }
+    }
+    
+    private interface RowVisitor {
+        void visit(int from, int to);
+    }
+    
+    private void openAccounts(Run run, Chunk chunk) {
+        Fields fields = new Fields(ACCOUNT_FIELDS);
+        AsciiView view = new AsciiView();
+        byte[] data = chunk.data;
+        long[] lastSequence = new long[1];
+        forEachRow(chunk, (from, to) -> {
+            run.rows.increment();
+            long offset = chunk.offset + from;
+            if (format.split(data, from, to, fields) != ACCOUNT_FIELDS) {
+                run.reject(offset, "Expected " + ACCOUNT_FIELDS + " fields", data, from, to);
+                return;
+            }
+            long accountNumber = 0;
+            if (!fields.isEmpty(0)) {
+                accountNumber = parseNumber(data, fields.starts[0], fields.ends[0]);
+                if (accountNumber < 0) {
+                    run.reject(offset, "Invalid account number", data, from, to);
+                    return;
+                }
+            }
+            long openingBalance;
+            try {
+                openingBalance = fields.isEmpty(2) ? Money.ZERO
+                    : Money.parse(view.wrap(data, fields.starts[2], fields.ends[2]));
+            } catch (NumberFormatException | ArithmeticException e) {
+                run.reject(offset, "Invalid opening balance", data, from, to);
+                return;
+            }
+            if (openingBalance < 0) {
+                run.reject(offset, "Opening balance cannot be negative", data, from, to);
+                return;
+            }
+            String name = new String(data, fields.starts[1], fields.ends[1] - fields.starts[1], StandardCharsets.UTF_8);
+            if (fields.quoted) {
+                name = name.replace("\"\"", "\"");
+            }
+            
+            long sequence;
+            try {
+                if (accountNumber == 0) {
+                    do {
+                        Account account = new Account(name, openingBalance);
+                        // Held to the deposit limit of the tier the drawn number falls in
+                        PostingStatus status = Account.checkOpeningDeposit(account, openingBalance);
+                        if (!status.isSuccess()) {
+                            run.reject(offset, status.getMessage(), data, from, to);
+                            return;
+                        }
+                        sequence = bank.register(account);
+                    } while (sequence < 0);
+                } else {
+                    Account account = Account.withNumber(accountNumber, name, openingBalance);
+                    PostingStatus status = Account.checkOpeningDeposit(account, openingBalance);
+                    if (!status.isSuccess()) {
+                        run.reject(offset, status.getMessage(), data, from, to);
+                        return;
+                    }
+                    sequence = bank.register(account);
+                    if (sequence < 0) {
+                        run.reject(offset, "Account number already exists", data, from, to);
+                        return;
+                    }
+                }
+            } catch (IllegalArgumentException e) {
+                run.reject(offset, e.getMessage(), data, from, to);
+                return;
+            }
+            lastSequence[0] = Math.max(lastSequence[0], sequence);
+            run.imported.increment();
+        });
+        // One wait covers every account opened from this chunk
+        bank.awaitDurable(lastSequence[0]);
+    }
+    
+    private void parsePostings(Run run, Chunk chunk) {
+        Fields fields = new Fields(POSTING_FIELDS);
+        AsciiView view = new AsciiView();
+        byte[] data = chunk.data;
+        PostingBatch batch = chunk.batch;
+        batch.clear();
+        forEachRow(chunk, (from, to) -> {
+            run.rows.increment();
+            long offset = chunk.offset + from;
+            if (format.split(data, from, to, fields) != POSTING_FIELDS) {
+                run.reject(offset, "Expected " + POSTING_FIELDS + " fields", data, from, to);
+                return;
+            }
+            byte type = parseType(data, fields.starts[0], fields.ends[0]);
+            if (type == 0) {
+                run.reject(offset, "Unknown posting type", data, from, to);
+                return;
+            }
+            long account = parseNumber(data, fields.starts[1], fields.ends[1]);
+            if (account < 0) {
+                run.reject(offset, "Invalid account number", data, from, to);
+                return;
+            }
+            long counterparty = 0;
+            if (type == TransactionJournal.TRANSFER) {
+                counterparty = parseNumber(data, fields.starts[2], fields.ends[2]);
+                if (counterparty < 0) {
+                    run.reject(offset, "Invalid recipient account number", data, from, to);
+                    return;
+                }
+            } else if (!fields.isEmpty(2)) {
+                run.reject(offset, "Only transfers have a recipient", data, from, to);
+                return;
+            }
+            long amount;
+            try {
+                amount = Money.parse(view.wrap(data, fields.starts[3], fields.ends[3]));
+            } catch (NumberFormatException | ArithmeticException e) {
+                run.reject(offset, "Invalid amount", data, from, to);
+                return;
+            }
+            
+            int entry;
+            if (type == TransactionJournal.DEPOSIT) {
+                entry = batch.deposit(account, amount);
+            } else if (type == TransactionJournal.WITHDRAWAL) {
+                entry = batch.withdraw(account, amount);
+            } else {
+                entry = batch.transfer(account, counterparty, amount);
+            }
+            chunk.addRow(entry, from, to);
+        });
+    }
+    
+    /**
+     * Posts a parsed chunk and rejects the entries the bank turned down
+     */
+    private void post(Run run, Chunk chunk) {
+        PostingBatch batch = chunk.batch;
+        if (batch.isEmpty()) {
+            return;
+        }
+        PostingStatus[] results = bank.post(batch);
+        for (int i = 0; i < results.length; i++) {
+            if (results[i].isSuccess()) {
+                run.imported.increment();
+            } else {
+                run.reject(chunk.offset + chunk.rowStarts[i], results[i].getMessage(),
+                    chunk.data, chunk.rowStarts[i], chunk.rowEnds[i]);
+            }
+        }
+    }
+    
+    /**
+     * Parses an unsigned decimal number in place
+     * @return the number, or -1 if the field is empty, not all digits or
+     *         too long
+     */
+    private static long parseNumber(byte[] data, int from, int to) {
+        if (from == to || to - from > 18) {
+            return -1;
+        }
+        long value = 0;
+        for (int i = from; i < to; i++) {
+            int digit = data[i] - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+    
+    /**
+     * Reads a posting type, either its initial or its full name, ignoring case
+     * @return the journal record type, or 0 if it is not one
+     */
+    private static byte parseType(byte[] data, int from, int to) {
+        if (from == to) {
+            return 0;
+        }
+        byte type;
+        String name;
+        switch (data[from] | 0x20) {
+            case 'd':
+                type = TransactionJournal.DEPOSIT;
+                name = "deposit";
+                break;
+            case 'w':
+                type = TransactionJournal.WITHDRAWAL;
+                name = "withdrawal";
+                break;
+            case 't':
+                type = TransactionJournal.TRANSFER;
+                name = "transfer";
+                break;
+            default:
+                return 0;
+        }
+        if (to - from == 1) {
+            return type;
+        }
+        if (to - from != name.length()) {
+            return 0;
+        }
+        for (int i = 0; i < name.length(); i++) {
+            if ((data[from + i] | 0x20) != name.charAt(i)) {
+                return 0;
+            }
+        }
+        return type;
+    }
+}
\ No newline at end of file
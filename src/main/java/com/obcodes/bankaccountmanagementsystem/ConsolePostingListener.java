@@ -0,0 +1,89 @@
+package com.obcodes.bankaccountmanagementsystem;
+
+/**
+ * Renders posting outcomes to the console for the interactive menu
+ * @author Obakeng Phale
+ */
+public class ConsolePostingListener implements PostingListener {
+    
+    @Override
+    public void onDeposit(Account account, long amount, long balance, PostingStatus status) {
+        switch (status) {
+            case SUCCESS:
+                System.out.printf("[SUCCESS] Deposit successful: R%s%n", Money.format(amount));
+                System.out.printf("[INFO] New balance: R%s%n", Money.format(balance));
+                break;
+            case LIMIT_EXCEEDED:
+                System.out.printf("[ERROR] Deposit failed: Amount exceeds maximum deposit limit of R%s%n",
+                    Money.format(account.getLimits().getMaxDeposit()));
+                break;
+            default:
+                System.out.println("[ERROR] Deposit failed: " + status.getMessage());
+        }
+    }
+    
+    @Override
+    public void onWithdrawal(Account account, long amount, long balance, PostingStatus status) {
+        switch (status) {
+            case SUCCESS:
+                System.out.printf("[SUCCESS] Withdrawal successful: R%s%n", Money.format(amount));
+                System.out.printf("[INFO] Remaining balance: R%s%n", Money.format(balance));
+                break;
+            case LIMIT_EXCEEDED:
+                System.out.printf("[ERROR] Withdrawal failed: Amount exceeds maximum withdrawal limit of R%s%n",
+                    Money.format(account.getLimits().getMaxWithdrawal()));
+                break;
+            case INSUFFICIENT_FUNDS:
+                System.out.println("[ERROR] Withdrawal failed: Insufficient funds");
+                System.out.printf("[INFO] Current balance: R%s%n", Money.format(balance));
+                System.out.printf("[INFO] Attempted withdrawal: R%s%n", Money.format(amount));
+                System.out.printf("[INFO] Shortfall: R%s%n", Money.format(amount - balance));
+                break;
+            default:
+                System.out.println("[ERROR] Withdrawal failed: " + status.getMessage());
+        }
+    }
+    
+    @Override
+    public void onTransfer(Account sender, Account recipient, long amount,
+                           long senderBalance, long recipientBalance, PostingStatus status) {
+        switch (status) {
+            case SUCCESS:
+                displayConfirmation(sender, recipient, amount,
+                    senderBalance + amount, recipientBalance - amount);
+                System.out.println("\n[SUCCESS] TRANSFER COMPLETED SUCCESSFULLY!");
+                System.out.println("==========================================");
+                System.out.printf("Sender New Balance: R%s%n", Money.format(senderBalance));
+                System.out.printf("Recipient New Balance: R%s%n", Money.format(recipientBalance));
+                break;
+            case INSUFFICIENT_FUNDS:
+                displayConfirmation(sender, recipient, amount, senderBalance, recipientBalance);
+                System.out.println("[ERROR] Transfer failed: Insufficient funds");
+                System.out.printf("[INFO] Current balance: R%s%n", Money.format(senderBalance));
+                System.out.printf("[INFO] Shortfall: R%s%n", Money.format(amount - senderBalance));
+                break;
+            case LIMIT_EXCEEDED:
+                System.out.printf("[ERROR] Transfer failed: Amount exceeds maximum transfer limit of R%s%n",
+                    Money.format(sender.getLimits().getMaxTransfer()));
+                break;
+            default:
+                System.out.println("[ERROR] Transfer failed: " + status.getMessage());
+        }
+    }
+    
+    /**
+     * Displays the transfer details with the balances before the transfer
+     */
+    private void displayConfirmation(Account sender, Account recipient, long amount,
+                                     long senderBefore, long recipientBefore) {
+        System.out.println("\n==========================================");
+        System.out.println("        TRANSFER CONFIRMATION");
+        System.out.println("==========================================");
+        System.out.printf("From: %s (Account: %d)%n", sender.getHolderName(), sender.getAccountNumber());
+        System.out.printf("To: %s (Account: %d)%n", recipient.getHolderName(), recipient.getAccountNumber());
+        System.out.printf("Amount: R%s%n", Money.format(amount));
+        System.out.printf("Sender Current Balance: R%s%n", Money.format(senderBefore));
+        System.out.printf("Recipient Current Balance: R%s%n", Money.format(recipientBefore));
+        System.out.println("==========================================");
+    }
+}
\ No newline at end of file
@@ -0,0 +1,335 @@
+package com.obcodes.bankaccountmanagementsystem;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.function.LongFunction;
+
+/**
+ * Off-heap store for the older part of every account's history.
+ *
+ * A history attached to an archive keeps only its newest postings on the
+ * heap: once it holds twice hotRows of them, all but the newest hotRows
+ * are written here and dropped from its columns. The archive is a series
+ * of fixed-size segment files, each memory-mapped once. A history claims a
+ * run of records in the current segment, writes the run through the
+ * mapping and from then on never changes it, and keeps its own small
+ * index of runs on the heap. Reading an archived posting is an index
+ * lookup and a read from the page cache, so the heap holds each account's
+ * working set and the operating system pages older postings in and out.
+ *
+ * Records are 48 bytes with the same fields as the heap columns, except the
+ * description. A transfer record keeps only the counterparty's number and
+ * is shown with that account's current name, looked up through the bank.
+ * The few fixed descriptions ("Cash deposit" and so on) are stored as a
+ * code; any other text, such as a rename or an accrual's dated
+ * description, is written into the run after its records and the record
+ * keeps its position. Nothing about an archived posting stays on the heap.
+ * Segments are therefore only meaningful to the process that wrote them:
+ * they are deleted on close and at start-up, and the journal stays the
+ * durable record that history is rebuilt from.
+ * @author Obakeng Phale
+ */
+public final class HistoryArchive implements AutoCloseable {
+    public static final int DEFAULT_HOT_ROWS = 1024;
+    public static final int DEFAULT_SEGMENT_BYTES = 64 << 20;
+    
+    static final int RECORD_BYTES = 48;
+    private static final int ID = 0;
+    private static final int TIMESTAMP = 8;
+    private static final int AMOUNT = 16;
+    private static final int BALANCE = 24;
+    private static final int COUNTERPARTY = 32;
+    private static final int DESCRIPTION = 40;
+    private static final int TYPE = 44;
+    private static final String PREFIX = "history-";
+    private static final String SUFFIX = ".seg";
+    // Description code of a transfer record, whose text is the counterparty's name
+    private static final int NO_TEXT = -1;
+    // Descriptions stored as code -2 - index; other text is stored in the run
+    private static final String[] FIXED_TEXT = {"Cash deposit", "Cash withdrawal", "Initial deposit", ""};
+    private static final int NOT_FIXED = -1;
+    private static final String UNKNOWN_NAME = "Unknown";
+    
+    private final Path directory;
+    private final int hotRows;
+    private final int segmentBytes;
+    // Segments in creation order; a segment's number is its index
+    private Segment[] segments = new Segment[8];
+    private int segmentCount;
+    private Segment current;
+    private long archivedBytes;
+    private boolean closed;
+    // Current holder name of an account number, or null if there is none
+    private volatile LongFunction<String> names = number -> null;
+    
+    /**
+     * Creates an archive that keeps DEFAULT_HOT_ROWS postings per account
+     * on the heap, in DEFAULT_SEGMENT_BYTES segments
+     */
+    public HistoryArchive(Path directory) throws IOException {
+        this(directory, DEFAULT_HOT_ROWS, DEFAULT_SEGMENT_BYTES);
+    }
+    
+    /**
+     * Creates the directory if needed and removes segments left behind by
+     * an earlier process
+     * @param hotRows Newest postings of each account kept on the heap; an
+     *        account holds between hotRows and twice hotRows there
+     * @param segmentBytes Size of each segment file
+     */
+    public HistoryArchive(Path directory, int hotRows, int segmentBytes) throws IOException {
+        if (hotRows < 1) {
+            throw new IllegalArgumentException("Hot rows must be positive");
+        }
+        if (segmentBytes < RECORD_BYTES * hotRows) {
+            throw new IllegalArgumentException("A segment must hold at least " + hotRows + " records");
+        }
+        this.directory = directory;
+        this.hotRows = hotRows;
+        this.segmentBytes = segmentBytes / RECORD_BYTES * RECORD_BYTES;
+        Files.createDirectories(directory);
+        try (DirectoryStream<Path> stale = Files.newDirectoryStream(directory, PREFIX + "*" + SUFFIX)) {
+            for (Path file : stale) {
+                Files.delete(file);
+            }
+        }
+    }
+    
+    public int getHotRows() {
+        return hotRows;
+    }
+    
+    /**
+     * Sets where archived transfers look up their counterparty's name;
+     * the bank that owns the archive calls this once
+     */
+    void resolveNamesWith(LongFunction<String> names) {
+        this.names = names;
+    }
+    
+    /**
+     * Returns the most records one run can hold
+     */
+    int getMaxRunRows() {
+        return segmentBytes / RECORD_BYTES;
+    }
+    
+    /**
+     * Returns the most bytes of records and text one run can hold
+     */
+    int getSegmentBytes() {
+        return segmentBytes;
+    }
+    
+    /**
+     * Returns a description's text encoded for a run, or null if the record
+     * itself can hold it: a transfer's, which is the counterparty's name,
+     * or a fixed one
+     */
+    static byte[] encodeText(long counterparty, String text) {
+        if (counterparty != 0L || fixedCode(text) != NOT_FIXED) {
+            return null;
+        }
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+    
+    /**
+     * Returns the bytes a run needs for text from encodeText
+     */
+    static int textBytes(byte[] encoded) {
+        return encoded == null ? 0 : Integer.BYTES + encoded.length;
+    }
+    
+    private static int fixedCode(String text) {
+        for (int i = 0; i < FIXED_TEXT.length; i++) {
+            if (FIXED_TEXT[i].equals(text)) {
+                return i;
+            }
+        }
+        return NOT_FIXED;
+    }
+    
+    public synchronized int getSegmentCount() {
+        return segmentCount;
+    }
+    
+    /**
+     * Returns the bytes of archived postings across every segment
+     */
+    public synchronized long getArchivedBytes() {
+        return archivedBytes;
+    }
+    
+    /**
+     * Claims room for a run of records followed by their text, in the
+     * current segment if it has room and otherwise in a new one
+     * @param textBytes Sum of textBytes over the run's records
+     * @return the segment number in the high 32 bits and the byte offset
+     *         of the run in the low 32
+     */
+    synchronized long claim(int records, int textBytes) throws IOException {
+        if (closed) {
+            throw new IllegalStateException("History archive is closed");
+        }
+        // Text is padded so the next run's records stay 8-byte aligned
+        long bytes = (long) records * RECORD_BYTES + ((textBytes + 7L) & ~7L);
+        if (records < 1 || bytes > segmentBytes) {
+            throw new IllegalArgumentException("Run of " + records + " records does not fit a segment");
+        }
+        if (current == null || segmentBytes - current.used < bytes) {
+            current = createSegment();
+        }
+        int offset = current.used;
+        current.used += (int) bytes;
+        archivedBytes += bytes;
+        return ((long) current.number << 32) | offset;
+    }
+    
+    /**
+     * Returns a segment by number
+     */
+    synchronized Segment segment(int number) {
+        return segments[number];
+    }
+    
+    private Segment createSegment() throws IOException {
+        Path file = directory.resolve(String.format("%s%06d%s", PREFIX, segmentCount, SUFFIX));
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            // The mapping outlives the channel and extends the file
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes);
+        }
+        if (segmentCount == segments.length) {
+            segments = Arrays.copyOf(segments, segmentCount << 1);
+        }
+        Segment segment = new Segment(this, segmentCount, file, buffer);
+        segments[segmentCount++] = segment;
+        return segment;
+    }
+    
+    /**
+     * Deletes the segment files. Histories attached to the archive must not
+     * be read or written afterwards; their mappings are released when they
+     * are garbage collected.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        IOException failure = null;
+        for (int i = 0; i < segmentCount; i++) {
+            try {
+                Files.deleteIfExists(segments[i].file);
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+    
+    /**
+     * One mapped segment file. Each run is written by one history, before
+     * that history publishes it, and never changes afterwards, so readers
+     * need no lock.
+     */
+    static final class Segment {
+        final int number;
+        final Path file;
+        private final HistoryArchive archive;
+        private final MappedByteBuffer buffer;
+        // Bytes claimed so far (guarded by the archive)
+        private int used;
+        
+        Segment(HistoryArchive archive, int number, Path file, MappedByteBuffer buffer) {
+            this.archive = archive;
+            this.number = number;
+            this.file = file;
+            this.buffer = buffer;
+        }
+        
+        /**
+         * Writes a record, and its text if it has any, into a claimed run
+         * @param counterparty Other account of a transfer, otherwise 0
+         * @param text Free text; not stored for a transfer
+         * @param encoded The text from encodeText
+         * @param textAt Where the run's next text goes
+         * @return where the text after this record's goes
+         */
+        int put(int position, long id, long timestamp, long amount, long balance, long counterparty,
+                String text, byte[] encoded, byte type, int textAt) {
+            int code;
+            if (counterparty != 0L) {
+                code = NO_TEXT;
+            } else if (encoded == null) {
+                code = -2 - fixedCode(text);
+            } else {
+                code = textAt;
+                buffer.putInt(textAt, encoded.length);
+                buffer.put(textAt + Integer.BYTES, encoded);
+                textAt += textBytes(encoded);
+            }
+            buffer.putLong(position + ID, id);
+            buffer.putLong(position + TIMESTAMP, timestamp);
+            buffer.putLong(position + AMOUNT, amount);
+            buffer.putLong(position + BALANCE, balance);
+            buffer.putLong(position + COUNTERPARTY, counterparty);
+            buffer.putInt(position + DESCRIPTION, code);
+            buffer.put(position + TYPE, type);
+            return textAt;
+        }
+        
+        long id(int position) {
+            return buffer.getLong(position + ID);
+        }
+        
+        long timestamp(int position) {
+            return buffer.getLong(position + TIMESTAMP);
+        }
+        
+        long amount(int position) {
+            return buffer.getLong(position + AMOUNT);
+        }
+        
+        long balance(int position) {
+            return buffer.getLong(position + BALANCE);
+        }
+        
+        long counterparty(int position) {
+            return buffer.getLong(position + COUNTERPARTY);
+        }
+        
+        /**
+         * Returns a record's free text, or for a transfer the counterparty's
+         * current name
+         */
+        String text(int position) {
+            int code = buffer.getInt(position + DESCRIPTION);
+            if (code == NO_TEXT) {
+                String name = archive.names.apply(counterparty(position));
+                return name != null ? name : UNKNOWN_NAME;
+            }
+            if (code < 0) {
+                return FIXED_TEXT[-2 - code];
+            }
+            byte[] text = new byte[buffer.getInt(code)];
+            buffer.get(code + Integer.BYTES, text);
+            return new String(text, StandardCharsets.UTF_8);
+        }
+        
+        byte type(int position) {
+            return buffer.get(position + TYPE);
+        }
+    }
+}
\ No newline at end of file
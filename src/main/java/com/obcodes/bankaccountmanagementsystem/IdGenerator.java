@@ -0,0 +1,147 @@
+package com.obcodes.bankaccountmanagementsystem;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free generator for account numbers and transaction IDs.
+ *
+ * Account numbers are handed out in sequence from the 12-digit range, so no
+ * two are ever the same; after a restart the sequence resumes past the
+ * highest account number restored.
+ *
+ * Transaction IDs are 64-bit, Snowflake style: milliseconds since
+ * 2024-01-01 (41 bits), a node number (10 bits) and a per-millisecond
+ * sequence (12 bits). When more than 4096 IDs are needed in one millisecond
+ * the generator borrows from the next millisecond rather than waiting, so
+ * IDs are strictly increasing and a single compare-and-set is all it costs.
+ * IDs stay numeric; the "TXN..." string is only built for display.
+ * @author Obakeng Phale
+ */
+public final class IdGenerator {
+    public static final long MIN_ACCOUNT_NUMBER = 100000000000L;
+    public static final long MAX_ACCOUNT_NUMBER = 999999999999L;
+    
+    private static final long EPOCH_MILLIS = 1704067200000L; // 2024-01-01T00:00:00Z
+    private static final int NODE_BITS = 10;
+    private static final int SEQUENCE_BITS = 12;
+    public static final int MAX_NODE = (1 << NODE_BITS) - 1;
+    
+    /**
+     * Shared generator; the node number comes from the bank.node system
+     * property so several instances can share an ID space
+     */
+    public static final IdGenerator DEFAULT = new IdGenerator(Integer.getInteger("bank.node", 0));
+    
+    private final long node;
+    private final AtomicLong lastAccountNumber = new AtomicLong(MIN_ACCOUNT_NUMBER - 1);
+    // Timestamp and sequence of the last transaction ID, without the node bits
+    private final AtomicLong lastTick = new AtomicLong();
+    
+    public IdGenerator(int node) {
+        if (node < 0 || node > MAX_NODE) {
+            throw new IllegalArgumentException("Node must be between 0 and " + MAX_NODE);
+        }
+        this.node = node;
+    }
+    
+    /**
+     * Returns the next unused 12-digit account number. Wraps to the start of
+     * the range once it is exhausted; callers that register accounts must
+     * still reject a number that is already taken.
+     */
+    public long nextAccountNumber() {
+        while (true) {
+            long last = lastAccountNumber.get();
+            long next = last >= MAX_ACCOUNT_NUMBER ? MIN_ACCOUNT_NUMBER : last + 1;
+            if (lastAccountNumber.compareAndSet(last, next)) {
+                return next;
+            }
+        }
+    }
+    
+    /**
+     * Makes sure future account numbers come after one already in use, e.g.
+     * an account restored from the journal
+     */
+    public void reserveAccountNumber(long accountNumber) {
+        if (accountNumber < MIN_ACCOUNT_NUMBER || accountNumber > MAX_ACCOUNT_NUMBER) {
+            return;
+        }
+        lastAccountNumber.accumulateAndGet(accountNumber, Math::max);
+    }
+    
+    /**
+     * Returns a new transaction ID, unique across every generator with a
+     * different node number
+     */
+    public long nextTransactionId() {
+        return toTransactionId(claimTicks(1));
+    }
+    
+    /**
+     * Fills ids[offset .. offset + count) with new, consecutive transaction
+     * IDs claimed in a single compare-and-set
+     */
+    public void nextTransactionIds(long[] ids, int offset, int count) {
+        if (count <= 0) {
+            return;
+        }
+        long first = claimTicks(count);
+        for (int i = 0; i < count; i++) {
+            ids[offset + i] = toTransactionId(first + i);
+        }
+    }
+    
+    /**
+     * Makes sure future transaction IDs come after one already in use, e.g.
+     * a posting replayed from the journal. IDs of other nodes cannot clash
+     * and are ignored.
+     */
+    public void reserveTransactionId(long transactionId) {
+        if (((transactionId >>> SEQUENCE_BITS) & MAX_NODE) != node) {
+            return;
+        }
+        long tick = ((transactionId >>> (NODE_BITS + SEQUENCE_BITS)) << SEQUENCE_BITS)
+            | (transactionId & ((1L << SEQUENCE_BITS) - 1));
+        if (tick > lastTick.get()) {
+            lastTick.accumulateAndGet(tick, Math::max);
+        }
+    }
+    
+    /**
+     * Claims count consecutive ticks
+     * @return the first tick claimed
+     */
+    private long claimTicks(int count) {
+        long now = (System.currentTimeMillis() - EPOCH_MILLIS) << SEQUENCE_BITS;
+        while (true) {
+            long last = lastTick.get();
+            // Follow the clock, or step past the last ID if the clock has
+            // not moved on (or went backwards)
+            long next = Math.max(now, last + 1);
+            if (lastTick.compareAndSet(last, next + count - 1)) {
+                return next;
+            }
+        }
+    }
+    
+    private long toTransactionId(long tick) {
+        long timestamp = tick >>> SEQUENCE_BITS;
+        long sequence = tick & ((1L << SEQUENCE_BITS) - 1);
+        return (timestamp << (NODE_BITS + SEQUENCE_BITS)) | (node << SEQUENCE_BITS) | sequence;
+    }
+    
+    /**
+     * Returns the time (epoch millis) encoded in a transaction ID
+     */
+    public static long timestampOf(long transactionId) {
+        return (transactionId >>> (NODE_BITS + SEQUENCE_BITS)) + EPOCH_MILLIS;
+    }
+    
+    /**
+     * Renders a transaction ID the way statements show it
+     */
+    public static String formatTransactionId(long transactionId) {
+        return "TXN" + transactionId;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,358 @@
+package com.obcodes.bankaccountmanagementsystem;
+
+import java.security.SecureRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Bounded cache of client-supplied request keys, so a retried posting
+ * returns the outcome of the first attempt instead of moving money twice.
+ *
+ * Keys are spread over lock-striped segments. Each segment keeps its
+ * entries in a fixed ring in the order they were claimed, indexed by an
+ * open-addressing table of ring positions. Every entry lives for the same
+ * time-to-live, so the oldest entry is always the next to expire: eviction
+ * by age or by size only ever drops the head of the ring, and every lookup,
+ * insert and eviction is O(1). A segment's arrays are allocated on first
+ * use and never grow, so memory is fixed by the capacity: about 40 bytes
+ * per entry plus the key strings, which are at most MAX_KEY_LENGTH chars.
+ * Keys are hashed from a random per-process seed rather than with
+ * String.hashCode, so clients cannot pick keys that all land in one
+ * segment and one probe run.
+ *
+ * A duplicate that arrives while the first attempt is still running waits
+ * for its outcome. If the first attempt throws, its key is released and a
+ * waiting duplicate runs the posting itself. An entry whose first attempt
+ * is still running, or that a duplicate is waiting on, is never evicted, or
+ * the duplicate would run the posting again: a claim that needs its ring
+ * slot waits until the duplicates have their outcome, and expired entries
+ * behind it are dropped once they do. Entries only live
+ * in memory, so keys are forgotten on restart.
+ * @author Obakeng Phale
+ */
+public class IdempotencyCache {
+    public static final int DEFAULT_CAPACITY = 1 << 20;
+    public static final long DEFAULT_TTL_MILLIS = TimeUnit.HOURS.toMillis(24);
+    public static final int MAX_KEY_LENGTH = 128;
+    
+    private static final int SEGMENT_BITS = 6;
+    private static final int SEGMENTS = 1 << SEGMENT_BITS;
+    private static final PostingStatus[] STATUSES = PostingStatus.values();
+    private static final long SEED = new SecureRandom().nextLong();
+    
+    private final Segment[] segments = new Segment[SEGMENTS];
+    private final int capacity;
+    private final long ttlNanos;
+    
+    /**
+     * Creates a cache of DEFAULT_CAPACITY keys kept for DEFAULT_TTL_MILLIS
+     */
+    public IdempotencyCache() {
+        this(DEFAULT_CAPACITY, DEFAULT_TTL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+    
+    /**
+     * @param capacity Most keys remembered at once, rounded up so every
+     *        segment holds a power of two; the oldest go first when full
+     * @param ttl How long a key is remembered after it is first used
+     */
+    public IdempotencyCache(int capacity, long ttl, TimeUnit unit) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+        if (ttl <= 0) {
+            throw new IllegalArgumentException("Time to live must be positive");
+        }
+        int perSegment = Integer.highestOneBit(Math.max((capacity - 1) / SEGMENTS, 1)) << 1;
+        if (perSegment <= 0 || perSegment > 1 << 24) {
+            throw new IllegalArgumentException("Capacity is too large: " + capacity);
+        }
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment(perSegment);
+        }
+        this.capacity = perSegment * SEGMENTS;
+        this.ttlNanos = unit.toNanos(ttl);
+    }
+    
+    /**
+     * Returns the most keys remembered at once
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+    
+    /**
+     * Identifies what a key was used for, so that reusing a key for a
+     * different posting is refused rather than answered with the wrong result
+     * @param counterparty Recipient of a transfer, otherwise 0
+     */
+    public static long fingerprint(byte type, long account, long counterparty, long amount) {
+        long h = type;
+        h = h * 0x9e3779b97f4a7c15L + account;
+        h = h * 0x9e3779b97f4a7c15L + counterparty;
+        h = h * 0x9e3779b97f4a7c15L + amount;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        return h ^ (h >>> 33);
+    }
+    
+    /**
+     * Runs a posting once per key: the first call with a key runs it, and
+     * later calls with the same key return the first call's outcome until
+     * the key is evicted
+     * @param fingerprint What the key is used for; see fingerprint
+     * @throws IllegalArgumentException if the key is invalid, or was used
+     *         for a posting with a different fingerprint
+     */
+    public PostingStatus execute(String key, long fingerprint, Supplier<PostingStatus> posting) {
+        if (key == null || key.isEmpty() || key.length() > MAX_KEY_LENGTH) {
+            throw new IllegalArgumentException("Request key must be 1 to " + MAX_KEY_LENGTH + " characters");
+        }
+        int hash = hash(key);
+        Segment segment = segments[hash >>> (32 - SEGMENT_BITS)];
+        long claim = segment.claim(key, hash, fingerprint, ttlNanos);
+        if (claim < 0) {
+            return STATUSES[(int) (-claim - 1)];
+        }
+        PostingStatus status;
+        try {
+            status = posting.get();
+        } catch (RuntimeException | Error e) {
+            segment.release(claim, null);
+            throw e;
+        }
+        segment.release(claim, status);
+        return status;
+    }
+    
+    /**
+     * Returns the number of keys remembered, including ones whose first
+     * attempt is still running
+     */
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+    
+    /**
+     * Hashes a key's chars from SEED; the segment comes from the top bits
+     * and the table slot from the bottom ones
+     */
+    private static int hash(String key) {
+        long h = SEED ^ key.length();
+        for (int i = 0; i < key.length(); i++) {
+            h = Long.rotateLeft((h ^ key.charAt(i)) * 0x9e3779b97f4a7c15L, 29);
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        return (int) (h ^ (h >>> 32));
+    }
+    
+    /**
+     * One lock stripe. Entries are numbered by a running ticket; ticket t
+     * sits at ring position t & mask and is live while head <= t < tail.
+     */
+    private static final class Segment {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition completed = lock.newCondition();
+        private final int ringSize;
+        private final int mask;
+        private final int tableMask;
+        
+        // Ring, allocated on first use; a null key is a released entry
+        private String[] keys;
+        private int[] hashes;
+        private long[] fingerprints;
+        private long[] claimedAt;
+        // Outcome of each entry, null while the first attempt runs
+        private PostingStatus[] results;
+        // Duplicates waiting for each entry's outcome
+        private int[] waiters;
+        // Ring position + 1 of each key, 0 for an empty slot
+        private int[] table;
+        private long head;
+        private long tail;
+        private int live;
+        
+        Segment(int ringSize) {
+            this.ringSize = ringSize;
+            this.mask = ringSize - 1;
+            // At most half full, so probe runs stay short
+            this.tableMask = ringSize * 2 - 1;
+        }
+        
+        /**
+         * Claims a key for a new attempt, or waits for and returns the
+         * outcome of an earlier one
+         * @return the new entry's ticket, or -(ordinal + 1) of the earlier
+         *         attempt's status
+         */
+        long claim(String key, int hash, long fingerprint, long ttlNanos) {
+            lock.lock();
+            try {
+                if (keys == null) {
+                    allocate();
+                }
+                while (true) {
+                    long now = System.nanoTime();
+                    while (head < tail && now - claimedAt[(int) head & mask] >= ttlNanos && !headPinned()) {
+                        evictHead();
+                    }
+                    int position = find(key, hash);
+                    if (position >= 0) {
+                        if (fingerprints[position] != fingerprint) {
+                            throw new IllegalArgumentException("Request key was already used for a different posting");
+                        }
+                        PostingStatus result = results[position];
+                        if (result != null) {
+                            return -(result.ordinal() + 1L);
+                        }
+                        // The first attempt is still running
+                        waiters[position]++;
+                        completed.awaitUninterruptibly();
+                        if (--waiters[position] == 0) {
+                            // A claim may be waiting to evict the entry
+                            completed.signalAll();
+                        }
+                        // The entry stayed put while waited on, unless its attempt failed
+                        result = results[position];
+                        if (result != null && key.equals(keys[position]) && fingerprints[position] == fingerprint) {
+                            return -(result.ordinal() + 1L);
+                        }
+                    } else if (tail - head == ringSize && headPinned()) {
+                        // The ring is full and its oldest entry cannot be evicted yet
+                        completed.awaitUninterruptibly();
+                    } else {
+                        break;
+                    }
+                }
+                if (tail - head == ringSize) {
+                    evictHead();
+                }
+                long ticket = tail++;
+                int position = (int) ticket & mask;
+                keys[position] = key;
+                hashes[position] = hash;
+                fingerprints[position] = fingerprint;
+                claimedAt[position] = System.nanoTime();
+                results[position] = null;
+                int slot = hash & tableMask;
+                while (table[slot] != 0) {
+                    slot = (slot + 1) & tableMask;
+                }
+                table[slot] = position + 1;
+                live++;
+                return ticket;
+            } finally {
+                lock.unlock();
+            }
+        }
+        
+        /**
+         * Records the outcome of a claimed attempt, or forgets the key if
+         * the attempt failed
+         * @param result Outcome, or null to release the key
+         */
+        void release(long ticket, PostingStatus result) {
+            lock.lock();
+            try {
+                // Running entries are never evicted, so the ticket is still in the ring
+                int position = (int) ticket & mask;
+                if (result != null) {
+                    results[position] = result;
+                } else {
+                    unlink(position);
+                }
+                completed.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+        
+        int size() {
+            lock.lock();
+            try {
+                return live;
+            } finally {
+                lock.unlock();
+            }
+        }
+        
+        private void allocate() {
+            keys = new String[ringSize];
+            hashes = new int[ringSize];
+            fingerprints = new long[ringSize];
+            claimedAt = new long[ringSize];
+            results = new PostingStatus[ringSize];
+            waiters = new int[ringSize];
+            table = new int[tableMask + 1];
+        }
+        
+        /**
+         * @return ring position of the key, or -1 if it is not cached
+         */
+        private int find(String key, int hash) {
+            int slot = hash & tableMask;
+            while (true) {
+                int entry = table[slot];
+                if (entry == 0) {
+                    return -1;
+                }
+                int position = entry - 1;
+                if (hashes[position] == hash && keys[position].equals(key)) {
+                    return position;
+                }
+                slot = (slot + 1) & tableMask;
+            }
+        }
+        
+        /**
+         * Returns whether the oldest entry's first attempt is still running
+         * or a duplicate is waiting for its outcome
+         */
+        private boolean headPinned() {
+            int position = (int) head & mask;
+            return keys[position] != null && (results[position] == null || waiters[position] > 0);
+        }
+        
+        private void evictHead() {
+            int position = (int) head & mask;
+            if (keys[position] != null) {
+                unlink(position);
+            }
+            results[position] = null;
+            head++;
+        }
+        
+        /**
+         * Removes a ring entry from the table, shifting later entries of its
+         * probe run back so lookups never need tombstones
+         */
+        private void unlink(int position) {
+            int hole = hashes[position] & tableMask;
+            while (table[hole] != position + 1) {
+                hole = (hole + 1) & tableMask;
+            }
+            int next = (hole + 1) & tableMask;
+            while (table[next] != 0) {
+                int home = hashes[table[next] - 1] & tableMask;
+                // Move the entry back if the hole lies between its home slot and where it sits
+                if (((next - home) & tableMask) >= ((next - hole) & tableMask)) {
+                    table[hole] = table[next];
+                    hole = next;
+                }
+                next = (next + 1) & tableMask;
+            }
+            table[hole] = 0;
+            keys[position] = null;
+            live--;
+        }
+    }
+}
\ No newline at end of file
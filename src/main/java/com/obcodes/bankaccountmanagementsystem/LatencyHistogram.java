@@ -0,0 +1,157 @@
+package com.obcodes.bankaccountmanagementsystem;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Concurrent latency histogram with HDR-style log-linear buckets.
+ *
+ * Values below 32 ns get a bucket each; above that, every power of two is
+ * split into 16 equal buckets, so a percentile is reported to within about
+ * 6% of the true value from 1 ns up to the 73 minute ceiling, in 624
+ * buckets. Recording computes a bucket index from the value's leading
+ * zeros and increments one counter: no allocation and no lock. Counters
+ * are striped by thread, so threads recording at once mostly touch
+ * different cache lines.
+ *
+ * Counts are cumulative; a snapshot sums the stripes and is not atomic
+ * with concurrent recording, which can only make it a few values short.
+ * @author Obakeng Phale
+ */
+public final class LatencyHistogram {
+    /** Largest value recorded; anything longer is counted as this */
+    public static final long MAX_VALUE = (1L << 42) - 1;
+    
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int LINEAR_BUCKETS = SUB_BUCKETS * 2;
+    static final int BUCKETS = bucketOf(MAX_VALUE) + 1;
+    // Longs per cache line, to keep each stripe's sum on its own line
+    private static final int PAD = 8;
+    
+    private final int stripeMask;
+    private final AtomicLongArray counts;
+    private final AtomicLongArray sums;
+    private final AtomicLong max = new AtomicLong();
+    
+    public LatencyHistogram() {
+        int stripes = Integer.highestOneBit(Math.min(Runtime.getRuntime().availableProcessors(), 32) * 2 - 1);
+        this.stripeMask = stripes - 1;
+        this.counts = new AtomicLongArray(stripes * BUCKETS);
+        this.sums = new AtomicLongArray(stripes * PAD);
+    }
+    
+    /**
+     * Returns the bucket a value falls in
+     */
+    static int bucketOf(long value) {
+        if (value < LINEAR_BUCKETS) {
+            return (int) Math.max(value, 0L);
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return LINEAR_BUCKETS + (shift - 1) * SUB_BUCKETS + (int) (value >>> shift) - SUB_BUCKETS;
+    }
+    
+    /**
+     * Returns the largest value that falls in a bucket
+     */
+    static long highestValueIn(int bucket) {
+        if (bucket < LINEAR_BUCKETS) {
+            return bucket;
+        }
+        int shift = (bucket - LINEAR_BUCKETS) / SUB_BUCKETS + 1;
+        long sub = (bucket - LINEAR_BUCKETS) % SUB_BUCKETS + SUB_BUCKETS;
+        return ((sub + 1) << shift) - 1;
+    }
+    
+    /**
+     * Records one value, e.g. a latency in nanoseconds
+     */
+    public void record(long value) {
+        if (value > MAX_VALUE) {
+            value = MAX_VALUE;
+        }
+        int stripe = (int) Thread.currentThread().threadId() & stripeMask;
+        counts.getAndIncrement(stripe * BUCKETS + bucketOf(value));
+        sums.getAndAdd(stripe * PAD, Math.max(value, 0L));
+        if (value > max.get()) {
+            max.accumulateAndGet(value, Math::max);
+        }
+    }
+    
+    /**
+     * Sums the stripes into a point-in-time copy
+     */
+    public Snapshot snapshot() {
+        long[] buckets = new long[BUCKETS];
+        long count = 0;
+        for (int base = 0; base < counts.length(); base += BUCKETS) {
+            for (int i = 0; i < BUCKETS; i++) {
+                long n = counts.get(base + i);
+                buckets[i] += n;
+                count += n;
+            }
+        }
+        long sum = 0;
+        for (int i = 0; i < sums.length(); i += PAD) {
+            sum += sums.get(i);
+        }
+        return new Snapshot(buckets, count, sum, max.get());
+    }
+    
+    /**
+     * Counts of one histogram at a point in time
+     */
+    public static final class Snapshot {
+        private final long[] buckets;
+        private final long count;
+        private final long sum;
+        private final long max;
+        
+        Snapshot(long[] buckets, long count, long sum, long max) {
+            this.buckets = buckets;
+            this.count = count;
+            this.sum = sum;
+            this.max = max;
+        }
+        
+        public long getCount() {
+            return count;
+        }
+        
+        public long getSum() {
+            return sum;
+        }
+        
+        public long getMax() {
+            return max;
+        }
+        
+        public double getMean() {
+            return count == 0 ? 0.0 : (double) sum / count;
+        }
+        
+        /**
+         * Returns the value at or below which the given fraction of values
+         * fall, as the top of its bucket (never more than the maximum)
+         * @param quantile Between 0 and 1, e.g. 0.999 for p999
+         */
+        public long getValueAtQuantile(double quantile) {
+            if (quantile < 0.0 || quantile > 1.0) {
+                throw new IllegalArgumentException("Quantile must be between 0 and 1");
+            }
+            if (count == 0) {
+                return 0;
+            }
+            long rank = Math.max(1L, (long) Math.ceil(quantile * count));
+            long seen = 0;
+            for (int i = 0; i < buckets.length; i++) {
+                seen += buckets[i];
+                if (seen >= rank) {
+                    return Math.min(highestValueIn(i), max);
+                }
+            }
+            return max;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,322 @@
+package com.obcodes.bankaccountmanagementsystem;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * An immutable set of posting limits: named tiers, the tier each account
+ * belongs to, and the tier for every other account. RuleEngine holds the
+ * set in force and swaps in a new one on reload.
+ *
+ * Tiers are looked up by account number in an open-addressing table built
+ * once, so resolving an account's limits on the posting path is O(1) and
+ * never boxes the number.
+ *
+ * Rules load from a properties file:
+ *
+ *   tiers=standard,gold
+ *   default.tier=standard
+ *   tier.gold.maxWithdrawal=200000
+ *   tier.gold.dailyWithdrawals=500000
+ *   tier.gold.hourlyTransfers=50
+ *   account.100000000042=gold
+ *
+ * Per tier: maxDeposit, maxWithdrawal and maxTransfer cap a single posting,
+ * minBalance is the lowest balance a debit may leave, dailyWithdrawals caps
+ * the total withdrawn over a rolling 24 hours and hourlyTransfers the
+ * number of transfers sent over a rolling hour. Amounts are in rands; a
+ * limit left out is unlimited, and minBalance defaults to zero.
+ * @author Obakeng Phale
+ */
+public final class LimitRules {
+    public static final long NO_LIMIT = Long.MAX_VALUE;
+    public static final int NO_COUNT_LIMIT = Integer.MAX_VALUE;
+    public static final String STANDARD = "standard";
+    
+    /** The limits the bank has always applied, with no velocity limits */
+    public static final LimitRules DEFAULT = new Builder()
+        .tier(new Tier(STANDARD, Money.of(1000000), Money.of(50000), Money.of(100000), Money.ZERO,
+            NO_LIMIT, NO_COUNT_LIMIT))
+        .build();
+    
+    /**
+     * The limits of one tier of accounts
+     */
+    public static final class Tier {
+        private final String name;
+        private final long maxDeposit;
+        private final long maxWithdrawal;
+        private final long maxTransfer;
+        private final long minBalance;
+        private final long dailyWithdrawals;
+        private final int hourlyTransfers;
+        
+        /**
+         * @param maxDeposit Largest single deposit in cents, or NO_LIMIT
+         * @param minBalance Lowest balance a debit may leave, in cents
+         * @param dailyWithdrawals Most withdrawn over a rolling 24 hours,
+         *        in cents, or NO_LIMIT
+         * @param hourlyTransfers Most transfers sent over a rolling hour,
+         *        or NO_COUNT_LIMIT
+         */
+        public Tier(String name, long maxDeposit, long maxWithdrawal, long maxTransfer, long minBalance,
+                    long dailyWithdrawals, int hourlyTransfers) {
+            if (name == null || name.isEmpty()) {
+                throw new IllegalArgumentException("Tier name cannot be empty");
+            }
+            if (maxDeposit <= 0 || maxWithdrawal <= 0 || maxTransfer <= 0 || dailyWithdrawals <= 0
+                    || hourlyTransfers <= 0) {
+                throw new IllegalArgumentException("Limits of tier " + name + " must be positive");
+            }
+            this.name = name;
+            this.maxDeposit = maxDeposit;
+            this.maxWithdrawal = maxWithdrawal;
+            this.maxTransfer = maxTransfer;
+            this.minBalance = minBalance;
+            this.dailyWithdrawals = dailyWithdrawals;
+            this.hourlyTransfers = hourlyTransfers;
+        }
+        
+        public String getName() {
+            return name;
+        }
+        
+        public long getMaxDeposit() {
+            return maxDeposit;
+        }
+        
+        public long getMaxWithdrawal() {
+            return maxWithdrawal;
+        }
+        
+        public long getMaxTransfer() {
+            return maxTransfer;
+        }
+        
+        public long getMinBalance() {
+            return minBalance;
+        }
+        
+        public long getDailyWithdrawals() {
+            return dailyWithdrawals;
+        }
+        
+        public int getHourlyTransfers() {
+            return hourlyTransfers;
+        }
+        
+        /**
+         * Checks whether a debit leaves at least the minimum balance
+         */
+        boolean covers(long balance, long amount) {
+            return amount <= balance - minBalance;
+        }
+        
+        /**
+         * Returns true if either velocity limit is set, so the account
+         * needs sliding-window counters
+         */
+        boolean hasVelocityLimits() {
+            return dailyWithdrawals != NO_LIMIT || hourlyTransfers != NO_COUNT_LIMIT;
+        }
+    }
+    
+    /**
+     * Collects tiers and account assignments for a new rule set
+     */
+    public static final class Builder {
+        private final Map<String, Tier> tiers = new LinkedHashMap<>();
+        private final Map<Long, String> assignments = new LinkedHashMap<>();
+        private String defaultTier;
+        
+        /**
+         * Adds a tier; the first tier added is the default unless
+         * defaultTier names another
+         */
+        public Builder tier(Tier tier) {
+            if (tiers.putIfAbsent(tier.getName(), tier) != null) {
+                throw new IllegalArgumentException("Duplicate tier " + tier.getName());
+            }
+            return this;
+        }
+        
+        public Builder defaultTier(String name) {
+            this.defaultTier = name;
+            return this;
+        }
+        
+        /**
+         * Places one account in a tier, replacing any earlier assignment
+         */
+        public Builder assign(long accountNumber, String tier) {
+            assignments.put(accountNumber, tier);
+            return this;
+        }
+        
+        public LimitRules build() {
+            if (tiers.isEmpty()) {
+                throw new IllegalArgumentException("Rules need at least one tier");
+            }
+            Tier fallback = defaultTier == null ? tiers.values().iterator().next() : requireTier(defaultTier);
+            LimitRules rules = new LimitRules(fallback, tiers.values().toArray(new Tier[0]), assignments.size());
+            for (Map.Entry<Long, String> assignment : assignments.entrySet()) {
+                rules.put(assignment.getKey(), requireTier(assignment.getValue()));
+            }
+            return rules;
+        }
+        
+        private Tier requireTier(String name) {
+            Tier tier = tiers.get(name);
+            if (tier == null) {
+                throw new IllegalArgumentException("Unknown tier " + name);
+            }
+            return tier;
+        }
+    }
+    
+    private final Tier defaultTier;
+    private final Tier[] tiers;
+    // Account number 0 is never generated, so it marks an empty slot
+    private final long[] accounts;
+    private final Tier[] assigned;
+    private final int mask;
+    
+    private LimitRules(Tier defaultTier, Tier[] tiers, int assignments) {
+        this.defaultTier = defaultTier;
+        this.tiers = tiers;
+        // At most half full
+        int capacity = Integer.highestOneBit(Math.max(assignments, 1)) << 2;
+        this.accounts = new long[capacity];
+        this.assigned = new Tier[capacity];
+        this.mask = capacity - 1;
+    }
+    
+    private void put(long accountNumber, Tier tier) {
+        if (accountNumber < IdGenerator.MIN_ACCOUNT_NUMBER || accountNumber > IdGenerator.MAX_ACCOUNT_NUMBER) {
+            throw new IllegalArgumentException("Account number must have 12 digits: " + accountNumber);
+        }
+        int slot = hash(accountNumber) & mask;
+        while (accounts[slot] != 0L && accounts[slot] != accountNumber) {
+            slot = (slot + 1) & mask;
+        }
+        accounts[slot] = accountNumber;
+        assigned[slot] = tier;
+    }
+    
+    /**
+     * Returns the limits that apply to an account
+     */
+    public Tier tierOf(long accountNumber) {
+        int slot = hash(accountNumber) & mask;
+        while (true) {
+            long key = accounts[slot];
+            if (key == 0L) {
+                return defaultTier;
+            }
+            if (key == accountNumber) {
+                return assigned[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+    
+    /**
+     * Returns the tier of accounts with no assignment
+     */
+    public Tier getDefaultTier() {
+        return defaultTier;
+    }
+    
+    public List<Tier> getTiers() {
+        return Arrays.asList(tiers.clone());
+    }
+    
+    /**
+     * Spreads account numbers over the table (MurmurHash3 finalizer)
+     */
+    private static int hash(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return (int) key;
+    }
+    
+    /**
+     * Reads rules from a properties file in the format described above
+     * @throws IllegalArgumentException if the rules are malformed
+     */
+    public static LimitRules load(Path file) throws IOException {
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        }
+        return parse(properties);
+    }
+    
+    /**
+     * Builds rules from properties in the format described above
+     * @throws IllegalArgumentException if the rules are malformed
+     */
+    public static LimitRules parse(Properties properties) {
+        Builder builder = new Builder();
+        String names = properties.getProperty("tiers", STANDARD);
+        for (String name : names.split(",")) {
+            name = name.trim();
+            String prefix = "tier." + name + ".";
+            builder.tier(new Tier(name,
+                amount(properties, prefix + "maxDeposit", NO_LIMIT),
+                amount(properties, prefix + "maxWithdrawal", NO_LIMIT),
+                amount(properties, prefix + "maxTransfer", NO_LIMIT),
+                amount(properties, prefix + "minBalance", Money.ZERO),
+                amount(properties, prefix + "dailyWithdrawals", NO_LIMIT),
+                count(properties, prefix + "hourlyTransfers")));
+        }
+        builder.defaultTier(properties.getProperty("default.tier"));
+        for (String key : properties.stringPropertyNames()) {
+            if (key.startsWith("account.")) {
+                long accountNumber;
+                try {
+                    accountNumber = Long.parseLong(key.substring("account.".length()));
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("Invalid account number in " + key);
+                }
+                builder.assign(accountNumber, properties.getProperty(key).trim());
+            }
+        }
+        return builder.build();
+    }
+    
+    private static long amount(Properties properties, String key, long missing) {
+        String value = properties.getProperty(key);
+        if (value == null || value.isBlank()) {
+            return missing;
+        }
+        try {
+            return Money.parse(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid amount for " + key + ": " + value);
+        }
+    }
+    
+    private static int count(Properties properties, String key) {
+        String value = properties.getProperty(key);
+        if (value == null || value.isBlank()) {
+            return NO_COUNT_LIMIT;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid count for " + key + ": " + value);
+        }
+    }
+}
\ No newline at end of file
@@ -6,7 +6,7 @@ package com.obcodes.bankaccountmanagementsystem;
  * @author Obakeng Phale
  */
 public class Menu {
-    
+
     /**
      * Displays the main menu
      */
@@ -29,7 +29,9 @@ public class Menu {
         System.out.println("  8. View Transaction History");
         
         System.out.println("\n  System:");
-        System.out.println("  9. Exit System");
+        System.out.println("  9. Run End-of-Day Interest and Fees");
+        System.out.println("  10. Reconcile Ledger");
+        System.out.println("  11. Exit System");
         System.out.println("==========================================");
     }
     
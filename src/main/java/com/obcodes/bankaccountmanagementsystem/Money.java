@@ -0,0 +1,194 @@
+package com.obcodes.bankaccountmanagementsystem;
+
+/**
+ * Fixed-point money helpers. Amounts are carried as a primitive long number
+ * of cents, so postings are exact integer arithmetic and never allocate;
+ * strings are only produced when an amount is displayed.
+ * @author Obakeng Phale
+ */
+public final class Money {
+    public static final long CENTS_PER_RAND = 100L;
+    public static final long ZERO = 0L;
+    
+    private Money() {
+    }
+    
+    /**
+     * Converts a whole rand amount to cents
+     */
+    public static long of(long rands) {
+        return Math.multiplyExact(rands, CENTS_PER_RAND);
+    }
+    
+    /**
+     * Converts a rand and cent pair to cents
+     */
+    public static long of(long rands, int cents) {
+        if (cents < 0 || cents >= CENTS_PER_RAND) {
+            throw new IllegalArgumentException("Cents must be between 0 and 99");
+        }
+        long whole = of(rands);
+        return rands < 0 ? Math.subtractExact(whole, cents) : Math.addExact(whole, cents);
+    }
+    
+    /**
+     * Converts a floating point rand amount to cents, rounding half up.
+     * Only meant for legacy callers at the edge of the system.
+     */
+    public static long fromDouble(double amount) {
+        if (Double.isNaN(amount) || Double.isInfinite(amount)) {
+            throw new IllegalArgumentException("Amount must be a finite number");
+        }
+        return Math.round(amount * CENTS_PER_RAND);
+    }
+    
+    /**
+     * Converts cents back to a floating point rand amount
+     */
+    public static double toDouble(long cents) {
+        return cents / (double) CENTS_PER_RAND;
+    }
+    
+    /**
+     * Adds two amounts, failing instead of silently overflowing
+     */
+    public static long add(long a, long b) {
+        return Math.addExact(a, b);
+    }
+    
+    /**
+     * Subtracts two amounts, failing instead of silently overflowing
+     */
+    public static long subtract(long a, long b) {
+        return Math.subtractExact(a, b);
+    }
+    
+    /**
+     * Parses a decimal rand amount such as "1250", "1,250.5" or "R99.99"
+     * into cents without going through floating point. Commas are only
+     * accepted as thousands separators, between groups of three digits.
+     * Digits beyond the second decimal place are rounded half up.
+     * @throws NumberFormatException if the text is not a valid amount
+     */
+    public static long parse(CharSequence text) {
+        if (text == null) {
+            throw new NumberFormatException("Amount cannot be empty");
+        }
+        int start = 0;
+        int end = text.length();
+        while (start < end && Character.isWhitespace(text.charAt(start))) {
+            start++;
+        }
+        while (end > start && Character.isWhitespace(text.charAt(end - 1))) {
+            end--;
+        }
+        
+        boolean negative = false;
+        if (start < end && (text.charAt(start) == '-' || text.charAt(start) == '+')) {
+            negative = text.charAt(start) == '-';
+            start++;
+        }
+        if (start < end && (text.charAt(start) == 'R' || text.charAt(start) == 'r')) {
+            start++;
+        }
+        
+        long rands = 0;
+        long cents = 0;
+        int fractionDigits = 0;
+        boolean seenDigit = false;
+        boolean seenPoint = false;
+        boolean roundUp = false;
+        // Whole-number digits since the last comma, or -1 before the first
+        int groupDigits = -1;
+        
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if (c >= '0' && c <= '9') {
+                seenDigit = true;
+                int digit = c - '0';
+                if (!seenPoint) {
+                    rands = Math.addExact(Math.multiplyExact(rands, 10L), digit);
+                    if (groupDigits >= 0) {
+                        groupDigits++;
+                    }
+                } else if (fractionDigits < 2) {
+                    cents = cents * 10 + digit;
+                    fractionDigits++;
+                } else if (fractionDigits == 2) {
+                    roundUp = digit >= 5;
+                    fractionDigits++;
+                }
+            } else if (c == '.' && !seenPoint && (groupDigits < 0 || groupDigits == 3)) {
+                seenPoint = true;
+            } else if (c == ',' && !seenPoint && seenDigit && (groupDigits < 0 || groupDigits == 3)
+                    && (groupDigits >= 0 || i - start <= 3)) {
+                // Thousands separator after a group of one to three digits
+                groupDigits = 0;
+            } else {
+                throw new NumberFormatException("Invalid amount: " + text);
+            }
+        }
+        if (!seenDigit || (!seenPoint && groupDigits >= 0 && groupDigits != 3)) {
+            throw new NumberFormatException("Invalid amount: " + text);
+        }
+        
+        if (fractionDigits == 1) {
+            cents *= 10;
+        }
+        long total = Math.addExact(Math.multiplyExact(rands, CENTS_PER_RAND), cents);
+        if (roundUp) {
+            total = Math.addExact(total, 1L);
+        }
+        return negative ? -total : total;
+    }
+    
+    /**
+     * Formats cents with thousands separators, e.g. 123456 becomes "1,234.56"
+     */
+    public static String format(long cents) {
+        StringBuilder sb = new StringBuilder(24);
+        appendTo(sb, cents, true);
+        return sb.toString();
+    }
+    
+    /**
+     * Formats cents without separators, e.g. 123456 becomes "1234.56"
+     */
+    public static String toPlainString(long cents) {
+        StringBuilder sb = new StringBuilder(24);
+        appendTo(sb, cents, false);
+        return sb.toString();
+    }
+    
+    /**
+     * Appends a formatted amount to an existing buffer
+     */
+    public static void appendTo(StringBuilder sb, long cents, boolean grouping) {
+        if (cents < 0) {
+            sb.append('-');
+        }
+        // Work on the negative range so Long.MIN_VALUE needs no special case
+        long negated = cents < 0 ? cents : -cents;
+        long rands = -(negated / CENTS_PER_RAND);
+        int fraction = (int) -(negated % CENTS_PER_RAND);
+        
+        if (grouping) {
+            String digits = Long.toString(rands);
+            int lead = digits.length() % 3;
+            if (lead == 0) {
+                lead = 3;
+            }
+            sb.append(digits, 0, lead);
+            for (int i = lead; i < digits.length(); i += 3) {
+                sb.append(',').append(digits, i, i + 3);
+            }
+        } else {
+            sb.append(rands);
+        }
+        sb.append('.');
+        if (fraction < 10) {
+            sb.append('0');
+        }
+        sb.append(fraction);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,170 @@
+package com.obcodes.bankaccountmanagementsystem;
+
+import java.util.Arrays;
+
+/**
+ * A batch of deposits, withdrawals and transfers to be posted together by
+ * Bank.post, e.g. a payroll or settlement run.
+ *
+ * Entries are kept in primitive columns by account number, so building a
+ * batch of millions of entries allocates no object per entry. Each add
+ * returns the entry's index, which is also its index in the results. A
+ * batch can be cleared and reused.
+ * @author Obakeng Phale
+ */
+public final class PostingBatch {
+    private static final int DEFAULT_CAPACITY = 16;
+    
+    // Entry type, as a journal record type
+    private byte[] types;
+    private long[] accounts;
+    private long[] counterparties;
+    private long[] amounts;
+    private int size;
+    
+    public PostingBatch() {
+        this(DEFAULT_CAPACITY);
+    }
+    
+    /**
+     * @param expectedEntries Number of entries to make room for up front
+     */
+    public PostingBatch(int expectedEntries) {
+        int capacity = Math.max(expectedEntries, 1);
+        this.types = new byte[capacity];
+        this.accounts = new long[capacity];
+        this.counterparties = new long[capacity];
+        this.amounts = new long[capacity];
+    }
+    
+    /**
+     * Adds a deposit
+     * @param amount Amount in cents
+     * @return the entry's index
+     */
+    public int deposit(long accountNumber, long amount) {
+        return add(TransactionJournal.DEPOSIT, accountNumber, 0L, amount);
+    }
+    
+    /**
+     * Adds a withdrawal
+     * @param amount Amount in cents
+     * @return the entry's index
+     */
+    public int withdraw(long accountNumber, long amount) {
+        return add(TransactionJournal.WITHDRAWAL, accountNumber, 0L, amount);
+    }
+    
+    /**
+     * Adds a transfer
+     * @param amount Amount in cents
+     * @return the entry's index
+     */
+    public int transfer(long senderNumber, long recipientNumber, long amount) {
+        return add(TransactionJournal.TRANSFER, senderNumber, recipientNumber, amount);
+    }
+    
+    private int add(byte type, long account, long counterparty, long amount) {
+        if (size == types.length) {
+            int capacity = size << 1;
+            types = Arrays.copyOf(types, capacity);
+            accounts = Arrays.copyOf(accounts, capacity);
+            counterparties = Arrays.copyOf(counterparties, capacity);
+            amounts = Arrays.copyOf(amounts, capacity);
+        }
+        types[size] = type;
+        accounts[size] = account;
+        counterparties[size] = counterparty;
+        amounts[size] = amount;
+        return size++;
+    }
+    
+    public int size() {
+        return size;
+    }
+    
+    public boolean isEmpty() {
+        return size == 0;
+    }
+    
+    /**
+     * Removes every entry, keeping the columns for reuse
+     */
+    public void clear() {
+        size = 0;
+    }
+    
+    /**
+     * Returns the entry type as a journal record type (DEPOSIT, WITHDRAWAL
+     * or TRANSFER)
+     */
+    byte type(int index) {
+        return types[index];
+    }
+    
+    /**
+     * Returns the account posted to, or the sender of a transfer
+     */
+    long account(int index) {
+        return accounts[index];
+    }
+    
+    /**
+     * Returns the recipient of a transfer, 0 for other entries
+     */
+    long counterparty(int index) {
+        return counterparties[index];
+    }
+    
+    long amount(int index) {
+        return amounts[index];
+    }
+    
+    /**
+     * The postings one account receives from a batch, staged in batch order
+     * with the running balance after each, so the account can apply them
+     * all at once
+     */
+    static final class Ledger {
+        final Account account;
+        long balance;
+        int count;
+        TransactionType[] types = new TransactionType[4];
+        long[] amounts = new long[4];
+        long[] balances = new long[4];
+        // Other account of a transfer leg, null otherwise
+        Account[] counterparties = new Account[4];
+        // Both legs of a transfer share the transfer's ID
+        long[] transactionIds = new long[4];
+        // Limits in force when the batch started, and the velocity staged
+        // against them
+        final LimitRules.Tier limits;
+        long withdrawn;
+        int transfersOut;
+        
+        Ledger(Account account) {
+            this.account = account;
+            this.limits = account.getLimits();
+        }
+        
+        /**
+         * Stages a posting at the current running balance
+         */
+        void add(TransactionType type, long amount, Account counterparty, long transactionId) {
+            if (count == types.length) {
+                int capacity = count << 1;
+                types = Arrays.copyOf(types, capacity);
+                amounts = Arrays.copyOf(amounts, capacity);
+                balances = Arrays.copyOf(balances, capacity);
+                counterparties = Arrays.copyOf(counterparties, capacity);
+                transactionIds = Arrays.copyOf(transactionIds, capacity);
+            }
+            types[count] = type;
+            amounts[count] = amount;
+            balances[count] = balance;
+            counterparties[count] = counterparty;
+            transactionIds[count] = transactionId;
+            count++;
+        }
+    }
+}
\ No newline at end of file
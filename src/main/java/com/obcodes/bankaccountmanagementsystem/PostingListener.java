@@ -0,0 +1,40 @@
+package com.obcodes.bankaccountmanagementsystem;
+
+/**
+ * Receives the outcome of account postings.
+ * Called after the account locks are released; all amounts are in cents.
+ * Every method has an empty default so listeners only override what they need.
+ * @author Obakeng Phale
+ */
+public interface PostingListener {
+    
+    /**
+     * Listener that ignores everything, used by programmatic callers
+     */
+    PostingListener NONE = new PostingListener() {
+    };
+    
+    /**
+     * Called after a deposit attempt
+     * @param balance Account balance after the attempt
+     */
+    default void onDeposit(Account account, long amount, long balance, PostingStatus status) {
+    }
+    
+    /**
+     * Called after a withdrawal attempt
+     * @param balance Account balance after the attempt
+     */
+    default void onWithdrawal(Account account, long amount, long balance, PostingStatus status) {
+    }
+    
+    /**
+     * Called after a transfer attempt
+     * @param recipient Recipient account, or null if it does not exist
+     * @param senderBalance Sender balance after the attempt
+     * @param recipientBalance Recipient balance after the attempt
+     */
+    default void onTransfer(Account sender, Account recipient, long amount,
+                            long senderBalance, long recipientBalance, PostingStatus status) {
+    }
+}
\ No newline at end of file
@@ -0,0 +1,22 @@
+package com.obcodes.bankaccountmanagementsystem;
+
+/**
+ * Thrown when an account cannot be opened because its opening deposit is
+ * refused, e.g. above the tier's deposit limit.
+ * Carries the PostingStatus a deposit of the same amount would get.
+ * @author Obakeng Phale
+ */
+public class PostingRejectedException extends IllegalArgumentException {
+    private static final long serialVersionUID = 1L;
+    
+    private final PostingStatus status;
+    
+    public PostingRejectedException(PostingStatus status) {
+        super(status.getMessage());
+        this.status = status;
+    }
+    
+    public PostingStatus getStatus() {
+        return status;
+    }
+}
\ No newline at end of file
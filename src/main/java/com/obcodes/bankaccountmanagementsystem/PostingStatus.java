@@ -0,0 +1,30 @@
+package com.obcodes.bankaccountmanagementsystem;
+
+/**
+ * Outcome of a deposit, withdrawal or transfer.
+ * Returned instead of printing, so callers decide whether to render it.
+ * @author Obakeng Phale
+ */
+public enum PostingStatus {
+    SUCCESS("Completed successfully"),
+    INVALID_AMOUNT("Amount must be greater than 0"),
+    LIMIT_EXCEEDED("Amount exceeds the maximum limit"),
+    INSUFFICIENT_FUNDS("Insufficient funds"),
+    ACCOUNT_NOT_FOUND("Account does not exist"),
+    SAME_ACCOUNT("Cannot transfer to same account"),
+    VELOCITY_LIMIT("Daily withdrawal or hourly transfer limit reached");
+    
+    private final String message;
+    
+    PostingStatus(String message) {
+        this.message = message;
+    }
+    
+    public String getMessage() {
+        return message;
+    }
+    
+    public boolean isSuccess() {
+        return this == SUCCESS;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,612 @@
+package com.obcodes.bankaccountmanagementsystem;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Ledger consistency check over the whole book, run while postings carry on.
+ *
+ * Each account is read under its own lock: its balance and a view of its
+ * history at that moment. The check then streams the history through a
+ * cursor, outside the lock, and verifies that the balance brought forward
+ * plus every posting equals the balance, and that each posting's balance
+ * after follows from the one before.
+ *
+ * Transfers are checked across accounts against a cut-off taken when the
+ * run starts. Both legs of a transfer carry the same transaction ID, and
+ * legs are matched on it rather than on their row timestamps, which each
+ * history keeps non-decreasing on its own and so may differ between the
+ * two legs. A transfer is in the check if the time its ID was drawn is
+ * before the cut-off; IDs are drawn under both accounts' locks, never
+ * behind the clock, so such a transfer is in both histories by the time
+ * either account is read.
+ * Rather than holding every leg, each one is folded into a fixed table of
+ * buckets by its sender: debits add a hash of the transfer and credits
+ * subtract it, so matched legs cancel out. Only buckets left out of
+ * balance are scanned a second time, to name the legs that have no
+ * partner. Memory therefore stays fixed however large the book is.
+ *
+ * Like snapshots and accrual runs, a check cannot overlap a
+ * ShardedPostingEngine, whose shard writers take no locks, so it is
+ * refused while one runs.
+ * @author Obakeng Phale
+ */
+public final class ReconciliationEngine {
+    public static final int DEFAULT_MAX_DISCREPANCIES = 1000;
+    // Accounts a leaf task covers
+    private static final int LEAF_ACCOUNTS = 8192;
+    // Transfer legs are netted into this many buckets, by sender
+    private static final int BUCKET_BITS = 16;
+    private static final int BUCKETS = 1 << BUCKET_BITS;
+    
+    private final Bank bank;
+    private final ForkJoinPool pool;
+    private final int maxDiscrepancies;
+    
+    /**
+     * Creates an engine that runs on the common fork-join pool and reports
+     * up to DEFAULT_MAX_DISCREPANCIES discrepancies
+     */
+    public ReconciliationEngine(Bank bank) {
+        this(bank, ForkJoinPool.commonPool(), DEFAULT_MAX_DISCREPANCIES);
+    }
+    
+    /**
+     * @param maxDiscrepancies Most discrepancies listed in a result; all of
+     *        them are still counted
+     */
+    public ReconciliationEngine(Bank bank, ForkJoinPool pool, int maxDiscrepancies) {
+        if (maxDiscrepancies < 1) {
+            throw new IllegalArgumentException("At least one discrepancy must be reported");
+        }
+        this.bank = bank;
+        this.pool = pool;
+        this.maxDiscrepancies = maxDiscrepancies;
+    }
+    
+    /**
+     * Checks every account and every transfer made before the run started
+     */
+    public Result reconcile() {
+        bank.beginLockedWork("reconcile");
+        long start = System.nanoTime();
+        try {
+            // Cut-off before listing, so accounts opened later cannot have
+            // transfers stamped before it
+            long cutoff = System.currentTimeMillis();
+            AccountRegistry.Listing listing = bank.getAccounts().listing();
+            Check check = new Check(listing, bank.getHistoryHorizon(), cutoff);
+            Tally tally = pool.invoke(new Range(check, null, 0, listing.size()));
+            
+            boolean[] unbalanced = check.unbalancedBuckets(maxDiscrepancies);
+            if (unbalanced != null) {
+                tally.add(pool.invoke(new Range(check, unbalanced, 0, listing.size())));
+                check.reportUnmatched(tally);
+            }
+            bank.getMetrics().record(BankMetrics.Operation.RECONCILE, PostingStatus.SUCCESS, start);
+            return new Result(tally, check.sortedReport(), cutoff, System.nanoTime() - start);
+        } catch (RuntimeException | Error e) {
+            bank.getMetrics().recordError(BankMetrics.Operation.RECONCILE, start);
+            throw e;
+        } finally {
+            bank.endLockedWork();
+        }
+    }
+    
+    /**
+     * What a discrepancy is
+     */
+    public enum Kind {
+        /** The balance differs from the balance brought forward plus the postings */
+        BALANCE,
+        /** A posting's balance after does not follow from the one before */
+        RUNNING_BALANCE,
+        /** A transfer leg has no matching leg in the other account */
+        UNMATCHED_TRANSFER
+    }
+    
+    /**
+     * One inconsistency found in the ledger
+     */
+    public static final class Discrepancy {
+        private final Kind kind;
+        private final long accountNumber;
+        private final long counterparty;
+        private final long transactionId;
+        private final long timestamp;
+        private final long expected;
+        private final long actual;
+        
+        Discrepancy(Kind kind, long accountNumber, long counterparty, long transactionId, long timestamp,
+                    long expected, long actual) {
+            this.kind = kind;
+            this.accountNumber = accountNumber;
+            this.counterparty = counterparty;
+            this.transactionId = transactionId;
+            this.timestamp = timestamp;
+            this.expected = expected;
+            this.actual = actual;
+        }
+        
+        public Kind getKind() {
+            return kind;
+        }
+        
+        public long getAccountNumber() {
+            return accountNumber;
+        }
+        
+        /**
+         * Returns the other account of an unmatched transfer, or 0
+         */
+        public long getCounterparty() {
+            return counterparty;
+        }
+        
+        /**
+         * Returns the transaction ID of an unmatched transfer, or 0
+         */
+        public long getTransactionId() {
+            return transactionId;
+        }
+        
+        /**
+         * Returns the time of the posting concerned (epoch millis), or 0
+         * for a BALANCE discrepancy
+         */
+        public long getTimestamp() {
+            return timestamp;
+        }
+        
+        /**
+         * Returns the balance expected in cents, or the amount of an
+         * unmatched transfer leg
+         */
+        public long getExpected() {
+            return expected;
+        }
+        
+        /**
+         * Returns the balance recorded in cents, or 0 for an unmatched
+         * transfer leg
+         */
+        public long getActual() {
+            return actual;
+        }
+        
+        @Override
+        public String toString() {
+            switch (kind) {
+                case BALANCE:
+                    return String.format("Account %d: balance R%s, postings add up to R%s",
+                        accountNumber, Money.format(actual), Money.format(expected));
+                case RUNNING_BALANCE:
+                    return String.format("Account %d: posting at %s shows R%s, expected R%s",
+                        accountNumber, TimestampFormatter.DEFAULT.format(timestamp),
+                        Money.format(actual), Money.format(expected));
+                default:
+                    return String.format("Account %d: transfer %s of R%s at %s with account %d has no matching leg",
+                        accountNumber, IdGenerator.formatTransactionId(transactionId), Money.format(expected),
+                        TimestampFormatter.DEFAULT.format(timestamp), counterparty);
+            }
+        }
+    }
+    
+    /**
+     * Outcome of one check
+     */
+    public static final class Result {
+        private final long accounts;
+        private final long postings;
+        private final long transferLegs;
+        private final long balanceMismatches;
+        private final long runningBalanceMismatches;
+        private final long unmatchedTransfers;
+        private final long totalBalance;
+        private final List<Discrepancy> discrepancies;
+        private final long cutoff;
+        private final long elapsedNanos;
+        
+        Result(Tally tally, List<Discrepancy> discrepancies, long cutoff, long elapsedNanos) {
+            this.accounts = tally.accounts;
+            this.postings = tally.postings;
+            this.transferLegs = tally.transferLegs;
+            this.balanceMismatches = tally.balanceMismatches;
+            this.runningBalanceMismatches = tally.runningBalanceMismatches;
+            this.unmatchedTransfers = tally.unmatchedTransfers;
+            this.totalBalance = tally.totalBalance;
+            this.discrepancies = Collections.unmodifiableList(discrepancies);
+            this.cutoff = cutoff;
+            this.elapsedNanos = elapsedNanos;
+        }
+        
+        /**
+         * Returns true if no discrepancy was found
+         */
+        public boolean isConsistent() {
+            return balanceMismatches == 0 && runningBalanceMismatches == 0 && unmatchedTransfers == 0;
+        }
+        
+        public long getAccounts() {
+            return accounts;
+        }
+        
+        /**
+         * Returns the number of postings read from the histories
+         */
+        public long getPostings() {
+            return postings;
+        }
+        
+        /**
+         * Returns the number of transfer legs matched across accounts
+         */
+        public long getTransferLegs() {
+            return transferLegs;
+        }
+        
+        /**
+         * Returns the number of accounts whose balance does not add up
+         */
+        public long getBalanceMismatches() {
+            return balanceMismatches;
+        }
+        
+        /**
+         * Returns the number of accounts with a broken chain of balances
+         * after; each account is counted once
+         */
+        public long getRunningBalanceMismatches() {
+            return runningBalanceMismatches;
+        }
+        
+        /**
+         * Returns the number of transfer legs without a partner. When more
+         * senders are out of balance than the report can list, only the
+         * first of them are resolved into legs.
+         */
+        public long getUnmatchedTransfers() {
+            return unmatchedTransfers;
+        }
+        
+        /**
+         * Returns the sum of the balances read, in cents
+         */
+        public long getTotalBalance() {
+            return totalBalance;
+        }
+        
+        /**
+         * Returns the discrepancies found, by account number, up to the
+         * engine's limit
+         */
+        public List<Discrepancy> getDiscrepancies() {
+            return discrepancies;
+        }
+        
+        /**
+         * Returns the cut-off (epoch millis): transfers whose ID was drawn
+         * before it were matched across accounts
+         */
+        public long getCutoff() {
+            return cutoff;
+        }
+        
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+        
+        public double getAccountsPerSecond() {
+            return elapsedNanos == 0 ? 0 : accounts * 1e9 / elapsedNanos;
+        }
+    }
+    
+    /**
+     * Counts and totals of one range of accounts
+     */
+    private static final class Tally {
+        long accounts;
+        long postings;
+        long transferLegs;
+        long balanceMismatches;
+        long runningBalanceMismatches;
+        long unmatchedTransfers;
+        long totalBalance;
+        
+        Tally add(Tally other) {
+            accounts += other.accounts;
+            postings += other.postings;
+            transferLegs += other.transferLegs;
+            balanceMismatches += other.balanceMismatches;
+            runningBalanceMismatches += other.runningBalanceMismatches;
+            unmatchedTransfers += other.unmatchedTransfers;
+            totalBalance += other.totalBalance;
+            return this;
+        }
+    }
+    
+    /**
+     * State shared by the tasks of one check: the transfer buckets and the
+     * bounded report
+     */
+    private final class Check {
+        final AccountRegistry.Listing listing;
+        final long horizon;
+        final long cutoff;
+        // Per bucket, the sum of debit hashes less credit hashes, and the
+        // number of debits less credits
+        final AtomicLongArray hashes = new AtomicLongArray(BUCKETS);
+        final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+        // Second pass: net count of each leg in an unbalanced bucket
+        final Map<Leg, int[]> legs = new HashMap<>();
+        private final List<Discrepancy> report = new ArrayList<>();
+        
+        Check(AccountRegistry.Listing listing, long horizon, long cutoff) {
+            this.listing = listing;
+            this.horizon = horizon;
+            this.cutoff = cutoff;
+        }
+        
+        /**
+         * Returns true if the transfer with this ID is matched across
+         * accounts: drawn from the history horizon up to the cut-off
+         */
+        boolean covers(long transactionId) {
+            long drawn = IdGenerator.timestampOf(transactionId);
+            return drawn >= horizon && drawn < cutoff;
+        }
+        
+        /**
+         * Folds a transfer leg into its sender's bucket
+         */
+        void net(long sender, long recipient, long amount, long transactionId, boolean debit) {
+            int bucket = bucket(sender);
+            long hash = hash(sender, recipient, amount, transactionId);
+            hashes.getAndAdd(bucket, debit ? hash : -hash);
+            counts.getAndAdd(bucket, debit ? 1 : -1);
+        }
+        
+        /**
+         * Returns the buckets to resolve into legs, at most one per
+         * discrepancy the report can hold, or null if every bucket balances
+         */
+        boolean[] unbalancedBuckets(int limit) {
+            boolean[] unbalanced = null;
+            int marked = 0;
+            for (int i = 0; i < BUCKETS && marked < limit; i++) {
+                if (hashes.get(i) != 0 || counts.get(i) != 0) {
+                    if (unbalanced == null) {
+                        unbalanced = new boolean[BUCKETS];
+                    }
+                    unbalanced[i] = true;
+                    marked++;
+                }
+            }
+            return unbalanced;
+        }
+        
+        synchronized void collect(Map<Leg, int[]> found) {
+            for (Map.Entry<Leg, int[]> entry : found.entrySet()) {
+                legs.computeIfAbsent(entry.getKey(), leg -> new int[1])[0] += entry.getValue()[0];
+            }
+        }
+        
+        /**
+         * Reports every collected leg whose debits and credits do not cancel
+         */
+        void reportUnmatched(Tally tally) {
+            for (Map.Entry<Leg, int[]> entry : legs.entrySet()) {
+                Leg leg = entry.getKey();
+                int net = entry.getValue()[0];
+                long timestamp = IdGenerator.timestampOf(leg.transactionId);
+                for (int i = 0; i < Math.abs(net); i++) {
+                    tally.unmatchedTransfers++;
+                    // A debit left over belongs to the sender, a credit to the recipient
+                    report(net > 0
+                        ? new Discrepancy(Kind.UNMATCHED_TRANSFER, leg.sender, leg.recipient, leg.transactionId,
+                            timestamp, leg.amount, 0L)
+                        : new Discrepancy(Kind.UNMATCHED_TRANSFER, leg.recipient, leg.sender, leg.transactionId,
+                            timestamp, leg.amount, 0L));
+                }
+            }
+        }
+        
+        synchronized void report(Discrepancy discrepancy) {
+            if (report.size() < maxDiscrepancies) {
+                report.add(discrepancy);
+            }
+        }
+        
+        synchronized List<Discrepancy> sortedReport() {
+            List<Discrepancy> sorted = new ArrayList<>(report);
+            sorted.sort((a, b) -> Long.compare(a.accountNumber, b.accountNumber));
+            return sorted;
+        }
+    }
+    
+    /**
+     * A transfer as both of its legs describe it
+     */
+    private static final class Leg {
+        final long sender;
+        final long recipient;
+        final long amount;
+        final long transactionId;
+        
+        Leg(long sender, long recipient, long amount, long transactionId) {
+            this.sender = sender;
+            this.recipient = recipient;
+            this.amount = amount;
+            this.transactionId = transactionId;
+        }
+        
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Leg)) {
+                return false;
+            }
+            Leg leg = (Leg) other;
+            return sender == leg.sender && recipient == leg.recipient
+                && amount == leg.amount && transactionId == leg.transactionId;
+        }
+        
+        @Override
+        public int hashCode() {
+            return Long.hashCode(hash(sender, recipient, amount, transactionId));
+        }
+    }
+    
+    /**
+     * Checks a range of listing positions, splitting it in half until it is
+     * small enough to walk. The first pass checks balances and nets transfer
+     * legs; the second only collects the legs of unbalanced buckets.
+     */
+    @SuppressWarnings("serial")
+    private final class Range extends RecursiveTask<Tally> {
+        private final Check check;
+        private final boolean[] unbalanced;
+        private final int from;
+        private final int to;
+        
+        Range(Check check, boolean[] unbalanced, int from, int to) {
+            this.check = check;
+            this.unbalanced = unbalanced;
+            this.from = from;
+            this.to = to;
+        }
+        
+        @Override
+        protected Tally compute() {
+            if (to - from > LEAF_ACCOUNTS) {
+                int middle = (from + to) >>> 1;
+                Range left = new Range(check, unbalanced, from, middle);
+                left.fork();
+                Tally right = new Range(check, unbalanced, middle, to).compute();
+                return right.add(left.join());
+            }
+            Tally tally = new Tally();
+            if (unbalanced == null) {
+                for (int position = from; position < to; position++) {
+                    Account account = check.listing.get(position);
+                    if (account != null) {
+                        verify(account, tally);
+                    }
+                }
+            } else {
+                Map<Leg, int[]> found = new HashMap<>();
+                for (int position = from; position < to; position++) {
+                    Account account = check.listing.get(position);
+                    if (account != null) {
+                        collect(account, found);
+                    }
+                }
+                check.collect(found);
+            }
+            return tally;
+        }
+        
+        /**
+         * Streams one account's history against its balance, netting the
+         * transfer legs before the cut-off
+         */
+        private void verify(Account account, Tally tally) {
+            TransactionHistory.View history;
+            long balance;
+            account.getLock().lock();
+            try {
+                history = account.getHistory();
+                balance = account.getBalance();
+            } finally {
+                account.getLock().unlock();
+            }
+            long number = account.getAccountNumber();
+            long expected = account.getOpeningBalance();
+            long running = expected;
+            boolean chainBroken = false;
+            TransactionHistory.Cursor cursor = history.cursor();
+            while (cursor.next()) {
+                TransactionType type = cursor.type();
+                long amount = cursor.amount();
+                // Plain arithmetic: a corrupt ledger must be reported, not overflow
+                long change = type.balanceChange(amount);
+                expected += change;
+                running += change;
+                if (running != cursor.balanceAfter()) {
+                    if (!chainBroken) {
+                        chainBroken = true;
+                        tally.runningBalanceMismatches++;
+                        check.report(new Discrepancy(Kind.RUNNING_BALANCE, number, 0L, 0L, cursor.timestamp(),
+                            running, cursor.balanceAfter()));
+                    }
+                    // Carry on from the recorded balance so one bad row is reported once
+                    running = cursor.balanceAfter();
+                }
+                if (type == TransactionType.TRANSFER_OUT || type == TransactionType.TRANSFER_IN) {
+                    long transactionId = cursor.transactionId();
+                    if (check.covers(transactionId)) {
+                        tally.transferLegs++;
+                        if (type == TransactionType.TRANSFER_OUT) {
+                            check.net(number, cursor.counterparty(), amount, transactionId, true);
+                        } else {
+                            check.net(cursor.counterparty(), number, amount, transactionId, false);
+                        }
+                    }
+                }
+                tally.postings++;
+            }
+            if (expected != balance) {
+                tally.balanceMismatches++;
+                check.report(new Discrepancy(Kind.BALANCE, number, 0L, 0L, 0L, expected, balance));
+            }
+            tally.accounts++;
+            tally.totalBalance += balance;
+        }
+        
+        /**
+         * Collects the transfer legs before the cut-off whose sender falls in
+         * an unbalanced bucket. Histories only grow, and no ID drawn from now
+         * on is before the cut-off, so these are the legs the first pass saw.
+         * Row timestamps do not bound these legs, so the whole history is read.
+         */
+        private void collect(Account account, Map<Leg, int[]> found) {
+            long number = account.getAccountNumber();
+            TransactionHistory.Cursor cursor = account.getHistory().cursor();
+            while (cursor.next()) {
+                TransactionType type = cursor.type();
+                if ((type == TransactionType.TRANSFER_OUT || type == TransactionType.TRANSFER_IN)
+                    && check.covers(cursor.transactionId())) {
+                    boolean debit = type == TransactionType.TRANSFER_OUT;
+                    long sender = debit ? number : cursor.counterparty();
+                    if (unbalanced[bucket(sender)]) {
+                        Leg leg = new Leg(sender, debit ? cursor.counterparty() : number,
+                            cursor.amount(), cursor.transactionId());
+                        found.computeIfAbsent(leg, key -> new int[1])[0] += debit ? 1 : -1;
+                    }
+                }
+            }
+        }
+    }
+    
+    private static int bucket(long sender) {
+        return (int) (mix(sender) >>> (64 - BUCKET_BITS));
+    }
+    
+    private static long hash(long sender, long recipient, long amount, long transactionId) {
+        return mix(sender ^ mix(recipient ^ mix(amount ^ mix(transactionId))));
+    }
+    
+    /**
+     * SplitMix64 finalizer: spreads every input bit over the whole result
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,96 @@
+package com.obcodes.bankaccountmanagementsystem;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Holds the limit rules every posting is checked against and swaps them
+ * at runtime.
+ *
+ * The rules in force are one immutable LimitRules behind a volatile field.
+ * A posting reads it once, and a reload is a single write, so postings
+ * never pause or take a lock for a reload: each one is checked entirely
+ * against either the old rules or the new.
+ *
+ * Single postings are capped by the account's tier before any lock is
+ * taken. The velocity limits are checked under the account lock (or by
+ * the account's shard) against sliding-window counters the account keeps,
+ * so no check rescans the transaction history. An account starts counting
+ * when its tier first has a velocity limit. The counters are kept in the
+ * snapshot, and postings replayed from the journal after it are counted
+ * again on startup.
+ * @author Obakeng Phale
+ */
+public final class RuleEngine {
+    /** The engine every account is checked against */
+    public static final RuleEngine DEFAULT = new RuleEngine(LimitRules.DEFAULT);
+    
+    private volatile LimitRules rules;
+    private ScheduledExecutorService watcher;
+    
+    public RuleEngine(LimitRules rules) {
+        this.rules = rules;
+    }
+    
+    public LimitRules getRules() {
+        return rules;
+    }
+    
+    /**
+     * Puts new rules in force; postings already past their checks finish
+     * under the old ones
+     */
+    public void reload(LimitRules rules) {
+        if (rules == null) {
+            throw new IllegalArgumentException("Rules cannot be null");
+        }
+        this.rules = rules;
+    }
+    
+    /**
+     * Loads rules from a file and reloads them in the background whenever
+     * the file changes. A file that fails to load leaves the rules in
+     * force and is retried once it changes again.
+     * @throws IllegalArgumentException if the file's current rules are malformed
+     */
+    public synchronized void watch(Path file, long period, TimeUnit unit) throws IOException {
+        if (watcher != null) {
+            throw new IllegalStateException("Rules are already watched");
+        }
+        FileTime[] loaded = {Files.getLastModifiedTime(file)};
+        reload(LimitRules.load(file));
+        watcher = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "rule-watcher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        watcher.scheduleWithFixedDelay(() -> {
+            try {
+                FileTime modified = Files.getLastModifiedTime(file);
+                if (!modified.equals(loaded[0])) {
+                    loaded[0] = modified;
+                    reload(LimitRules.load(file));
+                    System.out.println("[INFO] Reloaded limit rules from " + file);
+                }
+            } catch (IOException | UncheckedIOException | IllegalArgumentException e) {
+                System.out.println("[WARNING] Keeping current limit rules: " + e.getMessage());
+            }
+        }, period, period, unit);
+    }
+    
+    /**
+     * Stops watching the rules file
+     */
+    public synchronized void stopWatching() {
+        if (watcher != null) {
+            watcher.shutdownNow();
+            watcher = null;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,671 @@
+package com.obcodes.bankaccountmanagementsystem;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Lock-free alternative to Bank's posting methods, in the single-writer
+ * style of the LMAX disruptor.
+ *
+ * Accounts are partitioned by account number over N shards. Each shard is
+ * one thread that owns its accounts outright and consumes commands from a
+ * pre-allocated ring buffer, so postings apply through the same Account
+ * logic as the lock-based path but without taking account locks. A shard
+ * applies whatever run of commands is waiting, journals the run with one
+ * append, and only then hands out results, so busy shards batch naturally.
+ *
+ * A transfer between shards is a two-phase handoff. The sender's shard
+ * checks funds, debits and journals the transfer, then publishes the
+ * credit to the recipient's shard. The debit is the commit point: credits
+ * cannot be refused, as accounts are never closed and the recipient was
+ * checked to exist before the debit. Until the credit lands, the money is
+ * in flight and the bank-wide balance reads low by that amount.
+ *
+ * Callers block until their posting is applied and durable, like Bank's
+ * methods. While an engine runs, every posting and account opening must go
+ * through it: shard writers do not take the locks the bank's own paths rely
+ * on. For the same reason the engine registers with the bank, which refuses
+ * snapshots, accrual runs and reconciliations until it is closed, and an
+ * engine cannot start while one of those is under way or another engine
+ * runs. Close the engine first; it drains every ring and in-flight credit
+ * before returning.
+ * @author Obakeng Phale
+ */
+public class ShardedPostingEngine implements AutoCloseable {
+    public static final int DEFAULT_RING_SIZE = 1 << 14;
+    // Longest run a shard applies before journaling it and replying
+    private static final int MAX_RUN = 512;
+    // Busy polls before a waiting thread parks
+    private static final int SPINS = 256;
+    
+    // Command types
+    private static final byte OPEN = 1;
+    private static final byte DEPOSIT = 2;
+    private static final byte WITHDRAW = 3;
+    private static final byte TRANSFER = 4;
+    private static final byte CREDIT = 5;
+    private static final byte STOP = 6;
+    
+    private static final PostingStatus[] ALL_POSTED = new PostingStatus[MAX_RUN];
+    
+    static {
+        Arrays.fill(ALL_POSTED, PostingStatus.SUCCESS);
+    }
+    
+    private final Bank bank;
+    private final TransactionJournal journal;
+    private final Shard[] shards;
+    private final ThreadLocal<Completion> completions = ThreadLocal.withInitial(Completion::new);
+    // Shards that have not yet reached their STOP command
+    private final AtomicInteger running;
+    // Credits published but not yet applied
+    private final AtomicLong inFlight = new AtomicLong();
+    private volatile boolean closed;
+    
+    public ShardedPostingEngine(Bank bank, int shardCount) {
+        this(bank, shardCount, DEFAULT_RING_SIZE);
+    }
+    
+    /**
+     * Starts one writer thread per shard
+     * @param ringSize Commands each shard's ring holds; a power of two
+     * @throws IllegalStateException if the bank already has an engine
+     *         running, or a snapshot, accrual run or reconciliation under way
+     */
+    public ShardedPostingEngine(Bank bank, int shardCount, int ringSize) {
+        if (shardCount < 1) {
+            throw new IllegalArgumentException("Engine needs at least one shard");
+        }
+        if (ringSize < 2 || Integer.bitCount(ringSize) != 1) {
+            throw new IllegalArgumentException("Ring size must be a power of two");
+        }
+        bank.engineStarted();
+        this.bank = bank;
+        this.journal = bank.getJournal();
+        this.shards = new Shard[shardCount];
+        this.running = new AtomicInteger(shardCount);
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new Shard(ringSize, "posting-shard-" + i);
+        }
+        for (Shard shard : shards) {
+            shard.thread.start();
+        }
+    }
+    
+    public int getShardCount() {
+        return shards.length;
+    }
+    
+    /**
+     * Opens and registers a new account on its shard, retrying if the
+     * generated account number is already taken
+     * @param initialDeposit Opening balance in cents, or zero for none
+     * @throws PostingRejectedException if the deposit is negative or above
+     *         the new account's deposit limit
+     */
+    public Account openAccount(String holderName, long initialDeposit) {
+        long start = System.nanoTime();
+        PostingStatus status = initialDeposit < 0 ? PostingStatus.INVALID_AMOUNT : PostingStatus.SUCCESS;
+        try {
+            while (status.isSuccess()) {
+                Account account = new Account(holderName, initialDeposit);
+                status = Account.checkOpeningDeposit(account, initialDeposit);
+                if (status.isSuccess()) {
+                    Completion done = submit(OPEN, account, null, 0L, null);
+                    if (done.sequence >= 0) {
+                        bank.awaitDurable(done.sequence);
+                        bank.getMetrics().record(BankMetrics.Operation.OPEN, PostingStatus.SUCCESS, start);
+                        return account;
+                    }
+                }
+            }
+        } catch (RuntimeException | Error e) {
+            bank.getMetrics().recordError(BankMetrics.Operation.OPEN, start);
+            throw e;
+        }
+        bank.getMetrics().record(BankMetrics.Operation.OPEN, status, start);
+        throw new PostingRejectedException(status);
+    }
+    
+    /**
+     * @param amount Amount in cents
+     */
+    public PostingStatus deposit(long accountNumber, long amount) {
+        long start = System.nanoTime();
+        try {
+            PostingStatus status = postDeposit(accountNumber, amount);
+            bank.getMetrics().record(BankMetrics.Operation.DEPOSIT, status, start);
+            return status;
+        } catch (RuntimeException | Error e) {
+            bank.getMetrics().recordError(BankMetrics.Operation.DEPOSIT, start);
+            throw e;
+        }
+    }
+    
+    private PostingStatus postDeposit(long accountNumber, long amount) {
+        Account account = bank.getAccounts().get(accountNumber);
+        if (account == null) {
+            return PostingStatus.ACCOUNT_NOT_FOUND;
+        }
+        PostingStatus status = Account.checkDeposit(account.getLimits(), amount);
+        if (!status.isSuccess()) {
+            return status;
+        }
+        Completion done = submit(DEPOSIT, account, null, amount, null);
+        if (done.status.isSuccess()) {
+            bank.getAggregates().deposited(amount);
+        }
+        bank.awaitDurable(done.sequence);
+        return done.status;
+    }
+    
+    /**
+     * @param amount Amount in cents
+     */
+    public PostingStatus withdraw(long accountNumber, long amount) {
+        long start = System.nanoTime();
+        try {
+            PostingStatus status = postWithdraw(accountNumber, amount);
+            bank.getMetrics().record(BankMetrics.Operation.WITHDRAW, status, start);
+            return status;
+        } catch (RuntimeException | Error e) {
+            bank.getMetrics().recordError(BankMetrics.Operation.WITHDRAW, start);
+            throw e;
+        }
+    }
+    
+    private PostingStatus postWithdraw(long accountNumber, long amount) {
+        Account account = bank.getAccounts().get(accountNumber);
+        if (account == null) {
+            return PostingStatus.ACCOUNT_NOT_FOUND;
+        }
+        // The shard applies it against the same tier it was checked against
+        LimitRules.Tier limits = account.getLimits();
+        PostingStatus status = Account.checkWithdrawal(limits, amount);
+        if (!status.isSuccess()) {
+            return status;
+        }
+        Completion done = submit(WITHDRAW, account, null, amount, limits);
+        if (done.status.isSuccess()) {
+            bank.getAggregates().withdrawn(amount);
+        }
+        bank.awaitDurable(done.sequence);
+        return done.status;
+    }
+    
+    /**
+     * Returns once the recipient has been credited, or the transfer refused
+     * @param amount Amount in cents
+     */
+    public PostingStatus transfer(long senderNumber, long recipientNumber, long amount) {
+        long start = System.nanoTime();
+        try {
+            PostingStatus status = postTransfer(senderNumber, recipientNumber, amount);
+            bank.getMetrics().record(BankMetrics.Operation.TRANSFER, status, start);
+            return status;
+        } catch (RuntimeException | Error e) {
+            bank.getMetrics().recordError(BankMetrics.Operation.TRANSFER, start);
+            throw e;
+        }
+    }
+    
+    private PostingStatus postTransfer(long senderNumber, long recipientNumber, long amount) {
+        Account sender = bank.getAccounts().get(senderNumber);
+        if (sender == null) {
+            return PostingStatus.ACCOUNT_NOT_FOUND;
+        }
+        Account recipient = bank.getAccounts().get(recipientNumber);
+        LimitRules.Tier limits = sender.getLimits();
+        PostingStatus status = Account.checkTransfer(sender, recipient, limits, amount);
+        if (!status.isSuccess()) {
+            return status;
+        }
+        Completion done = submit(TRANSFER, sender, recipient, amount, limits);
+        if (done.status.isSuccess()) {
+            bank.getAggregates().transferred();
+        }
+        bank.awaitDurable(done.sequence);
+        return done.status;
+    }
+    
+    /**
+     * Stops taking postings, lets every shard finish its ring and every
+     * in-flight credit land, and waits for the shard threads to end.
+     * Postings submitted concurrently with close may never complete.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        for (Shard shard : shards) {
+            shard.offerBlocking(STOP, null, null, 0L, null, null);
+        }
+        boolean interrupted = false;
+        for (Shard shard : shards) {
+            while (shard.thread.isAlive()) {
+                try {
+                    shard.thread.join();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        bank.engineStopped();
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    private Shard shardOf(Account account) {
+        return shards[(int) Long.remainderUnsigned(account.getAccountNumber(), shards.length)];
+    }
+    
+    /**
+     * Publishes a command to the account's shard and waits for its outcome
+     * @param limits Tier a withdrawal or transfer was checked against, else null
+     */
+    private Completion submit(byte type, Account account, Account counterparty, long amount,
+                              LimitRules.Tier limits) {
+        if (closed) {
+            throw new IllegalStateException("Posting engine is closed");
+        }
+        Completion done = completions.get();
+        done.reset();
+        shardOf(account).offerBlocking(type, account, counterparty, amount, limits, done);
+        done.await();
+        if (done.failure != null) {
+            throw done.failure;
+        }
+        return done;
+    }
+    
+    /**
+     * One command slot. Slots are allocated with the ring and reused; the
+     * consumer reads a slot in place and frees it only after replying.
+     */
+    private static final class Command {
+        byte type;
+        Account account;
+        Account counterparty;
+        long amount;
+        // Tier a withdrawal or transfer was checked against
+        LimitRules.Tier limits;
+        // Journal sequence, time and transaction ID of the debit, for credits
+        long sequence;
+        long timestamp;
+        long transactionId;
+        Completion completion;
+        // Set by the shard while applying
+        PostingStatus status;
+        RuntimeException failure;
+        
+        void set(byte type, Account account, Account counterparty, long amount, LimitRules.Tier limits,
+                 long sequence, long timestamp, long transactionId, Completion completion) {
+            this.type = type;
+            this.account = account;
+            this.counterparty = counterparty;
+            this.amount = amount;
+            this.limits = limits;
+            this.sequence = sequence;
+            this.timestamp = timestamp;
+            this.transactionId = transactionId;
+            this.completion = completion;
+            this.status = null;
+            this.failure = null;
+        }
+    }
+    
+    /**
+     * Multi-producer, single-consumer ring of pre-allocated commands.
+     * Producers claim a sequence with a compare-and-set, fill the slot and
+     * publish it by storing the sequence in the slot's flag; the consumer
+     * reads published slots in sequence order.
+     */
+    private static final class Ring {
+        private final Command[] slots;
+        private final int mask;
+        // Sequence last published into each slot
+        private final AtomicLongArray published;
+        private final AtomicLong claimed = new AtomicLong();
+        // Every sequence below this has been consumed and may be reused
+        private volatile long consumed;
+        
+        Ring(int size) {
+            this.slots = new Command[size];
+            this.mask = size - 1;
+            this.published = new AtomicLongArray(size);
+            for (int i = 0; i < size; i++) {
+                slots[i] = new Command();
+                published.set(i, -1L);
+            }
+        }
+        
+        /**
+         * @return the claimed sequence, or -1 if the ring is full
+         */
+        long tryClaim() {
+            while (true) {
+                long sequence = claimed.get();
+                if (sequence - consumed >= slots.length) {
+                    return -1L;
+                }
+                if (claimed.compareAndSet(sequence, sequence + 1)) {
+                    return sequence;
+                }
+            }
+        }
+        
+        Command slot(long sequence) {
+            return slots[(int) sequence & mask];
+        }
+        
+        void publish(long sequence) {
+            published.set((int) sequence & mask, sequence);
+        }
+        
+        boolean isPublished(long sequence) {
+            return published.get((int) sequence & mask) == sequence;
+        }
+    }
+    
+    /**
+     * Where a caller waits for its command. One per thread, reused.
+     */
+    private static final class Completion {
+        private volatile boolean done;
+        private Thread waiter;
+        PostingStatus status;
+        long sequence;
+        RuntimeException failure;
+        
+        void reset() {
+            waiter = Thread.currentThread();
+            status = null;
+            sequence = 0L;
+            failure = null;
+            done = false;
+        }
+        
+        void complete(PostingStatus status, long sequence, RuntimeException failure) {
+            Thread thread = waiter;
+            this.status = status;
+            this.sequence = sequence;
+            this.failure = failure;
+            done = true;
+            LockSupport.unpark(thread);
+        }
+        
+        void await() {
+            for (int spins = 0; !done; spins++) {
+                if (spins < SPINS) {
+                    Thread.onSpinWait();
+                } else {
+                    LockSupport.park(this);
+                }
+            }
+        }
+    }
+    
+    /**
+     * A shard: its ring and the single thread that owns its accounts
+     */
+    private final class Shard implements Runnable {
+        private final Ring ring;
+        private final Thread thread;
+        private volatile boolean sleeping;
+        // Credits for other shards whose rings were full, oldest first
+        private final ArrayDeque<Command> pending = new ArrayDeque<>();
+        // The current run's journal records, and which command staged each
+        private final PostingBatch staged = new PostingBatch(MAX_RUN);
+        private final long[] sequences = new long[MAX_RUN];
+        private final int[] stagedBy = new int[MAX_RUN];
+        // Transaction IDs claimed for the run's commands, and for its records
+        private final long[] runIds = new long[MAX_RUN];
+        private final long[] stagedIds = new long[MAX_RUN];
+        private boolean stopping;
+        
+        Shard(int ringSize, String name) {
+            this.ring = new Ring(ringSize);
+            this.thread = new Thread(this, name);
+            thread.setDaemon(true);
+        }
+        
+        /**
+         * Publishes a command, waiting while the ring is full. For callers
+         * and close; shards use offer so they never wait on each other.
+         */
+        void offerBlocking(byte type, Account account, Account counterparty, long amount, LimitRules.Tier limits,
+                           Completion completion) {
+            long claimed;
+            for (int spins = 0; (claimed = ring.tryClaim()) < 0; spins++) {
+                if (spins < SPINS) {
+                    Thread.onSpinWait();
+                } else {
+                    LockSupport.parkNanos(1000L);
+                }
+            }
+            ring.slot(claimed).set(type, account, counterparty, amount, limits, 0L, 0L, 0L, completion);
+            ring.publish(claimed);
+            wake();
+        }
+        
+        /**
+         * Publishes a credit if the ring has room
+         * @param recipient The account to credit
+         */
+        boolean offerCredit(Account recipient, Account sender, long amount, long sequence, long timestamp,
+                            long transactionId, Completion completion) {
+            long claimed = ring.tryClaim();
+            if (claimed < 0) {
+                return false;
+            }
+            ring.slot(claimed).set(CREDIT, recipient, sender, amount, null, sequence, timestamp, transactionId,
+                completion);
+            ring.publish(claimed);
+            wake();
+            return true;
+        }
+        
+        private void wake() {
+            if (sleeping) {
+                LockSupport.unpark(thread);
+            }
+        }
+        
+        @Override
+        public void run() {
+            long next = 0;
+            int idle = 0;
+            while (true) {
+                retryPending();
+                int run = 0;
+                while (run < MAX_RUN && ring.isPublished(next + run)) {
+                    run++;
+                }
+                if (run == 0) {
+                    if (stopping && running.get() == 0 && inFlight.get() == 0 && pending.isEmpty()) {
+                        return;
+                    }
+                    idle = idle(idle, next);
+                    continue;
+                }
+                idle = 0;
+                applyRun(next, run);
+                next += run;
+                ring.consumed = next;
+            }
+        }
+        
+        /**
+         * Spins, then parks until a producer publishes to this ring
+         */
+        private int idle(int idle, long next) {
+            if (idle < SPINS) {
+                Thread.onSpinWait();
+                return idle + 1;
+            }
+            sleeping = true;
+            if (!ring.isPublished(next)) {
+                // Retry held-back credits and recheck shutdown from time to time
+                LockSupport.parkNanos(this, pending.isEmpty() && !stopping ? 100_000_000L : 50_000L);
+            }
+            sleeping = false;
+            return idle;
+        }
+        
+        private void applyRun(long first, int run) {
+            long timestamp = System.currentTimeMillis();
+            IdGenerator.DEFAULT.nextTransactionIds(runIds, 0, run);
+            staged.clear();
+            for (int i = 0; i < run; i++) {
+                Command command = ring.slot(first + i);
+                try {
+                    apply(command, i, timestamp);
+                } catch (RuntimeException e) {
+                    command.failure = e;
+                }
+            }
+            if (!staged.isEmpty()) {
+                journalRun(first, timestamp);
+            }
+            for (int i = 0; i < run; i++) {
+                reply(ring.slot(first + i));
+            }
+        }
+        
+        private void apply(Command command, int index, long timestamp) {
+            Account account = command.account;
+            long transactionId = runIds[index];
+            switch (command.type) {
+                case OPEN:
+                    command.sequence = bank.register(account);
+                    command.status = PostingStatus.SUCCESS;
+                    break;
+                case DEPOSIT:
+                    account.applyDeposit(command.amount, timestamp, transactionId);
+                    stage(index, staged.deposit(account.getAccountNumber(), command.amount));
+                    command.status = PostingStatus.SUCCESS;
+                    break;
+                case WITHDRAW:
+                    command.status = account.applyWithdrawal(command.limits, command.amount, timestamp, transactionId);
+                    if (command.status.isSuccess()) {
+                        stage(index, staged.withdraw(account.getAccountNumber(), command.amount));
+                    }
+                    break;
+                case TRANSFER:
+                    Account recipient = command.counterparty;
+                    command.status = account.applyTransferOut(command.limits, recipient, command.amount, timestamp,
+                        transactionId);
+                    if (!command.status.isSuccess()) {
+                        break;
+                    }
+                    if (shardOf(recipient) == this) {
+                        recipient.applyTransferIn(account, command.amount, timestamp, transactionId);
+                    } else {
+                        // Counted before this shard can reach its STOP
+                        inFlight.incrementAndGet();
+                    }
+                    command.timestamp = timestamp;
+                    command.transactionId = transactionId;
+                    stage(index, staged.transfer(account.getAccountNumber(), recipient.getAccountNumber(),
+                        command.amount));
+                    command.status = PostingStatus.SUCCESS;
+                    break;
+                case CREDIT:
+                    inFlight.decrementAndGet();
+                    account.applyTransferIn(command.counterparty, command.amount, command.timestamp,
+                        command.transactionId);
+                    account.advanceLastSequence(command.sequence);
+                    command.status = PostingStatus.SUCCESS;
+                    break;
+                case STOP:
+                    stopping = true;
+                    running.decrementAndGet();
+                    break;
+                default:
+                    throw new IllegalStateException("Unknown command type " + command.type);
+            }
+        }
+        
+        private void stage(int command, int entry) {
+            stagedBy[entry] = command;
+            stagedIds[entry] = runIds[command];
+        }
+        
+        /**
+         * Journals the run's postings with one append, at the time they were
+         * applied, and records their sequence numbers on the commands and
+         * accounts
+         */
+        private void journalRun(long first, long timestamp) {
+            if (journal == null) {
+                return;
+            }
+            try {
+                journal.appendBatch(staged, ALL_POSTED, timestamp, stagedIds, sequences);
+            } catch (RuntimeException e) {
+                // The journal is unusable from here on; callers see its failure
+                for (int i = 0; i < staged.size(); i++) {
+                    Command command = ring.slot(first + stagedBy[i]);
+                    command.failure = e;
+                    if (command.type == TRANSFER && shardOf(command.counterparty) != this) {
+                        // Never journaled, so its credit is never sent
+                        inFlight.decrementAndGet();
+                    }
+                }
+                return;
+            }
+            for (int i = 0; i < staged.size(); i++) {
+                Command command = ring.slot(first + stagedBy[i]);
+                command.sequence = sequences[i];
+                command.account.advanceLastSequence(sequences[i]);
+                if (command.type == TRANSFER && shardOf(command.counterparty) == this) {
+                    command.counterparty.advanceLastSequence(sequences[i]);
+                }
+            }
+        }
+        
+        /**
+         * Answers the caller, or hands a debited transfer on to the
+         * recipient's shard for its credit
+         */
+        private void reply(Command command) {
+            if (command.type == STOP) {
+                return;
+            }
+            if (command.type == TRANSFER && command.failure == null && command.status.isSuccess()
+                && shardOf(command.counterparty) != this) {
+                handOff(command);
+                return;
+            }
+            command.completion.complete(command.status, command.sequence, command.failure);
+        }
+        
+        private void handOff(Command debit) {
+            // Keep credits in order behind any that are already held back
+            if (pending.isEmpty() && shardOf(debit.counterparty).offerCredit(debit.counterparty, debit.account,
+                    debit.amount, debit.sequence, debit.timestamp, debit.transactionId, debit.completion)) {
+                return;
+            }
+            Command credit = new Command();
+            credit.set(CREDIT, debit.counterparty, debit.account, debit.amount, null, debit.sequence,
+                debit.timestamp, debit.transactionId, debit.completion);
+            pending.addLast(credit);
+        }
+        
+        private void retryPending() {
+            Command credit;
+            while ((credit = pending.peekFirst()) != null && shardOf(credit.account).offerCredit(credit.account,
+                    credit.counterparty, credit.amount, credit.sequence, credit.timestamp, credit.transactionId,
+                    credit.completion)) {
+                pending.pollFirst();
+            }
+        }
+    }
+}
\ No newline at end of file
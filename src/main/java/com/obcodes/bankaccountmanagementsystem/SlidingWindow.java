@@ -0,0 +1,114 @@
+package com.obcodes.bankaccountmanagementsystem;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Running total over a rolling time window, kept in a ring of fixed-width
+ * buckets. Moving the window forward clears at most one ring's worth of
+ * buckets, so adding and reading are O(1) whatever the posting rate; the
+ * window is exact to one bucket width. Not thread-safe: the owner of the
+ * account it belongs to updates it.
+ * @author Obakeng Phale
+ */
+final class SlidingWindow {
+    private final long[] buckets;
+    private final long bucketMillis;
+    // Index of the newest bucket, in bucket widths since the epoch
+    private long newest;
+    private long total;
+    
+    /**
+     * @param bucketCount Buckets in the window
+     * @param bucketMillis Width of one bucket
+     */
+    SlidingWindow(int bucketCount, long bucketMillis) {
+        this.buckets = new long[bucketCount];
+        this.bucketMillis = bucketMillis;
+    }
+    
+    /**
+     * Returns the most bytes writeTo writes for a window of this many buckets
+     */
+    static int maxBytes(int bucketCount) {
+        return 8 + 1 + bucketCount * (1 + 8);
+    }
+    
+    /**
+     * Writes the window for a snapshot, without moving it: the newest
+     * bucket index (long), the number of non-empty buckets (byte), then
+     * each one's ring position (byte) and value (long)
+     */
+    void writeTo(ByteBuffer out) {
+        out.putLong(newest);
+        int countAt = out.position();
+        out.put((byte) 0);
+        int count = 0;
+        for (int i = 0; i < buckets.length; i++) {
+            if (buckets[i] != 0L) {
+                out.put((byte) i).putLong(buckets[i]);
+                count++;
+            }
+        }
+        out.put(countAt, (byte) count);
+    }
+    
+    /**
+     * Returns the number of bytes the window written at the buffer's
+     * position takes, given at least its first nine bytes
+     */
+    static int bytesAt(ByteBuffer in) {
+        return 8 + 1 + (in.get(in.position() + 8) & 0xFF) * (1 + 8);
+    }
+    
+    /**
+     * Replaces this empty window's contents with one written by writeTo
+     * @return false if the bytes do not fit this window's ring
+     */
+    boolean readFrom(ByteBuffer in) {
+        newest = in.getLong();
+        int count = in.get() & 0xFF;
+        for (int i = 0; i < count; i++) {
+            int bucket = in.get() & 0xFF;
+            long value = in.getLong();
+            if (bucket >= buckets.length) {
+                return false;
+            }
+            buckets[bucket] = value;
+            total += value;
+        }
+        return true;
+    }
+    
+    /**
+     * Returns the total of the window ending at a time
+     * @param timestamp Epoch millis
+     */
+    long total(long timestamp) {
+        advance(timestamp);
+        return total;
+    }
+    
+    /**
+     * Adds a value at a time; times older than the newest bucket count
+     * towards the newest bucket
+     */
+    void add(long timestamp, long value) {
+        advance(timestamp);
+        buckets[(int) Math.floorMod(newest, (long) buckets.length)] += value;
+        total += value;
+    }
+    
+    private void advance(long timestamp) {
+        long index = Math.floorDiv(timestamp, bucketMillis);
+        if (index <= newest) {
+            return;
+        }
+        long steps = Math.min(index - newest, buckets.length);
+        for (long i = 1; i <= steps; i++) {
+            int bucket = (int) Math.floorMod(newest + i, (long) buckets.length);
+            total -= buckets[bucket];
+            buckets[bucket] = 0L;
+        }
+        newest = index;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,489 @@
+package com.obcodes.bankaccountmanagementsystem;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Writes account statements to CSV or JSON-lines files.
+ *
+ * Each writer thread walks a history view with a cursor and encodes rows
+ * straight into its own byte buffer: numbers, amounts and timestamps are
+ * written as bytes and descriptions are copied through one reusable
+ * StringBuilder, so nothing is materialized per posting. A full buffer is
+ * written to the file in one positional FileChannel write at an offset the
+ * writer claims atomically, so threads never wait on each other to write.
+ *
+ * When exporting every account, accounts are shared out among the writer
+ * threads. Rows of one account stay in posting order, but rows of
+ * different accounts may interleave in the file, one buffer at a time.
+ * Every row carries its account number.
+ *
+ * A statement can be limited to a date range, which each account's sorted
+ * timestamps find by binary search, so older postings are never read. For
+ * a bank-wide range, pass Bank.accountsPostedBetween as the accounts to
+ * skip every account without postings in it.
+ *
+ * Columns: account, transaction ID, time, type, amount, balance after,
+ * description. Amounts are plain rands with two decimals.
+ * @author Obakeng Phale
+ */
+public class StatementExporter {
+    public static final int DEFAULT_BUFFER_BYTES = 1 << 20;
+    
+    private static final byte[] CSV_HEADER = ascii("account,transaction_id,time,type,amount,balance,description\n");
+    private static final byte[] JSON_ACCOUNT = ascii("{\"account\":");
+    private static final byte[] JSON_ID = ascii(",\"transaction_id\":\"");
+    private static final byte[] JSON_TIME = ascii("\",\"time\":\"");
+    private static final byte[] JSON_TYPE = ascii("\",\"type\":\"");
+    private static final byte[] JSON_AMOUNT = ascii("\",\"amount\":");
+    private static final byte[] JSON_BALANCE = ascii(",\"balance\":");
+    private static final byte[] JSON_DESCRIPTION = ascii(",\"description\":\"");
+    private static final byte[] JSON_END = ascii("\"}\n");
+    private static final byte[] ID_PREFIX = ascii("TXN");
+    private static final byte[] HEX = ascii("0123456789abcdef");
+    private static final byte[][] TYPE_NAMES;
+    
+    static {
+        TransactionType[] types = TransactionType.values();
+        TYPE_NAMES = new byte[types.length][];
+        for (TransactionType type : types) {
+            TYPE_NAMES[type.ordinal()] = ascii(type.name());
+        }
+    }
+    
+    /**
+     * Output file format
+     */
+    public enum Format {
+        /** Comma-separated with a header row; text fields quoted as needed */
+        CSV,
+        /** One JSON object per line */
+        JSON_LINES
+    }
+    
+    private final Format format;
+    private final int threads;
+    private final int bufferBytes;
+    
+    /**
+     * Creates an exporter using every available core and 1 MiB buffers
+     */
+    public StatementExporter(Format format) {
+        this(format, Runtime.getRuntime().availableProcessors(), DEFAULT_BUFFER_BYTES);
+    }
+    
+    /**
+     * @param threads Number of writer threads used by exportAll
+     * @param bufferBytes Size of each writer's buffer (largest single write)
+     */
+    public StatementExporter(Format format, int threads, int bufferBytes) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Exporter needs at least one thread");
+        }
+        if (bufferBytes < 64 * 1024) {
+            throw new IllegalArgumentException("Export buffer must be at least 64 KiB");
+        }
+        this.format = format;
+        this.threads = threads;
+        this.bufferBytes = bufferBytes;
+    }
+    
+    /**
+     * Writes one account's statement, replacing the file if it exists
+     * @return the number of postings written
+     */
+    public long exportAccount(Account account, Path file) throws IOException {
+        return exportAccount(account.getHistory(), file);
+    }
+    
+    /**
+     * Writes the part of one account's statement stamped from one time
+     * (inclusive) to another (exclusive), both epoch millis, replacing the
+     * file if it exists
+     * @return the number of postings written
+     */
+    public long exportAccount(Account account, long fromTimestamp, long toTimestamp, Path file) throws IOException {
+        return exportAccount(account.getHistory().between(fromTimestamp, toTimestamp), file);
+    }
+    
+    private long exportAccount(TransactionHistory.View history, Path file) throws IOException {
+        try (FileChannel channel = open(file)) {
+            Writer writer = new Writer(channel, header(channel));
+            long rows = writer.rows(history);
+            writer.flush();
+            return rows;
+        }
+    }
+    
+    /**
+     * Writes the statements of every account into one file, in parallel,
+     * replacing the file if it exists. Accounts registered while the export
+     * runs may or may not be included.
+     * @return the number of postings written
+     */
+    public long exportAll(Iterable<Account> accounts, Path file) throws IOException {
+        return exportAll(accounts, Account::getHistory, file);
+    }
+    
+    /**
+     * Writes the postings of every account stamped from one time
+     * (inclusive) to another (exclusive), both epoch millis, into one file,
+     * in parallel, replacing the file if it exists
+     * @return the number of postings written
+     */
+    public long exportAll(Iterable<Account> accounts, long fromTimestamp, long toTimestamp, Path file)
+            throws IOException {
+        if (fromTimestamp > toTimestamp) {
+            throw new IllegalArgumentException("Start of range is after its end");
+        }
+        return exportAll(accounts, account -> account.getHistory().between(fromTimestamp, toTimestamp), file);
+    }
+    
+    private long exportAll(Iterable<Account> accounts, Function<Account, TransactionHistory.View> histories,
+                           Path file) throws IOException {
+        Iterator<Account> source = accounts.iterator();
+        LongAdder rows = new LongAdder();
+        Throwable[] failure = new Throwable[1];
+        try (FileChannel channel = open(file)) {
+            AtomicLong position = header(channel);
+            
+            ExecutorService workers = Executors.newFixedThreadPool(threads, task -> {
+                Thread thread = new Thread(task, "statement-export");
+                thread.setDaemon(true);
+                return thread;
+            });
+            for (int i = 0; i < threads; i++) {
+                workers.execute(() -> {
+                    Writer writer = new Writer(channel, position);
+                    try {
+                        while (true) {
+                            Account account;
+                            synchronized (source) {
+                                if (failure[0] != null || !source.hasNext()) {
+                                    break;
+                                }
+                                account = source.next();
+                            }
+                            rows.add(writer.rows(histories.apply(account)));
+                        }
+                        writer.flush();
+                    } catch (IOException | RuntimeException | Error e) {
+                        synchronized (source) {
+                            if (failure[0] == null) {
+                                failure[0] = e;
+                            }
+                        }
+                    }
+                });
+            }
+            workers.shutdown();
+            try {
+                while (!workers.awaitTermination(1, TimeUnit.MINUTES)) {
+                    // Keep waiting: writers still hold unwritten rows
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Export interrupted", e);
+            }
+        }
+        Throwable thrown;
+        synchronized (source) {
+            thrown = failure[0];
+        }
+        if (thrown instanceof IOException) {
+            throw (IOException) thrown;
+        }
+        if (thrown instanceof RuntimeException) {
+            throw (RuntimeException) thrown;
+        }
+        if (thrown instanceof Error) {
+            throw (Error) thrown;
+        }
+        return rows.sum();
+    }
+    
+    /**
+     * Writes the header row, if the format has one
+     * @return the file position rows are written from
+     */
+    private AtomicLong header(FileChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.wrap(format == Format.CSV ? CSV_HEADER : new byte[0]);
+        while (header.hasRemaining()) {
+            channel.write(header, header.position());
+        }
+        return new AtomicLong(header.position());
+    }
+    
+    private static FileChannel open(Path file) throws IOException {
+        return FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+            StandardOpenOption.TRUNCATE_EXISTING);
+    }
+    
+    private static byte[] ascii(String text) {
+        byte[] bytes = new byte[text.length()];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) text.charAt(i);
+        }
+        return bytes;
+    }
+    
+    /**
+     * One thread's encoder: a buffer that only ever holds whole rows when it
+     * is written out
+     */
+    private final class Writer {
+        private final FileChannel channel;
+        private final AtomicLong position;
+        private final byte[] buffer;
+        private final ByteBuffer output;
+        private final StringBuilder text = new StringBuilder(128);
+        // Per writer, so the one-minute cache is not thrashed by other writers
+        private final TimestampFormatter times = new TimestampFormatter(TimestampFormatter.DEFAULT.getZone());
+        // End of the bytes encoded so far
+        private int end;
+        // Start of the row being encoded
+        private int rowStart;
+        
+        Writer(FileChannel channel, AtomicLong position) {
+            this.channel = channel;
+            this.position = position;
+            this.buffer = new byte[bufferBytes];
+            this.output = ByteBuffer.wrap(buffer);
+        }
+        
+        /**
+         * Encodes every posting in a view of one account's history
+         * @return the number of postings written
+         */
+        long rows(TransactionHistory.View history) throws IOException {
+            long accountNumber = history.getAccountNumber();
+            TransactionHistory.Cursor cursor = history.cursor();
+            long written = 0;
+            while (cursor.next()) {
+                if (format == Format.CSV) {
+                    csvRow(accountNumber, cursor);
+                } else {
+                    jsonRow(accountNumber, cursor);
+                }
+                rowStart = end;
+                written++;
+            }
+            return written;
+        }
+        
+        private void csvRow(long accountNumber, TransactionHistory.Cursor cursor) throws IOException {
+            ensure(160);
+            putLong(accountNumber);
+            buffer[end++] = ',';
+            put(ID_PREFIX);
+            putLong(cursor.transactionId());
+            buffer[end++] = ',';
+            putTime(cursor.timestamp());
+            buffer[end++] = ',';
+            put(TYPE_NAMES[cursor.type().ordinal()]);
+            buffer[end++] = ',';
+            putMoney(cursor.amount());
+            buffer[end++] = ',';
+            putMoney(cursor.balanceAfter());
+            buffer[end++] = ',';
+            text.setLength(0);
+            cursor.appendDescription(text);
+            putCsvText(text);
+            buffer[end++] = '\n';
+        }
+        
+        private void jsonRow(long accountNumber, TransactionHistory.Cursor cursor) throws IOException {
+            ensure(256);
+            put(JSON_ACCOUNT);
+            putLong(accountNumber);
+            put(JSON_ID);
+            put(ID_PREFIX);
+            putLong(cursor.transactionId());
+            put(JSON_TIME);
+            putTime(cursor.timestamp());
+            put(JSON_TYPE);
+            put(TYPE_NAMES[cursor.type().ordinal()]);
+            put(JSON_AMOUNT);
+            putMoney(cursor.amount());
+            put(JSON_BALANCE);
+            putMoney(cursor.balanceAfter());
+            put(JSON_DESCRIPTION);
+            text.setLength(0);
+            cursor.appendDescription(text);
+            putJsonText(text);
+            ensure(JSON_END.length);
+            put(JSON_END);
+        }
+        
+        /**
+         * Makes room for n more bytes of the current row, writing out the
+         * complete rows before it if the buffer is full
+         */
+        private void ensure(int n) throws IOException {
+            if (buffer.length - end >= n) {
+                return;
+            }
+            int partial = end - rowStart;
+            if (rowStart == 0 || buffer.length - partial < n) {
+                throw new IllegalStateException("Statement row is larger than the " + bufferBytes + " byte export buffer");
+            }
+            flush();
+        }
+        
+        /**
+         * Writes out the complete rows in the buffer, keeping the row being
+         * encoded
+         */
+        void flush() throws IOException {
+            output.clear().limit(rowStart);
+            long at = position.getAndAdd(rowStart);
+            while (output.hasRemaining()) {
+                at += channel.write(output, at);
+            }
+            int partial = end - rowStart;
+            System.arraycopy(buffer, rowStart, buffer, 0, partial);
+            rowStart = 0;
+            end = partial;
+        }
+        
+        /**
+         * Callers ensure room for the fixed-width fields of a row up front
+         */
+        private void put(byte[] bytes) {
+            System.arraycopy(bytes, 0, buffer, end, bytes.length);
+            end += bytes.length;
+        }
+        
+        private void putLong(long value) {
+            if (value < 0) {
+                buffer[end++] = '-';
+            } else {
+                value = -value;
+            }
+            // Digits of a non-positive value, so Long.MIN_VALUE needs no special case
+            int start = end;
+            do {
+                buffer[end++] = (byte) ('0' - value % 10);
+                value /= 10;
+            } while (value != 0);
+            for (int i = start, j = end - 1; i < j; i++, j--) {
+                byte swap = buffer[i];
+                buffer[i] = buffer[j];
+                buffer[j] = swap;
+            }
+        }
+        
+        /**
+         * Writes cents as rands with two decimals, e.g. 123456 as 1234.56
+         */
+        private void putMoney(long cents) {
+            if (cents < 0) {
+                buffer[end++] = '-';
+            }
+            long negated = cents < 0 ? cents : -cents;
+            putLong(-(negated / 100));
+            int fraction = (int) -(negated % 100);
+            buffer[end++] = '.';
+            buffer[end++] = (byte) ('0' + fraction / 10);
+            buffer[end++] = (byte) ('0' + fraction % 10);
+        }
+        
+        /**
+         * Writes "yyyy-MM-dd HH:mm:ss" in the local time zone
+         */
+        private void putTime(long epochMillis) {
+            end = times.formatTo(epochMillis, buffer, end);
+        }
+        
+        /**
+         * Writes text as a CSV field, quoting it only if it contains a
+         * comma, quote or line break
+         */
+        private void putCsvText(CharSequence s) throws IOException {
+            int length = s.length();
+            boolean quote = false;
+            for (int i = 0; i < length && !quote; i++) {
+                char c = s.charAt(i);
+                quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+            }
+            // Worst case: every char doubled or three UTF-8 bytes, plus quotes and line end
+            ensure(length * 3 + 3);
+            if (quote) {
+                buffer[end++] = '"';
+            }
+            for (int i = 0; i < length; i++) {
+                char c = s.charAt(i);
+                if (c == '"') {
+                    buffer[end++] = '"';
+                }
+                i = putChar(s, i, c);
+            }
+            if (quote) {
+                buffer[end++] = '"';
+            }
+        }
+        
+        /**
+         * Writes text as the inside of a JSON string
+         */
+        private void putJsonText(CharSequence s) throws IOException {
+            int length = s.length();
+            ensure(length * 6);
+            for (int i = 0; i < length; i++) {
+                char c = s.charAt(i);
+                if (c == '"' || c == '\\') {
+                    buffer[end++] = '\\';
+                    buffer[end++] = (byte) c;
+                } else if (c < 0x20) {
+                    buffer[end++] = '\\';
+                    buffer[end++] = 'u';
+                    buffer[end++] = '0';
+                    buffer[end++] = '0';
+                    buffer[end++] = HEX[c >> 4];
+                    buffer[end++] = HEX[c & 0xF];
+                } else {
+                    i = putChar(s, i, c);
+                }
+            }
+        }
+        
+        /**
+         * Writes the character c at index i as UTF-8
+         * @return the index of the last char consumed (i + 1 for a
+         *         surrogate pair)
+         */
+        private int putChar(CharSequence s, int i, char c) {
+            if (c < 0x80) {
+                buffer[end++] = (byte) c;
+            } else if (c < 0x800) {
+                buffer[end++] = (byte) (0xC0 | (c >> 6));
+                buffer[end++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < s.length()
+                       && Character.isLowSurrogate(s.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, s.charAt(i + 1));
+                buffer[end++] = (byte) (0xF0 | (cp >> 18));
+                buffer[end++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+                buffer[end++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+                buffer[end++] = (byte) (0x80 | (cp & 0x3F));
+                return i + 1;
+            } else if (Character.isSurrogate(c)) {
+                buffer[end++] = '?';
+            } else {
+                buffer[end++] = (byte) (0xE0 | (c >> 12));
+                buffer[end++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                buffer[end++] = (byte) (0x80 | (c & 0x3F));
+            }
+            return i;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,164 @@
+package com.obcodes.bankaccountmanagementsystem;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Bank-wide index of which accounts posted in each minute.
+ *
+ * Time is cut into one-minute buckets. Each bucket lists the accounts with
+ * at least one posting stamped in it, each account once: a history reports
+ * a bucket the first time it posts in it, which costs the posting path one
+ * comparison the rest of the minute. Rows themselves are found through each
+ * account's own sorted timestamp column, so "every posting in the last
+ * hour" reads sixty buckets, then binary-searches only the accounts listed
+ * there, instead of scanning every history in the bank.
+ *
+ * Buckets sit in a skip list keyed by bucket number, so postings replayed
+ * from long ago index as cheaply as live ones. Recording into the current
+ * bucket skips the skip list. The index takes 8 bytes per account for each
+ * minute it posted in and lives only in memory; Bank rebuilds it on
+ * start-up as replay recreates the histories.
+ *
+ * With a HistoryArchive the index only follows the heap: a history
+ * releases a bucket once every row it has in that minute is archived, and
+ * a bucket every listed account has released is dropped. The index then
+ * grows with the rows kept on the heap, not with the whole history. It no
+ * longer covers the minutes it dropped, and callers search every account
+ * for a range that starts before getCoveredFrom.
+ * @author Obakeng Phale
+ */
+public final class TimeIndex {
+    public static final long BUCKET_MILLIS = 60_000L;
+    
+    private final ConcurrentSkipListMap<Long, Bucket> buckets = new ConcurrentSkipListMap<>();
+    // Most postings land in the newest bucket
+    private volatile Bucket latest = new Bucket(Long.MIN_VALUE);
+    // Buckets before this one may have been dropped
+    private volatile long coveredFrom = Long.MIN_VALUE;
+    
+    /**
+     * Returns the bucket a time (epoch millis) falls in
+     */
+    static long bucketOf(long timestamp) {
+        return Math.floorDiv(timestamp, BUCKET_MILLIS);
+    }
+    
+    /**
+     * Notes that an account posted in a bucket. Histories call this once
+     * per bucket, so an account appears in a bucket at most once.
+     */
+    void record(long bucket, long accountNumber) {
+        Bucket current = latest;
+        if (current.number != bucket) {
+            current = buckets.computeIfAbsent(bucket, Bucket::new);
+            if (bucket > latest.number) {
+                latest = current;
+            }
+        }
+        current.add(accountNumber);
+    }
+    
+    /**
+     * Notes that every row an account had in a bucket has left the heap,
+     * dropping the bucket once no account it lists has rows there. Called
+     * once per bucket the account recorded.
+     */
+    void release(long bucket) {
+        Bucket released = buckets.get(bucket);
+        if (released != null && released.release() && buckets.remove(bucket, released)) {
+            synchronized (this) {
+                if (bucket >= coveredFrom) {
+                    coveredFrom = bucket + 1;
+                }
+            }
+        }
+    }
+    
+    /**
+     * Returns the earliest time (epoch millis) from which accountsBetween
+     * lists every account with postings, or Long.MIN_VALUE if no bucket
+     * has been dropped
+     */
+    public long getCoveredFrom() {
+        long bucket = coveredFrom;
+        return bucket == Long.MIN_VALUE ? Long.MIN_VALUE : bucket * BUCKET_MILLIS;
+    }
+    
+    /**
+     * Returns the accounts that may have postings stamped from one time
+     * (inclusive) to another (exclusive), both epoch millis, in ascending
+     * order without duplicates. Buckets are whole minutes, so an account
+     * may only have postings just outside the range. Accounts whose
+     * postings were in dropped buckets, before getCoveredFrom, are missing.
+     */
+    public long[] accountsBetween(long fromTimestamp, long toTimestamp) {
+        if (fromTimestamp >= toTimestamp) {
+            return new long[0];
+        }
+        long[] found = new long[16];
+        int count = 0;
+        for (Bucket bucket : buckets.subMap(bucketOf(fromTimestamp), true, bucketOf(toTimestamp - 1), true).values()) {
+            int size = bucket.size;
+            long[] accounts = bucket.accounts;
+            if (count + size > found.length) {
+                found = Arrays.copyOf(found, Math.max(found.length << 1, count + size));
+            }
+            System.arraycopy(accounts, 0, found, count, size);
+            count += size;
+        }
+        Arrays.sort(found, 0, count);
+        int distinct = 0;
+        for (int i = 0; i < count; i++) {
+            if (distinct == 0 || found[i] != found[distinct - 1]) {
+                found[distinct++] = found[i];
+            }
+        }
+        return Arrays.copyOf(found, distinct);
+    }
+    
+    /**
+     * Returns the number of minutes with at least one posting
+     */
+    public int getBucketCount() {
+        return buckets.size();
+    }
+    
+    /**
+     * Accounts that posted in one minute. Appends take the bucket's lock,
+     * once per account per minute; readers take none.
+     */
+    private static final class Bucket {
+        final long number;
+        // A reader that sees a size sees at least that many accounts in
+        // the array it reads after it
+        volatile long[] accounts = new long[8];
+        volatile int size;
+        // Accounts listed that still have rows of this minute on the heap
+        // (guarded by the bucket)
+        private int live;
+        
+        Bucket(long number) {
+            this.number = number;
+        }
+        
+        synchronized void add(long accountNumber) {
+            long[] current = accounts;
+            int n = size;
+            if (n == current.length) {
+                current = Arrays.copyOf(current, n << 1);
+            }
+            current[n] = accountNumber;
+            accounts = current;
+            size = n + 1;
+            live++;
+        }
+        
+        /**
+         * @return true if this was the last account with rows on the heap
+         */
+        synchronized boolean release() {
+            return --live == 0;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,175 @@
+package com.obcodes.bankaccountmanagementsystem;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.time.format.DateTimeParseException;
+import java.time.format.SignStyle;
+import java.time.temporal.ChronoField;
+import java.time.zone.ZoneRules;
+
+/**
+ * Formats epoch-millisecond timestamps as "yyyy-MM-dd HH:mm:ss" in a time
+ * zone, and parses dates typed in that form. Safe to share between threads.
+ *
+ * Postings cluster in time, so the last second formatted is cached and
+ * returned as is, and a new second within the same minute only swaps the
+ * seconds digits onto the cached "yyyy-MM-dd HH:mm:" prefix. Only a new
+ * minute goes through the zone rules and calendar arithmetic. The cache is
+ * one immutable entry behind a volatile field: threads racing on it at
+ * worst format the same second twice, but threads formatting different
+ * minutes keep replacing each other's entry, so a thread that formats in
+ * bulk should have a formatter of its own.
+ * @author Obakeng Phale
+ */
+public final class TimestampFormatter {
+    /** Formats in the JVM's default time zone */
+    public static final TimestampFormatter DEFAULT = new TimestampFormatter(ZoneId.systemDefault());
+    
+    private static final int LENGTH = 19;
+    private static final int PREFIX_LENGTH = 17;
+    // For years that do not fit four digits
+    private static final DateTimeFormatter WIDE_YEARS = new DateTimeFormatterBuilder()
+        .appendValue(ChronoField.YEAR, 4, 10, SignStyle.NORMAL)
+        .appendPattern("-MM-dd HH:mm:ss")
+        .toFormatter();
+    
+    private final ZoneId zone;
+    private final ZoneRules rules;
+    private volatile Entry last = new Entry(Long.MIN_VALUE, null, Long.MIN_VALUE, null);
+    
+    public TimestampFormatter(ZoneId zone) {
+        this.zone = zone;
+        this.rules = zone.getRules();
+    }
+    
+    /**
+     * Returns the time zone timestamps are formatted and parsed in
+     */
+    public ZoneId getZone() {
+        return zone;
+    }
+    
+    /**
+     * Parses "yyyy-MM-dd", meaning the start of that day, or
+     * "yyyy-MM-dd HH:mm:ss" (a 'T' may replace the space) in this
+     * formatter's time zone
+     * @return epoch millis
+     * @throws IllegalArgumentException if the text is in neither form
+     */
+    public long parse(String text) {
+        String trimmed = text.trim();
+        try {
+            if (trimmed.length() <= 10) {
+                return LocalDate.parse(trimmed).atStartOfDay(zone).toInstant().toEpochMilli();
+            }
+            return LocalDateTime.parse(trimmed.replace(' ', 'T')).atZone(zone).toInstant().toEpochMilli();
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid date: " + text + " (expected yyyy-MM-dd or yyyy-MM-dd HH:mm:ss)");
+        }
+    }
+    
+    /**
+     * @param epochMillis Milliseconds since the epoch; the fraction of a
+     *        second is dropped
+     */
+    public String format(long epochMillis) {
+        long second = Math.floorDiv(epochMillis, 1000L);
+        Entry cached = last;
+        if (cached.second == second) {
+            return cached.text;
+        }
+        
+        char[] chars = new char[LENGTH];
+        long minuteStart;
+        String prefix;
+        if (cached.prefix != null && second >= cached.minuteStart && second < cached.minuteStart + 60) {
+            minuteStart = cached.minuteStart;
+            prefix = cached.prefix;
+            prefix.getChars(0, PREFIX_LENGTH, chars, 0);
+            digits(chars, (int) (second - minuteStart), PREFIX_LENGTH, 2);
+        } else {
+            ZoneOffset offset = rules.getOffset(Instant.ofEpochSecond(second));
+            LocalDateTime time = LocalDateTime.ofEpochSecond(second, 0, offset);
+            if (time.getYear() < 0 || time.getYear() > 9999) {
+                return WIDE_YEARS.format(time);
+            }
+            digits(chars, time.getYear(), 0, 4);
+            chars[4] = '-';
+            digits(chars, time.getMonthValue(), 5, 2);
+            chars[7] = '-';
+            digits(chars, time.getDayOfMonth(), 8, 2);
+            chars[10] = ' ';
+            digits(chars, time.getHour(), 11, 2);
+            chars[13] = ':';
+            digits(chars, time.getMinute(), 14, 2);
+            chars[16] = ':';
+            digits(chars, time.getSecond(), PREFIX_LENGTH, 2);
+            minuteStart = second - time.getSecond();
+            // The prefix is only reusable if the whole minute shares one whole-minute offset
+            boolean steady = offset.getTotalSeconds() % 60 == 0
+                && offset.equals(rules.getOffset(Instant.ofEpochSecond(minuteStart)))
+                && offset.equals(rules.getOffset(Instant.ofEpochSecond(minuteStart + 59)));
+            prefix = steady ? new String(chars, 0, PREFIX_LENGTH) : null;
+        }
+        String text = new String(chars);
+        last = new Entry(second, text, minuteStart, prefix);
+        return text;
+    }
+    
+    /**
+     * Formats into ASCII bytes, as format does, without making a String
+     * when the minute is cached
+     * @return the offset after the last byte written; years 0 to 9999
+     *         take 19 bytes
+     */
+    public int formatTo(long epochMillis, byte[] bytes, int offset) {
+        long second = Math.floorDiv(epochMillis, 1000L);
+        Entry cached = last;
+        if (cached.prefix != null && second >= cached.minuteStart && second < cached.minuteStart + 60) {
+            String prefix = cached.prefix;
+            for (int i = 0; i < PREFIX_LENGTH; i++) {
+                bytes[offset + i] = (byte) prefix.charAt(i);
+            }
+            int seconds = (int) (second - cached.minuteStart);
+            bytes[offset + PREFIX_LENGTH] = (byte) ('0' + seconds / 10);
+            bytes[offset + PREFIX_LENGTH + 1] = (byte) ('0' + seconds % 10);
+            return offset + LENGTH;
+        }
+        // Caches the new minute for the calls that follow
+        String text = format(epochMillis);
+        for (int i = 0; i < text.length(); i++) {
+            bytes[offset + i] = (byte) text.charAt(i);
+        }
+        return offset + text.length();
+    }
+    
+    private static void digits(char[] chars, int value, int offset, int width) {
+        for (int i = offset + width - 1; i >= offset; i--) {
+            chars[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+    }
+    
+    /**
+     * The last second formatted, and the minute it falls in
+     */
+    private static final class Entry {
+        final long second;
+        final String text;
+        // First epoch second of the minute, and "yyyy-MM-dd HH:mm:" or null
+        final long minuteStart;
+        final String prefix;
+        
+        Entry(long second, String text, long minuteStart, String prefix) {
+            this.second = second;
+            this.text = text;
+            this.minuteStart = minuteStart;
+            this.prefix = prefix;
+        }
+    }
+}
\ No newline at end of file
@@ -1,6 +1,6 @@
 package com.obcodes.bankaccountmanagementsystem;
 
-import java.text.SimpleDateFormat;
+import java.time.Instant;
 import java.util.Date;
 
 /**
@@ -8,55 +8,71 @@ import java.util.Date;
  * @author Obakeng Phale
  */
 public class Transaction {
-    private final String transactionId;
+    private final long transactionId;
     private final long accountNumber;
     private final String transactionType;
-    private final double amount;
-    private final double balanceAfter;
-    private final Date timestamp;
+    private final long amount;
+    private final long balanceAfter;
+    // Epoch milliseconds
+    private final long timestamp;
     private final String description;
     
-    private static final SimpleDateFormat DATE_FORMAT = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+    private static final long MAX_AMOUNT = Money.of(10000000);
     
+    /**
+     * Creates a transaction record
+     * @param amount Amount in cents
+     * @param balanceAfter Account balance in cents after the transaction
+     */
     public Transaction(long accountNumber, String transactionType, 
-                      double amount, double balanceAfter, String description) {
-        this.transactionId = generateTransactionId();
+                      long amount, long balanceAfter, String description) {
+        this.transactionId = IdGenerator.DEFAULT.nextTransactionId();
         this.accountNumber = accountNumber;
         this.transactionType = validateTransactionType(transactionType);
         this.amount = validateAmount(amount);
         this.balanceAfter = balanceAfter;
-        this.timestamp = new Date();
+        this.timestamp = System.currentTimeMillis();
         this.description = (description != null) ? description.trim() : "";
     }
     
-    private String generateTransactionId() {
-        return "TXN" + System.currentTimeMillis() + (int)(Math.random() * 1000);
+    /**
+     * Materializes a transaction from a history row with its original ID
+     * and timestamp (epoch millis)
+     */
+    Transaction(long transactionId, long accountNumber, String transactionType, 
+                long amount, long balanceAfter, String description, long timestamp) {
+        this.transactionId = transactionId;
+        this.accountNumber = accountNumber;
+        this.transactionType = validateTransactionType(transactionType);
+        this.amount = validateAmount(amount);
+        this.balanceAfter = balanceAfter;
+        this.timestamp = timestamp;
+        this.description = (description != null) ? description.trim() : "";
     }
     
     private String validateTransactionType(String type) {
-        if (type == null || type.trim().isEmpty()) {
-            return "UNKNOWN";
-        }
-        String upperType = type.toUpperCase();
-        if (upperType.equals("DEPOSIT") || upperType.equals("WITHDRAWAL") || 
-            upperType.equals("TRANSFER_IN") || upperType.equals("TRANSFER_OUT")) {
-            return upperType;
-        }
-        return "UNKNOWN";
+        return TransactionType.parse(type).name();
     }
     
-    private double validateAmount(double amount) {
+    private long validateAmount(long amount) {
         if (amount < 0) {
-            return 0.0;
+            return Money.ZERO;
         }
-        if (amount > 10000000) {
-            return 10000000.0;
+        if (amount > MAX_AMOUNT) {
+            return MAX_AMOUNT;
         }
-        return Math.round(amount * 100.0) / 100.0;
+        return amount;
     }
     
     // Getters
     public String getTransactionId() {
+        return IdGenerator.formatTransactionId(transactionId);
+    }
+    
+    /**
+     * Returns the numeric transaction ID
+     */
+    public long getTransactionNumber() {
         return transactionId;
     }
     
@@ -68,16 +84,33 @@ public class Transaction {
         return transactionType;
     }
     
-    public double getAmount() {
+    /**
+     * Returns the amount in cents
+     */
+    public long getAmount() {
         return amount;
     }
     
-    public double getBalanceAfter() {
+    /**
+     * Returns the balance in cents after the transaction
+     */
+    public long getBalanceAfter() {
         return balanceAfter;
     }
     
     public Date getTimestamp() {
-        return new Date(timestamp.getTime());
+        return new Date(timestamp);
+    }
+    
+    public Instant getInstant() {
+        return Instant.ofEpochMilli(timestamp);
+    }
+    
+    /**
+     * Returns the time of the transaction in milliseconds since the epoch
+     */
+    public long getEpochMillis() {
+        return timestamp;
     }
     
     public String getDescription() {
@@ -85,23 +118,33 @@ public class Transaction {
     }
     
     public void displayTransaction() {
-        System.out.printf("%-15s %-12s %-15s R%-12.2f R%-12.2f %-20s %-30s%n",
-            transactionId,
-            DATE_FORMAT.format(timestamp),
+        display(transactionId, timestamp, transactionType, amount, balanceAfter,
+            accountNumber, description);
+    }
+    
+    /**
+     * Prints one statement line, so history can be displayed straight from
+     * its columns without materializing Transaction objects
+     */
+    static void display(long transactionId, long timestamp, String transactionType,
+                        long amount, long balanceAfter, long accountNumber, String description) {
+        System.out.printf("%-22s %-12s %-15s R%-12s R%-12s %-20s %-30s%n",
+            IdGenerator.formatTransactionId(transactionId),
+            TimestampFormatter.DEFAULT.format(timestamp),
             transactionType,
-            amount,
-            balanceAfter,
+            Money.toPlainString(amount),
+            Money.toPlainString(balanceAfter),
             accountNumber,
             description);
     }
     
     public String getFormattedTimestamp() {
-        return DATE_FORMAT.format(timestamp);
+        return TimestampFormatter.DEFAULT.format(timestamp);
     }
     
     @Override
     public String toString() {
-        return String.format("Transaction[ID: %s, Type: %s, Amount: R%.2f, Date: %s]",
-            transactionId, transactionType, amount, getFormattedTimestamp());
+        return String.format("Transaction[ID: %s, Type: %s, Amount: R%s, Date: %s]",
+            getTransactionId(), transactionType, Money.toPlainString(amount), getFormattedTimestamp());
     }
 }
\ No newline at end of file
@@ -0,0 +1,983 @@
+package com.obcodes.bankaccountmanagementsystem;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Columnar transaction history for one account.
+ *
+ * Postings are kept in parallel arrays (transaction ID, timestamp, amount,
+ * balance after, counterparty, type code, description) instead of one
+ * object graph per posting, so a posting costs a few dozen bytes and no
+ * allocation once the arrays have grown. Descriptions are shared strings,
+ * not copies: fixed ones are constants, and a transfer row holds the
+ * counterparty's name as the account held it, plus its account number,
+ * and its description is rebuilt on demand. Nothing is interned, so a name
+ * no longer referenced by any row is freed. Transaction objects are only
+ * materialized when a caller asks for them, e.g. to display a statement.
+ *
+ * Rows are never changed once written and growth copies into new arrays, so
+ * a View stays valid and immutable without copying anything, even while new
+ * postings are appended.
+ *
+ * Attached to a HistoryArchive, the history is tiered: the columns hold
+ * only the newest rows, and older rows are moved into runs of the
+ * archive's memory-mapped segments, found through a small index of runs.
+ * Row numbers, views and cursors span both tiers; only the cost of reading
+ * an old row changes, and an archived transfer shows the counterparty's
+ * current name.
+ *
+ * Timestamps never decrease from one row to the next: a posting stamped
+ * before the one ahead of it (the clock stepped back, or a transfer credit
+ * was stamped on another thread) is recorded at the earlier row's time. The
+ * timestamp column is therefore sorted, and a View finds a date range by
+ * binary search. Once attached to a bank's TimeIndex, the history also
+ * tells the index each time bucket it first posts in.
+ *
+ * One writer at a time: whoever owns the account, i.e. holds its lock or is
+ * its shard's writer thread. The row count is published only after a row is
+ * fully written, so other threads can read and take views without the
+ * writer's lock.
+ * @author Obakeng Phale
+ */
+public final class TransactionHistory {
+    private static final int INITIAL_CAPACITY = 4;
+    private static final long NO_COUNTERPARTY = 0L;
+    private static final int RECORD_BYTES = HistoryArchive.RECORD_BYTES;
+    
+    private final long accountNumber;
+    // Both volatile: a reader that sees a row count sees those rows, in
+    // whichever generation of the columns it then reads
+    private volatile Columns columns;
+    private volatile int size;
+    // Writer-owned: the latest timestamp written, and the bank-wide index
+    // with the last time bucket reported to it
+    private long lastTimestamp = Long.MIN_VALUE;
+    private TimeIndex index;
+    private long indexedBucket = Long.MIN_VALUE;
+    // Writer-owned: the archive for older rows, and the row count at which
+    // the next run is moved there
+    private HistoryArchive archive;
+    private int archiveAt;
+    
+    public TransactionHistory(long accountNumber) {
+        this.accountNumber = accountNumber;
+        this.columns = new Columns(INITIAL_CAPACITY);
+    }
+    
+    /**
+     * The heap columns, replaced as a unit when they grow or rows are
+     * archived. Rows below base are in the archive.
+     */
+    private static final class Columns {
+        final int base;
+        final Cold cold;
+        final long[] timestamps;
+        final long[] amounts;
+        final long[] balances;
+        final long[] counterparties;
+        final byte[] types;
+        // Free text, or the counterparty's name for a transfer
+        final String[] descriptions;
+        final long[] ids;
+        
+        Columns(int capacity) {
+            this.base = 0;
+            this.cold = null;
+            this.timestamps = new long[capacity];
+            this.amounts = new long[capacity];
+            this.balances = new long[capacity];
+            this.counterparties = new long[capacity];
+            this.types = new byte[capacity];
+            this.descriptions = new String[capacity];
+            this.ids = new long[capacity];
+        }
+        
+        Columns(Columns old, int capacity) {
+            this(old, 0, capacity, old.cold);
+        }
+        
+        /**
+         * Copies the columns without their first dropped rows, which cold
+         * now holds
+         */
+        Columns(Columns old, int dropped, int capacity, Cold cold) {
+            this.base = old.base + dropped;
+            this.cold = cold;
+            this.timestamps = Arrays.copyOfRange(old.timestamps, dropped, dropped + capacity);
+            this.amounts = Arrays.copyOfRange(old.amounts, dropped, dropped + capacity);
+            this.balances = Arrays.copyOfRange(old.balances, dropped, dropped + capacity);
+            this.counterparties = Arrays.copyOfRange(old.counterparties, dropped, dropped + capacity);
+            this.types = Arrays.copyOfRange(old.types, dropped, dropped + capacity);
+            this.descriptions = Arrays.copyOfRange(old.descriptions, dropped, dropped + capacity);
+            this.ids = Arrays.copyOfRange(old.ids, dropped, dropped + capacity);
+        }
+        
+        int capacity() {
+            return types.length;
+        }
+        
+        /**
+         * Returns the row after the last one the columns have room for
+         */
+        int end() {
+            return base + types.length;
+        }
+        
+        long timestamp(int row) {
+            return row >= base ? timestamps[row - base] : cold.timestamp(row);
+        }
+        
+        long amount(int row) {
+            return row >= base ? amounts[row - base] : cold.amount(row);
+        }
+        
+        long balance(int row) {
+            return row >= base ? balances[row - base] : cold.balance(row);
+        }
+        
+        byte type(int row) {
+            return row >= base ? types[row - base] : cold.type(row);
+        }
+        
+        long id(int row) {
+            return row >= base ? ids[row - base] : cold.id(row);
+        }
+        
+        String description(int row) {
+            if (row < base) {
+                return cold.description(row);
+            }
+            int i = row - base;
+            return TransactionHistory.description(types[i], counterparties[i], descriptions[i]);
+        }
+        
+        StringBuilder appendDescription(int row, StringBuilder sb) {
+            if (row < base) {
+                return cold.appendDescription(row, sb);
+            }
+            int i = row - base;
+            return TransactionHistory.appendDescription(types[i], counterparties[i], descriptions[i], sb);
+        }
+        
+        Transaction materialize(long accountNumber, int row) {
+            return new Transaction(id(row), accountNumber, TransactionType.fromCode(type(row)).name(),
+                amount(row), balance(row), description(row), timestamp(row));
+        }
+        
+        /**
+         * Returns the first of rows 0 to end stamped at or after a time, or
+         * end if there is none
+         */
+        int firstAtOrAfter(long timestamp, int end) {
+            if (cold != null && (end <= base || timestamps[0] >= timestamp)) {
+                return Math.min(cold.firstAtOrAfter(timestamp), end);
+            }
+            int low = base;
+            int high = end;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (timestamps[mid - base] < timestamp) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+    }
+    
+    /**
+     * The archived rows: runs of records in the archive's segments, in row
+     * order. Rows are only ever appended, so a newer Cold shares its arrays
+     * with the one it was made from, which reads no further than its own
+     * run count.
+     */
+    private static final class Cold {
+        final int rows;
+        final int runs;
+        final HistoryArchive.Segment[] segments;
+        final int[] offsets;
+        final int[] firstRows;
+        // Sorted like the rows, so a time finds its run without reading the archive
+        final long[] firstTimestamps;
+        
+        Cold(int rows, int runs, HistoryArchive.Segment[] segments, int[] offsets, int[] firstRows,
+             long[] firstTimestamps) {
+            this.rows = rows;
+            this.runs = runs;
+            this.segments = segments;
+            this.offsets = offsets;
+            this.firstRows = firstRows;
+            this.firstTimestamps = firstTimestamps;
+        }
+        
+        /**
+         * Returns a Cold with one more run of count rows, starting at the
+         * first row after this one's
+         */
+        static Cold append(Cold cold, HistoryArchive.Segment segment, int offset, int count, long firstTimestamp) {
+            if (cold == null) {
+                cold = new Cold(0, 0, new HistoryArchive.Segment[4], new int[4], new int[4], new long[4]);
+            }
+            HistoryArchive.Segment[] segments = cold.segments;
+            int[] offsets = cold.offsets;
+            int[] firstRows = cold.firstRows;
+            long[] firstTimestamps = cold.firstTimestamps;
+            int runs = cold.runs;
+            if (runs == segments.length) {
+                segments = Arrays.copyOf(segments, runs << 1);
+                offsets = Arrays.copyOf(offsets, runs << 1);
+                firstRows = Arrays.copyOf(firstRows, runs << 1);
+                firstTimestamps = Arrays.copyOf(firstTimestamps, runs << 1);
+            }
+            segments[runs] = segment;
+            offsets[runs] = offset;
+            firstRows[runs] = cold.rows;
+            firstTimestamps[runs] = firstTimestamp;
+            return new Cold(cold.rows + count, runs + 1, segments, offsets, firstRows, firstTimestamps);
+        }
+        
+        /**
+         * Returns the run holding a row
+         */
+        int run(int row) {
+            int low = 0;
+            int high = runs - 1;
+            while (low < high) {
+                int mid = (low + high + 1) >>> 1;
+                if (firstRows[mid] <= row) {
+                    low = mid;
+                } else {
+                    high = mid - 1;
+                }
+            }
+            return low;
+        }
+        
+        /**
+         * Returns the row after a run's last
+         */
+        int end(int run) {
+            return run + 1 < runs ? firstRows[run + 1] : rows;
+        }
+        
+        int position(int run, int row) {
+            return offsets[run] + (row - firstRows[run]) * RECORD_BYTES;
+        }
+        
+        long timestamp(int row) {
+            int run = run(row);
+            return segments[run].timestamp(position(run, row));
+        }
+        
+        long amount(int row) {
+            int run = run(row);
+            return segments[run].amount(position(run, row));
+        }
+        
+        long balance(int row) {
+            int run = run(row);
+            return segments[run].balance(position(run, row));
+        }
+        
+        byte type(int row) {
+            int run = run(row);
+            return segments[run].type(position(run, row));
+        }
+        
+        long id(int row) {
+            int run = run(row);
+            return segments[run].id(position(run, row));
+        }
+        
+        String description(int row) {
+            int run = run(row);
+            HistoryArchive.Segment segment = segments[run];
+            int position = position(run, row);
+            return TransactionHistory.description(segment.type(position), segment.counterparty(position),
+                segment.text(position));
+        }
+        
+        StringBuilder appendDescription(int row, StringBuilder sb) {
+            int run = run(row);
+            HistoryArchive.Segment segment = segments[run];
+            int position = position(run, row);
+            return TransactionHistory.appendDescription(segment.type(position), segment.counterparty(position),
+                segment.text(position), sb);
+        }
+        
+        /**
+         * Returns the first archived row stamped at or after a time, or rows
+         * if there is none. Picks the run from the first timestamps on the
+         * heap, then searches within that one run.
+         */
+        int firstAtOrAfter(long timestamp) {
+            int low = 0;
+            int high = runs;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (firstTimestamps[mid] < timestamp) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            if (low == 0) {
+                return 0;
+            }
+            // Runs before low start before the time, so the answer is in the last of them or starts the next
+            int run = low - 1;
+            HistoryArchive.Segment segment = segments[run];
+            int first = firstRows[run];
+            low = first;
+            high = end(run);
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (segment.timestamp(position(run, mid)) < timestamp) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+        
+        long footprintBytes() {
+            return 4 * 16L + (long) segments.length * (4 + 4 + 4 + 8);
+        }
+    }
+    
+    /**
+     * @param text Free text, or the counterparty's name for a transfer
+     */
+    private static String description(byte type, long counterparty, String text) {
+        if (counterparty == NO_COUNTERPARTY) {
+            return text;
+        }
+        return appendDescription(type, counterparty, text, new StringBuilder(48)).toString();
+    }
+    
+    private static StringBuilder appendDescription(byte type, long counterparty, String text, StringBuilder sb) {
+        if (counterparty == NO_COUNTERPARTY) {
+            return sb.append(text);
+        }
+        sb.append(type == TransactionType.TRANSFER_OUT.code() ? "Transfer to " : "Transfer from ");
+        return sb.append(text).append(" (Account: ").append(counterparty).append(')');
+    }
+    
+    /**
+     * Records a posting with a free-text description
+     * @param transactionId ID from IdGenerator, kept with the posting so the
+     *        journal can restore it
+     */
+    public void add(long transactionId, TransactionType type, long timestamp, long amount, long balanceAfter,
+                    String description) {
+        int row = nextRow();
+        Columns c = columns;
+        int i = row - c.base;
+        c.ids[i] = transactionId;
+        c.types[i] = type.code();
+        c.timestamps[i] = stamp(timestamp);
+        c.amounts[i] = amount;
+        c.balances[i] = balanceAfter;
+        c.counterparties[i] = NO_COUNTERPARTY;
+        c.descriptions[i] = description == null ? "" : description.trim();
+        size = row + 1;
+    }
+    
+    /**
+     * Records one leg of a transfer. The description ("Transfer to ..." or
+     * "Transfer from ...") is rebuilt from the counterparty when materialized.
+     * @param transactionId The transfer's ID, the same on both legs
+     * @param counterpartyName Kept by reference, so pass the counterparty's
+     *        own name string rather than a copy
+     */
+    public void addTransfer(long transactionId, TransactionType type, long timestamp, long amount,
+                            long balanceAfter, long counterparty, String counterpartyName) {
+        int row = nextRow();
+        Columns c = columns;
+        int i = row - c.base;
+        c.ids[i] = transactionId;
+        c.types[i] = type.code();
+        c.timestamps[i] = stamp(timestamp);
+        c.amounts[i] = amount;
+        c.balances[i] = balanceAfter;
+        c.counterparties[i] = counterparty;
+        c.descriptions[i] = counterpartyName;
+        size = row + 1;
+    }
+    
+    /**
+     * Returns the index of the next row, archiving older rows or growing
+     * the columns if needed. The caller publishes the row by advancing size
+     * once it is written.
+     */
+    private int nextRow() {
+        int row = size;
+        Columns c = columns;
+        if (archive != null && row >= archiveAt) {
+            c = archiveOldRows(c, row);
+        }
+        if (row == c.end()) {
+            c = new Columns(c, (row - c.base) << 1);
+            columns = c;
+        }
+        return row;
+    }
+    
+    /**
+     * Moves all but the newest hot rows into one run of the archive and
+     * publishes columns without them. Readers holding the old columns keep
+     * reading them, so nothing is visible half-moved. If the archive cannot
+     * take the run, e.g. the disk is full or one description is larger than
+     * a segment, the rows stay on the heap and are tried again after another
+     * batch of postings.
+     * @param row Number of rows written
+     */
+    private Columns archiveOldRows(Columns c, int row) {
+        int keep = archive.getHotRows();
+        int limit = Math.min(row - c.base - keep, archive.getMaxRunRows());
+        // Text that cannot be coded goes into the run, which may then hold fewer rows
+        byte[][] texts = null;
+        long bytes = 0;
+        int count = 0;
+        for (; count < limit; count++) {
+            byte[] text = HistoryArchive.encodeText(c.counterparties[count], c.descriptions[count]);
+            long needed = RECORD_BYTES + HistoryArchive.textBytes(text);
+            if (count > 0 && bytes + needed > archive.getSegmentBytes()) {
+                break;
+            }
+            if (text != null) {
+                if (texts == null) {
+                    texts = new byte[limit][];
+                }
+                texts[count] = text;
+            }
+            bytes += needed;
+        }
+        long claimed;
+        try {
+            claimed = archive.claim(count, (int) (bytes - (long) count * RECORD_BYTES));
+        } catch (IOException | IllegalStateException | IllegalArgumentException e) {
+            archiveAt = row + keep;
+            return c;
+        }
+        HistoryArchive.Segment segment = archive.segment((int) (claimed >>> 32));
+        int offset = (int) claimed;
+        int textAt = offset + count * RECORD_BYTES;
+        for (int i = 0; i < count; i++) {
+            textAt = segment.put(offset + i * RECORD_BYTES, c.ids[i], c.timestamps[i], c.amounts[i], c.balances[i],
+                c.counterparties[i], c.descriptions[i], texts == null ? null : texts[i], c.types[i], textAt);
+        }
+        Cold cold = Cold.append(c.cold, segment, offset, count, c.timestamps[0]);
+        Columns next = new Columns(c, count, Math.max(keep << 1, c.capacity() - count), cold);
+        columns = next;
+        archiveAt = next.base + (keep << 1);
+        if (index != null) {
+            releaseBuckets(c, count);
+        }
+        return next;
+    }
+    
+    /**
+     * Releases to the index each bucket whose rows were all in the first
+     * count rows of the columns, now archived. The bucket of the first row
+     * left on the heap is released by a later run.
+     */
+    private void releaseBuckets(Columns c, int count) {
+        long kept = TimeIndex.bucketOf(c.timestamps[count]);
+        long bucket = Long.MIN_VALUE;
+        for (int i = 0; i < count; i++) {
+            long next = TimeIndex.bucketOf(c.timestamps[i]);
+            if (next != bucket) {
+                bucket = next;
+                if (bucket != kept) {
+                    index.release(bucket);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Returns the timestamp to record for the next row, never earlier than
+     * the last one, and reports a new time bucket to the index
+     */
+    private long stamp(long timestamp) {
+        if (timestamp < lastTimestamp) {
+            timestamp = lastTimestamp;
+        }
+        lastTimestamp = timestamp;
+        if (index != null) {
+            long bucket = TimeIndex.bucketOf(timestamp);
+            if (bucket != indexedBucket) {
+                indexedBucket = bucket;
+                index.record(bucket, accountNumber);
+            }
+        }
+        return timestamp;
+    }
+    
+    /**
+     * Reports this history's postings to a bank-wide time index, those
+     * already recorded and every later one. Called by the writer, before
+     * or instead of its next posting.
+     */
+    void attach(TimeIndex index) {
+        if (this.index != null) {
+            throw new IllegalStateException("History is already indexed");
+        }
+        this.index = index;
+        Columns c = columns;
+        for (int row = 0; row < size; row++) {
+            long bucket = TimeIndex.bucketOf(c.timestamp(row));
+            if (bucket != indexedBucket) {
+                indexedBucket = bucket;
+                index.record(bucket, accountNumber);
+            }
+        }
+    }
+    
+    /**
+     * Moves older rows to an archive from now on, starting with any beyond
+     * the archive's hot rows already recorded. Called by the writer.
+     */
+    void attach(HistoryArchive archive) {
+        if (this.archive != null) {
+            throw new IllegalStateException("History is already archived");
+        }
+        this.archive = archive;
+        this.archiveAt = archive.getHotRows() << 1;
+        while (size >= archiveAt) {
+            archiveOldRows(columns, size);
+        }
+    }
+    
+    /**
+     * Makes room for count more postings, so a batch grows the columns at
+     * most once. The rows are then written with add and addTransfer as usual.
+     */
+    public void reserve(int count) {
+        if (count <= 0) {
+            return;
+        }
+        int needed = size + count;
+        Columns c = columns;
+        if (needed > c.end()) {
+            columns = new Columns(c, Math.max(needed - c.base, (size - c.base) << 1));
+        }
+    }
+    
+    public int size() {
+        return size;
+    }
+    
+    public boolean isEmpty() {
+        return size == 0;
+    }
+    
+    public TransactionType typeAt(int index) {
+        return TransactionType.fromCode(columnsFor(index).type(index));
+    }
+    
+    public long timestampAt(int index) {
+        return columnsFor(index).timestamp(index);
+    }
+    
+    public long transactionIdAt(int index) {
+        return columnsFor(index).id(index);
+    }
+    
+    /**
+     * Returns the amount in cents
+     */
+    public long amountAt(int index) {
+        return columnsFor(index).amount(index);
+    }
+    
+    /**
+     * Returns the balance in cents after the posting
+     */
+    public long balanceAfterAt(int index) {
+        return columnsFor(index).balance(index);
+    }
+    
+    /**
+     * Materializes one posting as a Transaction
+     */
+    public Transaction get(int index) {
+        return columnsFor(index).materialize(accountNumber, index);
+    }
+    
+    /**
+     * Materializes every posting, oldest first
+     */
+    public ArrayList<Transaction> toList() {
+        return snapshot().toList();
+    }
+    
+    /**
+     * Returns an immutable view of the postings recorded so far. Takes O(1)
+     * time and copies nothing; later postings are not visible through it.
+     */
+    public View snapshot() {
+        // Size first: any columns read after it hold at least that many rows
+        int rows = size;
+        return new View(accountNumber, columns, 0, rows);
+    }
+    
+    /**
+     * Checks an index against the published size, then returns columns
+     * that are sure to hold that row
+     */
+    private Columns columnsFor(int index) {
+        checkIndex(index, size);
+        return columns;
+    }
+    
+    private static int checkIndex(int index, int size) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of range for " + size + " transactions");
+        }
+        return index;
+    }
+    
+    /**
+     * Approximate heap bytes held by the columns and the index of archived
+     * runs, excluding the description strings, which are shared, and the
+     * archive
+     */
+    public long footprintBytes() {
+        Columns c = columns;
+        // Seven array headers plus the columns themselves, with compressed
+        // references for the descriptions
+        long bytes = 7 * 16L + (long) c.capacity() * (8 + 8 + 8 + 8 + 8 + 1 + 4);
+        return c.cold == null ? bytes : bytes + c.cold.footprintBytes();
+    }
+    
+    /**
+     * Returns the number of postings moved to the archive
+     */
+    public int archivedSize() {
+        return columns.base;
+    }
+    
+    /**
+     * Immutable, read-only window onto a range of postings, oldest first.
+     * Narrowing a view (range, last, since, between, page) never copies.
+     */
+    public static final class View implements Iterable<Transaction> {
+        private final long accountNumber;
+        private final Columns columns;
+        private final int from;
+        private final int to;
+        
+        private View(long accountNumber, Columns columns, int from, int to) {
+            this.accountNumber = accountNumber;
+            this.columns = columns;
+            this.from = from;
+            this.to = to;
+        }
+        
+        public long getAccountNumber() {
+            return accountNumber;
+        }
+        
+        public int size() {
+            return to - from;
+        }
+        
+        public boolean isEmpty() {
+            return to == from;
+        }
+        
+        /**
+         * Returns the postings from index (inclusive) to index (exclusive),
+         * relative to this view
+         */
+        public View range(int fromIndex, int toIndex) {
+            if (fromIndex < 0 || toIndex > size() || fromIndex > toIndex) {
+                throw new IndexOutOfBoundsException("Range [" + fromIndex + ", " + toIndex
+                    + ") out of bounds for " + size() + " transactions");
+            }
+            return new View(accountNumber, columns, from + fromIndex, from + toIndex);
+        }
+        
+        /**
+         * Returns the most recent postings, at most count of them
+         */
+        public View last(int count) {
+            if (count < 0) {
+                throw new IllegalArgumentException("Count cannot be negative");
+            }
+            return new View(accountNumber, columns, Math.max(from, to - count), to);
+        }
+        
+        /**
+         * Returns one page of postings, pages numbered from 0
+         */
+        public View page(int pageNumber, int pageSize) {
+            if (pageNumber < 0 || pageSize <= 0) {
+                throw new IllegalArgumentException("Page number cannot be negative and page size must be positive");
+            }
+            long start = Math.min((long) pageNumber * pageSize, size());
+            long end = Math.min(start + pageSize, size());
+            return range((int) start, (int) end);
+        }
+        
+        /**
+         * Returns the postings made at or after a time (epoch millis), in
+         * O(log n)
+         */
+        public View since(long timestamp) {
+            return new View(accountNumber, columns, firstAtOrAfter(timestamp), to);
+        }
+        
+        /**
+         * Returns the postings made from one time (inclusive) to another
+         * (exclusive), both epoch millis. Timestamps are sorted, so this is
+         * two binary searches and reads no row outside the range.
+         */
+        public View between(long fromTimestamp, long toTimestamp) {
+            if (fromTimestamp > toTimestamp) {
+                throw new IllegalArgumentException("Start of range is after its end");
+            }
+            int start = firstAtOrAfter(fromTimestamp);
+            return new View(accountNumber, columns, start, Math.max(start, firstAtOrAfter(toTimestamp)));
+        }
+        
+        /**
+         * Returns the first row of the view stamped at or after a time, or
+         * the end of the view
+         */
+        private int firstAtOrAfter(long timestamp) {
+            return Math.max(from, columns.firstAtOrAfter(timestamp, to));
+        }
+        
+        public TransactionType typeAt(int index) {
+            return TransactionType.fromCode(columns.type(row(index)));
+        }
+        
+        public long timestampAt(int index) {
+            return columns.timestamp(row(index));
+        }
+        
+        public long transactionIdAt(int index) {
+            return columns.id(row(index));
+        }
+        
+        /**
+         * Returns the amount in cents
+         */
+        public long amountAt(int index) {
+            return columns.amount(row(index));
+        }
+        
+        /**
+         * Returns the balance in cents after the posting
+         */
+        public long balanceAfterAt(int index) {
+            return columns.balance(row(index));
+        }
+        
+        /**
+         * Materializes one posting as a Transaction
+         */
+        public Transaction get(int index) {
+            return columns.materialize(accountNumber, row(index));
+        }
+        
+        /**
+         * Materializes every posting in the view
+         */
+        public ArrayList<Transaction> toList() {
+            ArrayList<Transaction> list = new ArrayList<>(size());
+            Cursor cursor = cursor();
+            while (cursor.next()) {
+                list.add(cursor.toTransaction());
+            }
+            return list;
+        }
+        
+        /**
+         * Returns a cursor positioned before the first posting in the view
+         */
+        public Cursor cursor() {
+            return new Cursor(this);
+        }
+        
+        /**
+         * Adds the number of postings of each type in the view to counts,
+         * indexed by type code
+         */
+        void countTypes(long[] counts) {
+            Columns c = columns;
+            int hot = Math.max(from, Math.min(to, c.base));
+            if (hot > from) {
+                Cursor cursor = new View(accountNumber, c, from, hot).cursor();
+                while (cursor.next()) {
+                    counts[cursor.type().ordinal()]++;
+                }
+            }
+            for (int row = hot; row < to; row++) {
+                counts[c.types[row - c.base]]++;
+            }
+        }
+        
+        /**
+         * Iterates the view, materializing one Transaction at a time
+         */
+        @Override
+        public Iterator<Transaction> iterator() {
+            return new Iterator<Transaction>() {
+                private final Cursor cursor = cursor();
+                private boolean ready;
+                
+                @Override
+                public boolean hasNext() {
+                    if (!ready) {
+                        ready = cursor.next();
+                    }
+                    return ready;
+                }
+                
+                @Override
+                public Transaction next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    ready = false;
+                    return cursor.toTransaction();
+                }
+            };
+        }
+        
+        private int row(int index) {
+            return from + checkIndex(index, size());
+        }
+    }
+    
+    /**
+     * Forward-only cursor over a view that reads the columns directly, so
+     * scanning postings allocates nothing unless a string is asked for.
+     * Archived rows are read run by run, without a lookup per row.
+     */
+    public static final class Cursor {
+        private final View view;
+        private final Columns columns;
+        private int row;
+        // Archived rows: the run being read, where it ends and the current record
+        private HistoryArchive.Segment segment;
+        private int runEnd;
+        private int position;
+        
+        private Cursor(View view) {
+            this.view = view;
+            this.columns = view.columns;
+            this.row = view.from - 1;
+        }
+        
+        /**
+         * Moves to the next posting
+         * @return false once every posting has been visited
+         */
+        public boolean next() {
+            if (row < view.to) {
+                row++;
+            }
+            if (row >= view.to) {
+                return false;
+            }
+            if (row < columns.base) {
+                if (segment != null && row < runEnd) {
+                    position += RECORD_BYTES;
+                } else {
+                    Cold cold = columns.cold;
+                    int run = cold.run(row);
+                    segment = cold.segments[run];
+                    runEnd = cold.end(run);
+                    position = cold.position(run, row);
+                }
+            }
+            return true;
+        }
+        
+        public TransactionType type() {
+            return TransactionType.fromCode(typeCode());
+        }
+        
+        public long timestamp() {
+            int row = current();
+            return row >= columns.base ? columns.timestamps[row - columns.base] : segment.timestamp(position);
+        }
+        
+        /**
+         * Returns the amount in cents
+         */
+        public long amount() {
+            int row = current();
+            return row >= columns.base ? columns.amounts[row - columns.base] : segment.amount(position);
+        }
+        
+        /**
+         * Returns the balance in cents after the posting
+         */
+        public long balanceAfter() {
+            int row = current();
+            return row >= columns.base ? columns.balances[row - columns.base] : segment.balance(position);
+        }
+        
+        /**
+         * Returns the numeric transaction ID
+         */
+        public long transactionId() {
+            int row = current();
+            return row >= columns.base ? columns.ids[row - columns.base] : segment.id(position);
+        }
+        
+        public String description() {
+            return TransactionHistory.description(typeCode(), counterparty(), text());
+        }
+        
+        /**
+         * Appends the description to a buffer, so transfer descriptions can
+         * be written out without building a String for each one
+         */
+        public StringBuilder appendDescription(StringBuilder sb) {
+            return TransactionHistory.appendDescription(typeCode(), counterparty(), text(), sb);
+        }
+        
+        public Transaction toTransaction() {
+            return new Transaction(transactionId(), view.accountNumber, type().name(), amount(), balanceAfter(),
+                description(), timestamp());
+        }
+        
+        private byte typeCode() {
+            int row = current();
+            return row >= columns.base ? columns.types[row - columns.base] : segment.type(position);
+        }
+        
+        /**
+         * Returns the other account of a transfer, or 0 for other postings
+         */
+        long counterparty() {
+            int row = current();
+            return row >= columns.base ? columns.counterparties[row - columns.base] : segment.counterparty(position);
+        }
+        
+        private String text() {
+            int row = current();
+            return row >= columns.base ? columns.descriptions[row - columns.base] : segment.text(position);
+        }
+        
+        private int current() {
+            if (row < view.from || row >= view.to) {
+                throw new IllegalStateException("Cursor is not positioned on a posting");
+            }
+            return row;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,610 @@
+package com.obcodes.bankaccountmanagementsystem;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only binary journal of every posting, written through a FileChannel.
+ *
+ * Records are encoded into an in-memory batch buffer while the caller holds
+ * the account lock, so journal order matches the order postings were applied.
+ * A single flusher thread writes and fsyncs whole batches (group commit):
+ * while one batch is being forced to disk, new postings fill the next one,
+ * so concurrent callers share one fsync instead of paying one each.
+ *
+ * Record layout: length (int), type (byte), sequence, timestamp, account,
+ * counterparty, amount (longs), name length (short), UTF-8 name, transaction
+ * ID (long), CRC32C (int). Interest and fee records carry their business day
+ * (epoch day) in the counterparty field. Records written before the
+ * transaction ID was added end after the name and read back with ID 0.
+ * @author Obakeng Phale
+ */
+public class TransactionJournal implements AutoCloseable {
+    // Record types
+    public static final byte OPEN = 1;
+    public static final byte DEPOSIT = 2;
+    public static final byte WITHDRAWAL = 3;
+    public static final byte TRANSFER = 4;
+    public static final byte RENAME = 5;
+    public static final byte INTEREST = 6;
+    public static final byte FEE = 7;
+    
+    public static final int DEFAULT_BUFFER_BYTES = 1 << 20;
+    
+    // length + type + 5 longs + name length, then the ID and the CRC
+    private static final int HEADER_BYTES = 4 + 1 + 5 * 8 + 2;
+    private static final int ID_BYTES = 8;
+    private static final int CRC_BYTES = 4;
+    private static final int MAX_NAME_BYTES = Short.MAX_VALUE;
+    
+    /**
+     * Receives journal records during replay. The entry object is reused
+     * between calls, so visitors must copy anything they keep.
+     */
+    public interface Visitor {
+        void visit(Entry entry);
+    }
+    
+    /**
+     * One decoded journal record
+     */
+    public static final class Entry {
+        public byte type;
+        public long sequence;
+        public long timestamp;
+        public long account;
+        public long counterparty;
+        public long amount;
+        public String name;
+        // 0 for records written before IDs were journaled
+        public long transactionId;
+    }
+    
+    /**
+     * A point in the journal: the last sequence number appended and the file
+     * offset just past its record. Replay can resume from here.
+     */
+    public static final class Checkpoint {
+        public final long sequence;
+        public final long offset;
+        
+        public Checkpoint(long sequence, long offset) {
+            this.sequence = sequence;
+            this.offset = offset;
+        }
+    }
+    
+    /**
+     * A batch buffer plus a reusable view for checksumming record bytes
+     */
+    private static final class Batch {
+        final ByteBuffer buffer;
+        final ByteBuffer view;
+        long lastSequence;
+        
+        Batch(int capacity) {
+            this.buffer = ByteBuffer.allocateDirect(capacity);
+            this.view = buffer.duplicate();
+        }
+    }
+    
+    private final Path path;
+    private final FileChannel channel;
+    private final boolean fsync;
+    private final long commitDelayNanos;
+    private final int bufferBytes;
+    
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition hasData = lock.newCondition();
+    private final Condition batchSwapped = lock.newCondition();
+    private final Condition durable = lock.newCondition();
+    private final CRC32C crc = new CRC32C();
+    
+    private Batch active;
+    private Batch spare;
+    private long nextSequence = 1;
+    // File offset just past the last record appended (written or not)
+    private long appendedOffset;
+    private volatile long durableSequence;
+    private volatile IOException failure;
+    private boolean replayed;
+    private boolean closed;
+    private Thread flusher;
+    
+    /**
+     * Opens a journal with 1 MiB batches, fsync on every group commit and no
+     * extra commit delay
+     */
+    public TransactionJournal(Path path) throws IOException {
+        this(path, DEFAULT_BUFFER_BYTES, 0L, true);
+    }
+    
+    /**
+     * Opens or creates a journal file
+     * @param bufferBytes Size of each batch buffer (largest group commit)
+     * @param commitDelayMicros How long the flusher waits for more postings
+     *        to join a batch before writing it; 0 writes as soon as it can
+     * @param fsync Whether each group commit is forced to stable storage
+     */
+    public TransactionJournal(Path path, int bufferBytes, long commitDelayMicros, boolean fsync) throws IOException {
+        if (bufferBytes < HEADER_BYTES + MAX_NAME_BYTES + ID_BYTES + CRC_BYTES) {
+            throw new IllegalArgumentException("Journal buffer must hold at least one maximum-size record");
+        }
+        if (commitDelayMicros < 0) {
+            throw new IllegalArgumentException("Commit delay cannot be negative");
+        }
+        this.path = path;
+        this.bufferBytes = bufferBytes;
+        this.commitDelayNanos = TimeUnit.MICROSECONDS.toNanos(commitDelayMicros);
+        this.fsync = fsync;
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE,
+            StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+    
+    public Path getPath() {
+        return path;
+    }
+    
+    /**
+     * Replays every intact record in the journal, truncates a torn tail left
+     * by a crash, and starts the journal for appending. Must be called once
+     * before the first append.
+     * @return the sequence number of the last record replayed (0 if empty)
+     */
+    public long replay(Visitor visitor) throws IOException {
+        return replay(visitor, new Checkpoint(0L, 0L));
+    }
+    
+    /**
+     * Replays only the records after a checkpoint, e.g. the tail written
+     * since a snapshot was taken, then starts the journal for appending
+     * @return the sequence number of the last record replayed
+     * @throws IOException if the journal does not continue from the checkpoint
+     */
+    public long replay(Visitor visitor, Checkpoint from) throws IOException {
+        lock.lock();
+        try {
+            if (replayed) {
+                throw new IllegalStateException("Journal has already been replayed");
+            }
+            if (from.offset > channel.size()) {
+                throw new IOException("Journal ends before checkpoint at offset " + from.offset);
+            }
+            nextSequence = from.sequence + 1;
+            long validEnd = readRecords(visitor, from.offset);
+            if (validEnd < channel.size()) {
+                channel.truncate(validEnd);
+                channel.force(true);
+            }
+            channel.position(validEnd);
+            appendedOffset = validEnd;
+            durableSequence = nextSequence - 1;
+            
+            active = new Batch(bufferBytes);
+            spare = new Batch(bufferBytes);
+            replayed = true;
+            flusher = new Thread(this::flushLoop, "journal-flusher");
+            flusher.setDaemon(true);
+            flusher.start();
+            return nextSequence - 1;
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * Reads records from a record boundary until the end of the file or the
+     * first incomplete or corrupt record
+     * @return file offset just past the last intact record
+     */
+    private long readRecords(Visitor visitor, long startOffset) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(bufferBytes);
+        CRC32C checksum = new CRC32C();
+        Entry entry = new Entry();
+        long fileSize = channel.size();
+        long offset = startOffset;
+        long readPosition = startOffset;
+        buffer.limit(0);
+        
+        while (true) {
+            if (buffer.remaining() < HEADER_BYTES + CRC_BYTES || buffer.remaining() < buffer.getInt(buffer.position())) {
+                // Refill with the unread tail moved to the front
+                buffer.compact();
+                while (buffer.hasRemaining() && readPosition < fileSize) {
+                    int read = channel.read(buffer, readPosition);
+                    if (read < 0) {
+                        break;
+                    }
+                    readPosition += read;
+                }
+                buffer.flip();
+                if (buffer.remaining() < HEADER_BYTES + CRC_BYTES) {
+                    return offset;
+                }
+            }
+            
+            int start = buffer.position();
+            int length = buffer.getInt(start);
+            if (length < HEADER_BYTES + CRC_BYTES || length > bufferBytes || length > buffer.remaining()) {
+                return offset;
+            }
+            
+            ByteBuffer view = buffer.duplicate();
+            view.position(start + 4).limit(start + length - CRC_BYTES);
+            checksum.reset();
+            checksum.update(view);
+            if ((int) checksum.getValue() != buffer.getInt(start + length - CRC_BYTES)) {
+                return offset;
+            }
+            
+            buffer.position(start + 4);
+            entry.type = buffer.get();
+            entry.sequence = buffer.getLong();
+            entry.timestamp = buffer.getLong();
+            entry.account = buffer.getLong();
+            entry.counterparty = buffer.getLong();
+            entry.amount = buffer.getLong();
+            int nameLength = buffer.getShort() & 0xFFFF;
+            if (nameLength > 0) {
+                byte[] nameBytes = new byte[nameLength];
+                buffer.get(nameBytes);
+                entry.name = new String(nameBytes, StandardCharsets.UTF_8);
+            } else {
+                entry.name = null;
+            }
+            boolean hasId = length - HEADER_BYTES - nameLength - CRC_BYTES >= ID_BYTES;
+            entry.transactionId = hasId ? buffer.getLong() : 0L;
+            buffer.position(start + length);
+            
+            if (entry.sequence != nextSequence) {
+                throw new IOException("Journal record at offset " + offset + " has sequence "
+                    + entry.sequence + ", expected " + nextSequence);
+            }
+            visitor.visit(entry);
+            nextSequence = entry.sequence + 1;
+            offset += length;
+        }
+    }
+    
+    /**
+     * Records a new account and its opening balance
+     * @param timestamp Time of the initial deposit (epoch millis)
+     * @param transactionId ID of the initial deposit
+     */
+    public long appendOpen(long account, String holderName, long openingBalance, long timestamp,
+                           long transactionId) {
+        return append(OPEN, timestamp, transactionId, account, 0L, openingBalance, holderName);
+    }
+    
+    public long appendDeposit(long account, long amount, long timestamp, long transactionId) {
+        return append(DEPOSIT, timestamp, transactionId, account, 0L, amount, null);
+    }
+    
+    public long appendWithdrawal(long account, long amount, long timestamp, long transactionId) {
+        return append(WITHDRAWAL, timestamp, transactionId, account, 0L, amount, null);
+    }
+    
+    /**
+     * Records both legs of a transfer, which share one transaction ID
+     */
+    public long appendTransfer(long sender, long recipient, long amount, long timestamp, long transactionId) {
+        return append(TRANSFER, timestamp, transactionId, sender, recipient, amount, null);
+    }
+    
+    public long appendRename(long account, String holderName, long timestamp, long transactionId) {
+        return append(RENAME, timestamp, transactionId, account, 0L, 0L, holderName);
+    }
+    
+    /**
+     * Records an interest credit or a fee debit
+     * @param type INTEREST or FEE
+     * @param day Business day accrued (epoch day)
+     */
+    public long appendAccrual(byte type, long account, long day, long amount, long timestamp, long transactionId) {
+        return append(type, timestamp, transactionId, account, day, amount, null);
+    }
+    
+    /**
+     * Encodes a record into the current batch. The record is not durable
+     * until awaitDurable returns for its sequence number.
+     * @param timestamp Time the posting was applied (epoch millis), so
+     *        replay recreates the history with the same times
+     * @param transactionId ID the posting was recorded under, restored on replay
+     * @return the record's sequence number
+     */
+    public long append(byte type, long timestamp, long transactionId, long account, long counterparty, long amount,
+                       String name) {
+        byte[] nameBytes = (name == null) ? null : name.getBytes(StandardCharsets.UTF_8);
+        if (nameBytes != null && nameBytes.length > MAX_NAME_BYTES) {
+            throw new IllegalArgumentException("Name is too long for the journal");
+        }
+        
+        lock.lock();
+        try {
+            long sequence = encode(type, timestamp, transactionId, account, counterparty, amount, nameBytes);
+            hasData.signal();
+            return sequence;
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * Encodes a record for every successful entry of a posting batch, in
+     * batch order, under one acquisition of the journal lock. The flusher is
+     * woken once, so the batch goes out in as few group commits as the
+     * buffer allows.
+     * @param timestamp Time the batch was applied (epoch millis)
+     * @param transactionIds Each entry's transaction ID
+     * @param sequences Receives each entry's sequence number, or 0 for
+     *        entries that were not posted
+     * @return the sequence number of the last record, or 0 if there was none
+     */
+    long appendBatch(PostingBatch batch, PostingStatus[] results, long timestamp, long[] transactionIds,
+                     long[] sequences) {
+        long last = 0;
+        lock.lock();
+        try {
+            for (int i = 0; i < batch.size(); i++) {
+                if (results[i].isSuccess()) {
+                    last = encode(batch.type(i), timestamp, transactionIds[i], batch.account(i),
+                        batch.counterparty(i), batch.amount(i), null);
+                    sequences[i] = last;
+                }
+            }
+            if (last > 0) {
+                hasData.signal();
+            }
+            return last;
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * Encodes an interest or fee record for each of a run of accounts under
+     * one acquisition of the journal lock
+     * @param type INTEREST or FEE
+     * @param day Business day accrued (epoch day)
+     * @param timestamp Time the run was applied (epoch millis)
+     * @param sequences Receives each record's sequence number
+     * @return the sequence number of the last record, or 0 if count is 0
+     */
+    long appendAccruals(byte type, long day, long[] accounts, long[] amounts, long[] transactionIds, int count,
+                        long timestamp, long[] sequences) {
+        long last = 0;
+        lock.lock();
+        try {
+            for (int i = 0; i < count; i++) {
+                last = encode(type, timestamp, transactionIds[i], accounts[i], day, amounts[i], null);
+                sequences[i] = last;
+            }
+            if (last > 0) {
+                hasData.signal();
+            }
+            return last;
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * Encodes one record into the active batch, waiting for the spare if it
+     * is full (caller holds the lock)
+     * @return the record's sequence number
+     */
+    private long encode(byte type, long timestamp, long transactionId, long account, long counterparty, long amount,
+                        byte[] nameBytes) {
+        int nameLength = (nameBytes == null) ? 0 : nameBytes.length;
+        int length = HEADER_BYTES + nameLength + ID_BYTES + CRC_BYTES;
+        ensureWritable();
+        while (active.buffer.remaining() < length) {
+            // Batch is full: hand it to the flusher and wait for the spare
+            hasData.signal();
+            batchSwapped.awaitUninterruptibly();
+            ensureWritable();
+        }
+        
+        ByteBuffer buffer = active.buffer;
+        int start = buffer.position();
+        long sequence = nextSequence++;
+        buffer.putInt(length)
+            .put(type)
+            .putLong(sequence)
+            .putLong(timestamp)
+            .putLong(account)
+            .putLong(counterparty)
+            .putLong(amount)
+            .putShort((short) nameLength);
+        if (nameBytes != null) {
+            buffer.put(nameBytes);
+        }
+        buffer.putLong(transactionId);
+        ByteBuffer view = active.view;
+        view.limit(buffer.position()).position(start + 4);
+        crc.reset();
+        crc.update(view);
+        buffer.putInt((int) crc.getValue());
+        
+        active.lastSequence = sequence;
+        appendedOffset += length;
+        return sequence;
+    }
+    
+    private void ensureWritable() {
+        if (!replayed) {
+            throw new IllegalStateException("Journal must be replayed before appending");
+        }
+        if (closed) {
+            throw new IllegalStateException("Journal is closed");
+        }
+        if (failure != null) {
+            throw new UncheckedIOException("Journal write failed", failure);
+        }
+    }
+    
+    /**
+     * Blocks until the record with the given sequence number is on disk
+     * (or written to the OS, when fsync is disabled)
+     */
+    public void awaitDurable(long sequence) {
+        if (sequence <= durableSequence) {
+            return;
+        }
+        lock.lock();
+        try {
+            while (sequence > durableSequence) {
+                if (failure != null) {
+                    throw new UncheckedIOException("Journal write failed", failure);
+                }
+                if (closed && flusher == null) {
+                    throw new IllegalStateException("Journal closed before record was written");
+                }
+                durable.awaitUninterruptibly();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * Returns the position of the last record appended so far. Records up to
+     * the checkpoint may still be in flight; awaitDurable(sequence) waits
+     * for them.
+     */
+    public Checkpoint checkpoint() {
+        lock.lock();
+        try {
+            if (!replayed) {
+                throw new IllegalStateException("Journal must be replayed before taking a checkpoint");
+            }
+            return new Checkpoint(nextSequence - 1, appendedOffset);
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * Returns the highest sequence number known to be durable
+     */
+    public long getDurableSequence() {
+        return durableSequence;
+    }
+    
+    /**
+     * Flusher thread: swaps out the active batch, writes it and forces it,
+     * then wakes every caller whose record was in that batch
+     */
+    private void flushLoop() {
+        while (true) {
+            Batch batch;
+            lock.lock();
+            try {
+                while (active.buffer.position() == 0 && !closed) {
+                    hasData.awaitUninterruptibly();
+                }
+                if (active.buffer.position() == 0) {
+                    return;
+                }
+                if (commitDelayNanos > 0 && !closed) {
+                    // Give concurrent postings a chance to join this commit
+                    long remaining = commitDelayNanos;
+                    while (remaining > 0 && !closed
+                           && active.buffer.remaining() > active.buffer.capacity() / 2) {
+                        try {
+                            remaining = hasData.awaitNanos(remaining);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            break;
+                        }
+                    }
+                }
+                batch = active;
+                active = spare;
+                spare = null;
+                batchSwapped.signalAll();
+            } finally {
+                lock.unlock();
+            }
+            
+            IOException error = null;
+            try {
+                ByteBuffer buffer = batch.buffer;
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                if (fsync) {
+                    channel.force(false);
+                }
+            } catch (IOException e) {
+                error = e;
+            }
+            batch.buffer.clear();
+            
+            lock.lock();
+            try {
+                spare = batch;
+                if (error != null) {
+                    failure = error;
+                } else {
+                    durableSequence = batch.lastSequence;
+                }
+                durable.signalAll();
+                batchSwapped.signalAll();
+                if (error != null) {
+                    return;
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+    
+    /**
+     * Flushes every pending record, stops the flusher and closes the file
+     */
+    @Override
+    public void close() throws IOException {
+        Thread running;
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            running = flusher;
+            hasData.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        if (running != null) {
+            try {
+                running.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        lock.lock();
+        try {
+            flusher = null;
+            durable.signalAll();
+            batchSwapped.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        channel.close();
+        if (failure != null) {
+            throw failure;
+        }
+    }
+}
\ No newline at end of file
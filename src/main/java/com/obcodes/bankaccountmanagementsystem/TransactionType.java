@@ -0,0 +1,65 @@
+package com.obcodes.bankaccountmanagementsystem;
+
+/**
+ * Kind of transaction recorded in an account's history.
+ * Stored as a single byte code in the columnar history.
+ * @author Obakeng Phale
+ */
+public enum TransactionType {
+    DEPOSIT,
+    WITHDRAWAL,
+    TRANSFER_IN,
+    TRANSFER_OUT,
+    INTEREST,
+    FEE,
+    UNKNOWN;
+    
+    private static final TransactionType[] BY_CODE = values();
+    
+    /**
+     * Returns the compact code stored in the history columns
+     */
+    public byte code() {
+        return (byte) ordinal();
+    }
+    
+    public static TransactionType fromCode(byte code) {
+        return BY_CODE[code];
+    }
+    
+    /**
+     * Returns the change a posting of this type and amount makes to the
+     * balance, in cents: credits add, debits subtract, UNKNOWN changes nothing
+     */
+    public long balanceChange(long amount) {
+        switch (this) {
+            case DEPOSIT:
+            case TRANSFER_IN:
+            case INTEREST:
+                return amount;
+            case WITHDRAWAL:
+            case TRANSFER_OUT:
+            case FEE:
+                return -amount;
+            default:
+                return 0L;
+        }
+    }
+    
+    /**
+     * Parses a type name case-insensitively, mapping anything unrecognised
+     * (including null or blank) to UNKNOWN
+     */
+    public static TransactionType parse(String type) {
+        if (type == null || type.trim().isEmpty()) {
+            return UNKNOWN;
+        }
+        String upperType = type.toUpperCase();
+        for (TransactionType candidate : BY_CODE) {
+            if (candidate.name().equals(upperType)) {
+                return candidate;
+            }
+        }
+        return UNKNOWN;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,127 @@
+package com.obcodes.bankaccountmanagementsystem;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.LongAdder;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Conservation of money under concurrent postings: 16 threads post a
+ * random mix of deposits, withdrawals, transfers and batches through the
+ * bank, and afterwards the total balance must equal the opening total plus
+ * what was deposited minus what was withdrawn, both summed over the
+ * accounts and in the bank's aggregates. A small book keeps every thread
+ * contending for the same locks; a larger one spreads them out.
+ * @author Obakeng Phale
+ */
+class ConservationTest {
+    private static final int THREADS = 16;
+    private static final int POSTINGS_PER_THREAD = 20_000;
+    private static final int BATCH_SIZE = 8;
+    
+    @Test
+    void smallBookConservesMoney() throws InterruptedException {
+        checkConservation(16);
+    }
+    
+    @Test
+    void largeBookConservesMoney() throws InterruptedException {
+        checkConservation(10_000);
+    }
+    
+    private static void checkConservation(int accounts) throws InterruptedException {
+        Bank bank = new Bank();
+        long[] numbers = new long[accounts];
+        for (int i = 0; i < accounts; i++) {
+            numbers[i] = bank.openAccount("Account Holder", Money.of(1000)).getAccountNumber();
+        }
+        long openingTotal = totalBalance(bank, numbers);
+        LongAdder deposited = new LongAdder();
+        LongAdder withdrawn = new LongAdder();
+        LongAdder succeeded = new LongAdder();
+        
+        Thread[] threads = new Thread[THREADS];
+        Throwable[] failure = new Throwable[1];
+        for (int t = 0; t < THREADS; t++) {
+            int seed = t;
+            threads[t] = new Thread(() -> {
+                SplittableRandom random = new SplittableRandom(seed);
+                PostingBatch batch = new PostingBatch(BATCH_SIZE);
+                for (int i = 0; i < POSTINGS_PER_THREAD; i++) {
+                    long account = numbers[random.nextInt(accounts)];
+                    long amount = random.nextLong(1, 5000);
+                    switch (random.nextInt(4)) {
+                        case 0 -> {
+                            if (bank.deposit(account, amount).isSuccess()) {
+                                deposited.add(amount);
+                                succeeded.increment();
+                            }
+                        }
+                        case 1 -> {
+                            if (bank.withdraw(account, amount).isSuccess()) {
+                                withdrawn.add(amount);
+                                succeeded.increment();
+                            }
+                        }
+                        case 2 -> {
+                            if (bank.transfer(account, numbers[random.nextInt(accounts)], amount).isSuccess()) {
+                                succeeded.increment();
+                            }
+                        }
+                        default -> postBatch(bank, numbers, random, batch, deposited, withdrawn, succeeded);
+                    }
+                }
+            });
+            threads[t].setUncaughtExceptionHandler((th, e) -> failure[0] = e);
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        if (failure[0] != null) {
+            throw new AssertionError("Poster failed", failure[0]);
+        }
+        
+        long expected = openingTotal + deposited.sum() - withdrawn.sum();
+        assertTrue(succeeded.sum() > 0, "no posting succeeded");
+        assertEquals(expected, totalBalance(bank, numbers), "total balance over the accounts");
+        assertEquals(expected, bank.getAggregates().getTotalBalance(), "total balance in the aggregates");
+    }
+    
+    private static void postBatch(Bank bank, long[] numbers, SplittableRandom random, PostingBatch batch,
+                                  LongAdder deposited, LongAdder withdrawn, LongAdder succeeded) {
+        batch.clear();
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            long account = numbers[random.nextInt(numbers.length)];
+            long amount = random.nextLong(1, 5000);
+            switch (random.nextInt(3)) {
+                case 0 -> batch.deposit(account, amount);
+                case 1 -> batch.withdraw(account, amount);
+                default -> batch.transfer(account, numbers[random.nextInt(numbers.length)], amount);
+            }
+        }
+        PostingStatus[] results = bank.post(batch);
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            if (!results[i].isSuccess()) {
+                continue;
+            }
+            succeeded.increment();
+            byte type = batch.type(i);
+            if (type == TransactionJournal.DEPOSIT) {
+                deposited.add(batch.amount(i));
+            } else if (type == TransactionJournal.WITHDRAWAL) {
+                withdrawn.add(batch.amount(i));
+            }
+        }
+    }
+    
+    private static long totalBalance(Bank bank, long[] numbers) {
+        long total = 0;
+        for (long number : numbers) {
+            total = Money.add(total, bank.findAccount(number).getBalance());
+        }
+        return total;
+    }
+}
\ No newline at end of file
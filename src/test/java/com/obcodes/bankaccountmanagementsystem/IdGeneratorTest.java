@@ -0,0 +1,177 @@
+package com.obcodes.bankaccountmanagementsystem;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Uniqueness of account numbers and transaction IDs: 100M of each drawn
+ * from one generator across 16 threads. Every ID is marked in a bitmap as
+ * it is drawn instead of being kept, so the check fits a default heap.
+ * @author Obakeng Phale
+ */
+class IdGeneratorTest {
+    private static final int IDS = 100_000_000;
+    private static final int THREADS = 16;
+    private static final int NODE = 7;
+    // Odd threads draw transaction IDs in blocks of this size
+    private static final int BLOCK = 64;
+    
+    @Test
+    void transactionIdsAreUniqueAcrossThreads() throws InterruptedException {
+        IdGenerator generator = new IdGenerator(NODE);
+        Bitmap seen = new Bitmap();
+        AtomicLong duplicates = new AtomicLong();
+        AtomicLong outOfOrder = new AtomicLong();
+        AtomicLong foreign = new AtomicLong();
+        run(thread -> {
+            Marker marker = new Marker(seen);
+            long[] block = new long[BLOCK];
+            long last = Long.MIN_VALUE;
+            int quota = quota(thread);
+            for (int drawn = 0; drawn < quota; ) {
+                int count = Math.min(thread % 2 == 0 ? 1 : BLOCK, quota - drawn);
+                if (count == 1) {
+                    block[0] = generator.nextTransactionId();
+                } else {
+                    generator.nextTransactionIds(block, 0, count);
+                }
+                for (int i = 0; i < count; i++) {
+                    long id = block[i];
+                    if (id <= last) {
+                        outOfOrder.incrementAndGet();
+                    }
+                    last = id;
+                    if (((id >>> 12) & IdGenerator.MAX_NODE) != NODE) {
+                        foreign.incrementAndGet();
+                    }
+                    // Timestamp and sequence without the node bits
+                    if (!marker.mark(((id >>> 22) << 12) | (id & 0xFFF))) {
+                        duplicates.incrementAndGet();
+                    }
+                }
+                drawn += count;
+            }
+        });
+        assertEquals(0, duplicates.get(), "transaction IDs handed out twice");
+        assertEquals(0, outOfOrder.get(), "transaction IDs that did not increase within a thread");
+        assertEquals(0, foreign.get(), "transaction IDs with the wrong node number");
+        assertEquals(IDS, seen.count(), "distinct transaction IDs");
+    }
+    
+    @Test
+    void accountNumbersAreUniqueAcrossThreads() throws InterruptedException {
+        IdGenerator generator = new IdGenerator(NODE);
+        Bitmap seen = new Bitmap();
+        AtomicLong duplicates = new AtomicLong();
+        AtomicLong outOfRange = new AtomicLong();
+        run(thread -> {
+            Marker marker = new Marker(seen);
+            for (int i = quota(thread); i > 0; i--) {
+                long number = generator.nextAccountNumber();
+                if (number < IdGenerator.MIN_ACCOUNT_NUMBER || number > IdGenerator.MAX_ACCOUNT_NUMBER) {
+                    outOfRange.incrementAndGet();
+                } else if (!marker.mark(number - IdGenerator.MIN_ACCOUNT_NUMBER)) {
+                    duplicates.incrementAndGet();
+                }
+            }
+        });
+        assertEquals(0, duplicates.get(), "account numbers handed out twice");
+        assertEquals(0, outOfRange.get(), "account numbers outside the 12-digit range");
+        assertEquals(IDS, seen.count(), "distinct account numbers");
+    }
+    
+    @Test
+    void transactionIdsStayAheadOfReservedOnes() {
+        IdGenerator generator = new IdGenerator(NODE);
+        // A replayed ID a minute ahead of the clock, as after the clock stepped back
+        long replayed = generator.nextTransactionId() + (60_000L << 22);
+        generator.reserveTransactionId(replayed);
+        assertTrue(generator.nextTransactionId() > replayed, "ID after a reserved one");
+        // Another node's IDs cannot clash, so they do not move this node on
+        IdGenerator other = new IdGenerator(NODE + 1);
+        other.reserveTransactionId(replayed);
+        assertTrue(other.nextTransactionId() < replayed, "ID after another node's reserved one");
+    }
+    
+    private static int quota(int thread) {
+        return IDS / THREADS + (thread < IDS % THREADS ? 1 : 0);
+    }
+    
+    private interface Worker {
+        void run(int thread);
+    }
+    
+    private static void run(Worker worker) throws InterruptedException {
+        Thread[] threads = new Thread[THREADS];
+        Throwable[] failure = new Throwable[1];
+        for (int t = 0; t < THREADS; t++) {
+            int thread = t;
+            threads[t] = new Thread(() -> worker.run(thread));
+            threads[t].setUncaughtExceptionHandler((th, e) -> failure[0] = e);
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        if (failure[0] != null) {
+            throw new AssertionError("Worker failed", failure[0]);
+        }
+    }
+    
+    /**
+     * Concurrent bitmap over a sparse range of positions, in chunks of 1M
+     * bits created on first use
+     */
+    private static final class Bitmap {
+        static final int CHUNK_BITS = 20;
+        final ConcurrentHashMap<Long, AtomicLongArray> chunks = new ConcurrentHashMap<>();
+        
+        AtomicLongArray chunk(long key) {
+            return chunks.computeIfAbsent(key, k -> new AtomicLongArray(1 << (CHUNK_BITS - 6)));
+        }
+        
+        long count() {
+            long count = 0;
+            for (AtomicLongArray chunk : chunks.values()) {
+                for (int i = 0; i < chunk.length(); i++) {
+                    count += Long.bitCount(chunk.get(i));
+                }
+            }
+            return count;
+        }
+    }
+    
+    /**
+     * One thread's access to a bitmap, holding on to the last chunk used
+     * since each thread's IDs mostly increase
+     */
+    private static final class Marker {
+        final Bitmap bitmap;
+        long key = -1;
+        AtomicLongArray chunk;
+        
+        Marker(Bitmap bitmap) {
+            this.bitmap = bitmap;
+        }
+        
+        /**
+         * Sets a position's bit
+         * @return false if it was already set
+         */
+        boolean mark(long position) {
+            long k = position >>> Bitmap.CHUNK_BITS;
+            if (k != key) {
+                key = k;
+                chunk = bitmap.chunk(k);
+            }
+            int bit = (int) position & ((1 << Bitmap.CHUNK_BITS) - 1);
+            long mask = 1L << bit;
+            return (chunk.getAndAccumulate(bit >>> 6, mask, (word, m) -> word | m) & mask) == 0;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,32 @@
+package com.obcodes.bankaccountmanagementsystem;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Parsing of rand amounts: commas are only taken as thousands separators,
+ * so a decimal comma such as "99,99" is refused instead of being read as
+ * R9,999.00.
+ * @author Obakeng Phale
+ */
+class MoneyTest {
+
+    @Test
+    void parsesThousandsSeparators() {
+        assertEquals(123400, Money.parse("1,234"));
+        assertEquals(125050, Money.parse("1,250.5"));
+        assertEquals(123456789, Money.parse("R1,234,567.89"));
+        assertEquals(-100000, Money.parse("-R1,000"));
+        assertEquals(123400, Money.parse("1234"));
+    }
+    
+    @Test
+    void refusesCommasThatAreNotThousandsSeparators() {
+        for (String text : new String[] {"99,99", "1,2", "1,23", "1,2345", "1234,567", ",123", "1,,234",
+                "1,234,", "1,234.5,6"}) {
+            assertThrows(NumberFormatException.class, () -> Money.parse(text), text);
+        }
+    }
+}
\ No newline at end of file